@@ -0,0 +1,191 @@
+package ru.yandex.practicum.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.jdbc.RoutingContext;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Связка InvalidationBus с событиями приложения
+ *
+ * - PostEvent / CommentEvent этого узла (после commit) уходят в шину
+ * - сообщения других узлов публикуются здесь как те же PostEvent / CommentEvent:
+ *   JsonResponseCache, поиск, подсказки и остальные слушатели обновляются так же,
+ *   как после локальной записи (текста комментария в сообщении нет - только id)
+ * - потеря сообщений → InvalidateAllEvent, кеши сбрасываются целиком
+ *
+ * Чужие сообщения применяются по порядку в отдельном потоке invalidation-apply, а не в потоке
+ * приема: медленный слушатель не задерживает чтение сокета. Чтения слушателей при этом идут
+ * в основную БД - реплика может еще не видеть изменение, и кеш заполнился бы старыми данными.
+ * Очередь применения переполнилась (blog.invalidation.apply-queue) - кеши сбрасываются целиком.
+ *
+ * Тип изменения на проводе - явный код из POST_CODES / COMMENT_CODES, не ordinal enum:
+ * новая константа или перестановка в PostEvent.Type не меняет смысл пакетов старых узлов.
+ * Неизвестный код (узел новее) - тоже полный сброс.
+ *
+ * Транспорт задает blog.invalidation.transport (none | in-jvm | udp, см. AppConfig);
+ * при none шина не запускается - один узел, рассылать некому.
+ */
+@Component
+public class ClusterInvalidation implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterInvalidation.class);
+
+    private static final Map<PostEvent.Type, Integer> POST_CODES = new EnumMap<>(Map.of(
+            PostEvent.Type.CREATED, 1,
+            PostEvent.Type.UPDATED, 2,
+            PostEvent.Type.DELETED, 3,
+            PostEvent.Type.LIKED, 4,
+            PostEvent.Type.IMAGE_CHANGED, 5));
+    private static final Map<CommentEvent.Type, Integer> COMMENT_CODES = new EnumMap<>(Map.of(
+            CommentEvent.Type.CREATED, 1,
+            CommentEvent.Type.UPDATED, 2,
+            CommentEvent.Type.DELETED, 3));
+
+    @Autowired
+    private InvalidationTransport transport;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.invalidation.transport:none}")
+    private String transportName;
+
+    @Value("${blog.invalidation.flush-ms:5}")
+    private long flushMillis;
+
+    @Value("${blog.invalidation.max-batch:50}")
+    private int maxBatch;
+
+    @Value("${blog.invalidation.heartbeat-ms:1000}")
+    private long heartbeatMillis;
+
+    @Value("${blog.invalidation.apply-queue:10000}")
+    private int applyQueueSize;
+
+    // Событие, пришедшее из шины, не отправляется обратно
+    private final ThreadLocal<Boolean> applyingRemote = ThreadLocal.withInitial(() -> false);
+    private InvalidationBus bus;
+    private ThreadPoolExecutor applyExecutor;
+
+    @Override
+    public void afterPropertiesSet() {
+        if ("none".equalsIgnoreCase(transportName)) {
+            return;
+        }
+        applyExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(applyQueueSize), runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-apply");
+            thread.setDaemon(true);
+            return thread;
+        });
+        bus = new InvalidationBus(UUID.randomUUID().getMostSignificantBits(), transport,
+                message -> submit(() -> apply(message)), () -> submit(this::invalidateAll),
+                flushMillis, heartbeatMillis, maxBatch);
+        bus.start();
+        metricsRegistry.gauge("invalidation.queue", bus::getQueueSize);
+        metricsRegistry.gauge("invalidation.sent.batches", bus::getSentBatches);
+        metricsRegistry.gauge("invalidation.received", bus::getReceived);
+        metricsRegistry.gauge("invalidation.gaps", bus::getGaps);
+        metricsRegistry.gauge("invalidation.apply.queue", () -> applyExecutor.getQueue().size());
+        System.out.println("✅ Invalidation bus started (" + transportName + ", node " + Long.toHexString(bus.getNodeId()) + ")");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        if (bus != null && !applyingRemote.get()) {
+            bus.publish(InvalidationMessage.Entity.POST, POST_CODES.get(event.getType()), event.getPostId(), event.getPostId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (bus != null && !applyingRemote.get()) {
+            bus.publish(InvalidationMessage.Entity.COMMENT, COMMENT_CODES.get(event.getType()), event.getCommentId(), event.getPostId());
+        }
+    }
+
+    /**
+     * В поток применения; очередь полна - что-то будет пропущено, поэтому сброс всего сразу
+     */
+    private void submit(Runnable task) {
+        try {
+            applyExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            metricsRegistry.increment("invalidation.apply.overflow");
+            if (!applyExecutor.isShutdown()) {
+                invalidateAll();
+            }
+        }
+    }
+
+    private void apply(InvalidationMessage message) {
+        Object event = toEvent(message);
+        if (event == null) {
+            log.warn("Unknown invalidation change {} for {}, dropping caches", message.getChange(), message.getEntity());
+            invalidateAll();
+            return;
+        }
+        applyingRemote.set(true);
+        try {
+            RoutingContext.onPrimary(() -> eventPublisher.publishEvent(event));
+        } catch (RuntimeException e) {
+            log.warn("Remote invalidation {} not applied, dropping caches: {}", message, e.getMessage());
+            invalidateAll();
+        } finally {
+            applyingRemote.set(false);
+        }
+    }
+
+    private static Object toEvent(InvalidationMessage message) {
+        if (message.getEntity() == InvalidationMessage.Entity.POST) {
+            PostEvent.Type type = typeOf(POST_CODES, message.getChange());
+            return type != null ? new PostEvent(type, message.getPostId()) : null;
+        }
+        CommentEvent.Type type = typeOf(COMMENT_CODES, message.getChange());
+        return type != null ? new CommentEvent(type, message.getPostId(), message.getId(), null) : null;
+    }
+
+    private static <T> T typeOf(Map<T, Integer> codes, int code) {
+        for (Map.Entry<T, Integer> entry : codes.entrySet()) {
+            if (entry.getValue() == code) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void invalidateAll() {
+        eventPublisher.publishEvent(new InvalidateAllEvent());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (bus != null) {
+            bus.close();
+            applyExecutor.shutdown();
+            applyExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
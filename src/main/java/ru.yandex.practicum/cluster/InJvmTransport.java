@@ -0,0 +1,46 @@
+package ru.yandex.practicum.cluster;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * ✅ Транспорт между узлами в одной JVM: общий канал по имени, доставка синхронно
+ * на потоке отправителя. Для тестов и запуска нескольких контекстов в одном процессе.
+ */
+public class InJvmTransport implements InvalidationTransport {
+
+    private static final ConcurrentHashMap<String, Set<InJvmTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<byte[]> receiver;
+
+    public InJvmTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void send(byte[] packet) {
+        for (InJvmTransport peer : CHANNELS.getOrDefault(channel, Set.of())) {
+            Consumer<byte[]> peerReceiver = peer.receiver;
+            if (peerReceiver != null) {
+                peerReceiver.accept(packet.clone());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Set<InJvmTransport> peers = CHANNELS.get(channel);
+        if (peers != null) {
+            peers.remove(this);
+        }
+        receiver = null;
+    }
+}
@@ -0,0 +1,242 @@
+package ru.yandex.practicum.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ✅ Шина инвалидации между узлами
+ *
+ * Отправка: publish() только кладет сообщение в очередь; фоновый поток собирает
+ * сообщения за flushMillis (не больше maxBatch) в один пакет и отдает транспорту.
+ * Пакет: magic, nodeId отправителя, version последнего отправленного сообщения,
+ * число сообщений, сообщения по 26 байт. Сущность и тип изменения - явные коды, не ordinal:
+ * перестановка констант в enum не меняет смысл пакетов между узлами разных версий.
+ *
+ * Прием: свои пакеты отбрасываются, чужие сообщения передаются applier по одному.
+ * version у каждого узла идет подряд: если номер перескочил (пакет потерялся),
+ * вызывается onGap - получатель сбрасывает кеши целиком, потому что не знает, что пропустил.
+ * Потерю последних пакетов перед затишьем ловит пульс: без сообщений узел раз в heartbeatMillis
+ * шлет пустой пакет с номером последнего отправленного сообщения.
+ */
+public class InvalidationBus implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    static final short MAGIC = (short) 0xB10D;
+    private static final int HEADER_BYTES = 2 + 8 + 8 + 2;
+    private static final int MESSAGE_BYTES = 1 + 1 + 8 + 8 + 8;
+
+    private final long nodeId;
+    private final InvalidationTransport transport;
+    private final Consumer<InvalidationMessage> applier;
+    private final Runnable onGap;
+    private final long flushMillis;
+    private final long heartbeatMillis;
+    private final int maxBatch;
+
+    private final BlockingQueue<InvalidationMessage> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong version = new AtomicLong();
+    // Номер последнего сообщения, ушедшего в транспорт (пишет только поток отправки)
+    private long sentVersion;
+    private final Map<Long, Long> lastVersions = new ConcurrentHashMap<>();
+    private final AtomicLong sentBatches = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong gaps = new AtomicLong();
+    private Thread sender;
+    private volatile boolean running;
+
+    public InvalidationBus(long nodeId, InvalidationTransport transport, Consumer<InvalidationMessage> applier,
+                           Runnable onGap, long flushMillis, long heartbeatMillis, int maxBatch) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.applier = applier;
+        this.onGap = onGap;
+        this.flushMillis = flushMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.maxBatch = Math.min(maxBatch, (UdpMulticastTransport.MAX_PACKET_BYTES - HEADER_BYTES) / MESSAGE_BYTES);
+    }
+
+    public void start() {
+        running = true;
+        transport.start(this::receive);
+        sender = new Thread(this::sendLoop, "invalidation-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Поставить изменение в очередь на отправку (version назначается здесь,
+     * под одной блокировкой с постановкой в очередь - номера в очереди идут подряд)
+     */
+    public synchronized void publish(InvalidationMessage.Entity entity, int change, long id, long postId) {
+        queue.add(new InvalidationMessage(entity, change, id, postId, version.incrementAndGet()));
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getGaps() {
+        return gaps.get();
+    }
+
+    private void sendLoop() {
+        List<InvalidationMessage> batch = new ArrayList<>(maxBatch);
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        long lastSentNanos = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                InvalidationMessage first = queue.poll(Math.min(100, heartbeatMillis), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (running && System.nanoTime() - lastSentNanos >= heartbeatNanos) {
+                        lastSentNanos = System.nanoTime();
+                        transport.send(encode(nodeId, sentVersion, List.of()));
+                    }
+                    continue;
+                }
+                batch.add(first);
+                // Копим до flushMillis: запись, породившая несколько событий, уходит одним пакетом
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < maxBatch) {
+                    InvalidationMessage next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // Номер сдвигается и при ошибке отправки: пульс покажет получателям пропуск
+                sentVersion = batch.get(batch.size() - 1).getVersion();
+                lastSentNanos = System.nanoTime();
+                transport.send(encode(nodeId, sentVersion, batch));
+                sentBatches.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Invalidation batch of {} not sent: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void receive(byte[] packet) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet));
+        try {
+            if (in.readShort() != MAGIC) {
+                return;
+            }
+            long origin = in.readLong();
+            if (origin == nodeId) {
+                return;
+            }
+            long lastVersion = in.readLong();
+            int count = in.readUnsignedShort();
+            if (count == 0) {
+                checkHeartbeat(origin, lastVersion);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                InvalidationMessage.Entity entity = InvalidationMessage.Entity.of(in.readUnsignedByte());
+                InvalidationMessage message = new InvalidationMessage(
+                        entity,
+                        in.readUnsignedByte(),
+                        in.readLong(),
+                        in.readLong(),
+                        in.readLong());
+                checkSequence(origin, message.getVersion());
+                received.incrementAndGet();
+                if (entity != null) {
+                    applier.accept(message);
+                } else {
+                    // Сущность от узла новее этого: что сбрасывать - неизвестно, сбрасываем все
+                    gaps.incrementAndGet();
+                    onGap.run();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Malformed invalidation packet of {} bytes: {}", packet.length, e.getMessage());
+        }
+    }
+
+    private void checkSequence(long origin, long messageVersion) {
+        Long last = lastVersions.put(origin, messageVersion);
+        // Первое сообщение от узла (или узел перезапустился) - отсчет с него
+        if (last != null && messageVersion > last + 1) {
+            gaps.incrementAndGet();
+            onGap.run();
+        }
+    }
+
+    /**
+     * Пульс: отправитель дошел до lastVersion. Больше последнего принятого - хвост потерялся;
+     * меньше - узел начал нумерацию заново
+     */
+    private void checkHeartbeat(long origin, long lastVersion) {
+        Long last = lastVersions.put(origin, lastVersion);
+        if (last != null && lastVersion > last) {
+            gaps.incrementAndGet();
+            onGap.run();
+        }
+    }
+
+    static byte[] encode(long nodeId, long lastVersion, List<InvalidationMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + messages.size() * MESSAGE_BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(MAGIC);
+            out.writeLong(nodeId);
+            out.writeLong(lastVersion);
+            out.writeShort(messages.size());
+            for (InvalidationMessage message : messages) {
+                out.writeByte(message.getEntity().getCode());
+                out.writeByte(message.getChange());
+                out.writeLong(message.getId());
+                out.writeLong(message.getPostId());
+                out.writeLong(message.getVersion());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Отправить остаток очереди и закрыть транспорт
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        if (sender != null) {
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        transport.close();
+    }
+}
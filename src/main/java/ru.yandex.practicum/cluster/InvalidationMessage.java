@@ -0,0 +1,47 @@
+package ru.yandex.practicum.cluster;
+
+import lombok.Value;
+
+/**
+ * ✅ Одно изменение для других узлов: что поменялось и номер изменения у отправителя
+ *
+ * change - код типа события (PostEvent.Type / CommentEvent.Type) для своей сущности,
+ * коды задает ClusterInvalidation.
+ * version - сквозной номер сообщения у узла-отправителя: по пропуску в номерах
+ * получатель понимает, что часть сообщений потерялась.
+ */
+@Value
+public class InvalidationMessage {
+
+    public enum Entity {
+        POST(1), COMMENT(2);
+
+        private final int code;
+
+        Entity(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * Сущность по коду с провода; null - код неизвестен (узел новее)
+         */
+        public static Entity of(int code) {
+            for (Entity entity : values()) {
+                if (entity.code == code) {
+                    return entity;
+                }
+            }
+            return null;
+        }
+    }
+
+    Entity entity;
+    int change;
+    long id;
+    long postId;
+    long version;
+}
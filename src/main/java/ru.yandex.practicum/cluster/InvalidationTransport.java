@@ -0,0 +1,22 @@
+package ru.yandex.practicum.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * ✅ Доставка пакетов InvalidationBus другим узлам
+ *
+ * Без гарантий: пакет может потеряться или прийти дважды, отправитель может получить свой же пакет.
+ * Реализации: UdpMulticastTransport (между процессами) и InJvmTransport (узлы в одной JVM, для тестов).
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Начать прием; receiver вызывается на потоке транспорта
+     */
+    void start(Consumer<byte[]> receiver);
+
+    void send(byte[] packet);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ✅ UDP multicast между процессами
+ *
+ * Все узлы входят в одну multicast-группу (blog.invalidation.udp.group:port) и получают
+ * пакеты друг друга. IP_MULTICAST_LOOP включен: узлы на одной машине (в том числе через
+ * loopback-интерфейс) тоже слышат друг друга. TTL ограничивает число маршрутизаторов
+ * (1 - только локальная сеть).
+ */
+public class UdpMulticastTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(UdpMulticastTransport.class);
+
+    // Пакет InvalidationBus помещается в одну датаграмму без фрагментации
+    static final int MAX_PACKET_BYTES = 1400;
+
+    private final InetSocketAddress group;
+    private final NetworkInterface networkInterface;
+    private final MulticastSocket socket;
+    private Thread receiverThread;
+    private volatile boolean running;
+
+    public UdpMulticastTransport(String groupAddress, int port, String interfaceName, int timeToLive) {
+        try {
+            InetAddress address = InetAddress.getByName(groupAddress);
+            if (!address.isMulticastAddress()) {
+                throw new IllegalArgumentException(groupAddress + " is not a multicast address");
+            }
+            this.group = new InetSocketAddress(address, port);
+            this.networkInterface = interfaceName == null || interfaceName.isBlank()
+                    ? null : NetworkInterface.getByName(interfaceName);
+            this.socket = new MulticastSocket(port);
+            socket.setTimeToLive(timeToLive);
+            socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            if (networkInterface != null) {
+                socket.setNetworkInterface(networkInterface);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open multicast socket " + groupAddress + ":" + port, e);
+        }
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        try {
+            socket.joinGroup(group, networkInterface);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot join multicast group " + group, e);
+        }
+        running = true;
+        receiverThread = new Thread(() -> receive(receiver), "invalidation-udp-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    @Override
+    public void send(byte[] packet) {
+        try {
+            socket.send(new DatagramPacket(packet, packet.length, group));
+        } catch (IOException e) {
+            // Потерянный пакет получатели заметят по пропуску в version
+            log.warn("Invalidation packet not sent: {}", e.getMessage());
+        }
+    }
+
+    private void receive(Consumer<byte[]> receiver) {
+        byte[] buffer = new byte[MAX_PACKET_BYTES];
+        while (running) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+                receiver.accept(Arrays.copyOf(packet.getData(), packet.getLength()));
+            } catch (SocketException e) {
+                // Сокет закрыт в close()
+                break;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Invalidation packet dropped: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            socket.leaveGroup(group, networkInterface);
+        } catch (IOException e) {
+            log.debug("Leave multicast group failed: {}", e.getMessage());
+        }
+        socket.close();
+        if (receiverThread != null) {
+            try {
+                receiverThread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
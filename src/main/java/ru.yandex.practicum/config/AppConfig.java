@@ -1,15 +1,54 @@
 package ru.yandex.practicum.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.cluster.InJvmTransport;
+import ru.yandex.practicum.cluster.InvalidationTransport;
+import ru.yandex.practicum.cluster.UdpMulticastTransport;
+import ru.yandex.practicum.dao.CommentDao;
+import ru.yandex.practicum.dao.CommentDaoImpl;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostDaoImpl;
+import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dao.PostTagDaoImpl;
+import ru.yandex.practicum.dao.ShardedCommentDao;
+import ru.yandex.practicum.dao.ShardedPostDao;
+import ru.yandex.practicum.dao.ShardedPostTagDao;
+import ru.yandex.practicum.jdbc.LocalReplicaSet;
+import ru.yandex.practicum.jdbc.ReadWriteRoutingDataSource;
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.jdbc.ShardedTransactionManager;
+import ru.yandex.practicum.jdbc.StatementStatsDataSource;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.web.CachedImageHttpMessageConverter;
+import ru.yandex.practicum.web.IdempotencyStore;
+import ru.yandex.practicum.web.InMemoryIdempotencyStore;
+import ru.yandex.practicum.web.JdbcIdempotencyStore;
+import ru.yandex.practicum.web.ReplicaStickinessInterceptor;
+import ru.yandex.practicum.web.SerializedJsonHttpMessageConverter;
 
 import javax.sql.DataSource;
+import java.util.List;
 
 /**
  * ✅ УЛУЧШЕННАЯ И БОЛЕЕ БЕЗОПАСНАЯ КОНФИГУРАЦИЯ
@@ -23,45 +62,68 @@ import javax.sql.DataSource;
  */
 @Configuration
 @EnableWebMvc
+@EnableTransactionManagement
 @ComponentScan(basePackages = {
         "ru.yandex.practicum.controller",
         "ru.yandex.practicum.service",
         "ru.yandex.practicum.dao",
-        "ru.yandex.practicum.config"
+        "ru.yandex.practicum.config",
+        "ru.yandex.practicum.web",
+        "ru.yandex.practicum.exception",
+        "ru.yandex.practicum.metrics",
+        "ru.yandex.practicum.jdbc",
+        "ru.yandex.practicum.cluster"
 })
+@PropertySource("classpath:application.properties")
 public class AppConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private ReplicaStickinessInterceptor replicaStickinessInterceptor;
+
     /**
-     * ✅ DataSource Bean для подключения к H2 БД IN-MEMORY
+     * ✅ DataSource Bean для подключения к H2 БД
      *
      * ИСПОЛЬЗУЕТСЯ:
-     * - DatabaseInitializerListener (инициализирует таблицы)
      * - JdbcTemplate (выполняет SQL)
      *
      * ПАРАМЕТРЫ:
-     * - MODE=MySQL: использовать MySQL совместимость
-     * - DB_CLOSE_DELAY=-1: не закрывать БД при выключении Connection
-     * - DB_CLOSE_ON_EXIT=FALSE: не закрывать при выходе JVM
+     * - URL и режим хранения (memory/file) берутся из DatabaseSettings
+     *   (тот же URL использует DatabaseInitializerListener)
+     *
+     * ЕСЛИ ВКЛЮЧЕНЫ РЕПЛИКИ (blog.db.replicas.count > 0):
+     * - ReadWriteRoutingDataSource: чтения из RoutingContext.onReplica → реплики, остальное → основная БД
+     * - LazyConnectionDataSourceProxy: маршрут выбирается на первом SQL, а не в начале транзакции
+     *
+     * ЕСЛИ ВКЛЮЧЕНЫ ШАРДЫ (blog.db.shards.count > 1):
+     * - это шард 0 (см. ShardSet); LazyConnectionDataSourceProxy - транзакция, которая пишет
+     *   только в другой шард, не держит соединение основной БД
+     * - шарды и реплики вместе не поддерживаются
      *
-     * ВАЖНО: Данные теряются при перезагрузке приложения!
+     * Обернут в StatementStatsDataSource: считает SQL на каждый запрос (см. StatementStatsFilter)
+     *
+     * ВАЖНО: в режиме memory данные теряются при перезагрузке приложения!
      */
     @Bean
-    public DataSource dataSource() {
+    public DataSource dataSource(LocalReplicaSet localReplicaSet) {
         try {
-            DriverManagerDataSource dataSource = new DriverManagerDataSource();
-
-            // H2 Driver
-            dataSource.setDriverClassName("org.h2.Driver");
+            DatabaseSettings settings = DatabaseSettings.load();
+            DataSource dataSource = primaryDataSource(settings);
 
-            // In-Memory БД с MySQL режимом
-            dataSource.setUrl("jdbc:h2:mem:blog_db;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+            if (settings.getShardCount() > 1) {
+                if (!localReplicaSet.isEmpty()) {
+                    throw new IllegalStateException("blog.db.shards.count > 1 does not support read replicas");
+                }
+                dataSource = new LazyConnectionDataSourceProxy(dataSource);
+            }
 
-            // Учетные данные
-            dataSource.setUsername("sa");
-            dataSource.setPassword("");
+            if (!localReplicaSet.isEmpty()) {
+                dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(dataSource,
+                        localReplicaSet.getDataSources(), settings.getReplicaStickyWindowMillis()));
+            }
 
-            System.out.println("✅ DataSource инициализирован успешно");
-            return dataSource;
+            System.out.println("✅ DataSource инициализирован успешно (" + settings.getMode()
+                    + ", реплик: " + settings.getReplicaCount() + ", шардов: " + settings.getShardCount() + ")");
+            return new StatementStatsDataSource(dataSource);
 
         } catch (Exception e) {
             System.err.println("❌ ОШИБКА при инициализации DataSource:");
@@ -70,6 +132,74 @@ public class AppConfig implements WebMvcConfigurer {
         }
     }
 
+    /**
+     * ✅ Локальные read-реплики (H2 in-memory, синхронизация снимком)
+     *
+     * По умолчанию реплик нет (blog.db.replicas.count=0), бин пустой.
+     */
+    @Bean(destroyMethod = "close")
+    public LocalReplicaSet localReplicaSet(MetricsRegistry metricsRegistry) {
+        DatabaseSettings settings = DatabaseSettings.load();
+        LocalReplicaSet replicas = new LocalReplicaSet(primaryDataSource(settings), settings);
+        replicas.start();
+
+        if (!replicas.isEmpty()) {
+            metricsRegistry.gauge("db.replicas.lag-ms",
+                    () -> System.currentTimeMillis() - replicas.getLastSyncMillis());
+        }
+        return replicas;
+    }
+
+    /**
+     * ✅ Шарды постов (blog.db.shards.count, по умолчанию 1 - без шардирования)
+     *
+     * Шард 0 - dataSource выше, остальные - соседние БД H2. При старте досоздаются таблицы
+     * и посты переносятся на свои шарды.
+     */
+    @Bean(destroyMethod = "close")
+    public ShardSet shardSet(DataSource dataSource) {
+        DatabaseSettings settings = DatabaseSettings.load();
+        ShardSet shards = new ShardSet(dataSource, settings);
+        shards.start();
+        return shards;
+    }
+
+    /**
+     * ✅ DAO: при шардировании - обертки над шардами, иначе обычные реализации
+     *
+     * @Primary: реализации *DaoImpl остаются бинами, сервисы получают эти
+     */
+    @Bean
+    @Primary
+    public PostDao postDao(ShardSet shardSet, PostDaoImpl postDaoImpl) {
+        return shardSet.isSharded() ? new ShardedPostDao(shardSet) : postDaoImpl;
+    }
+
+    @Bean
+    @Primary
+    public CommentDao commentDao(ShardSet shardSet, CommentDaoImpl commentDaoImpl) {
+        return shardSet.isSharded() ? new ShardedCommentDao(shardSet) : commentDaoImpl;
+    }
+
+    @Bean
+    @Primary
+    public PostTagDao postTagDao(ShardSet shardSet, PostTagDaoImpl postTagDaoImpl) {
+        return shardSet.isSharded() ? new ShardedPostTagDao(shardSet) : postTagDaoImpl;
+    }
+
+    private static DriverManagerDataSource primaryDataSource(DatabaseSettings settings) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+
+        // H2 Driver
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        // URL и учетные данные из application.properties
+        dataSource.setUrl(settings.getUrl());
+        dataSource.setUsername(settings.getUsername());
+        dataSource.setPassword(settings.getPassword());
+        return dataSource;
+    }
+
     /**
      * ✅ JdbcTemplate Bean для работы с БД через JDBC
      *
@@ -95,6 +225,110 @@ public class AppConfig implements WebMvcConfigurer {
         }
     }
 
+    /**
+     * ✅ Transaction Manager для @Transactional в сервисах
+     *
+     * ЗАЧЕМ:
+     * - операция сервиса (пост + теги, удаление поста с комментариями) = одна транзакция и один commit
+     * - при ошибке ничего не применяется частично
+     *
+     * Использует тот же DataSource, что и JdbcTemplate, поэтому DAO работают в транзакции автоматически.
+     * Частые мелкие записи (лайки, комментарии) дополнительно группируются в GroupCommitExecutor.
+     * При шардировании - ShardedTransactionManager: шарды подключаются к транзакции основной БД.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(DataSource dataSource, ShardSet shardSet) {
+        PlatformTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        if (shardSet.isSharded()) {
+            transactionManager = new ShardedTransactionManager(transactionManager, shardSet);
+        }
+        System.out.println("✅ TransactionManager инициализирован успешно");
+        return transactionManager;
+    }
+
+    /**
+     * ✅ ObjectMapper для REST API и JsonResponseCache
+     *
+     * - настройки по умолчанию Spring MVC (Jackson2ObjectMapperBuilder)
+     * - BlackbirdModule: доступ к getter/setter DTO через сгенерированные лямбды
+     *   (LambdaMetafactory) вместо reflection на каждом поле каждого ответа
+     */
+    @Bean
+    public ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new BlackbirdModule())
+                .build();
+    }
+
+    /**
+     * ✅ Хранилище ответов для Idempotency-Key (IdempotencyFilter)
+     *
+     * - memory (по умолчанию): ограниченная карта в памяти, ключи теряются при перезапуске
+     * - jdbc: таблица idempotency_keys, переживает перезапуск и общая для инстансов
+     * Ключ хранится blog.idempotency.ttl-ms, заявка без ответа - blog.idempotency.claim-ttl-ms
+     */
+    @Bean
+    public IdempotencyStore idempotencyStore(JdbcTemplate jdbcTemplate,
+                                             @Value("${blog.idempotency.store:memory}") String store,
+                                             @Value("${blog.idempotency.ttl-ms:86400000}") long ttlMillis,
+                                             @Value("${blog.idempotency.claim-ttl-ms:60000}") long claimTtlMillis,
+                                             @Value("${blog.idempotency.max-entries:100000}") int maxEntries) {
+        IdempotencyStore idempotencyStore = "jdbc".equalsIgnoreCase(store)
+                ? new JdbcIdempotencyStore(jdbcTemplate, ttlMillis, claimTtlMillis)
+                : new InMemoryIdempotencyStore(ttlMillis, claimTtlMillis, maxEntries);
+        System.out.println("✅ IdempotencyStore: " + idempotencyStore.getClass().getSimpleName());
+        return idempotencyStore;
+    }
+
+    /**
+     * ✅ Транспорт шины инвалидации между узлами (ClusterInvalidation)
+     *
+     * - none (по умолчанию): один узел, шина не запускается
+     * - in-jvm: узлы в одной JVM (тесты, несколько контекстов в одном процессе)
+     * - udp: UDP multicast в группу blog.invalidation.udp.group:port
+     */
+    @Bean
+    public InvalidationTransport invalidationTransport(
+            @Value("${blog.invalidation.transport:none}") String transport,
+            @Value("${blog.invalidation.udp.group:239.255.42.99}") String group,
+            @Value("${blog.invalidation.udp.port:45999}") int port,
+            @Value("${blog.invalidation.udp.interface:}") String networkInterface,
+            @Value("${blog.invalidation.udp.ttl:1}") int timeToLive) {
+        if ("udp".equalsIgnoreCase(transport)) {
+            return new UdpMulticastTransport(group, port, networkInterface, timeToLive);
+        }
+        return new InJvmTransport("blog-invalidation");
+    }
+
+    /**
+     * ✅ HTTP Message Converters
+     *
+     * - SerializedJsonHttpMessageConverter первым: готовые байты из JsonResponseCache пишутся как есть
+     * - CachedImageHttpMessageConverter: изображения из OffHeapImageCache без копии в кучу
+     * - стандартный Jackson-конвертер использует ObjectMapper выше
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        ObjectMapper objectMapper = objectMapper();
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter jackson) {
+                jackson.setObjectMapper(objectMapper);
+            }
+        }
+        converters.add(0, new SerializedJsonHttpMessageConverter());
+        converters.add(1, new CachedImageHttpMessageConverter());
+    }
+
+    /**
+     * ✅ Interceptors
+     *
+     * - ReplicaStickinessInterceptor: read-your-writes при чтении с реплик
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicaStickinessInterceptor).addPathPatterns("/api/**");
+    }
+
     /**
      * ✅ CORS Конфигурация для REST API
      *
@@ -3,9 +3,13 @@ package ru.yandex.practicum.config;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import ru.yandex.practicum.model.Image;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 /**
@@ -16,9 +20,10 @@ import java.sql.Statement;
 @WebListener
 public class DatabaseInitializerListener implements ServletContextListener {
 
-    private static final String URL = "jdbc:h2:mem:blog_db;MODE=MySQL;DB_CLOSE_DELAY=-1";
-    private static final String USER = "sa";
-    private static final String PASSWORD = "";
+    private static final String BACKFILL_COMMENTS_COUNT =
+            "UPDATE posts p SET comments_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id)";
+
+    private final DatabaseSettings settings = DatabaseSettings.load();
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
@@ -32,76 +37,12 @@ public class DatabaseInitializerListener implements ServletContextListener {
             System.out.println("  ✅ Driver loaded\n");
 
             System.out.println("[2/5] Creating connection...");
-            try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            try (Connection conn = DriverManager.getConnection(
+                    settings.getUrl(), settings.getUsername(), settings.getPassword())) {
                 System.out.println("  ✅ Connection established\n");
 
-                try (Statement stmt = conn.createStatement()) {
-                    System.out.println("[3/5] Creating tables...");
-
-                    // Таблица POSTS
-                    stmt.execute(
-                            "CREATE TABLE IF NOT EXISTS posts (" +
-                                    "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
-                                    "  title VARCHAR(255) NOT NULL," +
-                                    "  text LONGTEXT NOT NULL," +
-                                    "  author_id BIGINT," +
-                                    "  likes_count INT DEFAULT 0," +
-                                    "  image LONGBLOB" +
-                                    ")"
-                    );
-                    System.out.println("  ✅ POSTS table created");
-
-                    // Таблица COMMENTS
-                    stmt.execute(
-                            "CREATE TABLE IF NOT EXISTS comments (" +
-                                    "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
-                                    "  post_id BIGINT NOT NULL," +
-                                    "  text LONGTEXT NOT NULL," +
-                                    "  author_id BIGINT," +
-                                    "  FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE" +
-                                    ")"
-                    );
-                    System.out.println("  ✅ COMMENTS table created");
-
-                    // ✅ Таблица POST_TAGS
-                    stmt.execute(
-                            "CREATE TABLE IF NOT EXISTS post_tags (" +
-                                    "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
-                                    "  post_id BIGINT NOT NULL," +
-                                    "  tag VARCHAR(255) NOT NULL," +
-                                    "  FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE" +
-                                    ")"
-                    );
-                    System.out.println("  ✅ POST_TAGS table created\n");
-
-                    System.out.println("[4/5] Inserting test data...");
-
-                    // Вставить посты
-                    stmt.execute(
-                            "INSERT INTO posts (title, text, author_id, likes_count) VALUES " +
-                                    "('First Post', 'This is the first post', 1, 5)," +
-                                    "('Second Post', 'This is the second post', 2, 10)," +
-                                    "('Third Post', 'This is the third post', 1, 3)"
-                    );
-                    System.out.println("  ✅ 3 posts inserted");
-
-                    // Вставить комментарии
-                    stmt.execute(
-                            "INSERT INTO comments (post_id, text, author_id) VALUES " +
-                                    "(1, 'Great post!', 2)," +
-                                    "(1, 'Thanks for sharing!', 3)"
-                    );
-                    System.out.println("  ✅ 2 comments inserted");
-
-                    // ✅ Вставить тэги
-                    stmt.execute(
-                            "INSERT INTO post_tags (post_id, tag) VALUES " +
-                                    "(1, 'Java')," +
-                                    "(1, 'Spring')," +
-                                    "(2, 'Database')," +
-                                    "(3, 'REST')"
-                    );
-                    System.out.println("  ✅ 4 tags inserted\n");
+                try {
+                    initialize(conn);
 
                     System.out.println("════════════════════════════════════════════════════════════");
                     System.out.println("✅✅✅ DATABASE SUCCESSFULLY INITIALIZED! ✅✅✅");
@@ -122,8 +63,219 @@ public class DatabaseInitializerListener implements ServletContextListener {
         }
     }
 
+    /**
+     * Создает таблицы и, если БД пустая, заполняет тестовыми данными.
+     * Используется и при старте приложения, и в интеграционных тестах.
+     */
+    public static void initialize(Connection conn) throws SQLException {
+        createTables(conn);
+        migrateImages(conn, conn);
+        try (Statement stmt = conn.createStatement()) {
+            // Тестовые данные только в пустую БД (повторная инициализация не дублирует их)
+            if (hasPosts(stmt)) {
+                System.out.println("[4/5] Test data already present, skipping\n");
+                return;
+            }
+            insertTestData(stmt);
+        }
+    }
+
+    /**
+     * Только таблицы и индексы, без тестовых данных (так же создаются шарды, см. ShardSet)
+     */
+    public static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            System.out.println("[3/5] Creating tables...");
+
+            // Таблица POSTS
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS posts (" +
+                            "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
+                            "  title VARCHAR(255) NOT NULL," +
+                            "  text LONGTEXT NOT NULL," +
+                            "  author_id BIGINT," +
+                            "  likes_count INT DEFAULT 0," +
+                            "  image LONGBLOB," +
+                            "  created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                            "  comments_count INT NOT NULL DEFAULT 0," +
+                            "  text_preview VARCHAR(256)" +
+                            ")"
+            );
+            System.out.println("  ✅ POSTS table created");
+
+            // БД, созданная до появления сортировок: досоздаем колонки и считаем комментарии
+            boolean backfillComments = !hasColumn(stmt, "POSTS", "COMMENTS_COUNT");
+            stmt.execute("ALTER TABLE posts ADD COLUMN IF NOT EXISTS " +
+                    "created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP");
+            stmt.execute("ALTER TABLE posts ADD COLUMN IF NOT EXISTS " +
+                    "comments_count INT NOT NULL DEFAULT 0");
+            // Заполняется TextPreviewBackfill для старых строк и сервисом для новых
+            stmt.execute("ALTER TABLE posts ADD COLUMN IF NOT EXISTS text_preview VARCHAR(256)");
+
+            // Изображение хранится в images по SHA-256, пост ссылается на него (posts.image LONGBLOB - старые строки)
+            stmt.execute("ALTER TABLE posts ADD COLUMN IF NOT EXISTS image_hash CHAR(64)");
+
+            // Таблица COMMENTS
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS comments (" +
+                            "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
+                            "  post_id BIGINT NOT NULL," +
+                            "  text LONGTEXT NOT NULL," +
+                            "  author_id BIGINT," +
+                            "  FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE" +
+                            ")"
+            );
+            System.out.println("  ✅ COMMENTS table created");
+
+            // ✅ Таблица POST_TAGS
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS post_tags (" +
+                            "  id BIGINT PRIMARY KEY AUTO_INCREMENT," +
+                            "  post_id BIGINT NOT NULL," +
+                            "  tag VARCHAR(255) NOT NULL," +
+                            "  FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE" +
+                            ")"
+            );
+            System.out.println("  ✅ POST_TAGS table created");
+
+            // ✅ Таблица IMAGES: одно изображение на одно содержимое, ref_count - число постов с ним
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS images (" +
+                            "  hash CHAR(64) PRIMARY KEY," +
+                            "  data LONGBLOB NOT NULL," +
+                            "  size_bytes INT NOT NULL," +
+                            "  ref_count INT NOT NULL DEFAULT 0," +
+                            "  released_at TIMESTAMP" +
+                            ")"
+            );
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_images_released ON images(ref_count, released_at)");
+            System.out.println("  ✅ IMAGES table created");
+
+            // Ответы на запросы с Idempotency-Key (blog.idempotency.store=jdbc)
+            stmt.execute(
+                    "CREATE TABLE IF NOT EXISTS idempotency_keys (" +
+                            "  idem_key VARCHAR(512) PRIMARY KEY," +
+                            "  request_hash VARCHAR(64) NOT NULL," +
+                            "  status INT NOT NULL," +
+                            "  content_type VARCHAR(255)," +
+                            "  body LONGBLOB," +
+                            "  created_at TIMESTAMP NOT NULL" +
+                            ")"
+            );
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys(created_at)");
+            System.out.println("  ✅ IDEMPOTENCY_KEYS table created");
+
+            // Индексы под сортировки ленты: ORDER BY ... LIMIT читает только страницу
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_created ON posts(created_date DESC, id DESC)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_likes ON posts(likes_count DESC, id DESC)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_comments ON posts(comments_count DESC, id DESC)");
+            System.out.println("  ✅ Sort indexes created\n");
+
+            if (backfillComments) {
+                stmt.execute(BACKFILL_COMMENTS_COUNT);
+            }
+        }
+    }
+
+    /**
+     * Изображения, сохраненные до появления images: переносятся по одному посту,
+     * одинаковые содержимые становятся одной строкой с нужным ref_count.
+     * posts - БД с постами (шард), images - основная БД, где лежит таблица images
+     * (без шардирования это одно и то же соединение, см. ShardSet.start)
+     */
+    public static void migrateImages(Connection posts, Connection images) throws SQLException {
+        int migrated = 0;
+        try (Statement select = posts.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, image FROM posts WHERE image IS NOT NULL");
+             PreparedStatement addReference = images.prepareStatement(
+                     "UPDATE images SET ref_count = ref_count + 1, released_at = NULL WHERE hash = ?");
+             PreparedStatement insertImage = images.prepareStatement(
+                     "INSERT INTO images (hash, data, size_bytes, ref_count) VALUES (?, ?, ?, 1)");
+             PreparedStatement linkPost = posts.prepareStatement(
+                     "UPDATE posts SET image_hash = ?, image = NULL WHERE id = ?")) {
+            while (rs.next()) {
+                byte[] data = rs.getBytes("image");
+                String hash = Image.hashOf(data);
+                // Сначала ссылка, потом пост: сбой между ними оставит ref_count на 1 больше
+                // (его поправит ImageSweeper), но не пост без изображения
+                addReference.setString(1, hash);
+                if (addReference.executeUpdate() == 0) {
+                    insertImage.setString(1, hash);
+                    insertImage.setBytes(2, data);
+                    insertImage.setInt(3, data.length);
+                    insertImage.executeUpdate();
+                }
+                linkPost.setString(1, hash);
+                linkPost.setLong(2, rs.getLong("id"));
+                linkPost.executeUpdate();
+                migrated++;
+            }
+        }
+        if (migrated > 0) {
+            System.out.println("  ✅ " + migrated + " post images moved to IMAGES\n");
+        }
+    }
+
+    private static void insertTestData(Statement stmt) throws SQLException {
+        System.out.println("[4/5] Inserting test data...");
+
+        // Вставить посты
+        stmt.execute(
+                "INSERT INTO posts (title, text, author_id, likes_count) VALUES " +
+                        "('First Post', 'This is the first post', 1, 5)," +
+                        "('Second Post', 'This is the second post', 2, 10)," +
+                        "('Third Post', 'This is the third post', 1, 3)"
+        );
+        System.out.println("  ✅ 3 posts inserted");
+
+        // Вставить комментарии
+        stmt.execute(
+                "INSERT INTO comments (post_id, text, author_id) VALUES " +
+                        "(1, 'Great post!', 2)," +
+                        "(1, 'Thanks for sharing!', 3)"
+        );
+        stmt.execute(BACKFILL_COMMENTS_COUNT);
+        System.out.println("  ✅ 2 comments inserted");
+
+        // ✅ Вставить тэги
+        stmt.execute(
+                "INSERT INTO post_tags (post_id, tag) VALUES " +
+                        "(1, 'Java')," +
+                        "(1, 'Spring')," +
+                        "(2, 'Database')," +
+                        "(3, 'REST')"
+        );
+        System.out.println("  ✅ 4 tags inserted\n");
+    }
+
+    private static boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS " +
+                        "WHERE TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+
+    private static boolean hasPosts(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM posts")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         System.out.println("👋 Application shutting down");
+
+        // File-режим: явно закрываем БД, чтобы сбросить последние изменения на диск
+        if (settings.isFileMode()) {
+            try (Connection conn = DriverManager.getConnection(
+                    settings.getUrl(), settings.getUsername(), settings.getPassword());
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("SHUTDOWN");
+                System.out.println("  ✅ Database closed");
+            } catch (Exception e) {
+                System.err.println("❌ DATABASE SHUTDOWN FAILED: " + e.getMessage());
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * ✅ Настройки подключения к H2 из application.properties
+ *
+ * Один источник JDBC URL для AppConfig (DataSource) и DatabaseInitializerListener.
+ * Значения можно переопределить system property (-Dblog.db.mode=file).
+ *
+ * РЕЖИМЫ (blog.db.mode):
+ * - memory: jdbc:h2:mem, все данные в heap, теряются при перезапуске
+ * - file: H2 MVStore в файле; в heap только page cache размера blog.db.cache-size-kb,
+ *   поэтому объем данных (включая картинки) не ограничен размером heap
+ */
+public final class DatabaseSettings {
+
+    public static final String MODE_MEMORY = "memory";
+    public static final String MODE_FILE = "file";
+
+    private static final String RESOURCE = "application.properties";
+
+    private final Properties properties;
+
+    private DatabaseSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static DatabaseSettings load() {
+        Properties properties = new Properties();
+        try (InputStream in = DatabaseSettings.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + RESOURCE, e);
+        }
+        return new DatabaseSettings(properties);
+    }
+
+    public String get(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue)).trim();
+    }
+
+    public String getMode() {
+        return get("blog.db.mode", MODE_MEMORY);
+    }
+
+    public boolean isFileMode() {
+        return MODE_FILE.equalsIgnoreCase(getMode());
+    }
+
+    public String getUsername() {
+        return get("blog.db.username", "sa");
+    }
+
+    public String getPassword() {
+        return get("blog.db.password", "");
+    }
+
+    /**
+     * JDBC URL основной БД
+     *
+     * Общие параметры:
+     * - MODE=MySQL, DB_CLOSE_DELAY=-1, DB_CLOSE_ON_EXIT=FALSE (закрываем сами в contextDestroyed)
+     *
+     * Только для file:
+     * - CACHE_SIZE: page cache MVStore в KB (основной потребитель heap)
+     * - COMPRESS: сжатие страниц MVStore (меньше I/O, немного больше CPU)
+     * - WRITE_DELAY: как часто фоновый writer сбрасывает изменения на диск (checkpoint), мс
+     * - MAX_COMPACT_TIME: сколько времени тратить на компактизацию файла при закрытии, мс
+     */
+    public String getUrl() {
+        return getUrl(get("blog.db.name", "blog_db"));
+    }
+
+    private String getUrl(String name) {
+        StringBuilder url = new StringBuilder("jdbc:h2:");
+        if (isFileMode()) {
+            String dir = get("blog.db.file.dir", "./data");
+            url.append("file:").append(dir).append('/').append(name);
+        } else {
+            url.append("mem:").append(name);
+        }
+        url.append(";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+
+        if (isFileMode()) {
+            url.append(";CACHE_SIZE=").append(get("blog.db.file.cache-size-kb", "65536"));
+            url.append(";COMPRESS=").append(Boolean.parseBoolean(get("blog.db.file.compress", "true")) ? "TRUE" : "FALSE");
+            url.append(";WRITE_DELAY=").append(get("blog.db.file.checkpoint-interval-ms", "500"));
+            url.append(";MAX_COMPACT_TIME=").append(get("blog.db.file.max-compact-time-ms", "200"));
+        }
+        return url.toString();
+    }
+
+    // ========== SHARDS ==========
+
+    /**
+     * Количество шардов постов (1 - без шардирования, все в основной БД)
+     */
+    public int getShardCount() {
+        return Integer.parseInt(get("blog.db.shards.count", "1"));
+    }
+
+    /**
+     * Потоки для параллельных запросов ко всем шардам (scatter-gather)
+     */
+    public int getShardQueryThreads() {
+        return Integer.parseInt(get("blog.db.shards.query-threads", "8"));
+    }
+
+    /**
+     * Шард 0 - основная БД, остальные - соседние БД в том же режиме (memory/file)
+     */
+    public String getShardUrl(int index) {
+        String name = get("blog.db.name", "blog_db");
+        return index == 0 ? getUrl(name) : getUrl(name + "_shard_" + index);
+    }
+
+    // ========== READ REPLICAS ==========
+
+    /**
+     * Количество локальных read-реплик (0 - без реплик, все запросы в основную БД)
+     */
+    public int getReplicaCount() {
+        return Integer.parseInt(get("blog.db.replicas.count", "0"));
+    }
+
+    public long getReplicaSyncIntervalMillis() {
+        return Long.parseLong(get("blog.db.replicas.sync-interval-ms", "1000"));
+    }
+
+    /**
+     * Сколько после записи читать из основной БД (read-your-writes)
+     */
+    public long getReplicaStickyWindowMillis() {
+        return Long.parseLong(get("blog.db.replicas.sticky-window-ms", "5000"));
+    }
+
+    /**
+     * Реплика - всегда отдельная in-memory БД; generation меняется при каждой синхронизации
+     */
+    public String getReplicaUrl(int index, long generation) {
+        return "jdbc:h2:mem:" + get("blog.db.name", "blog_db") + "_replica_" + index + "_g" + generation
+                + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    }
+}
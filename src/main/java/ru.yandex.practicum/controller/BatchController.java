@@ -0,0 +1,40 @@
+package ru.yandex.practicum.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.dto.BatchRequest;
+import ru.yandex.practicum.dto.BatchResponse;
+import ru.yandex.practicum.service.BatchExecutor;
+import ru.yandex.practicum.web.ClientRateLimits;
+
+@RestController
+@RequestMapping("/api/batch")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class BatchController {
+
+    @Autowired
+    private BatchExecutor batchExecutor;
+
+    @Autowired
+    private ClientRateLimits rateLimits;
+
+    /**
+     * POST /api/batch
+     * Несколько операций с постами и комментариями одним запросом;
+     * 207 Multi-Status, статус и тело каждой операции - в results.
+     * Лайки и комментарии пачки идут в лимиты клиента так же, как отдельные запросы
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResponse> execute(@RequestBody BatchRequest request, HttpServletRequest httpRequest) {
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS)
+                .body(batchExecutor.execute(request, rateLimits.clientKey(httpRequest)));
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * GET /api/metrics
+     * Снимок счетчиков и gauge-метрик приложения
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Number>> getMetrics() {
+        return ResponseEntity.ok(metricsRegistry.snapshot());
+    }
+}
@@ -2,63 +2,110 @@ package ru.yandex.practicum.controller;
 
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.dao.PostSort;
 import ru.yandex.practicum.dto.CommentDto;
 import ru.yandex.practicum.dto.PostDetailDto;
-import ru.yandex.practicum.dto.PostsResponse;
+import ru.yandex.practicum.dto.PostsByIdsResponse;
+import ru.yandex.practicum.dto.TrendingPostDto;
 import ru.yandex.practicum.service.CommentService;
 import ru.yandex.practicum.service.PostService;
+import ru.yandex.practicum.service.TrendingTracker;
+import ru.yandex.practicum.web.CachedImage;
+import ru.yandex.practicum.web.JsonResponseCache;
+import ru.yandex.practicum.web.LiveEventBroadcaster;
+import ru.yandex.practicum.web.OffHeapImageCache;
+import ru.yandex.practicum.web.SerializedJson;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
+/**
+ * Ошибки сервисов (NotFoundException, ValidationException и прочие)
+ * не перехватываются здесь, а превращаются в ответ в GlobalExceptionHandler.
+ *
+ * Список и детальная страница поста отдаются из JsonResponseCache уже сериализованными,
+ * изображения - из OffHeapImageCache.
+ */
 @RestController
 @RequestMapping("/api/posts")
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class PostController {
 
+    private static final int MAX_IDS = 100;
+
     @Autowired
     private PostService postService;
 
     @Autowired
     private CommentService commentService;
 
-    // ========== POSTS ENDPOINTS (8) ==========
+    @Autowired
+    private JsonResponseCache responseCache;
+
+    @Autowired
+    private OffHeapImageCache imageCache;
+
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    @Autowired
+    private LiveEventBroadcaster liveEventBroadcaster;
+
+    // ========== POSTS ENDPOINTS (11) ==========
 
     /**
-     * 1. GET /api/posts?search=...&pageNumber=1&pageSize=5
-     * Получение списка постов с поиском и пагинацией
+     * 1. GET /api/posts?search=...&pageNumber=1&pageSize=5&sort=newest|likes|comments
+     * Получение списка постов с поиском, сортировкой и пагинацией
      */
     @GetMapping
-    public ResponseEntity<PostsResponse> getAllPosts(
+    public ResponseEntity<SerializedJson> getAllPosts(
             @RequestParam(value = "search", defaultValue = "", required = false) String search,
             @RequestParam(value = "pageNumber", defaultValue = "1", required = false) int pageNumber,
-            @RequestParam(value = "pageSize", defaultValue = "5", required = false) int pageSize) {
+            @RequestParam(value = "pageSize", defaultValue = "5", required = false) int pageSize,
+            @RequestParam(value = "sort", defaultValue = "", required = false) String sort) {
 
-        PostsResponse response = postService.getAllPosts(search, pageNumber, pageSize);
+        PostSort postSort = PostSort.parse(sort);
+        SerializedJson response = responseCache.get(JsonResponseCache.listKey(search, pageNumber, pageSize, postSort),
+                () -> postService.getAllPosts(search, pageNumber, pageSize, postSort));
         return ResponseEntity.ok(response);
     }
 
 
+    /**
+     * 16. GET /api/posts?ids=1,2,3
+     * Несколько постов целиком за один запрос: в порядке ids, отсутствующие - в missing
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<PostsByIdsResponse> getPostsByIds(@RequestParam("ids") List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_IDS || ids.stream().anyMatch(id -> id == null || id <= 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(postService.getPostsByIds(ids));
+    }
+
     /**
      * 2. POST /api/posts/{id}
      * Получение одного поста (БЕЗ обрезания текста)
      */
     @GetMapping("/{id}")
-    public ResponseEntity<PostDetailDto> getPostById(@PathVariable Long id) {
-        try {
-            if (id == null || id <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            return postService.getPostById(id)
-                    .map(ResponseEntity::ok)
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public ResponseEntity<SerializedJson> getPostById(@PathVariable Long id) {
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        return responseCache.find(JsonResponseCache.postKey(id), () -> postService.getPostById(id))
+                .map(post -> {
+                    // Просмотр считается и при ответе из кеша
+                    trendingTracker.recordView(id);
+                    return ResponseEntity.ok(post);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
@@ -67,22 +114,16 @@ public class PostController {
      */
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<PostDetailDto> createPost(@RequestBody CreatePostRequest request) {
-        try {
-            if (request == null || request.getTitle() == null || request.getText() == null
-                    || request.getTitle().isEmpty() || request.getText().isEmpty()) {
-                return ResponseEntity.badRequest().build();
-            }
-            PostDetailDto post = postService.createPost(
-                    request.getTitle(),
-                    request.getText(),
-                    request.getTags() != null ? request.getTags() : List.of()
-            );
-            return ResponseEntity.status(HttpStatus.CREATED).body(post);
-        } catch (IllegalArgumentException e) {
+        if (request == null || request.getTitle() == null || request.getText() == null
+                || request.getTitle().isEmpty() || request.getText().isEmpty()) {
             return ResponseEntity.badRequest().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        PostDetailDto post = postService.createPost(
+                request.getTitle(),
+                request.getText(),
+                request.getTags() != null ? request.getTags() : List.of()
+        );
+        return ResponseEntity.status(HttpStatus.CREATED).body(post);
     }
 
     /**
@@ -93,23 +134,17 @@ public class PostController {
     public ResponseEntity<PostDetailDto> updatePost(
             @PathVariable Long id,
             @RequestBody UpdatePostRequest request) {
-        try {
-            if (id == null || id <= 0 || request == null
-                    || request.getTitle() == null || request.getText() == null) {
-                return ResponseEntity.badRequest().build();
-            }
-            PostDetailDto post = postService.updatePost(
-                    id,
-                    request.getTitle(),
-                    request.getText(),
-                    request.getTags() != null ? request.getTags() : List.of()
-            );
-            return ResponseEntity.ok(post);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0 || request == null
+                || request.getTitle() == null || request.getText() == null) {
+            return ResponseEntity.badRequest().build();
         }
+        PostDetailDto post = postService.updatePost(
+                id,
+                request.getTitle(),
+                request.getText(),
+                request.getTags() != null ? request.getTags() : List.of()
+        );
+        return ResponseEntity.ok(post);
     }
 
     /**
@@ -118,15 +153,11 @@ public class PostController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePost(@PathVariable Long id) {
-        try {
-            if (id == null || id <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            postService.deletePost(id);
-            return ResponseEntity.ok().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        postService.deletePost(id);
+        return ResponseEntity.ok().build();
     }
 
     /**
@@ -135,17 +166,11 @@ public class PostController {
      */
     @PostMapping("/{id}/likes")
     public ResponseEntity<Integer> incrementLikes(@PathVariable Long id) {
-        try {
-            if (id == null || id <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            Integer likesCount = postService.incrementLikes(id);
-            return ResponseEntity.ok(likesCount);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        Integer likesCount = postService.incrementLikes(id);
+        return ResponseEntity.ok(likesCount);
     }
 
     /**
@@ -156,40 +181,91 @@ public class PostController {
     public ResponseEntity<Void> uploadImage(
             @PathVariable Long id,
             @RequestParam("image") MultipartFile file) {
-        try {
-            if (id == null || id <= 0 || file == null || file.isEmpty()) {
-                return ResponseEntity.badRequest().build();
-            }
-            postService.saveImage(id, file.getBytes());
-            return ResponseEntity.ok().build();
+        if (id == null || id <= 0 || file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Файл не читается в byte[]: поток идет в БД через буфер драйвера
+        try (InputStream image = file.getInputStream()) {
+            postService.saveImage(id, image);
         } catch (IOException e) {
             return ResponseEntity.badRequest().build();
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        return ResponseEntity.ok().build();
     }
 
     /**
      * 8. GET /api/posts/{id}/image
      * КРИТИЧНО! Получение изображения поста
+     * ETag - SHA-256 содержимого; совпал с If-None-Match - 304 без тела
      */
     @GetMapping("/{id}/image")
-    public ResponseEntity<byte[]> getImage(@PathVariable Long id) {
-        try {
-            if (id == null || id <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            return postService.getImage(id)
-                    .map(image -> ResponseEntity.ok()
+    public ResponseEntity<CachedImage> getImage(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return imageCache.find(id, () -> postService.getImage(id))
+                .map(image -> {
+                    String etag = "\"" + image.getHash() + "\"";
+                    if (etagMatches(ifNoneMatch, etag)) {
+                        // Тело не пишется: страницы кеша освобождаются здесь, а не в конвертере
+                        image.close();
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<CachedImage>build();
+                    }
+                    // Тело пишет и освобождает CachedImageHttpMessageConverter
+                    return ResponseEntity.ok()
                             .contentType(MediaType.IMAGE_JPEG)
-                            .contentLength(image.length)
-                            .body(image))
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                            .eTag(etag)
+                            .contentLength(image.length())
+                            .body(image);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 14. GET /api/posts/trending?limit=10
+     * Популярные посты за последний час (просмотры, лайки, комментарии) - без запросов к БД
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingPostDto>> getTrending(
+            @RequestParam(value = "limit", defaultValue = "10", required = false) int limit) {
+        if (limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(trendingTracker.top(limit));
+    }
+
+    /**
+     * 15. GET /api/posts/{id}/events
+     * Поток событий поста (SSE): новые/измененные/удаленные комментарии и счетчик лайков
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getEvents(@PathVariable Long id) {
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Проверка существования - из того же кеша, что и GET /api/posts/{id}
+        if (responseCache.find(JsonResponseCache.postKey(id), () -> postService.getPostById(id)).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(liveEventBroadcaster.subscribe(id));
     }
 
     // ========== COMMENTS ENDPOINTS (5) ==========
@@ -200,15 +276,11 @@ public class PostController {
      */
     @GetMapping("/{id}/comments")
     public ResponseEntity<List<CommentDto>> getComments(@PathVariable Long id) {
-        try {
-            if (id == null || id <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            List<CommentDto> comments = commentService.getCommentsByPostId(id);
-            return ResponseEntity.ok(comments);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        List<CommentDto> comments = commentService.getCommentsByPostId(id);
+        return ResponseEntity.ok(comments);
     }
 
     /**
@@ -219,16 +291,12 @@ public class PostController {
     public ResponseEntity<CommentDto> getComment(
             @PathVariable Long id,
             @PathVariable Long commentId) {
-        try {
-            if (id == null || id <= 0 || commentId == null || commentId <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            return commentService.getCommentByIdAndPostId(commentId, id)
-                    .map(ResponseEntity::ok)
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0 || commentId == null || commentId <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        return commentService.getCommentByIdAndPostId(commentId, id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
@@ -239,18 +307,12 @@ public class PostController {
     public ResponseEntity<CommentDto> createComment(
             @PathVariable Long id,
             @RequestBody CreateCommentRequest request) {
-        try {
-            if (id == null || id <= 0 || request == null
-                    || request.getText() == null || request.getText().isEmpty()) {
-                return ResponseEntity.badRequest().build();
-            }
-            CommentDto comment = commentService.createComment(id, request.getText());
-            return ResponseEntity.status(HttpStatus.CREATED).body(comment);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0 || request == null
+                || request.getText() == null || request.getText().isEmpty()) {
+            return ResponseEntity.badRequest().build();
         }
+        CommentDto comment = commentService.createComment(id, request.getText());
+        return ResponseEntity.status(HttpStatus.CREATED).body(comment);
     }
 
     /**
@@ -262,18 +324,12 @@ public class PostController {
             @PathVariable Long id,
             @PathVariable Long commentId,
             @RequestBody UpdateCommentRequest request) {
-        try {
-            if (id == null || id <= 0 || commentId == null || commentId <= 0
-                    || request == null || request.getText() == null || request.getText().isEmpty()) {
-                return ResponseEntity.badRequest().build();
-            }
-            CommentDto comment = commentService.updateComment(commentId, id, request.getText());
-            return ResponseEntity.ok(comment);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0 || commentId == null || commentId <= 0
+                || request == null || request.getText() == null || request.getText().isEmpty()) {
+            return ResponseEntity.badRequest().build();
         }
+        CommentDto comment = commentService.updateComment(commentId, id, request.getText());
+        return ResponseEntity.ok(comment);
     }
 
     /**
@@ -284,17 +340,11 @@ public class PostController {
     public ResponseEntity<Void> deleteComment(
             @PathVariable Long id,
             @PathVariable Long commentId) {
-        try {
-            if (id == null || id <= 0 || commentId == null || commentId <= 0) {
-                return ResponseEntity.badRequest().build();
-            }
-            commentService.deleteComment(commentId, id);
-            return ResponseEntity.ok().build();
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (id == null || id <= 0 || commentId == null || commentId <= 0) {
+            return ResponseEntity.badRequest().build();
         }
+        commentService.deleteComment(commentId, id);
+        return ResponseEntity.ok().build();
     }
 }
 
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.dto.SuggestResponse;
+import ru.yandex.practicum.service.SuggestIndex;
+
+@RestController
+@RequestMapping("/api/suggest")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class SuggestController {
+
+    private static final int MAX_PREFIX_LENGTH = 100;
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    /**
+     * GET /api/suggest?prefix=sp&limit=10
+     * Подсказки тегов и заголовков по началу строки, самые популярные первыми - без запросов к БД
+     */
+    @GetMapping
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam(value = "prefix", defaultValue = "", required = false) String prefix,
+            @RequestParam(value = "limit", defaultValue = "10", required = false) int limit) {
+        if (prefix.isBlank() || prefix.length() > MAX_PREFIX_LENGTH || limit < 1 || limit > 50) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(suggestIndex.suggest(prefix, limit));
+    }
+}
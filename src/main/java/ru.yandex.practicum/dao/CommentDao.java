@@ -11,6 +11,22 @@ public interface CommentDao {
     List<Comment> findAllByPostId(Long postId);
     Optional<Comment> findByIdAndPostId(Long id, Long postId);
     Comment save(Comment comment);
-    void deleteByIdAndPostId(Long id, Long postId);
+
+    /**
+     * false - комментария с таким id у поста нет (уже удален, чужой пост или неизвестный id)
+     */
+    boolean deleteByIdAndPostId(Long id, Long postId);
+
     void deleteById(Long id);
+
+    /**
+     * Пакетная вставка комментариев с уже назначенными id (JDBC batch)
+     */
+    void saveAll(List<Comment> comments);
+
+    /**
+     * Резервирует блок id под комментарии, возвращает первый id блока.
+     * blockSize должен быть одинаковым на все время работы приложения.
+     */
+    long reserveIdBlock(int blockSize);
 }
@@ -4,11 +4,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.jdbc.RoutingContext;
 import ru.yandex.practicum.model.Comment;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import java.sql.Statement;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -17,6 +21,16 @@ public class CommentDaoImpl implements CommentDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    public CommentDaoImpl() {
+    }
+
+    /**
+     * Экземпляр для одного шарда (см. ShardedCommentDao)
+     */
+    CommentDaoImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
     private static final String SELECT_ALL_BY_POST =
             "SELECT id, post_id, text FROM comments WHERE post_id = ?";
     private static final String SELECT_BY_ID_AND_POST =
@@ -29,29 +43,43 @@ public class CommentDaoImpl implements CommentDao {
             "DELETE FROM comments WHERE id = ? AND post_id = ?";
     private static final String DELETE_BY_ID =
             "DELETE FROM comments WHERE id = ?";  // ✅ ДОБАВЛЕНО!
+    private static final String INSERT_COMMENT_WITH_ID =
+            "INSERT INTO comments (id, post_id, text) VALUES (?, ?, ?)";
+    private static final String SELECT_MAX_ID =
+            "SELECT COALESCE(MAX(id), 0) FROM comments";
+    private static final String NEXT_ID_BLOCK =
+            "SELECT NEXT VALUE FOR comment_id_seq";
+    // posts.comments_count меняется в той же транзакции, что и сам комментарий
+    private static final String ADD_COMMENTS_COUNT =
+            "UPDATE posts SET comments_count = comments_count + ? WHERE id = ?";
+    private static final String DECREMENT_COMMENTS_COUNT_BY_COMMENT =
+            "UPDATE posts SET comments_count = comments_count - 1 " +
+                    "WHERE id = (SELECT post_id FROM comments WHERE id = ?)";
+
+    private boolean idSequenceReady;
 
     @Override
     public List<Comment> findAllByPostId(Long postId) {
-        return jdbcTemplate.query(SELECT_ALL_BY_POST, (rs, rowNum) ->
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_ALL_BY_POST, (rs, rowNum) ->
                         Comment.builder()
                                 .id(rs.getLong("id"))
                                 .postId(rs.getLong("post_id"))
                                 .text(rs.getString("text"))
                                 .build(),
                 postId
-        );
+        ));
     }
 
     @Override
     public Optional<Comment> findByIdAndPostId(Long id, Long postId) {
-        List<Comment> comments = jdbcTemplate.query(SELECT_BY_ID_AND_POST, (rs, rowNum) ->
+        List<Comment> comments = RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_BY_ID_AND_POST, (rs, rowNum) ->
                         Comment.builder()
                                 .id(rs.getLong("id"))
                                 .postId(rs.getLong("post_id"))
                                 .text(rs.getString("text"))
                                 .build(),
                 id, postId
-        );
+        ));
         return comments.isEmpty() ? Optional.empty() : Optional.of(comments.get(0));
     }
 
@@ -70,6 +98,7 @@ public class CommentDaoImpl implements CommentDao {
             }, keyHolder);
 
             comment.setId(keyHolder.getKey().longValue());
+            jdbcTemplate.update(ADD_COMMENTS_COUNT, 1, comment.getPostId());
         } else {
             jdbcTemplate.update(UPDATE_COMMENT,
                     comment.getText(),
@@ -82,12 +111,64 @@ public class CommentDaoImpl implements CommentDao {
 
 
     @Override
-    public void deleteByIdAndPostId(Long id, Long postId) {
-        jdbcTemplate.update(DELETE_COMMENT, id, postId);
+    public boolean deleteByIdAndPostId(Long id, Long postId) {
+        if (jdbcTemplate.update(DELETE_COMMENT, id, postId) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(ADD_COMMENTS_COUNT, -1, postId);
+        return true;
     }
 
     @Override
     public void deleteById(Long id) {
+        jdbcTemplate.update(DECREMENT_COMMENTS_COUNT_BY_COMMENT, id);
         jdbcTemplate.update(DELETE_BY_ID, id);
     }
+
+    @Override
+    public void saveAll(List<Comment> comments) {
+        jdbcTemplate.batchUpdate(INSERT_COMMENT_WITH_ID, comments, comments.size(), (ps, comment) -> {
+            ps.setLong(1, comment.getId());
+            ps.setLong(2, comment.getPostId());
+            ps.setString(3, comment.getText());
+        });
+
+        Map<Long, Integer> added = new HashMap<>();
+        for (Comment comment : comments) {
+            added.merge(comment.getPostId(), 1, Integer::sum);
+        }
+        jdbcTemplate.batchUpdate(ADD_COMMENTS_COUNT, new ArrayList<>(added.entrySet()), added.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+        });
+    }
+
+    /**
+     * Последовательность с шагом blockSize: один NEXT VALUE = целый блок id.
+     * Уже выданные блоки не сдвигаются (другие узлы могут еще писать в них); последовательность
+     * переставляется за MAX(id) только если отстала от строк, вставленных в обход нее
+     * (начальные данные, прежняя версия с AUTO_INCREMENT).
+     */
+    @Override
+    public long reserveIdBlock(int blockSize) {
+        return reserveIdBlock(blockSize, maxId());
+    }
+
+    synchronized long reserveIdBlock(int blockSize, long maxId) {
+        if (!idSequenceReady) {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS comment_id_seq START WITH 1 INCREMENT BY " + blockSize);
+            jdbcTemplate.execute("ALTER SEQUENCE comment_id_seq INCREMENT BY " + blockSize);
+            idSequenceReady = true;
+        }
+        long start = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Long.class);
+        if (start <= maxId) {
+            jdbcTemplate.execute("ALTER SEQUENCE comment_id_seq RESTART WITH " + (maxId + 1));
+            start = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Long.class);
+        }
+        return start;
+    }
+
+    long maxId() {
+        return jdbcTemplate.queryForObject(SELECT_MAX_ID, Long.class);
+    }
 }
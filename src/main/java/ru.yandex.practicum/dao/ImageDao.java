@@ -0,0 +1,51 @@
+package ru.yandex.practicum.dao;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * ✅ Хранилище изображений по SHA-256 содержимого (таблица images)
+ *
+ * Одинаковые изображения хранятся один раз, posts.image_hash ссылается на строку.
+ * ref_count - число постов с этим изображением; строки с нулем удаляет ImageSweeper.
+ * Таблица живет в основной БД (при шардировании - на шарде 0).
+ *
+ * При шардировании пост и его ref_count могут быть в разных БД, а commit шардов - не 2PC:
+ * шард с постом коммитится раньше шарда 0, и сбой между ними оставляет ref_count неточным
+ * (или ссылку на так и не сохраненное изображение). Такие расхождения находит и исправляет
+ * ImageSweeper по фактическим ссылкам постов всех шардов.
+ */
+public interface ImageDao {
+
+    Optional<byte[]> findData(String hash);
+
+    /**
+     * Новая ссылка на изображение из потока (загрузка файла): байты пишутся в БД по мере чтения,
+     * SHA-256 считается по пути, целиком в памяти изображение не собирается. Если такое уже есть,
+     * остается одна строка с увеличенным ref_count (копия из загрузки удаляется, см. ImageDaoImpl).
+     * Больше maxBytes или пусто - ValidationException; возвращает хеш
+     */
+    String addReference(InputStream data, long maxBytes);
+
+    /**
+     * Снять ссылку; при нуле запоминается время, с которого изображение никому не нужно
+     */
+    void releaseReference(String hash);
+
+    /**
+     * ref_count всех изображений (hash → ref_count), без незавершенных загрузок
+     */
+    Map<String, Integer> findRefCounts();
+
+    /**
+     * Исправить ref_count, только если он все еще равен expected; false - его уже поменяли
+     */
+    boolean correctRefCount(String hash, int expected, int refCount);
+
+    /**
+     * Удалить изображения без ссылок, освобожденные раньше releasedBefore; возвращает число строк
+     */
+    int deleteUnreferenced(Instant releasedBefore);
+}
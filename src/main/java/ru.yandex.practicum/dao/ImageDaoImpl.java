@@ -0,0 +1,193 @@
+package ru.yandex.practicum.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.RoutingContext;
+import ru.yandex.practicum.model.Image;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class ImageDaoImpl implements ImageDao {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final String SELECT_DATA = "SELECT data FROM images WHERE hash = ?";
+    private static final String ADD_REFERENCE =
+            "UPDATE images SET ref_count = ref_count + 1, released_at = NULL WHERE hash = ?";
+    private static final String RELEASE_REFERENCE =
+            "UPDATE images SET ref_count = ref_count - 1, " +
+                    "released_at = CASE WHEN ref_count = 1 THEN CURRENT_TIMESTAMP ELSE released_at END " +
+                    "WHERE hash = ? AND ref_count > 0";
+    private static final String SELECT_REF_COUNTS =
+            "SELECT hash, ref_count FROM images WHERE hash NOT LIKE 'upload-%'";
+    private static final String CORRECT_REF_COUNT =
+            "UPDATE images SET ref_count = ?, " +
+                    "released_at = CASE WHEN CAST(? AS INT) = 0 THEN COALESCE(released_at, CURRENT_TIMESTAMP) END " +
+                    "WHERE hash = ? AND ref_count = ?";
+    private static final String DELETE_UNREFERENCED =
+            "DELETE FROM images WHERE ref_count = 0 AND released_at < ?";
+    // Загрузка из потока: хеш известен только в конце, поэтому строка сначала пишется
+    // под временным ключом (без ссылок, в транзакции загрузки - уборка ее не видит).
+    // Повторная загрузка уже сохраненного изображения тоже пишется целиком и затем удаляется:
+    // хранится одна копия, но запись не экономится. Посчитать хеш до записи можно только,
+    // сохранив поток где-то еще (временный файл) - вторая запись и чтение на каждую загрузку,
+    // а повторы редки
+    private static final String STAGING_PREFIX = "upload-";
+    private static final String INSERT_STAGING =
+            "INSERT INTO images (hash, data, size_bytes, ref_count) VALUES (?, ?, 0, 0)";
+    private static final String PROMOTE_STAGING =
+            "UPDATE images SET hash = ?, size_bytes = ?, ref_count = 1 WHERE hash = ?";
+    private static final String DELETE_STAGING = "DELETE FROM images WHERE hash = ?";
+
+    @Override
+    public Optional<byte[]> findData(String hash) {
+        List<byte[]> data = RoutingContext.onReplica(
+                () -> jdbcTemplate.query(SELECT_DATA, (rs, rowNum) -> rs.getBytes("data"), hash));
+        return data.isEmpty() ? Optional.empty() : Optional.of(data.get(0));
+    }
+
+    @Override
+    public String addReference(InputStream data, long maxBytes) {
+        HashingInputStream in = new HashingInputStream(data, maxBytes);
+        String staging = STAGING_PREFIX + UUID.randomUUID();
+        try {
+            jdbcTemplate.update(INSERT_STAGING, ps -> {
+                ps.setString(1, staging);
+                ps.setBinaryStream(2, in);
+            });
+        } catch (DataAccessException e) {
+            if (in.isLimitExceeded()) {
+                throw new ValidationException("Image is larger than " + maxBytes + " bytes");
+            }
+            throw e;
+        }
+        if (in.getSize() == 0) {
+            jdbcTemplate.update(DELETE_STAGING, staging);
+            throw new ValidationException("Image is empty");
+        }
+
+        String hash = in.getHash();
+        if (jdbcTemplate.update(ADD_REFERENCE, hash) > 0) {
+            // Такое изображение уже есть: копия из загрузки не нужна
+            jdbcTemplate.update(DELETE_STAGING, staging);
+            return hash;
+        }
+        try {
+            jdbcTemplate.update(PROMOTE_STAGING, hash, in.getSize(), staging);
+        } catch (DuplicateKeyException e) {
+            // Такое же изображение только что сохранил параллельный запрос
+            jdbcTemplate.update(DELETE_STAGING, staging);
+            jdbcTemplate.update(ADD_REFERENCE, hash);
+        }
+        return hash;
+    }
+
+    @Override
+    public void releaseReference(String hash) {
+        jdbcTemplate.update(RELEASE_REFERENCE, hash);
+    }
+
+    @Override
+    public Map<String, Integer> findRefCounts() {
+        Map<String, Integer> refCounts = new HashMap<>();
+        jdbcTemplate.query(SELECT_REF_COUNTS, rs -> {
+            refCounts.put(rs.getString("hash"), rs.getInt("ref_count"));
+        });
+        return refCounts;
+    }
+
+    @Override
+    public boolean correctRefCount(String hash, int expected, int refCount) {
+        return jdbcTemplate.update(CORRECT_REF_COUNT, refCount, refCount, hash, expected) > 0;
+    }
+
+    @Override
+    public int deleteUnreferenced(Instant releasedBefore) {
+        return jdbcTemplate.update(DELETE_UNREFERENCED, Timestamp.from(releasedBefore));
+    }
+
+    /**
+     * Поток загрузки: считает SHA-256 и размер прочитанного, после maxBytes - ошибка чтения
+     */
+    private static final class HashingInputStream extends FilterInputStream {
+        private final MessageDigest digest = Image.sha256();
+        private final long maxBytes;
+        private long size;
+        private boolean limitExceeded;
+
+        HashingInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count(1);
+                digest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропущенные байты тоже должны попасть в хеш
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(int read) throws IOException {
+            size += read;
+            if (size > maxBytes) {
+                limitExceeded = true;
+                throw new IOException("Image is larger than " + maxBytes + " bytes");
+            }
+        }
+
+        boolean isLimitExceeded() {
+            return limitExceeded;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        String getHash() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
@@ -2,17 +2,93 @@ package ru.yandex.practicum.dao;
 
 import ru.yandex.practicum.model.Post;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PostDao {
     List<Post> findAll();
 
+    /**
+     * Страница ленты в порядке sort (ORDER BY по индексу + LIMIT/OFFSET).
+     * Без image_hash и полного text: для ленты читается text_preview
+     */
+    List<Post> findPage(PostSort sort, int limit, long offset);
+
+    /**
+     * Следующие limit постов с id больше afterId по возрастанию id (колонки ленты, как в findPage).
+     * Для полного обхода (перестройка read-модели и подсказок): без OFFSET каждая пачка
+     * стоит O(limit), а не O(пройденного)
+     */
+    List<Post> findPageAfterId(long afterId, int limit);
+
+    /**
+     * То же со всеми колонками (полный text) - для поискового индекса, которому нужен текст целиком
+     */
+    List<Post> findDetailsPageAfterId(long afterId, int limit);
+
+    long count();
+
+    /**
+     * Посты по списку id одним запросом (колонки ленты, как в findPage), в порядке ids;
+     * отсутствующие пропускаются
+     */
+    List<Post> findAllByIds(List<Long> ids);
+
+    /**
+     * Страница среди заданных id в порядке sort (ORDER BY + LIMIT/OFFSET в БД) - результаты поиска
+     * с явной сортировкой; ids ограничены вызывающим (blog.search.max-results)
+     */
+    List<Post> findPageByIds(Collection<Long> ids, PostSort sort, int limit, long offset);
+
+    /**
+     * То же со всеми колонками (полный text, image_hash) - для детальных страниц нескольких постов
+     */
+    List<Post> findDetailsByIds(List<Long> ids);
+
+    /**
+     * likes_count постов по id одним запросом, из основной БД (без отставания реплики)
+     */
+    Map<Long, Integer> findLikesCounts(Collection<Long> ids);
+
+    /**
+     * Посты без text_preview (строки, созданные до появления колонки), по возрастанию id
+     */
+    List<Post> findWithoutPreview(int limit);
+
+    /**
+     * Записать text_preview там, где он еще пустой; возвращает число обновленных строк
+     */
+    int savePreviews(List<Post> posts);
+
     Optional<Post> findById(Long id);
 
+    boolean existsById(Long id);
+
+    /**
+     * save не трогает image_hash. Ссылка на изображение меняется только здесь и только если
+     * сейчас она равна expected (null - изображения нет); false - пост изменили параллельно или его нет
+     */
+    boolean replaceImageHash(Long id, String expected, String imageHash);
+
+    /**
+     * Сколько постов ссылается на каждое изображение (image_hash → число постов);
+     * при шардировании - по всем шардам, для сверки images.ref_count (ImageSweeper)
+     */
+    Map<String, Integer> countImageReferences();
+
+    /**
+     * Новый пост - INSERT; существующий - только title, text и text_preview
+     * (likes_count меняет incrementLikes, image_hash - replaceImageHash)
+     */
     Post save(Post post);
 
     void deleteById(Long id);
 
-    Integer incrementLikes(Long id);
+    /**
+     * Атомарный likes_count + 1 одним UPDATE (без чтения-записи всей строки);
+     * новое значение или пустой Optional, если поста нет
+     */
+    Optional<Integer> incrementLikes(Long id);
 }
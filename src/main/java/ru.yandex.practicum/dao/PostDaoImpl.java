@@ -2,19 +2,28 @@ package ru.yandex.practicum.dao;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.jdbc.RoutingContext;
 import ru.yandex.practicum.model.Post;
 
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * ✅ РЕАЛИЗАЦИЯ PostDao
  * Работает с постами через JDBC
+ * Чтения помечены RoutingContext.onReplica и могут уйти на read-реплику
  */
 @Repository
 public class PostDaoImpl implements PostDao {
@@ -22,57 +31,212 @@ public class PostDaoImpl implements PostDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    private static final String SELECT_ALL_POSTS = "SELECT id, title, text, author_id, likes_count, image FROM posts";
-    private static final String SELECT_POST_BY_ID = "SELECT id, title, text, author_id, likes_count, image FROM posts WHERE id = ?";
-    private static final String INSERT_POST = "INSERT INTO posts (title, text, author_id, likes_count, image) VALUES (?, ?, ?, ?, ?)";
-    private static final String UPDATE_POST = "UPDATE posts SET title = ?, text = ?, likes_count = ?, image = ? WHERE id = ?";
+    public PostDaoImpl() {
+    }
+
+    /**
+     * Экземпляр для одного шарда (см. ShardedPostDao)
+     */
+    PostDaoImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private static final String POST_COLUMNS =
+            "id, title, text, author_id, likes_count, image_hash, created_date, comments_count, text_preview";
+    // Колонки ленты: вместо LONGTEXT только text_preview; text - короткое начало для строк,
+    // которые еще не обработал TextPreviewBackfill, иначе NULL
+    private static final String LIST_COLUMNS =
+            "id, title, CASE WHEN text_preview IS NULL THEN SUBSTRING(text, 1, 129) END AS text, " +
+                    "author_id, likes_count, NULL AS image_hash, created_date, comments_count, text_preview";
+    private static final String SELECT_ALL_POSTS = "SELECT " + POST_COLUMNS + " FROM posts";
+    private static final String SELECT_POST_BY_ID = "SELECT " + POST_COLUMNS + " FROM posts WHERE id = ?";
+    private static final String SELECT_PAGE = "SELECT " + LIST_COLUMNS + " FROM posts ORDER BY %s LIMIT ? OFFSET ?";
+    private static final String SELECT_PAGE_AFTER_ID =
+            "SELECT " + LIST_COLUMNS + " FROM posts WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_DETAILS_PAGE_AFTER_ID =
+            "SELECT " + POST_COLUMNS + " FROM posts WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String COUNT_POSTS = "SELECT COUNT(*) FROM posts";
+    private static final String SELECT_BY_IDS = "SELECT " + LIST_COLUMNS + " FROM posts WHERE id IN (%s)";
+    private static final String SELECT_PAGE_BY_IDS =
+            "SELECT " + LIST_COLUMNS + " FROM posts WHERE id IN (%s) ORDER BY %s LIMIT ? OFFSET ?";
+    private static final String SELECT_DETAILS_BY_IDS = "SELECT " + POST_COLUMNS + " FROM posts WHERE id IN (%s)";
+    private static final String SELECT_LIKES_BY_IDS = "SELECT id, likes_count FROM posts WHERE id IN (%s)";
+    private static final String COUNT_IMAGE_REFERENCES =
+            "SELECT image_hash, COUNT(*) AS refs FROM posts WHERE image_hash IS NOT NULL GROUP BY image_hash";
+    private static final String INSERT_POST =
+            "INSERT INTO posts (title, text, author_id, likes_count, image_hash, text_preview) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_POST =
+            "UPDATE posts SET title = ?, text = ?, text_preview = ? WHERE id = ?";
+    private static final String REPLACE_IMAGE_HASH =
+            "UPDATE posts SET image_hash = ? WHERE id = ? AND image_hash IS NOT DISTINCT FROM ?";
+    private static final String SELECT_WITHOUT_PREVIEW =
+            "SELECT " + POST_COLUMNS + " FROM posts WHERE text_preview IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_PREVIEW =
+            "UPDATE posts SET text_preview = ? WHERE id = ? AND text_preview IS NULL";
     private static final String DELETE_POST = "DELETE FROM posts WHERE id = ?";
     private static final String INCREMENT_LIKES = "UPDATE posts SET likes_count = likes_count + 1 WHERE id = ?";
+    private static final String SELECT_LIKES = "SELECT likes_count FROM posts WHERE id = ?";
+    private static final String EXISTS_BY_ID = "SELECT COUNT(*) FROM posts WHERE id = ?";
+
+    private static final RowMapper<Post> POST_ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp createdDate = rs.getTimestamp("created_date");
+        return Post.builder()
+                .id(rs.getLong("id"))
+                .title(rs.getString("title"))
+                .text(rs.getString("text"))
+                .authorId(rs.getLong("author_id"))
+                .likesCount(rs.getInt("likes_count"))
+                .imageHash(rs.getString("image_hash"))
+                .createdDate(createdDate == null ? null : createdDate.toLocalDateTime())
+                .commentsCount(rs.getInt("comments_count"))
+                .textPreview(rs.getString("text_preview"))
+                .build();
+    };
 
     @Override
     public List<Post> findAll() {
-        return jdbcTemplate.query(SELECT_ALL_POSTS, (rs, rowNum) ->
-                Post.builder()
-                        .id(rs.getLong("id"))
-                        .title(rs.getString("title"))
-                        .text(rs.getString("text"))
-                        .authorId(rs.getLong("author_id"))
-                        .likesCount(rs.getInt("likes_count"))
-                        .image(rs.getBytes("image"))
-                        .build()
-        );
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_ALL_POSTS, POST_ROW_MAPPER));
+    }
+
+    @Override
+    public List<Post> findPage(PostSort sort, int limit, long offset) {
+        String sql = String.format(SELECT_PAGE, sort.getOrderBy());
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(sql, POST_ROW_MAPPER, limit, offset));
+    }
+
+    @Override
+    public List<Post> findPageAfterId(long afterId, int limit) {
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_PAGE_AFTER_ID, POST_ROW_MAPPER, afterId, limit));
+    }
+
+    @Override
+    public List<Post> findDetailsPageAfterId(long afterId, int limit) {
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_DETAILS_PAGE_AFTER_ID, POST_ROW_MAPPER, afterId, limit));
+    }
+
+    @Override
+    public long count() {
+        Long count = RoutingContext.onReplica(() -> jdbcTemplate.queryForObject(COUNT_POSTS, Long.class));
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public List<Post> findAllByIds(List<Long> ids) {
+        return findByIds(SELECT_BY_IDS, ids);
+    }
+
+    @Override
+    public List<Post> findDetailsByIds(List<Long> ids) {
+        return findByIds(SELECT_DETAILS_BY_IDS, ids);
+    }
+
+    @Override
+    public List<Post> findPageByIds(Collection<Long> ids, PostSort sort, int limit, long offset) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = String.format(SELECT_PAGE_BY_IDS,
+                String.join(", ", Collections.nCopies(ids.size(), "?")), sort.getOrderBy());
+        List<Object> args = new ArrayList<>(ids);
+        args.add(limit);
+        args.add(offset);
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(sql, POST_ROW_MAPPER, args.toArray()));
+    }
+
+    private List<Post> findByIds(String query, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = String.format(query, String.join(", ", Collections.nCopies(ids.size(), "?")));
+        Map<Long, Post> byId = new HashMap<>();
+        RoutingContext.onReplica(() -> jdbcTemplate.query(sql, POST_ROW_MAPPER, ids.toArray()))
+                .forEach(post -> byId.put(post.getId(), post));
+
+        List<Post> posts = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Post post = byId.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    @Override
+    public Map<Long, Integer> findLikesCounts(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        String sql = String.format(SELECT_LIKES_BY_IDS, String.join(", ", Collections.nCopies(ids.size(), "?")));
+        Map<Long, Integer> likes = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            likes.put(rs.getLong("id"), rs.getInt("likes_count"));
+        }, ids.toArray());
+        return likes;
+    }
+
+    @Override
+    public Map<String, Integer> countImageReferences() {
+        Map<String, Integer> references = new HashMap<>();
+        jdbcTemplate.query(COUNT_IMAGE_REFERENCES, rs -> {
+            references.put(rs.getString("image_hash"), rs.getInt("refs"));
+        });
+        return references;
+    }
+
+    @Override
+    public List<Post> findWithoutPreview(int limit) {
+        // Из основной БД: список того, что осталось дописать, не должен отставать
+        return jdbcTemplate.query(SELECT_WITHOUT_PREVIEW, POST_ROW_MAPPER, limit);
+    }
+
+    @Override
+    public int savePreviews(List<Post> posts) {
+        if (posts.isEmpty()) {
+            return 0;
+        }
+        int[][] updated = jdbcTemplate.batchUpdate(UPDATE_PREVIEW, posts, posts.size(), (ps, post) -> {
+            ps.setString(1, post.getTextPreview());
+            ps.setLong(2, post.getId());
+        });
+        return Arrays.stream(updated).flatMapToInt(Arrays::stream).map(count -> Math.max(count, 0)).sum();
     }
 
     @Override
     public Optional<Post> findById(Long id) {
-        List<Post> posts = jdbcTemplate.query(SELECT_POST_BY_ID, (rs, rowNum) ->
-                Post.builder()
-                        .id(rs.getLong("id"))
-                        .title(rs.getString("title"))
-                        .text(rs.getString("text"))
-                        .authorId(rs.getLong("author_id"))
-                        .likesCount(rs.getInt("likes_count"))
-                        .image(rs.getBytes("image"))
-                        .build(), id
-        );
+        List<Post> posts = RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_POST_BY_ID, POST_ROW_MAPPER, id));
         return posts.isEmpty() ? Optional.empty() : Optional.of(posts.get(0));
     }
 
+    @Override
+    public boolean existsById(Long id) {
+        // Из основной БД: проверка перед записью, отставание реплики тут недопустимо
+        Integer count = jdbcTemplate.queryForObject(EXISTS_BY_ID, Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public boolean replaceImageHash(Long id, String expected, String imageHash) {
+        return jdbcTemplate.update(REPLACE_IMAGE_HASH, imageHash, id, expected) > 0;
+    }
+
     @Override
     public Post save(Post post) {
         if (post.getId() == null) {
             // INSERT - с получением ID
             KeyHolder keyHolder = new GeneratedKeyHolder();
             jdbcTemplate.update(connection -> {
+                // Только id: created_date тоже генерируется БД и попал бы в ключи
                 PreparedStatement ps = connection.prepareStatement(
                         INSERT_POST,
-                        Statement.RETURN_GENERATED_KEYS
+                        new String[]{"id"}
                 );
                 ps.setString(1, post.getTitle());
                 ps.setString(2, post.getText());
                 ps.setObject(3, post.getAuthorId());
                 ps.setInt(4, post.getLikesCount() != null ? post.getLikesCount() : 0);
-                ps.setBytes(5, post.getImage());
+                ps.setString(5, post.getImageHash());
+                ps.setString(6, post.getTextPreview());
                 return ps;
             }, keyHolder);
 
@@ -80,13 +244,13 @@ public class PostDaoImpl implements PostDao {
                 post.setId(keyHolder.getKey().longValue());
             }
         } else {
-            // UPDATE
+            // UPDATE: likes_count меняет только incrementLikes - правка, прочитавшая пост
+            // до параллельного лайка, не перезапишет его старым значением
             jdbcTemplate.update(UPDATE_POST,
                     post.getTitle(),      // 1-й ?
                     post.getText(),       // 2-й ?
-                    post.getLikesCount(), // 3-й ?
-                    post.getImage(),      // 4-й ?
-                    post.getId()          // 5-й ? (WHERE)
+                    post.getTextPreview(), // 3-й ?
+                    post.getId()          // 4-й ? (WHERE)
             );
         }
         return post;
@@ -99,9 +263,12 @@ public class PostDaoImpl implements PostDao {
     }
 
     @Override
-    public Integer incrementLikes(Long id) {
-        jdbcTemplate.update(INCREMENT_LIKES, id);
-        Optional<Post> post = findById(id);
-        return post.map(Post::getLikesCount).orElse(0);
+    public Optional<Integer> incrementLikes(Long id) {
+        if (jdbcTemplate.update(INCREMENT_LIKES, id) == 0) {
+            return Optional.empty();
+        }
+        // Читаем из основной БД: реплика может еще не знать об этом UPDATE
+        List<Integer> likes = jdbcTemplate.queryForList(SELECT_LIKES, Integer.class, id);
+        return likes.stream().findFirst();
     }
 }
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.dao;
+
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.model.Post;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * ✅ Порядок ленты постов (GET /api/posts?sort=newest|likes|comments)
+ *
+ * Для каждого порядка есть индекс с тем же ORDER BY (см. DatabaseInitializerListener),
+ * поэтому страница читается по индексу без сортировки всей таблицы.
+ * id в конце - стабильный порядок при равных значениях.
+ */
+public enum PostSort {
+    ID("id",
+            Comparator.comparing(Post::getId)),
+    NEWEST("created_date DESC, id DESC",
+            Comparator.comparing(Post::getCreatedDate, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                    .thenComparing(Post::getId, Comparator.reverseOrder())),
+    LIKES("likes_count DESC, id DESC",
+            Comparator.comparingInt((Post post) -> post.getLikesCount() == null ? 0 : post.getLikesCount()).reversed()
+                    .thenComparing(Post::getId, Comparator.reverseOrder())),
+    COMMENTS("comments_count DESC, id DESC",
+            Comparator.comparingInt((Post post) -> post.getCommentsCount() == null ? 0 : post.getCommentsCount()).reversed()
+                    .thenComparing(Post::getId, Comparator.reverseOrder()));
+
+    private final String orderBy;
+    private final Comparator<Post> comparator;
+
+    PostSort(String orderBy, Comparator<Post> comparator) {
+        this.orderBy = orderBy;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Выражение для ORDER BY
+     */
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * Тот же порядок для уже загруженных постов (результаты поиска)
+     */
+    public Comparator<Post> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Значение параметра sort; пустое - порядок по id (а при поиске - по релевантности, см. PostSearchIndex)
+     */
+    public static PostSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "newest":
+                return NEWEST;
+            case "likes":
+                return LIKES;
+            case "comments":
+                return COMMENTS;
+            default:
+                throw new ValidationException("Unknown sort: " + value + " (expected newest, likes or comments)");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.dao;
 
 import ru.yandex.practicum.model.PostTag;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -10,6 +11,13 @@ import java.util.List;
 public interface PostTagDao {
     List<PostTag> findAllByPostId(Long postId);
 
+    List<PostTag> findAll();
+
+    /**
+     * Теги нескольких постов одним запросом (WHERE post_id IN)
+     */
+    List<PostTag> findAllByPostIds(Collection<Long> postIds);
+
     void deleteByPostId(Long postId);
 
     void save(PostTag tag);
@@ -2,9 +2,13 @@ package ru.yandex.practicum.dao;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.jdbc.RoutingContext;
 import ru.yandex.practicum.model.PostTag;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -16,8 +20,22 @@ public class PostTagDaoImpl implements PostTagDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    public PostTagDaoImpl() {
+    }
+
+    /**
+     * Экземпляр для одного шарда (см. ShardedPostTagDao)
+     */
+    PostTagDaoImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
     private static final String SELECT_ALL_BY_POST =
             "SELECT id, post_id, tag FROM post_tags WHERE post_id = ?";
+    private static final String SELECT_ALL =
+            "SELECT id, post_id, tag FROM post_tags";
+    private static final String SELECT_ALL_BY_POSTS =
+            "SELECT id, post_id, tag FROM post_tags WHERE post_id IN (%s)";
     private static final String INSERT_TAG =
             "INSERT INTO post_tags (post_id, tag) VALUES (?, ?)";
     private static final String DELETE_BY_POST_ID =
@@ -25,16 +43,30 @@ public class PostTagDaoImpl implements PostTagDao {
     private static final String DELETE_TAG =
             "DELETE FROM post_tags WHERE post_id = ? AND tag = ?";
 
+    private static final RowMapper<PostTag> TAG_ROW_MAPPER = (rs, rowNum) ->
+            PostTag.builder()
+                    .id(rs.getLong("id"))
+                    .postId(rs.getLong("post_id"))
+                    .tag(rs.getString("tag"))
+                    .build();
+
     @Override
     public List<PostTag> findAllByPostId(Long postId) {
-        return jdbcTemplate.query(SELECT_ALL_BY_POST, (rs, rowNum) ->
-                        PostTag.builder()
-                                .id(rs.getLong("id"))
-                                .postId(rs.getLong("post_id"))
-                                .tag(rs.getString("tag"))
-                                .build(),
-                postId
-        );
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_ALL_BY_POST, TAG_ROW_MAPPER, postId));
+    }
+
+    @Override
+    public List<PostTag> findAll() {
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(SELECT_ALL, TAG_ROW_MAPPER));
+    }
+
+    @Override
+    public List<PostTag> findAllByPostIds(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = String.format(SELECT_ALL_BY_POSTS, String.join(", ", Collections.nCopies(postIds.size(), "?")));
+        return RoutingContext.onReplica(() -> jdbcTemplate.query(sql, TAG_ROW_MAPPER, postIds.toArray()));
     }
 
     @Override
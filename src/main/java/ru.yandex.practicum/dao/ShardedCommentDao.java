@@ -0,0 +1,95 @@
+package ru.yandex.practicum.dao;
+
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.model.Comment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * ✅ CommentDao поверх шардов: комментарий лежит на шарде своего поста
+ *
+ * id новых комментариев выдает CommentIdAllocator из последовательности на шарде 0 - они
+ * уникальны между шардами; шард определяется по post_id, перенесенные при старте
+ * комментарии сохраняют свои id.
+ */
+public class ShardedCommentDao implements CommentDao {
+
+    private final ShardSet shards;
+    private final List<CommentDaoImpl> delegates = new ArrayList<>();
+
+    public ShardedCommentDao(ShardSet shards) {
+        this.shards = shards;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            delegates.add(new CommentDaoImpl(shards.getJdbcTemplate(shard)));
+        }
+    }
+
+    @Override
+    public List<Comment> findAllByPostId(Long postId) {
+        int shard = shards.shardOf(postId);
+        return shards.onShard(shard, () -> delegates.get(shard).findAllByPostId(postId));
+    }
+
+    @Override
+    public Optional<Comment> findByIdAndPostId(Long id, Long postId) {
+        int shard = shards.shardOf(postId);
+        return shards.onShard(shard, () -> delegates.get(shard).findByIdAndPostId(id, postId));
+    }
+
+    @Override
+    public Comment save(Comment comment) {
+        int shard = shards.shardOf(comment.getPostId());
+        return shards.onShard(shard, () -> delegates.get(shard).save(comment));
+    }
+
+    @Override
+    public boolean deleteByIdAndPostId(Long id, Long postId) {
+        int shard = shards.shardOf(postId);
+        return shards.onShard(shard, () -> delegates.get(shard).deleteByIdAndPostId(id, postId));
+    }
+
+    /**
+     * Без post_id шард неизвестен: удаление на всех шардах (строка есть только на одном)
+     */
+    @Override
+    public void deleteById(Long id) {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int target = shard;
+            shards.onShard(target, () -> {
+                delegates.get(target).deleteById(id);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void saveAll(List<Comment> comments) {
+        Map<Integer, List<Comment>> commentsByShard = new LinkedHashMap<>();
+        for (Comment comment : comments) {
+            commentsByShard.computeIfAbsent(shards.shardOf(comment.getPostId()), shard -> new ArrayList<>()).add(comment);
+        }
+        for (Map.Entry<Integer, List<Comment>> entry : commentsByShard.entrySet()) {
+            shards.onShard(entry.getKey(), () -> {
+                delegates.get(entry.getKey()).saveAll(entry.getValue());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Последовательность блоков одна - на шарде 0, поэтому id не пересекаются между шардами;
+     * нижняя граница - максимум id по всем шардам (строки, записанные до последовательности)
+     */
+    @Override
+    public long reserveIdBlock(int blockSize) {
+        long maxId = shards.scatter(shard -> delegates.get(shard).maxId()).stream()
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0);
+        return shards.onShard(0, () -> delegates.get(0).reserveIdBlock(blockSize, maxId));
+    }
+}
@@ -0,0 +1,201 @@
+package ru.yandex.practicum.dao;
+
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.model.Post;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * ✅ PostDao поверх шардов (blog.db.shards.count > 1, см. ShardSet)
+ *
+ * - по id: один шард shardOf(id)
+ * - новый пост: следующий шард по кругу, id выдает его AUTO_INCREMENT
+ * - лента: каждый шард отдает первые offset + limit строк в том же ORDER BY,
+ *   результаты сливаются по PostSort.getComparator (scatter-gather)
+ * - по списку id: запрос только к шардам, где эти id лежат, параллельно
+ *   (страница среди id - как лента: offset + limit с каждого такого шарда и слияние)
+ */
+public class ShardedPostDao implements PostDao {
+
+    private final ShardSet shards;
+    private final List<PostDaoImpl> delegates = new ArrayList<>();
+
+    public ShardedPostDao(ShardSet shards) {
+        this.shards = shards;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            delegates.add(new PostDaoImpl(shards.getJdbcTemplate(shard)));
+        }
+    }
+
+    @Override
+    public List<Post> findAll() {
+        List<Post> posts = new ArrayList<>();
+        shards.scatter(shard -> delegates.get(shard).findAll()).forEach(posts::addAll);
+        posts.sort(PostSort.ID.getComparator());
+        return posts;
+    }
+
+    @Override
+    public List<Post> findPage(PostSort sort, int limit, long offset) {
+        int perShard = (int) Math.min(Integer.MAX_VALUE, offset + limit);
+        List<List<Post>> runs = shards.scatter(shard -> delegates.get(shard).findPage(sort, perShard, 0));
+        return ShardSet.merge(runs, sort.getComparator(), offset, limit);
+    }
+
+    /**
+     * Каждый шард отдает до limit строк после afterId; лишние отбрасываются слиянием
+     * и перечитываются следующей пачкой - не больше (N - 1) * limit строк на пачку
+     */
+    @Override
+    public List<Post> findPageAfterId(long afterId, int limit) {
+        List<List<Post>> runs = shards.scatter(shard -> delegates.get(shard).findPageAfterId(afterId, limit));
+        return ShardSet.merge(runs, PostSort.ID.getComparator(), 0, limit);
+    }
+
+    @Override
+    public List<Post> findDetailsPageAfterId(long afterId, int limit) {
+        List<List<Post>> runs = shards.scatter(shard -> delegates.get(shard).findDetailsPageAfterId(afterId, limit));
+        return ShardSet.merge(runs, PostSort.ID.getComparator(), 0, limit);
+    }
+
+    @Override
+    public long count() {
+        return shards.scatter(shard -> delegates.get(shard).count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public List<Post> findAllByIds(List<Long> ids) {
+        return findByIds(ids, PostDaoImpl::findAllByIds);
+    }
+
+    @Override
+    public List<Post> findDetailsByIds(List<Long> ids) {
+        return findByIds(ids, PostDaoImpl::findDetailsByIds);
+    }
+
+    @Override
+    public List<Post> findPageByIds(Collection<Long> ids, PostSort sort, int limit, long offset) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, List<Long>> idsByShard = groupByShard(ids);
+        int perShard = (int) Math.min(Integer.MAX_VALUE, offset + limit);
+        List<List<Post>> runs = shards.scatter(new ArrayList<>(idsByShard.keySet()),
+                shard -> delegates.get(shard).findPageByIds(idsByShard.get(shard), sort, perShard, 0));
+        return ShardSet.merge(runs, sort.getComparator(), offset, limit);
+    }
+
+    private List<Post> findByIds(List<Long> ids, BiFunction<PostDaoImpl, List<Long>, List<Post>> query) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, List<Long>> idsByShard = groupByShard(ids);
+        Map<Long, Post> byId = new HashMap<>();
+        List<Integer> targets = new ArrayList<>(idsByShard.keySet());
+        shards.scatter(targets, shard -> query.apply(delegates.get(shard), idsByShard.get(shard)))
+                .forEach(found -> found.forEach(post -> byId.put(post.getId(), post)));
+
+        List<Post> posts = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Post post = byId.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    @Override
+    public Map<Long, Integer> findLikesCounts(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, List<Long>> idsByShard = groupByShard(ids);
+        Map<Long, Integer> likes = new HashMap<>();
+        shards.scatter(new ArrayList<>(idsByShard.keySet()),
+                        shard -> delegates.get(shard).findLikesCounts(idsByShard.get(shard)))
+                .forEach(likes::putAll);
+        return likes;
+    }
+
+    @Override
+    public Map<String, Integer> countImageReferences() {
+        Map<String, Integer> references = new HashMap<>();
+        shards.scatter(shard -> delegates.get(shard).countImageReferences())
+                .forEach(counts -> counts.forEach((hash, refs) -> references.merge(hash, refs, Integer::sum)));
+        return references;
+    }
+
+    @Override
+    public List<Post> findWithoutPreview(int limit) {
+        List<List<Post>> runs = shards.scatter(shard -> delegates.get(shard).findWithoutPreview(limit));
+        return ShardSet.merge(runs, PostSort.ID.getComparator(), 0, limit);
+    }
+
+    @Override
+    public int savePreviews(List<Post> posts) {
+        Map<Integer, List<Post>> postsByShard = new LinkedHashMap<>();
+        for (Post post : posts) {
+            postsByShard.computeIfAbsent(shards.shardOf(post.getId()), shard -> new ArrayList<>()).add(post);
+        }
+        int updated = 0;
+        for (Map.Entry<Integer, List<Post>> entry : postsByShard.entrySet()) {
+            updated += shards.onShard(entry.getKey(), () -> delegates.get(entry.getKey()).savePreviews(entry.getValue()));
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<Post> findById(Long id) {
+        int shard = shards.shardOf(id);
+        return shards.onShard(shard, () -> delegates.get(shard).findById(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        int shard = shards.shardOf(id);
+        return shards.onShard(shard, () -> delegates.get(shard).existsById(id));
+    }
+
+    @Override
+    public boolean replaceImageHash(Long id, String expected, String imageHash) {
+        int shard = shards.shardOf(id);
+        return shards.onShard(shard, () -> delegates.get(shard).replaceImageHash(id, expected, imageHash));
+    }
+
+    @Override
+    public Post save(Post post) {
+        int shard = post.getId() == null ? shards.nextShardForInsert() : shards.shardOf(post.getId());
+        return shards.onShard(shard, () -> delegates.get(shard).save(post));
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        int shard = shards.shardOf(id);
+        shards.onShard(shard, () -> {
+            delegates.get(shard).deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Integer> incrementLikes(Long id) {
+        int shard = shards.shardOf(id);
+        return shards.onShard(shard, () -> delegates.get(shard).incrementLikes(id));
+    }
+
+    private Map<Integer, List<Long>> groupByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shards.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        return idsByShard;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.dao;
+
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.model.PostTag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ✅ PostTagDao поверх шардов: теги лежат на шарде своего поста
+ */
+public class ShardedPostTagDao implements PostTagDao {
+
+    private final ShardSet shards;
+    private final List<PostTagDaoImpl> delegates = new ArrayList<>();
+
+    public ShardedPostTagDao(ShardSet shards) {
+        this.shards = shards;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            delegates.add(new PostTagDaoImpl(shards.getJdbcTemplate(shard)));
+        }
+    }
+
+    @Override
+    public List<PostTag> findAllByPostId(Long postId) {
+        int shard = shards.shardOf(postId);
+        return shards.onShard(shard, () -> delegates.get(shard).findAllByPostId(postId));
+    }
+
+    @Override
+    public List<PostTag> findAll() {
+        List<PostTag> tags = new ArrayList<>();
+        shards.scatter(shard -> delegates.get(shard).findAll()).forEach(tags::addAll);
+        return tags;
+    }
+
+    @Override
+    public List<PostTag> findAllByPostIds(Collection<Long> postIds) {
+        Map<Integer, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long postId : postIds) {
+            idsByShard.computeIfAbsent(shards.shardOf(postId), shard -> new ArrayList<>()).add(postId);
+        }
+        List<PostTag> tags = new ArrayList<>();
+        shards.scatter(new ArrayList<>(idsByShard.keySet()),
+                        shard -> delegates.get(shard).findAllByPostIds(idsByShard.get(shard)))
+                .forEach(tags::addAll);
+        return tags;
+    }
+
+    @Override
+    public void deleteByPostId(Long postId) {
+        int shard = shards.shardOf(postId);
+        shards.onShard(shard, () -> {
+            delegates.get(shard).deleteByPostId(postId);
+            return null;
+        });
+    }
+
+    @Override
+    public void save(PostTag tag) {
+        int shard = shards.shardOf(tag.getPostId());
+        shards.onShard(shard, () -> {
+            delegates.get(shard).save(tag);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(Long postId, String tag) {
+        int shard = shards.shardOf(postId);
+        shards.onShard(shard, () -> {
+            delegates.get(shard).delete(postId, tag);
+            return null;
+        });
+    }
+}
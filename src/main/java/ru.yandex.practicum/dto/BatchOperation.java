@@ -0,0 +1,25 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Одна операция POST /api/batch: op - имя метода (getPost, likePost, createComment...),
+ * остальные поля - его аргументы
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchOperation {
+    private String op;
+    private Long postId;
+    private Long commentId;
+    private String title;
+    private String text;
+    private List<String> tags;
+}
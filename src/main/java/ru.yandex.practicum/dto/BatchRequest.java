@@ -0,0 +1,20 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchRequest {
+    /**
+     * true - все операции или ни одной: первая ошибка откатывает пачку
+     */
+    private boolean atomic;
+    private List<BatchOperation> operations;
+}
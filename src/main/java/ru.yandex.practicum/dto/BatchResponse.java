@@ -0,0 +1,19 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchResponse {
+    /**
+     * В порядке операций запроса
+     */
+    private List<BatchResult> results;
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.exception.ErrorResponse;
+
+/**
+ * Результат одной операции пачки: HTTP-статус, который вернул бы отдельный запрос,
+ * и тело ответа или ошибка
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchResult {
+    private int status;
+    private Object body;
+    private ErrorResponse error;
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostsByIdsResponse {
+    /**
+     * Найденные посты в порядке запрошенных id
+     */
+    private List<PostDetailDto> posts;
+
+    /**
+     * Запрошенные id, которых нет
+     */
+    private List<Long> missing;
+}
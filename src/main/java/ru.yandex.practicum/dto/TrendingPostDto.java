@@ -0,0 +1,21 @@
+package ru.yandex.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Пост в GET /api/posts/trending; счетчики - приблизительные оценки за окно
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TrendingPostDto {
+    private Long id;
+    private long views;
+    private long likes;
+    private long comments;
+    private long score;
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.event;
+
+import lombok.Value;
+
+/**
+ * ✅ Комментарий изменился (публикуется сервисом, обрабатывается после commit)
+ */
+@Value
+public class CommentEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    Type type;
+    Long postId;
+    Long commentId;
+
+    /**
+     * Текст после записи (CREATED, UPDATED), для DELETED - null
+     */
+    String text;
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.event;
+
+import lombok.Value;
+
+/**
+ * ✅ Кеши узла могли пропустить изменения (потеря сообщений шины инвалидации):
+ * все производные от БД данные в памяти нужно сбросить
+ */
+@Value
+public class InvalidateAllEvent {
+}
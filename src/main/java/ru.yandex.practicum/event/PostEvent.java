@@ -0,0 +1,17 @@
+package ru.yandex.practicum.event;
+
+import lombok.Value;
+
+/**
+ * ✅ Пост изменился (публикуется сервисом, обрабатывается после commit)
+ */
+@Value
+public class PostEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, LIKED, IMAGE_CHANGED
+    }
+
+    Type type;
+    Long postId;
+}
@@ -4,9 +4,18 @@ public class ErrorResponse {
     private int status;
     private String error;
     private String message;
-    private String stackTrace;
     private long timestamp;
 
+    public ErrorResponse() {
+    }
+
+    public ErrorResponse(int status, String error, String message) {
+        this.status = status;
+        this.error = error;
+        this.message = message;
+        this.timestamp = System.currentTimeMillis();
+    }
+
     // Getters and Setters
     public int getStatus() { return status; }
     public void setStatus(int status) { this.status = status; }
@@ -17,9 +26,6 @@ public class ErrorResponse {
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
 
-    public String getStackTrace() { return stackTrace; }
-    public void setStackTrace(String stackTrace) { this.stackTrace = stackTrace; }
-
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
 }
@@ -1,33 +1,116 @@
 package ru.yandex.practicum.exception;
 
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.HttpStatus;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
 
+/**
+ * ✅ Единая обработка ошибок
+ *
+ * - NotFound/Validation: без stack trace и без логов, только счетчики
+ * - нарушение ограничения БД: 404/409/400 по виду (IntegrityViolation)
+ * - ServiceUnavailable: 503 с заголовком Retry-After
+ * - ошибки Spring MVC со своим статусом (405, 413, 503 по таймауту async и т.п.):
+ *   статус и заголовки как у Spring по умолчанию, без лога "Unhandled error"
+ * - остальные ошибки: 500, полный stack trace в лог через StackTraceSampler
+ * - клиенту stack trace не отдается, а в ответе 500 - общее сообщение вместо e.getMessage()
+ *
+ * Счетчики: errors.type.{Exception} и errors.status.{code} в /api/metrics
+ */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private StackTraceSampler stackTraceSampler;
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleNotFound(NotFoundException e) {
+        return respond(HttpStatus.NOT_FOUND, e, e.getMessage());
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleIntegrityViolation(DataIntegrityViolationException e) {
+        // 404 - только нет родителя внешнего ключа (комментарий к удаленному посту)
+        IntegrityViolation violation = IntegrityViolation.of(e);
+        return respond(violation.getStatus(), e, violation.getMessage());
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleUnavailable(ServiceUnavailableException e) {
+        ResponseEntity<ErrorResponse> response = respond(HttpStatus.SERVICE_UNAVAILABLE, e, e.getMessage());
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler({
+            ValidationException.class,
+            IllegalArgumentException.class,
+            HttpMessageNotReadableException.class,
+            MissingServletRequestParameterException.class,
+            MethodArgumentTypeMismatchException.class
+    })
+    public ResponseEntity<ErrorResponse> handleBadRequest(Exception e) {
+        return respond(HttpStatus.BAD_REQUEST, e, e.getMessage());
+    }
+
+    @ExceptionHandler({
+            HttpRequestMethodNotSupportedException.class,
+            MaxUploadSizeExceededException.class,
+            AsyncRequestTimeoutException.class
+    })
+    public ResponseEntity<ErrorResponse> handleFrameworkError(Exception e, HttpServletResponse response) {
+        if (response.isCommitted()) {
+            // Например, таймаут уже идущего SSE-потока: ответ начат, статус не поменять
+            return null;
+        }
+        org.springframework.web.ErrorResponse error = (org.springframework.web.ErrorResponse) e;
+        HttpStatus status = HttpStatus.valueOf(error.getStatusCode().value());
+        String detail = error.getBody().getDetail();
+        ResponseEntity<ErrorResponse> body = respond(status, e, detail != null ? detail : status.getReasonPhrase());
+        // Например, Allow для 405
+        return ResponseEntity.status(status).headers(error.getHeaders()).body(body.getBody());
+    }
+
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ErrorResponse> handleException(Exception e) {
-        // Выведем в консоль для логирования
-        e.printStackTrace();
-
-        // Получим полный stacktrace
-        StringWriter sw = new StringWriter();
-        e.printStackTrace(new PrintWriter(sw));
-        String stackTrace = sw.toString();
-
-        // Вернем ошибку в браузер
-        ErrorResponse response = new ErrorResponse();
-        response.setStatus(500);
-        response.setError(e.getClass().getSimpleName());
-        response.setMessage(e.getMessage());
-        response.setStackTrace(stackTrace);
-        response.setTimestamp(System.currentTimeMillis());
-
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    public ResponseEntity<ErrorResponse> handleException(Exception e, HttpServletResponse response) {
+        if (e instanceof org.springframework.web.ErrorResponse) {
+            // Остальные исключения Spring MVC со своим статусом (415, 406, ...)
+            return handleFrameworkError(e, response);
+        }
+        if (stackTraceSampler.shouldLogStackTrace(e)) {
+            log.error("Unhandled error", e);
+        } else {
+            log.error("Unhandled error: {}: {} (stack trace sampled out)",
+                    e.getClass().getName(), e.getMessage());
+        }
+        // Текст исключения может содержать SQL, пути и т.п.: он только в логе
+        return respond(HttpStatus.INTERNAL_SERVER_ERROR, e, "Internal server error");
+    }
+
+    private ResponseEntity<ErrorResponse> respond(HttpStatus status, Exception e, String message) {
+        String type = e.getClass().getSimpleName();
+        metrics.increment("errors.type." + type);
+        metrics.increment("errors.status." + status.value());
+        return ResponseEntity.status(status).body(new ErrorResponse(status.value(), type, message));
     }
 }
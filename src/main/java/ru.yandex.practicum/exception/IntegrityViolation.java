@@ -0,0 +1,69 @@
+package ru.yandex.practicum.exception;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+
+import java.sql.SQLException;
+
+/**
+ * ✅ Вид нарушения ограничения БД → HTTP-статус
+ *
+ * По SQLState из цепочки причин (H2 и стандартные коды класса 23):
+ * - нет родительской строки внешнего ключа (комментарий к удаленному посту) → 404
+ * - дубликат ключа, на строку ссылаются другие → 409
+ * - NOT NULL, CHECK, слишком длинное значение → 400
+ * Неизвестный вид - 409: запрос корректен, но конфликтует с состоянием БД.
+ */
+public enum IntegrityViolation {
+
+    MISSING_REFERENCE(HttpStatus.NOT_FOUND, "Related entity not found"),
+    CONFLICT(HttpStatus.CONFLICT, "Conflicts with existing data"),
+    INVALID_VALUE(HttpStatus.BAD_REQUEST, "Invalid value");
+
+    private final HttpStatus status;
+    private final String message;
+
+    IntegrityViolation(HttpStatus status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public static IntegrityViolation of(DataIntegrityViolationException e) {
+        if (e instanceof DuplicateKeyException) {
+            return CONFLICT;
+        }
+        String state = sqlState(e);
+        if (state == null) {
+            return CONFLICT;
+        }
+        switch (state) {
+            case "23506": // H2: REFERENTIAL_INTEGRITY_VIOLATED_PARENT_MISSING
+                return MISSING_REFERENCE;
+            case "23502": // NOT NULL
+            case "23513": // CHECK
+            case "22001": // значение длиннее колонки
+                return INVALID_VALUE;
+            default:
+                // 23505 - дубликат, 23503 - на строку ссылаются
+                return CONFLICT;
+        }
+    }
+
+    private static String sqlState(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null) {
+                return ((SQLException) cause).getSQLState();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.exception;
+
+/**
+ * ✅ Сущность не найдена (→ 404)
+ *
+ * Без stack trace: это штатная ситуация, а не ошибка кода,
+ * и под потоком 404 от ботов заполнение стека стоит дороже самого запроса.
+ */
+public class NotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public NotFoundException(String message) {
+        super(message, null, false, false);
+    }
+
+    public static NotFoundException post(Long id) {
+        return new NotFoundException("Post not found: " + id);
+    }
+
+    public static NotFoundException comment(Long id) {
+        return new NotFoundException("Comment not found: " + id);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.exception;
+
+/**
+ * ✅ Временная перегрузка (→ 503 + Retry-After)
+ *
+ * Без stack trace, как и NotFoundException: под перегрузкой
+ * таких исключений много, и это штатный отказ, а не ошибка кода.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
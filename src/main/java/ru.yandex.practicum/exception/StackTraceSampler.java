@@ -0,0 +1,42 @@
+package ru.yandex.practicum.exception;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ Ограничитель логирования stack trace
+ *
+ * Для каждого типа исключения пропускает не больше N полных stack trace за окно,
+ * остальные ошибки логируются одной строкой.
+ */
+@Component
+public class StackTraceSampler {
+
+    @Value("${blog.errors.stack-trace-window-ms:60000}")
+    private long windowMillis = 60_000;
+
+    @Value("${blog.errors.stack-trace-samples-per-window:3}")
+    private int samplesPerWindow = 3;
+
+    private final Map<Class<?>, Window> windows = new ConcurrentHashMap<>();
+
+    public boolean shouldLogStackTrace(Throwable error) {
+        Window window = windows.computeIfAbsent(error.getClass(), k -> new Window());
+        long now = System.currentTimeMillis();
+        long start = window.start.get();
+        if (now - start >= windowMillis && window.start.compareAndSet(start, now)) {
+            window.count.set(0);
+        }
+        return window.count.incrementAndGet() <= samplesPerWindow;
+    }
+
+    private static final class Window {
+        final AtomicLong start = new AtomicLong();
+        final AtomicInteger count = new AtomicInteger();
+    }
+}
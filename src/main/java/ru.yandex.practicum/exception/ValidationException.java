@@ -0,0 +1,15 @@
+package ru.yandex.practicum.exception;
+
+/**
+ * ✅ Некорректные входные данные (→ 400)
+ *
+ * Без stack trace, как и NotFoundException: это ошибка клиента, а не кода.
+ */
+public class ValidationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ValidationException(String message) {
+        super(message, null, false, false);
+    }
+}
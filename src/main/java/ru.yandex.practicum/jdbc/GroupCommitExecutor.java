@@ -0,0 +1,259 @@
+package ru.yandex.practicum.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.config.DatabaseSettings;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Group commit для частых мелких записей (лайки, комментарии)
+ *
+ * Операции складываются в очередь, один writer-поток забирает все накопившиеся
+ * (до blog.tx.group-commit.max-batch) и выполняет их в ОДНОЙ транзакции:
+ * пока идет commit, следующая пачка уже копится. Под нагрузкой на операцию
+ * приходится меньше одного commit, без нагрузки - ровно один, без искусственной задержки.
+ *
+ * Каждая операция выполняется под своим savepoint: ошибка одной
+ * (например, несуществующий пост) не откатывает соседей по пачке.
+ * Вызывающий поток ждет commit своей пачки и получает результат или исключение как обычно.
+ *
+ * Если group commit выключен или остановлен (destroy), очередь переполнена или вызов
+ * уже внутри транзакции - операция выполняется сразу в обычной транзакции.
+ */
+@Component
+public class GroupCommitExecutor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitExecutor.class);
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.tx.group-commit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.tx.group-commit.max-batch:64}")
+    private int maxBatch;
+
+    @Value("${blog.tx.group-commit.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private final long stickyWindowMillis = DatabaseSettings.load().getReplicaStickyWindowMillis();
+
+    private TransactionTemplate transactionTemplate;
+    private BlockingQueue<Operation<?>> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    @Override
+    public void afterPropertiesSet() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeLoop, "group-commit");
+        writer.setDaemon(true);
+        writer.start();
+        metricsRegistry.gauge("tx.group-commit.queue", queue::size);
+    }
+
+    /**
+     * Выполнить запись; возвращается после commit
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (queue == null || !running || Thread.currentThread() == writer
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+
+        Operation<T> operation = new Operation<>(work);
+        if (!queue.offer(operation)) {
+            metricsRegistry.increment("tx.group-commit.overflow");
+            return transactionTemplate.execute(status -> work.get());
+        }
+        // writer выходит только при !running и пустой очереди: если остановка пришла
+        // после offer и операцию еще никто не забрал - выполняем ее сами, иначе ждать некого
+        if (!running && queue.remove(operation)) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+
+        try {
+            T result = operation.result.join();
+            // Запись прошла в writer-потоке: sticky-окно клиента открываем здесь
+            RoutingContext.markWrite(stickyWindowMillis);
+            return result;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WriterStoppedException) {
+                // writer умер, не начав операцию: выполняем ее сами
+                return transactionTemplate.execute(status -> work.get());
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    private void writeLoop() {
+        List<Operation<?>> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Operation<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    commit(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Group commit failed", e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        } catch (Error e) {
+            log.error("Group commit writer stopped", e);
+            throw e;
+        } finally {
+            if (running || Thread.currentThread().isInterrupted()) {
+                // Аварийный выход: новые операции идут мимо очереди, а уже поставленные
+                // возвращаются вызывающим потокам, иначе они ждали бы result вечно
+                running = false;
+                List<Operation<?>> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                for (Operation<?> operation : rest) {
+                    operation.result.completeExceptionally(new WriterStoppedException());
+                }
+            }
+        }
+    }
+
+    private void commit(List<Operation<?>> batch) {
+        List<Object> results = new ArrayList<>(batch.size());
+        List<RuntimeException> errors = new ArrayList<>(batch.size());
+
+        TransactionStatus status = null;
+        try {
+            status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+            for (Operation<?> operation : batch) {
+                Object savepoint = status.createSavepoint();
+                try {
+                    results.add(operation.work.get());
+                    errors.add(null);
+                    status.releaseSavepoint(savepoint);
+                } catch (RuntimeException e) {
+                    status.rollbackToSavepoint(savepoint);
+                    results.add(null);
+                    errors.add(e);
+                }
+            }
+            transactionManager.commit(status);
+        } catch (Throwable e) {
+            if (status != null && !status.isCompleted()) {
+                try {
+                    transactionManager.rollback(status);
+                } catch (RuntimeException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            for (Operation<?> operation : batch) {
+                operation.result.completeExceptionally(e);
+            }
+            if (e instanceof Error error) {
+                throw error;
+            }
+            return;
+        }
+
+        metricsRegistry.increment("tx.group-commit.commits");
+        metricsRegistry.counter("tx.group-commit.operations").add(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i), errors.get(i));
+        }
+    }
+
+    /**
+     * Дописывает очередь и останавливает writer; дальше execute выполняет операции сразу
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (!writer.isAlive()) {
+            // writer прерван раньше, чем разобрал очередь: ожидающие не должны висеть вечно
+            List<Operation<?>> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            if (!rest.isEmpty()) {
+                commit(rest);
+            }
+        }
+    }
+
+    private static final class Operation<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Operation(Supplier<T> work) {
+            // SQL операции учитывается в StatementStats вызывающего запроса
+            this.work = StatementStats.propagate(work);
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value, RuntimeException error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete((T) value);
+            }
+        }
+    }
+
+    /**
+     * Операция снята с очереди остановившимся writer и не выполнялась
+     */
+    private static final class WriterStoppedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WriterStoppedException() {
+            super("Group commit writer stopped", null, false, false);
+        }
+    }
+}
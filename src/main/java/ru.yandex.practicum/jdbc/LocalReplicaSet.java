@@ -0,0 +1,166 @@
+package ru.yandex.practicum.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.config.DatabaseSettings;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Локальные read-реплики на H2 (замена настоящей репликации для dev и тестов)
+ *
+ * Каждая реплика - отдельная in-memory БД. Синхронизация снимком:
+ * SCRIPT из основной БД → новая generation реплики → атомарное переключение.
+ * Предыдущая generation закрывается на следующем цикле, чтобы не оборвать идущие чтения.
+ *
+ * Стоимость синхронизации O(размер БД), поэтому это именно stand-in:
+ * реплики отстают на интервал синхронизации, как и настоящие асинхронные реплики.
+ */
+public class LocalReplicaSet implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalReplicaSet.class);
+
+    private final DataSource primary;
+    private final DatabaseSettings settings;
+    private final List<Replica> replicas = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private volatile long lastSyncMillis;
+
+    public LocalReplicaSet(DataSource primary, DatabaseSettings settings) {
+        this.primary = primary;
+        this.settings = settings;
+        for (int i = 0; i < settings.getReplicaCount(); i++) {
+            replicas.add(new Replica(i));
+        }
+    }
+
+    public boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    public List<DataSource> getDataSources() {
+        return new ArrayList<>(replicas);
+    }
+
+    public long getLastSyncMillis() {
+        return lastSyncMillis;
+    }
+
+    /**
+     * Первая синхронизация сразу, дальше - в фоне раз в интервал
+     */
+    public void start() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        syncNow();
+        long interval = settings.getReplicaSyncIntervalMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                syncNow();
+            } catch (RuntimeException e) {
+                log.warn("Replica sync failed: {}", e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void syncNow() {
+        List<String> script = new ArrayList<>();
+        try (Connection conn = primary.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+            while (rs.next()) {
+                script.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot snapshot primary database", e);
+        }
+
+        for (Replica replica : replicas) {
+            replica.load(script);
+        }
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.close();
+        }
+    }
+
+    private final class Replica extends DelegatingDataSource {
+        private final int index;
+        private long generation;
+        private volatile DataSource current;
+        private DataSource retired;
+
+        Replica(int index) {
+            this.index = index;
+        }
+
+        @Override
+        protected DataSource obtainTargetDataSource() {
+            DataSource target = current;
+            if (target == null) {
+                throw new IllegalStateException("Replica " + index + " is not synchronized yet");
+            }
+            return target;
+        }
+
+        void load(List<String> script) {
+            DriverManagerDataSource next = new DriverManagerDataSource(
+                    settings.getReplicaUrl(index, ++generation), settings.getUsername(), settings.getPassword());
+            try (Connection conn = next.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                for (String sql : script) {
+                    stmt.execute(sql);
+                }
+            } catch (SQLException e) {
+                shutdown(next);
+                throw new IllegalStateException("Cannot load replica " + index, e);
+            }
+
+            DataSource previous = current;
+            current = next;
+            shutdown(retired);
+            retired = previous;
+        }
+
+        void close() {
+            shutdown(retired);
+            shutdown(current);
+        }
+
+        private void shutdown(DataSource dataSource) {
+            if (dataSource == null) {
+                return;
+            }
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            } catch (SQLException e) {
+                log.debug("Replica shutdown failed: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.jdbc;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Маршрутизация: чтения → реплики (round-robin), записи → основная БД
+ *
+ * Чтение идет на реплику, только если оно помечено через RoutingContext.onReplica
+ * (или идет в @Transactional(readOnly = true)) и клиент недавно ничего не писал (sticky-окно после записи).
+ * Любое соединение вне onReplica, а также все внутри пишущей транзакции, считается записью
+ * и открывает sticky-окно.
+ *
+ * С транзакциями оборачивается в LazyConnectionDataSourceProxy: соединение берется
+ * на первом SQL, когда флаг readOnly транзакции уже выставлен.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final String[] replicaKeys;
+    private final long stickyWindowMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long stickyWindowMillis) {
+        this.stickyWindowMillis = stickyWindowMillis;
+        this.replicaKeys = new String[replicas.size()];
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = "replica-" + i;
+            targets.put(replicaKeys[i], replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnlyTransaction = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        boolean writeTransaction = TransactionSynchronizationManager.isActualTransactionActive() && !readOnlyTransaction;
+        if (!writeTransaction && (readOnlyTransaction || RoutingContext.isReadOnly())) {
+            if (replicaKeys.length == 0 || RoutingContext.isSticky()) {
+                return PRIMARY;
+            }
+            return replicaKeys[Math.floorMod(next.getAndIncrement(), replicaKeys.length)];
+        }
+        RoutingContext.markWrite(stickyWindowMillis);
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.jdbc;
+
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Контекст маршрутизации чтения/записи для текущего потока
+ *
+ * - {@link #onReplica(Supplier)}: пометить чтение, которое можно отправить на реплику
+ * - sticky: после записи чтения этого клиента какое-то время идут в основную БД,
+ *   чтобы он видел свои же изменения (read-your-writes)
+ * - {@link #onPrimary(Runnable)}: все чтения действия - в основную БД
+ *
+ * Границы HTTP-запроса задает ReplicaStickinessInterceptor.
+ */
+public final class RoutingContext {
+
+    private static final ThreadLocal<RoutingContext> CURRENT = ThreadLocal.withInitial(RoutingContext::new);
+
+    private int readOnlyDepth;
+    private long stickyUntil;
+    private LongConsumer writeListener;
+
+    private RoutingContext() {
+    }
+
+    /**
+     * Выполнить чтение с допуском отставания реплики
+     */
+    public static <T> T onReplica(Supplier<T> read) {
+        RoutingContext context = CURRENT.get();
+        context.readOnlyDepth++;
+        try {
+            return read.get();
+        } finally {
+            context.readOnlyDepth--;
+        }
+    }
+
+    /**
+     * Выполнить действие, читая только из основной БД (как в sticky-окне после записи)
+     */
+    public static void onPrimary(Runnable action) {
+        RoutingContext context = CURRENT.get();
+        long stickyUntil = context.stickyUntil;
+        context.stickyUntil = Long.MAX_VALUE;
+        try {
+            action.run();
+        } finally {
+            context.stickyUntil = stickyUntil;
+        }
+    }
+
+    /**
+     * Начало запроса клиента
+     *
+     * @param stickyUntil   до какого момента клиент читает из основной БД (из cookie)
+     * @param writeListener вызывается при первой записи в запросе с новым stickyUntil
+     */
+    public static void beginRequest(long stickyUntil, LongConsumer writeListener) {
+        RoutingContext context = new RoutingContext();
+        context.stickyUntil = stickyUntil;
+        context.writeListener = writeListener;
+        CURRENT.set(context);
+    }
+
+    public static void endRequest() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Клиент в sticky-окне после своей записи: его чтения нельзя смешивать с чужими
+     */
+    public static boolean requiresPrimary() {
+        return isSticky();
+    }
+
+    static boolean isReadOnly() {
+        return CURRENT.get().readOnlyDepth > 0;
+    }
+
+    static boolean isSticky() {
+        return System.currentTimeMillis() < CURRENT.get().stickyUntil;
+    }
+
+    static void markWrite(long stickyWindowMillis) {
+        RoutingContext context = CURRENT.get();
+        context.stickyUntil = System.currentTimeMillis() + stickyWindowMillis;
+        if (context.writeListener != null) {
+            LongConsumer listener = context.writeListener;
+            context.writeListener = null;
+            listener.accept(context.stickyUntil);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package ru.yandex.practicum.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.config.DatabaseInitializerListener;
+import ru.yandex.practicum.config.DatabaseSettings;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Шарды постов: N отдельных БД H2 вместо одной
+ *
+ * Пост лежит на шарде shardOf(id) = id mod N, его комментарии и теги - на том же шарде,
+ * так что запись поста со всем содержимым идет в одну БД. id постов и комментариев выдает
+ * AUTO_INCREMENT шарда с шагом N и остатком, равным номеру шарда: новый пост сразу
+ * получает id "своего" шарда, общего счетчика нет. Новые посты раскладываются по кругу.
+ *
+ * Шард 0 - основная БД (в ней же остаются idempotency_keys и прочие общие таблицы),
+ * шарды 1..N-1 - соседние БД (DatabaseSettings.getShardUrl).
+ *
+ * start(): таблицы на всех шардах, перенос строк, лежащих не на своем шарде
+ * (тестовые данные основной БД или смена blog.db.shards.count), перенос старых
+ * posts.image каждого шарда в images основной БД, счетчики id.
+ *
+ * Транзакции: основная БД - под обычным DataSourceTransactionManager, соединение шарда 1..N-1
+ * подключается к текущей транзакции при первом onShard и коммитится перед основной БД
+ * (см. ShardTransaction). Это не 2PC: транзакции сервисов касаются одного поста, то есть
+ * одного шарда; несколько шардов затрагивают только пачки GroupCommitExecutor из независимых операций.
+ *
+ * scatter(): запрос ко всем шардам параллельно; выполняется вне текущей транзакции.
+ */
+public class ShardSet implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSet.class);
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcTemplate> jdbcTemplates = new ArrayList<>();
+    private final int queryThreads;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private ExecutorService executor;
+
+    /**
+     * @param primary основная БД (тот же DataSource, что у TransactionManager) - шард 0
+     */
+    public ShardSet(DataSource primary, DatabaseSettings settings) {
+        this(shardDataSources(primary, settings), settings.getShardQueryThreads());
+    }
+
+    public ShardSet(List<DataSource> dataSources, int queryThreads) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.queryThreads = queryThreads;
+        for (DataSource dataSource : this.dataSources) {
+            jdbcTemplates.add(new JdbcTemplate(dataSource));
+        }
+    }
+
+    private static List<DataSource> shardDataSources(DataSource primary, DatabaseSettings settings) {
+        List<DataSource> dataSources = new ArrayList<>();
+        dataSources.add(primary);
+        for (int i = 1; i < settings.getShardCount(); i++) {
+            dataSources.add(new StatementStatsDataSource(new DriverManagerDataSource(
+                    settings.getShardUrl(i), settings.getUsername(), settings.getPassword())));
+        }
+        return dataSources;
+    }
+
+    public int size() {
+        return dataSources.size();
+    }
+
+    public boolean isSharded() {
+        return dataSources.size() > 1;
+    }
+
+    public int shardOf(long postId) {
+        return (int) Math.floorMod(postId, (long) dataSources.size());
+    }
+
+    /**
+     * Шард для нового поста (его id выдаст AUTO_INCREMENT этого шарда)
+     */
+    public int nextShardForInsert() {
+        return Math.floorMod(nextShard.getAndIncrement(), dataSources.size());
+    }
+
+    public JdbcTemplate getJdbcTemplate(int shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    /**
+     * Таблицы, перенос строк на свои шарды, счетчики id; пул для scatter
+     */
+    public void start() {
+        if (!isSharded()) {
+            return;
+        }
+        for (int shard = 0; shard < size(); shard++) {
+            try (Connection conn = dataSources.get(shard).getConnection()) {
+                DatabaseInitializerListener.createTables(conn);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot create tables on shard " + shard, e);
+            }
+        }
+        int moved = rebalance();
+        migrateImages();
+        alignIds("posts");
+        alignIds("comments");
+        executor = Executors.newFixedThreadPool(queryThreads, r -> {
+            Thread thread = new Thread(r, "shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("{} shards ready, {} posts moved to their shards", size(), moved);
+    }
+
+    /**
+     * Выполнить обращение к шарду; внутри транзакции его соединение подключается к ней.
+     * Слушатели после commit (синхронизация уже снята) работают без транзакции
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (shard != 0 && TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            ShardTransaction.current(this, true).enlist(shard, dataSources.get(shard));
+        }
+        return work.get();
+    }
+
+    /**
+     * Запрос ко всем шардам параллельно; результаты в порядке номеров шардов
+     */
+    public <T> List<T> scatter(IntFunction<T> query) {
+        List<Integer> all = new ArrayList<>(size());
+        for (int shard = 0; shard < size(); shard++) {
+            all.add(shard);
+        }
+        return scatter(all, query);
+    }
+
+    /**
+     * Запрос к перечисленным шардам параллельно; результаты в том же порядке.
+     * Один шард - прямо в текущем потоке (и в текущей транзакции)
+     */
+    public <T> List<T> scatter(Collection<Integer> shards, IntFunction<T> query) {
+        if (shards.size() == 1 || executor == null) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (int shard : shards) {
+                results.add(onShard(shard, () -> query.apply(shard)));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            // SQL шардов учитывается в StatementStats запроса, который их ждет
+            Supplier<T> task = StatementStats.propagate(() -> query.apply(shard));
+            futures.add(executor.submit(task::get));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Слияние уже отсортированных результатов шардов: элементы [offset, offset + limit)
+     * общего порядка. Каждый шард должен вернуть хотя бы offset + limit первых строк
+     */
+    public static <T> List<T> merge(List<List<T>> sortedRuns, Comparator<? super T> comparator, long offset, int limit) {
+        PriorityQueue<Run<T>> heads = new PriorityQueue<>(
+                Math.max(1, sortedRuns.size()), (a, b) -> comparator.compare(a.head(), b.head()));
+        for (List<T> run : sortedRuns) {
+            if (!run.isEmpty()) {
+                heads.add(new Run<>(run));
+            }
+        }
+
+        List<T> page = new ArrayList<>(limit);
+        long skipped = 0;
+        while (!heads.isEmpty() && page.size() < limit) {
+            Run<T> run = heads.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(run.head());
+            }
+            if (run.advance()) {
+                heads.add(run);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Переносит посты (с комментариями и тегами), лежащие не на своем шарде.
+     * MERGE по id: перенос, прерванный посередине, безопасно повторяется при следующем старте
+     */
+    private int rebalance() {
+        int moved = 0;
+        for (int source = 0; source < size(); source++) {
+            JdbcTemplate from = jdbcTemplates.get(source);
+            for (Long postId : from.queryForList("SELECT id FROM posts ORDER BY id", Long.class)) {
+                int target = shardOf(postId);
+                if (target == source) {
+                    continue;
+                }
+                JdbcTemplate to = jdbcTemplates.get(target);
+                copyRows(from, to, "posts", "SELECT * FROM posts WHERE id = ?", postId);
+                copyRows(from, to, "comments", "SELECT * FROM comments WHERE post_id = ?", postId);
+                copyTags(from, to, postId);
+                // Комментарии и теги удаляются каскадом
+                from.update("DELETE FROM posts WHERE id = ?", postId);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * posts.image старых версий на любом шарде → images шарда 0 (DatabaseInitializerListener
+     * видит только основную БД). После rebalance: каждый пост уже на своем шарде
+     */
+    private void migrateImages() {
+        try (Connection images = dataSources.get(0).getConnection()) {
+            for (int shard = 0; shard < size(); shard++) {
+                try (Connection posts = dataSources.get(shard).getConnection()) {
+                    DatabaseInitializerListener.migrateImages(posts, images);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot migrate images to shard 0", e);
+        }
+    }
+
+    /**
+     * Теги - без id: post_tags.id на каждом шарде свой, и MERGE по нему заменил бы тег
+     * другого поста на целевом шарде. Уже скопированные пары (post_id, tag) пропускаются
+     */
+    private static void copyTags(JdbcTemplate from, JdbcTemplate to, Long postId) {
+        for (String tag : from.queryForList("SELECT tag FROM post_tags WHERE post_id = ? ORDER BY id", String.class, postId)) {
+            to.update("INSERT INTO post_tags (post_id, tag) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM post_tags WHERE post_id = ? AND tag = ?)", postId, tag, postId, tag);
+        }
+    }
+
+    private static void copyRows(JdbcTemplate from, JdbcTemplate to, String table, String select, Long postId) {
+        for (Map<String, Object> row : from.queryForList(select, postId)) {
+            String columns = String.join(", ", row.keySet());
+            String placeholders = String.join(", ", Collections.nCopies(row.size(), "?"));
+            to.update("MERGE INTO " + table + " (" + columns + ") KEY (id) VALUES (" + placeholders + ")",
+                    row.values().toArray());
+        }
+    }
+
+    /**
+     * AUTO_INCREMENT шарда k: шаг N, первое значение - следующее после максимума по всем шардам
+     * с остатком k. Пересчитывается на каждом старте, поэтому переживает смену N
+     */
+    private void alignIds(String table) {
+        long max = 0;
+        for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+            Long shardMax = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            max = Math.max(max, shardMax == null ? 0 : shardMax);
+        }
+        for (int shard = 0; shard < size(); shard++) {
+            long start = max + 1 + Math.floorMod(shard - (max + 1), (long) size());
+            JdbcTemplate jdbcTemplate = jdbcTemplates.get(shard);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + start);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id SET INCREMENT BY " + size());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Run<T> {
+        private final List<T> items;
+        private int index;
+
+        Run(List<T> items) {
+            this.items = items;
+        }
+
+        T head() {
+            return items.get(index);
+        }
+
+        boolean advance() {
+            return ++index < items.size();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ru.yandex.practicum.jdbc;
+
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ✅ Соединения шардов 1..N-1 в текущей транзакции основной БД
+ *
+ * - enlist: соединение шарда берется один раз на транзакцию (autoCommit=false) и
+ *   привязывается к его DataSource - JdbcTemplate шарда дальше работает через него
+ * - beforeCommit: commit шардов до commit основной БД; ошибка откатывает основную БД и
+ *   еще не закоммиченные шарды (уже закоммиченные остаются - это не 2PC). Данные, которые
+ *   связывают шард с основной БД (images.ref_count на шарде 0), после такого сбоя сверяет ImageSweeper
+ * - afterCompletion: rollback, если транзакция не закоммичена; соединения закрываются
+ * - savepoint: ставится на всех подключенных шардах, а на шардах, подключенных позже, -
+ *   в момент подключения (до него на шарде ничего не выполнялось)
+ */
+final class ShardTransaction implements TransactionSynchronization {
+
+    private final Object key;
+    private final Map<DataSource, Connection> connections = new LinkedHashMap<>();
+    private final Set<DataSource> committed = new HashSet<>();
+    private final List<ShardSavepoint> savepoints = new ArrayList<>();
+
+    private ShardTransaction(Object key) {
+        this.key = key;
+    }
+
+    /**
+     * Шардовая часть текущей транзакции (create - создать, если ее еще нет)
+     */
+    static ShardTransaction current(Object key, boolean create) {
+        ShardTransaction transaction = (ShardTransaction) TransactionSynchronizationManager.getResource(key);
+        if (transaction == null && create) {
+            transaction = new ShardTransaction(key);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+            TransactionSynchronizationManager.bindResource(key, transaction);
+        }
+        return transaction;
+    }
+
+    void enlist(int shard, DataSource dataSource) {
+        if (connections.containsKey(dataSource)) {
+            return;
+        }
+        try {
+            Connection connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                connection.setReadOnly(true);
+            }
+            connections.put(dataSource, connection);
+            bind(dataSource, connection);
+            for (ShardSavepoint savepoint : savepoints) {
+                savepoint.shards.put(connection, connection.setSavepoint());
+            }
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Cannot join shard " + shard + " to transaction", e);
+        }
+    }
+
+    ShardSavepoint createSavepoint(Object primary) {
+        ShardSavepoint savepoint = new ShardSavepoint(primary);
+        try {
+            for (Connection connection : connections.values()) {
+                savepoint.shards.put(connection, connection.setSavepoint());
+            }
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Cannot create shard savepoint", e);
+        }
+        savepoints.add(savepoint);
+        return savepoint;
+    }
+
+    void rollbackToSavepoint(ShardSavepoint savepoint) {
+        try {
+            for (Map.Entry<Connection, Savepoint> entry : savepoint.shards.entrySet()) {
+                entry.getKey().rollback(entry.getValue());
+            }
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Cannot roll back to shard savepoint", e);
+        }
+        forget(savepoint);
+    }
+
+    void releaseSavepoint(ShardSavepoint savepoint) {
+        try {
+            for (Map.Entry<Connection, Savepoint> entry : savepoint.shards.entrySet()) {
+                entry.getKey().releaseSavepoint(entry.getValue());
+            }
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Cannot release shard savepoint", e);
+        }
+        forget(savepoint);
+    }
+
+    private void forget(ShardSavepoint savepoint) {
+        // Вложенные точки после этой тоже больше не действуют
+        int index = savepoints.indexOf(savepoint);
+        if (index >= 0) {
+            savepoints.subList(index, savepoints.size()).clear();
+        }
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResource(key);
+        for (DataSource dataSource : connections.keySet()) {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+        }
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(key, this);
+        for (Map.Entry<DataSource, Connection> entry : connections.entrySet()) {
+            bind(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+        commitPending();
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        try {
+            if (status == STATUS_COMMITTED) {
+                // Шард, подключенный уже после beforeCommit (в afterCommit)
+                commitPending();
+            }
+        } finally {
+            for (Map.Entry<DataSource, Connection> entry : connections.entrySet()) {
+                close(entry.getValue(), status != STATUS_COMMITTED && !committed.contains(entry.getKey()));
+                TransactionSynchronizationManager.unbindResourceIfPossible(entry.getKey());
+            }
+            TransactionSynchronizationManager.unbindResourceIfPossible(key);
+        }
+    }
+
+    private void commitPending() {
+        for (Map.Entry<DataSource, Connection> entry : connections.entrySet()) {
+            if (committed.contains(entry.getKey())) {
+                continue;
+            }
+            try {
+                entry.getValue().commit();
+                committed.add(entry.getKey());
+            } catch (SQLException e) {
+                throw new TransactionSystemException("Shard commit failed", e);
+            }
+        }
+    }
+
+    private static void bind(DataSource dataSource, Connection connection) {
+        ConnectionHolder holder = new ConnectionHolder(connection);
+        holder.setSynchronizedWithTransaction(true);
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+    }
+
+    private static void close(Connection connection, boolean rollback) {
+        try {
+            if (rollback) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+            connection.setReadOnly(false);
+        } catch (SQLException e) {
+            // Соединение все равно закрывается ниже
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // уже закрыто
+            }
+        }
+    }
+
+    /**
+     * Savepoint основной БД и savepoint-ы шардов на тот же момент
+     */
+    static final class ShardSavepoint {
+        final Object primary;
+        private final Map<Connection, Savepoint> shards = new LinkedHashMap<>();
+
+        private ShardSavepoint(Object primary) {
+            this.primary = primary;
+        }
+    }
+}
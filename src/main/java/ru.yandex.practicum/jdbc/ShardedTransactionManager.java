@@ -0,0 +1,118 @@
+package ru.yandex.practicum.jdbc;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * ✅ TransactionManager при шардировании (blog.db.shards.count > 1)
+ *
+ * Транзакцией основной БД (шард 0) по-прежнему управляет primary (DataSourceTransactionManager),
+ * шарды 1..N-1 подключаются к ней сами (ShardSet.onShard → ShardTransaction).
+ * Обертка нужна для savepoint-ов: GroupCommitExecutor откатывает неудачную операцию пачки
+ * до savepoint, и откатиться должны все шарды, а не только основная БД.
+ */
+public class ShardedTransactionManager implements PlatformTransactionManager {
+
+    private final PlatformTransactionManager primary;
+    private final ShardSet shards;
+
+    public ShardedTransactionManager(PlatformTransactionManager primary, ShardSet shards) {
+        this.primary = primary;
+        this.shards = shards;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        return new ShardedTransactionStatus(primary.getTransaction(definition));
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        primary.commit(((ShardedTransactionStatus) status).status);
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        primary.rollback(((ShardedTransactionStatus) status).status);
+    }
+
+    private final class ShardedTransactionStatus implements TransactionStatus {
+        private final TransactionStatus status;
+
+        ShardedTransactionStatus(TransactionStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public Object createSavepoint() throws TransactionException {
+            Object savepoint = status.createSavepoint();
+            return ShardTransaction.current(shards, true).createSavepoint(savepoint);
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+            ShardTransaction.ShardSavepoint shardSavepoint = (ShardTransaction.ShardSavepoint) savepoint;
+            ShardTransaction.current(shards, true).rollbackToSavepoint(shardSavepoint);
+            status.rollbackToSavepoint(shardSavepoint.primary);
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) throws TransactionException {
+            ShardTransaction.ShardSavepoint shardSavepoint = (ShardTransaction.ShardSavepoint) savepoint;
+            ShardTransaction.current(shards, true).releaseSavepoint(shardSavepoint);
+            status.releaseSavepoint(shardSavepoint.primary);
+        }
+
+        @Override
+        public boolean hasSavepoint() {
+            return status.hasSavepoint();
+        }
+
+        @Override
+        public void flush() {
+            status.flush();
+        }
+
+        @Override
+        public String getTransactionName() {
+            return status.getTransactionName();
+        }
+
+        @Override
+        public boolean hasTransaction() {
+            return status.hasTransaction();
+        }
+
+        @Override
+        public boolean isNewTransaction() {
+            return status.isNewTransaction();
+        }
+
+        @Override
+        public boolean isNested() {
+            return status.isNested();
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return status.isReadOnly();
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            status.setRollbackOnly();
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return status.isRollbackOnly();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return status.isCompleted();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.jdbc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Статистика SQL в рамках одного HTTP-запроса
+ *
+ * Считает количество выражений, строк и время JDBC,
+ * а также сколько раз выполнялась каждая "форма" SQL (для поиска N+1).
+ * Текущий экземпляр хранится в ThreadLocal и заполняется {@link StatementStatsDataSource}.
+ *
+ * SQL, который запрос ждет в других потоках, переносится в его область через propagate():
+ * запросы к шардам (ShardSet.scatter), чтения пачки (BatchExecutor) и операции
+ * group commit (GroupCommitExecutor; сами savepoint и commit пачки общие и не учитываются).
+ * Не учитывается запись AsyncCommentWriter: она идет уже после ответа.
+ */
+public final class StatementStats {
+
+    private static final ThreadLocal<StatementStats> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int SHAPE_CACHE_LIMIT = 1024;
+    private static final Map<String, String> SHAPE_CACHE = new ConcurrentHashMap<>();
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final Map<String, LongAdder> shapes = new ConcurrentHashMap<>();
+    private final StatementStats previous;
+
+    private StatementStats(StatementStats previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Открывает новую область учета для текущего потока.
+     * Закрывать через {@link #stop()}, лучше в finally.
+     */
+    public static StatementStats start() {
+        StatementStats stats = new StatementStats(CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static StatementStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Закрывает область учета и восстанавливает предыдущую (если была)
+     */
+    public void stop() {
+        restore(previous);
+    }
+
+    /**
+     * Задача для другого потока, SQL которой учитывается в текущей области вызывающего
+     * (если она открыта). Счетчики потокобезопасны, поэтому задач может быть несколько сразу
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        StatementStats stats = CURRENT.get();
+        if (stats == null) {
+            return task;
+        }
+        return () -> {
+            StatementStats outer = CURRENT.get();
+            CURRENT.set(stats);
+            try {
+                return task.get();
+            } finally {
+                restore(outer);
+            }
+        };
+    }
+
+    private static void restore(StatementStats stats) {
+        if (stats != null) {
+            CURRENT.set(stats);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    void record(String sql, long elapsedNanos) {
+        statements.increment();
+        nanos.add(elapsedNanos);
+        if (sql != null) {
+            shapes.computeIfAbsent(shapeOf(sql), k -> new LongAdder()).increment();
+        }
+    }
+
+    void addRows(long count) {
+        rows.add(count);
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * Формы SQL, выполненные больше threshold раз, по убыванию количества
+     */
+    public Map<String, Long> repeatedShapes(int threshold) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        shapes.entrySet().stream()
+                .filter(e -> e.getValue().sum() > threshold)
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(e -> result.put(e.getKey(), e.getValue().sum()));
+        return result;
+    }
+
+    public Map<String, Long> shapes() {
+        return repeatedShapes(0);
+    }
+
+    /**
+     * Нормализует SQL: литералы → ?, IN (?, ?, ?) → IN (?), пробелы схлопываются
+     */
+    static String shapeOf(String sql) {
+        String cached = SHAPE_CACHE.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+
+        if (SHAPE_CACHE.size() >= SHAPE_CACHE_LIMIT) {
+            SHAPE_CACHE.clear();
+        }
+        SHAPE_CACHE.put(sql, shape);
+        return shape;
+    }
+}
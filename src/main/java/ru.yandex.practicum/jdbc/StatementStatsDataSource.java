@@ -0,0 +1,182 @@
+package ru.yandex.practicum.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ✅ DataSource-декоратор, который считает SQL для {@link StatementStats}
+ *
+ * Оборачивает Connection/Statement/ResultSet в JDK-прокси:
+ * - execute* → +1 выражение, время выполнения, форма SQL
+ * - executeUpdate/executeBatch → количество затронутых строк
+ * - ResultSet.next() → количество прочитанных строк
+ *
+ * Если у потока нет открытой области учета, вызовы просто проходят насквозь.
+ */
+public class StatementStatsDataSource extends DelegatingDataSource {
+
+    public StatementStatsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection target = super.getConnection();
+        return wrap(Connection.class, new ConnectionHandler(target));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Connection target = super.getConnection(username, password);
+        return wrap(Connection.class, new ConnectionHandler(target));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementStatsDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private abstract static class TargetHandler implements InvocationHandler {
+        final Object target;
+
+        TargetHandler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return handle(proxy, method, args);
+        }
+
+        abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+    }
+
+    private static final class ConnectionHandler extends TargetHandler {
+
+        ConnectionHandler(Connection target) {
+            super(target);
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementStatsDataSource.invoke(target, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrap(Statement.class, new StatementHandler((Statement) result, null));
+                case "prepareStatement":
+                    return wrap(PreparedStatement.class,
+                            new StatementHandler((Statement) result, (String) args[0]));
+                case "prepareCall":
+                    return wrap(CallableStatement.class,
+                            new StatementHandler((Statement) result, (String) args[0]));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    private static final class StatementHandler extends TargetHandler {
+        private final String preparedSql;
+
+        StatementHandler(Statement target, String preparedSql) {
+            super(target);
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            StatementStats stats = StatementStats.current();
+
+            if (stats == null || !name.startsWith("execute")) {
+                Object result = StatementStatsDataSource.invoke(target, method, args);
+                if (stats != null && name.equals("getResultSet") && result != null) {
+                    return wrap(ResultSet.class, new ResultSetHandler((ResultSet) result, stats));
+                }
+                return result;
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String
+                    ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = StatementStatsDataSource.invoke(target, method, args);
+            } finally {
+                stats.record(sql, System.nanoTime() - start);
+            }
+
+            if (result instanceof ResultSet) {
+                return wrap(ResultSet.class, new ResultSetHandler((ResultSet) result, stats));
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                stats.addRows(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    stats.addRows(Math.max(count, 0));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    stats.addRows(Math.max(count, 0));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler extends TargetHandler {
+        private final StatementStats stats;
+
+        ResultSetHandler(ResultSet target, StatementStats stats) {
+            super(target);
+            this.stats = stats;
+        }
+
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementStatsDataSource.invoke(target, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                stats.addRows(1);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Простой реестр метрик приложения
+ *
+ * - counter(name): счетчик на LongAdder (дешевый инкремент из многих потоков)
+ * - gauge(name, supplier): значение, которое вычисляется при чтении
+ *
+ * Снимок отдается через GET /api/metrics.
+ */
+@Component
+public class MetricsRegistry {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    public void gauge(String name, Supplier<? extends Number> supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public Map<String, Number> snapshot() {
+        Map<String, Number> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        gauges.forEach((name, supplier) -> result.put(name, supplier.get()));
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Изображение из таблицы images: содержимое и его SHA-256 (ключ строки и ETag ответа)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Image {
+    private String hash;
+    private byte[] data;
+
+    public static String hashOf(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
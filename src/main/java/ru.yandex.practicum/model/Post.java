@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,5 +17,11 @@ public class Post {
     private String text;
     private Long authorId;
     private Integer likesCount;
-    private byte[] image;
+    // SHA-256 изображения в таблице images (null - изображения нет)
+    private String imageHash;
+    private LocalDateTime createdDate;
+    // Денормализованный счетчик: поддерживается CommentDao при вставке и удалении комментариев
+    private Integer commentsCount;
+    // Начало текста для ленты (PostServiceImpl.textPreview), хранится, чтобы не читать весь text
+    private String textPreview;
 }
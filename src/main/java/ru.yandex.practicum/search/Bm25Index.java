@@ -0,0 +1,238 @@
+package ru.yandex.practicum.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Инвертированный индекс постов с ранжированием BM25
+ *
+ * - term → (postId → частота в заголовке и тексте), статистика обновляется
+ *   инкрементально при put/remove, без пересчета всего корпуса
+ * - заголовок весит titleBoost: tf = tf(text) + boost × tf(title), длина документа - так же
+ *   (вариант BM25F с одним набором k1/b)
+ * - top(k): оценки только документов, где есть хотя бы один термин запроса,
+ *   лучшие k отбираются кучей размера k - полной сортировки совпадений нет
+ *
+ * Запись (put/remove) последовательная, чтение идет параллельно без блокировок:
+ * во время обновления поиск может увидеть пост в старом или новом виде.
+ */
+public class Bm25Index {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final double k1;
+    private final double b;
+    private final double titleBoost;
+
+    private final Map<String, Map<Long, Posting>> postings = new ConcurrentHashMap<>();
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile double totalLength;
+
+    public Bm25Index(double k1, double b, double titleBoost) {
+        this.k1 = k1;
+        this.b = b;
+        this.titleBoost = titleBoost;
+    }
+
+    /**
+     * Добавить или заменить пост
+     */
+    public synchronized void put(long id, String title, String text) {
+        removeDocument(id);
+        List<String> titleTerms = tokenize(title);
+        List<String> textTerms = tokenize(text);
+
+        Map<String, Posting> terms = new HashMap<>();
+        for (String term : titleTerms) {
+            terms.computeIfAbsent(term, t -> new Posting()).title++;
+        }
+        for (String term : textTerms) {
+            terms.computeIfAbsent(term, t -> new Posting()).text++;
+        }
+        terms.forEach((term, posting) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(id, posting));
+
+        double length = textTerms.size() + titleBoost * titleTerms.size();
+        documents.put(id, new Document(terms.keySet(), length));
+        totalLength += length;
+        version.incrementAndGet();
+    }
+
+    public synchronized void remove(long id) {
+        if (removeDocument(id)) {
+            version.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documents.clear();
+        totalLength = 0;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Меняется при каждом изменении индекса: по нему кеш результатов понимает, что устарел
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Лучшие k постов по BM25, по убыванию оценки (при равенстве - меньший id выше)
+     */
+    public Ranking top(String query, int k) {
+        Map<Long, Double> scores = score(query);
+        if (scores.isEmpty() || k <= 0) {
+            return new Ranking(List.of(), scores.size());
+        }
+
+        // Куча-минимум на k элементов: O(n log k) вместо сортировки всех n совпадений
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(k + 1, Bm25Index::compareScores);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (compareScores(entry, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return new Ranking(ids, scores.size());
+    }
+
+    /**
+     * Все посты, где есть хотя бы один термин запроса (без ранжирования)
+     */
+    public Set<Long> matching(String query) {
+        return score(query).keySet();
+    }
+
+    /**
+     * Термины запроса/документа: нижний регистр, разбиение по всему, что не буква и не цифра
+     */
+    public static List<String> tokenize(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : TOKEN_SEPARATOR.split(value.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private Map<Long, Double> score(String query) {
+        Map<Long, Double> scores = new HashMap<>();
+        int documentCount = documents.size();
+        if (documentCount == 0) {
+            return scores;
+        }
+        double averageLength = Math.max(1e-9, totalLength / documentCount);
+
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Map<Long, Posting> termPostings = postings.get(term);
+            if (termPostings == null || termPostings.isEmpty()) {
+                continue;
+            }
+            int df = termPostings.size();
+            double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+            for (Map.Entry<Long, Posting> entry : termPostings.entrySet()) {
+                Document document = documents.get(entry.getKey());
+                if (document == null) {
+                    continue;
+                }
+                Posting posting = entry.getValue();
+                double tf = posting.text + titleBoost * posting.title;
+                double norm = k1 * (1 - b + b * document.length / averageLength);
+                scores.merge(entry.getKey(), idf * tf * (k1 + 1) / (tf + norm), Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    private boolean removeDocument(long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return false;
+        }
+        for (String term : document.terms) {
+            Map<Long, Posting> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= document.length;
+        return true;
+    }
+
+    private static int compareScores(Map.Entry<Long, Double> left, Map.Entry<Long, Double> right) {
+        int byScore = Double.compare(left.getValue(), right.getValue());
+        return byScore != 0 ? byScore : Long.compare(right.getKey(), left.getKey());
+    }
+
+    /**
+     * Результат ранжирования: ids лучших постов и сколько всего постов совпало
+     */
+    public static final class Ranking {
+        private final List<Long> ids;
+        private final int totalMatches;
+
+        public Ranking(List<Long> ids, int totalMatches) {
+            this.ids = ids;
+            this.totalMatches = totalMatches;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public int getTotalMatches() {
+            return totalMatches;
+        }
+    }
+
+    private static final class Posting {
+        private int title;
+        private int text;
+    }
+
+    private static final class Document {
+        private final Set<String> terms;
+        private final double length;
+
+        Document(Set<String> terms, double length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package ru.yandex.practicum.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ✅ Префиксное дерево для автодополнения с весами
+ *
+ * - ключ - строка в нижнем регистре, в узле хранится вес термина и его исходное написание
+ * - дети узла - отсортированные массивы char[] / Node[] без HashMap: память растет
+ *   только с числом различных символов словаря, пустые ветки удаляются при обнулении веса
+ * - каждый узел помнит максимальный вес в своем поддереве, поэтому suggest(prefix, k)
+ *   обходит поддерево по убыванию веса и останавливается на k-м результате,
+ *   не перебирая все термины с этим префиксом
+ *
+ * Запись под write-lock, чтение параллельно под read-lock.
+ */
+public class SuggestTrie {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private int size;
+    private int nodeCount = 1;
+
+    /**
+     * Изменить вес термина на delta; термин с весом 0 удаляется
+     */
+    public void add(String term, long delta) {
+        String key = normalize(term);
+        if (key.isEmpty() || delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    if (delta < 0) {
+                        return;
+                    }
+                    child = node.addChild(key.charAt(i));
+                    nodeCount++;
+                }
+                path[i + 1] = child;
+                node = child;
+            }
+
+            long before = node.weight;
+            node.weight = Math.max(0, before + delta);
+            if (node.weight == 0) {
+                node.display = null;
+            } else if (delta > 0) {
+                node.display = term.trim();
+            }
+            if (before == 0 && node.weight > 0) {
+                size++;
+            } else if (before > 0 && node.weight == 0) {
+                size--;
+            }
+
+            // Пересчитать максимум поддерева снизу вверх и убрать опустевшие узлы
+            for (int i = key.length(); i >= 0; i--) {
+                Node current = path[i];
+                current.recomputeBest();
+                if (i > 0 && current.best == 0 && current.childCount == 0) {
+                    path[i - 1].removeChild(key.charAt(i - 1));
+                    nodeCount--;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * До limit терминов, начинающихся с prefix, по убыванию веса
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null || node.best == 0) {
+                return List.of();
+            }
+
+            List<Suggestion> result = new ArrayList<>(limit);
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            long order = 0;
+            queue.add(new Candidate(node, false, node.best, order++));
+            while (!queue.isEmpty() && result.size() < limit) {
+                Candidate candidate = queue.poll();
+                Node current = candidate.node;
+                if (candidate.terminal) {
+                    result.add(new Suggestion(current.display, current.weight));
+                    continue;
+                }
+                if (current.weight > 0) {
+                    queue.add(new Candidate(current, true, current.weight, order++));
+                }
+                for (int i = 0; i < current.childCount; i++) {
+                    Node child = current.children[i];
+                    queue.add(new Candidate(child, false, child.best, order++));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            size = 0;
+            nodeCount = 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Число терминов с ненулевым весом
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ключ термина: без пробелов по краям, в нижнем регистре
+     */
+    public static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Подсказка: термин в исходном написании и его вес
+     */
+    public static final class Suggestion {
+        private final String text;
+        private final long weight;
+
+        public Suggestion(String text, long weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        private long weight;
+        private long best;
+        private String display;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char label) {
+            int index = -Arrays.binarySearch(labels, 0, childCount, label) - 1;
+            // Массивы растут ровно на один элемент: у большинства узлов 1-2 ребенка
+            char[] newLabels = new char[childCount + 1];
+            Node[] newChildren = new Node[childCount + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index, newLabels, index + 1, childCount - index);
+            System.arraycopy(children, index, newChildren, index + 1, childCount - index);
+            Node child = new Node();
+            newLabels[index] = label;
+            newChildren[index] = child;
+            labels = newLabels;
+            children = newChildren;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = childCount == 1 ? NO_LABELS : new char[childCount - 1];
+            Node[] newChildren = childCount == 1 ? NO_CHILDREN : new Node[childCount - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, childCount - index - 1);
+            labels = newLabels;
+            children = newChildren;
+            childCount--;
+        }
+
+        void recomputeBest() {
+            long max = weight;
+            for (int i = 0; i < childCount; i++) {
+                max = Math.max(max, children[i].best);
+            }
+            best = max;
+        }
+    }
+
+    /**
+     * Элемент обхода: узел (приоритет - максимум поддерева) или сам термин узла (его вес).
+     * При равном приоритете термин идет раньше поддерева, дальше - порядок добавления
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        private final Node node;
+        private final boolean terminal;
+        private final long priority;
+        private final long order;
+
+        Candidate(Node node, boolean terminal, long priority, long order) {
+            this.node = node;
+            this.terminal = terminal;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byPriority = Long.compare(other.priority, priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            if (terminal != other.terminal) {
+                return terminal ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
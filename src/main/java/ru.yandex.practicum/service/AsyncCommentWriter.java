@@ -0,0 +1,247 @@
+package ru.yandex.practicum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.dao.CommentDao;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ServiceUnavailableException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Comment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Асинхронная запись комментариев пачками (blog.comments.async.enabled=true)
+ *
+ * - createComment сразу получает id из CommentIdAllocator (те же блоки, что у синхронной
+ *   вставки) и кладет комментарий в ограниченную очередь
+ * - writer-поток забирает до max-batch комментариев и вставляет их одним
+ *   JDBC batch в одной транзакции
+ * - сбой БД (соединение, блокировка) - пачка повторяется с нарастающей паузой, пока
+ *   не пройдет: клиент уже получил 201, выбрасывать комментарий нельзя; очередь тем временем
+ *   заполняется и новые комментарии получают 503
+ * - нарушение ограничения - по одному: комментарий к посту, удаленному пока он ждал в очереди,
+ *   не пишется (он ушел бы вместе с постом), остальные из пачки записываются
+ * - очередь полна дольше offer-timeout-ms → 503 с Retry-After (backpressure)
+ * - при остановке приложения очередь дописывается до конца (не дольше drain-timeout-ms)
+ * - вставки writer-потока не попадают в StatementStats запроса (X-SQL-*, бюджеты тестов):
+ *   они идут уже после ответа и общие для пачки
+ *
+ * Компромисс: комментарий появляется в GET с задержкой до одной пачки,
+ * а принятые, но не записанные комментарии теряются при аварийном падении процесса.
+ */
+@Component
+public class AsyncCommentWriter implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncCommentWriter.class);
+    private static final long RETRY_PAUSE_MILLIS = 100;
+    private static final long MAX_RETRY_PAUSE_MILLIS = 5_000;
+    // После остановки повторы ограничены: destroy ждет не дольше drain-timeout-ms
+    private static final int DRAIN_ATTEMPTS = 3;
+
+    @Autowired
+    private CommentDao commentDao;
+
+    @Autowired
+    private CommentIdAllocator commentIdAllocator;
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${blog.comments.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${blog.comments.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${blog.comments.async.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${blog.comments.async.offer-timeout-ms:50}")
+    private long offerTimeoutMillis;
+
+    @Value("${blog.comments.async.drain-timeout-ms:30000}")
+    private long drainTimeoutMillis;
+
+    private BlockingQueue<Comment> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        running = true;
+        writer = new Thread(this::writeLoop, "comment-writer");
+        writer.setDaemon(true);
+        writer.start();
+        metricsRegistry.gauge("comments.async.queue", queue::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Принять комментарий; в БД он попадет с ближайшей пачкой
+     */
+    public Comment submit(Long postId, String text) {
+        if (!running) {
+            throw new ServiceUnavailableException("Comment writer is stopped", 1);
+        }
+        if (!postDao.existsById(postId)) {
+            throw NotFoundException.post(postId);
+        }
+
+        Comment comment = new Comment(commentIdAllocator.nextId(), postId, text);
+        try {
+            if (!queue.offer(comment, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                metricsRegistry.increment("comments.async.rejected");
+                throw new ServiceUnavailableException("Comment queue is full", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while queueing comment", 1);
+        }
+        // writer выходит только при !running и пустой очереди: если остановка пришла после
+        // проверки выше и комментарий еще никто не забрал, его уже некому записать
+        if (!running && queue.remove(comment)) {
+            throw new ServiceUnavailableException("Comment writer is stopped", 1);
+        }
+        return comment;
+    }
+
+    private void writeLoop() {
+        List<Comment> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Comment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Comment> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> commentDao.saveAll(batch));
+                metricsRegistry.increment("comments.async.batches");
+                metricsRegistry.counter("comments.async.inserted").add(batch.size());
+                batch.forEach(this::publishCreated);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Например, пост удалили, пока комментарий ждал в очереди:
+                // пишем по одному, чтобы не потерять остальные
+                log.warn("Comment batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+                batch.forEach(this::writeOne);
+                return;
+            } catch (DataAccessException e) {
+                metricsRegistry.increment("comments.async.retries");
+                if (!running && attempt >= DRAIN_ATTEMPTS) {
+                    metricsRegistry.counter("comments.async.lost").add(batch.size());
+                    log.error("Lost {} accepted comments on shutdown: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("Comment batch of {} failed (attempt {}), retrying: {}", batch.size(), attempt, e.getMessage());
+                if (!pause(attempt)) {
+                    metricsRegistry.counter("comments.async.lost").add(batch.size());
+                    log.error("Comment writer interrupted with {} comments not written", batch.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeOne(Comment comment) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> commentDao.saveAll(List.of(comment)));
+            metricsRegistry.increment("comments.async.inserted");
+            publishCreated(comment);
+        } catch (DataIntegrityViolationException e) {
+            if (!postDao.existsById(comment.getPostId())) {
+                // Пост удален после приема комментария: удаление поста убрало бы и его
+                metricsRegistry.increment("comments.async.orphaned");
+                return;
+            }
+            metricsRegistry.increment("comments.async.dropped");
+            log.error("Dropped comment {} for post {}: {}", comment.getId(), comment.getPostId(), e.getMessage());
+        } catch (DataAccessException e) {
+            // Сбой БД, а не сам комментарий: повтор с паузой
+            write(List.of(comment));
+        }
+    }
+
+    /**
+     * Пауза перед повтором: 100 мс, 200 мс, ... не больше 5 с; false - поток прерван
+     */
+    private static boolean pause(int attempt) {
+        try {
+            Thread.sleep(Math.min(MAX_RETRY_PAUSE_MILLIS, RETRY_PAUSE_MILLIS << Math.min(attempt - 1, 10)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Событие только после commit: до этого комментарий не виден в GET
+     */
+    private void publishCreated(Comment comment) {
+        eventPublisher.publishEvent(new CommentEvent(CommentEvent.Type.CREATED, comment.getPostId(), comment.getId(),
+                comment.getText()));
+    }
+
+    /**
+     * Новые комментарии больше не принимаются, очередь дописывается в БД
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(drainTimeoutMillis);
+            if (!queue.isEmpty()) {
+                log.error("Comment writer stopped with {} comments not written", queue.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import ru.yandex.practicum.jdbc.RoutingContext;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Фоновая перестройка структуры в памяти из БД с подменой (PostSummaryStore, PostSearchIndex, SuggestIndex)
+ *
+ * - request() запускает перестройку в отдельном потоке; запросы, пришедшие во время нее,
+ *   схлопываются в одну следующую
+ * - invalidate() помечает структуру устаревшей; requestIfStale() повторяет перестройку,
+ *   если прошлая не удалась
+ * - rebuild(...) читает БД в новую структуру, пока текущая продолжает получать события;
+ *   посты, отмеченные markChanged за время чтения, перечитываются в новую перед подменой
+ *
+ * Подмена и проверка изменений - под changesLock владельца: событие, которое отмечает пост
+ * и обновляет текущую структуру под той же блокировкой, не потеряется между ними.
+ * БД читается только из основной: запись, закоммиченная до начала перестройки, не отмечена
+ * в changedDuringRebuild, и отставшая реплика потеряла бы ее до следующей перестройки.
+ */
+final class BackgroundRebuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundRebuilder.class);
+
+    private final String threadName;
+    private final Lock changesLock;
+    private final Runnable rebuild;
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Структура устарела (invalidate или неудачная перестройка)
+    private volatile boolean stale;
+    // Посты, изменившиеся, пока rebuild читает БД; null - перестройки нет. Под changesLock
+    private Set<Long> changedDuringRebuild;
+
+    /**
+     * @param changesLock блокировка владельца, под которой события меняют текущую структуру (reentrant)
+     * @param rebuild     перестройка владельца (обычно его synchronized rebuild())
+     */
+    BackgroundRebuilder(String threadName, Lock changesLock, Runnable rebuild) {
+        this.threadName = threadName;
+        this.changesLock = changesLock;
+        this.rebuild = rebuild;
+    }
+
+    void request() {
+        requested.set(true);
+        if (running.compareAndSet(false, true)) {
+            Thread builder = new Thread(this::rebuildInBackground, threadName);
+            builder.setDaemon(true);
+            builder.start();
+        }
+    }
+
+    /**
+     * Могли быть пропущены изменения: перестроить фоном, до этого работает прежняя структура
+     */
+    void invalidate() {
+        stale = true;
+        request();
+    }
+
+    void requestIfStale() {
+        if (stale && !running.get()) {
+            request();
+        }
+    }
+
+    /**
+     * Запомнить изменение для идущей перестройки
+     */
+    void markChanged(Long postId) {
+        changesLock.lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(postId);
+            }
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    /**
+     * Построить новую структуру и подменить ею текущую
+     *
+     * @param load    чтение всей БД в новую структуру
+     * @param reload  перечитать один пост в новую структуру (без блокировки: ее еще никто не видит)
+     * @param publish подмена, выполняется под changesLock
+     */
+    <T> void rebuild(Supplier<T> load, BiConsumer<T, Long> reload, Consumer<T> publish) {
+        RoutingContext.onPrimary(() -> rebuildOnPrimary(load, reload, publish));
+    }
+
+    private <T> void rebuildOnPrimary(Supplier<T> load, BiConsumer<T, Long> reload, Consumer<T> publish) {
+        changesLock.lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+            stale = false;
+        } finally {
+            changesLock.unlock();
+        }
+
+        try {
+            T fresh = load.get();
+            // Изменения за время чтения могли не попасть в прочитанные строки;
+            // перечитываются, пока за проход не изменилось ничего нового
+            for (;;) {
+                Set<Long> changed;
+                changesLock.lock();
+                try {
+                    changed = changedDuringRebuild;
+                    if (changed.isEmpty()) {
+                        changedDuringRebuild = null;
+                        publish.accept(fresh);
+                        return;
+                    }
+                    changedDuringRebuild = new HashSet<>();
+                } finally {
+                    changesLock.unlock();
+                }
+                for (Long postId : changed) {
+                    reload.accept(fresh, postId);
+                }
+            }
+        } catch (RuntimeException e) {
+            changesLock.lock();
+            try {
+                changedDuringRebuild = null;
+                stale = true;
+            } finally {
+                changesLock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void rebuildInBackground() {
+        try {
+            while (requested.getAndSet(false)) {
+                try {
+                    rebuild.run();
+                } catch (DataAccessException e) {
+                    // Например, таблиц еще нет: построится при первом обращении
+                    log.warn("Background rebuild {} skipped: {}", threadName, e.getMessage());
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+        // Запрос мог прийти между последней проверкой и сбросом флага
+        if (requested.get()) {
+            request();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package ru.yandex.practicum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import ru.yandex.practicum.dto.BatchOperation;
+import ru.yandex.practicum.dto.BatchRequest;
+import ru.yandex.practicum.dto.BatchResponse;
+import ru.yandex.practicum.dto.BatchResult;
+import ru.yandex.practicum.exception.ErrorResponse;
+import ru.yandex.practicum.exception.IntegrityViolation;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ServiceUnavailableException;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.RoutingContext;
+import ru.yandex.practicum.jdbc.StatementStats;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.web.ClientRateLimits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ✅ Пачка операций одним запросом (POST /api/batch)
+ *
+ * Операции - вызовы PostService / CommentService, результаты - в порядке операций,
+ * каждая со своим HTTP-статусом (как у отдельного запроса).
+ *
+ * - чтения в начале пачки (до первой записи) не зависят от ее записей и выполняются
+ *   параллельно на пуле blog.batch.read-threads (в sticky-окне реплик - по очереди в потоке запроса)
+ * - остальное - по порядку в ОДНОЙ транзакции, на одном соединении: чтения после записи
+ *   видят ее, лайки и комментарии не уходят ни в group commit, ни в асинхронную запись
+ * - atomic=false: каждая операция под своим savepoint, ошибка откатывает только ее
+ * - atomic=true: первая ошибка откатывает всю пачку, остальные операции получают 424
+ * - likePost и createComment тратят токен лимита клиента (ClientRateLimits), как отдельные
+ *   POST .../likes и .../comments; нет токена - 429 у этой операции, она не выполняется
+ *
+ * События сервисов (кеши, read-модель, SSE) срабатывают один раз после commit пачки.
+ */
+@Component
+public class BatchExecutor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchExecutor.class);
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private ClientRateLimits rateLimits;
+
+    @Value("${blog.batch.max-operations:50}")
+    private int maxOperations;
+
+    @Value("${blog.batch.read-threads:4}")
+    private int readThreads;
+
+    private ExecutorService readPool;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (readThreads > 0) {
+            readPool = Executors.newFixedThreadPool(readThreads, runnable -> {
+                Thread thread = new Thread(runnable, "batch-read");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @param client ключ клиента для лимитов лайков и комментариев (null - без лимитов)
+     */
+    public BatchResponse execute(BatchRequest request, String client) {
+        List<BatchOperation> operations = request == null ? null : request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            throw new ValidationException("Operations are required");
+        }
+        if (operations.size() > maxOperations) {
+            throw new ValidationException("At most " + maxOperations + " operations per batch");
+        }
+        boolean atomic = request.isAtomic();
+        metricsRegistry.increment("batch.requests");
+        metricsRegistry.counter("batch.operations").add(operations.size());
+
+        // Некорректная операция не выполняется; в atomic-пачке - отказ всей пачке
+        BatchResult[] results = new BatchResult[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                validate(operations.get(i));
+            } catch (ValidationException e) {
+                if (atomic) {
+                    throw new ValidationException("Operation " + i + ": " + e.getMessage());
+                }
+                results[i] = failure(e);
+            }
+        }
+        chargeRateLimits(operations, results, client);
+
+        int firstWrite = 0;
+        while (firstWrite < operations.size()
+                && (results[firstWrite] != null || isRead(operations.get(firstWrite)))) {
+            firstWrite++;
+        }
+        readInParallel(operations, results, firstWrite);
+
+        int failed = atomic ? firstFailure(results) : -1;
+        if (failed < 0 && firstWrite < operations.size()) {
+            failed = runInTransaction(operations, results, firstWrite, atomic);
+        }
+        if (failed >= 0) {
+            metricsRegistry.increment("batch.rollbacks");
+            markRolledBack(results, failed);
+        }
+        return BatchResponse.builder().results(Arrays.asList(results)).build();
+    }
+
+    private void chargeRateLimits(List<BatchOperation> operations, BatchResult[] results, String client) {
+        for (int i = 0; i < operations.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            String op = operations.get(i).getOp();
+            ClientRateLimits.Kind kind = "likePost".equals(op) ? ClientRateLimits.Kind.LIKES
+                    : "createComment".equals(op) ? ClientRateLimits.Kind.COMMENTS
+                    : null;
+            long waitMillis = kind == null ? 0 : rateLimits.tryAcquire(kind, client);
+            if (waitMillis > 0) {
+                int status = HttpStatus.TOO_MANY_REQUESTS.value();
+                metricsRegistry.increment("batch.errors.status." + status);
+                results[i] = BatchResult.builder()
+                        .status(status)
+                        .error(new ErrorResponse(status, HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                                "Rate limit exceeded, retry in " + waitMillis + " ms"))
+                        .build();
+            }
+        }
+    }
+
+    private void readInParallel(List<BatchOperation> operations, BatchResult[] results, int count) {
+        if (count < 2 || readPool == null || RoutingContext.requiresPrimary()) {
+            for (int i = 0; i < count; i++) {
+                if (results[i] == null) {
+                    results[i] = runCatching(operations.get(i));
+                }
+            }
+            return;
+        }
+        List<CompletableFuture<BatchResult>> reads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BatchOperation operation = operations.get(i);
+            reads.add(results[i] != null ? null
+                    : CompletableFuture.supplyAsync(StatementStats.propagate(() -> runCatching(operation)), readPool));
+        }
+        for (int i = 0; i < count; i++) {
+            if (reads.get(i) != null) {
+                results[i] = reads.get(i).join();
+            }
+        }
+    }
+
+    /**
+     * Операции с from по порядку в одной транзакции; для atomic - индекс операции,
+     * из-за которой пачка откатилась, иначе -1
+     */
+    private int runInTransaction(List<BatchOperation> operations, BatchResult[] results, int from, boolean atomic) {
+        TransactionStatus status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        try {
+            for (int i = from; i < operations.size(); i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                Object savepoint = atomic ? null : status.createSavepoint();
+                try {
+                    results[i] = run(operations.get(i));
+                    if (savepoint != null) {
+                        status.releaseSavepoint(savepoint);
+                    }
+                } catch (RuntimeException e) {
+                    results[i] = failure(e);
+                    if (atomic) {
+                        transactionManager.rollback(status);
+                        return i;
+                    }
+                    status.rollbackToSavepoint(savepoint);
+                }
+            }
+            transactionManager.commit(status);
+            return -1;
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                transactionManager.rollback(status);
+            }
+            throw e;
+        }
+    }
+
+    private BatchResult runCatching(BatchOperation operation) {
+        try {
+            return run(operation);
+        } catch (RuntimeException e) {
+            return failure(e);
+        }
+    }
+
+    private BatchResult run(BatchOperation operation) {
+        Long postId = operation.getPostId();
+        Long commentId = operation.getCommentId();
+        List<String> tags = operation.getTags() != null ? operation.getTags() : List.of();
+        switch (operation.getOp()) {
+            case "getPost":
+                return ok(postService.getPostById(postId).orElseThrow(() -> NotFoundException.post(postId)));
+            case "getComments":
+                return ok(commentService.getCommentsByPostId(postId));
+            case "getComment":
+                return ok(commentService.getCommentByIdAndPostId(commentId, postId)
+                        .orElseThrow(() -> NotFoundException.comment(commentId)));
+            case "createPost":
+                return result(HttpStatus.CREATED, postService.createPost(operation.getTitle(), operation.getText(), tags));
+            case "updatePost":
+                return ok(postService.updatePost(postId, operation.getTitle(), operation.getText(), tags));
+            case "deletePost":
+                postService.deletePost(postId);
+                return ok(null);
+            case "likePost":
+                return ok(postService.incrementLikes(postId));
+            case "createComment":
+                return result(HttpStatus.CREATED, commentService.createComment(postId, operation.getText()));
+            case "updateComment":
+                return ok(commentService.updateComment(commentId, postId, operation.getText()));
+            case "deleteComment":
+                commentService.deleteComment(commentId, postId);
+                return ok(null);
+            default:
+                throw new ValidationException("Unknown operation: " + operation.getOp());
+        }
+    }
+
+    /**
+     * Те же проверки, что у отдельных эндпоинтов PostController
+     */
+    private static void validate(BatchOperation operation) {
+        if (operation == null || operation.getOp() == null) {
+            throw new ValidationException("Operation name is required");
+        }
+        switch (operation.getOp()) {
+            case "getComment":
+            case "deleteComment":
+                requireId(operation.getCommentId(), "commentId");
+                requireId(operation.getPostId(), "postId");
+                break;
+            case "getPost":
+            case "getComments":
+            case "deletePost":
+            case "likePost":
+                requireId(operation.getPostId(), "postId");
+                break;
+            case "createPost":
+                requireText(operation.getTitle(), "title");
+                requireText(operation.getText(), "text");
+                break;
+            case "updatePost":
+                requireId(operation.getPostId(), "postId");
+                if (operation.getTitle() == null || operation.getText() == null) {
+                    throw new ValidationException("title and text are required");
+                }
+                break;
+            case "createComment":
+                requireId(operation.getPostId(), "postId");
+                requireText(operation.getText(), "text");
+                break;
+            case "updateComment":
+                requireId(operation.getCommentId(), "commentId");
+                requireId(operation.getPostId(), "postId");
+                requireText(operation.getText(), "text");
+                break;
+            default:
+                throw new ValidationException("Unknown operation: " + operation.getOp());
+        }
+    }
+
+    private static boolean isRead(BatchOperation operation) {
+        switch (operation.getOp()) {
+            case "getPost":
+            case "getComments":
+            case "getComment":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void requireId(Long id, String name) {
+        if (id == null || id <= 0) {
+            throw new ValidationException(name + " must be positive");
+        }
+    }
+
+    private static void requireText(String value, String name) {
+        if (value == null || value.isEmpty()) {
+            throw new ValidationException(name + " is required");
+        }
+    }
+
+    private static int firstFailure(BatchResult[] results) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null && results[i].getStatus() >= 400) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void markRolledBack(BatchResult[] results, int failed) {
+        for (int i = 0; i < results.length; i++) {
+            if (i != failed) {
+                int status = HttpStatus.FAILED_DEPENDENCY.value();
+                results[i] = BatchResult.builder()
+                        .status(status)
+                        .error(new ErrorResponse(status, "BatchRolledBack",
+                                "Batch rolled back: operation " + failed + " failed"))
+                        .build();
+            }
+        }
+    }
+
+    private static BatchResult ok(Object body) {
+        return result(HttpStatus.OK, body);
+    }
+
+    private static BatchResult result(HttpStatus status, Object body) {
+        return BatchResult.builder().status(status.value()).body(body).build();
+    }
+
+    /**
+     * Статус как в GlobalExceptionHandler для отдельного запроса
+     */
+    private BatchResult failure(RuntimeException e) {
+        HttpStatus status;
+        String message = e.getMessage();
+        if (e instanceof DataIntegrityViolationException) {
+            IntegrityViolation violation = IntegrityViolation.of((DataIntegrityViolationException) e);
+            status = violation.getStatus();
+            message = violation.getMessage();
+        } else if (e instanceof NotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e instanceof ValidationException || e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (e instanceof ServiceUnavailableException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else {
+            log.error("Batch operation failed", e);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "Internal server error";
+        }
+        metricsRegistry.increment("batch.errors.status." + status.value());
+        return BatchResult.builder()
+                .status(status.value())
+                .error(new ErrorResponse(status.value(), e.getClass().getSimpleName(), message))
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        if (readPool != null) {
+            readPool.shutdownNow();
+        }
+    }
+}
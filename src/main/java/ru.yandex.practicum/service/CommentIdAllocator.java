@@ -0,0 +1,52 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.dao.CommentDao;
+
+/**
+ * ✅ id новых комментариев - из блоков последовательности (CommentDao.reserveIdBlock)
+ *
+ * Через него идут и синхронная вставка, и AsyncCommentWriter: AUTO_INCREMENT для
+ * комментариев не используется, поэтому обычная вставка не может занять id из блока,
+ * уже выданного под очередь (и наоборот). Один NEXT VALUE на blog.comments.id-block-size id;
+ * недоиспользованный при остановке хвост блока просто пропадает.
+ *
+ * Блок резервируется в отдельной транзакции: DDL последовательности в H2 завершает текущую,
+ * а откат пачки (POST /api/batch) не должен возвращать уже выданные id.
+ */
+@Component
+public class CommentIdAllocator implements InitializingBean {
+
+    @Autowired
+    private CommentDao commentDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${blog.comments.id-block-size:1000}")
+    private int blockSize;
+
+    private TransactionTemplate reserveTransaction;
+    private long nextId;
+    private long blockEnd;
+
+    @Override
+    public void afterPropertiesSet() {
+        reserveTransaction = new TransactionTemplate(transactionManager);
+        reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized long nextId() {
+        if (nextId == blockEnd) {
+            nextId = reserveTransaction.execute(status -> commentDao.reserveIdBlock(blockSize));
+            blockEnd = nextId + blockSize;
+        }
+        return nextId++;
+    }
+}
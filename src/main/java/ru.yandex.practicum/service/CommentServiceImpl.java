@@ -1,9 +1,16 @@
 package ru.yandex.practicum.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.dao.CommentDao;
 import ru.yandex.practicum.dto.CommentDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.GroupCommitExecutor;
 import ru.yandex.practicum.model.Comment;
 
 import java.util.List;
@@ -16,8 +23,17 @@ import java.util.stream.StreamSupport;
 public class CommentServiceImpl implements CommentService {
     @Autowired
     private CommentDao commentDao;
+    @Autowired
+    private GroupCommitExecutor groupCommitExecutor;
+    @Autowired
+    private AsyncCommentWriter asyncCommentWriter;
+    @Autowired
+    private CommentIdAllocator commentIdAllocator;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional(readOnly = true)
     public List<CommentDto> getCommentsByPostId(Long postId) {
         return StreamSupport.stream(commentDao.findAllByPostId(postId).spliterator(), false)
                 .map(this::convertToDto)
@@ -25,6 +41,7 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<CommentDto> getCommentByIdAndPostId(Long commentId, Long postId) {
         return commentDao.findByIdAndPostId(commentId, postId)
                 .map(this::convertToDto);
@@ -33,31 +50,46 @@ public class CommentServiceImpl implements CommentService {
     @Override
     public CommentDto createComment(Long postId, String text) {
         if (text == null || text.isEmpty())
-            throw new IllegalArgumentException("Text is required");
+            throw new ValidationException("Text is required");
 
-        Comment comment = new Comment(null, postId, text);
-        Comment saved = commentDao.save(comment);
-
-        if (saved.getId() == null) {
-            throw new RuntimeException("Failed to save comment - no ID generated");
+        // Внутри чужой транзакции (пачка /api/batch) - только синхронная вставка:
+        // фоновая прошла бы мимо ее отката и могла опередить commit нового поста
+        if (asyncCommentWriter.isEnabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            // id выдается сразу, сама вставка - пачкой в фоне
+            return convertToDto(asyncCommentWriter.submit(postId, text));
         }
 
+        // id из тех же блоков, что у асинхронной записи: AUTO_INCREMENT не пересечется с ними
+        Comment comment = new Comment(commentIdAllocator.nextId(), postId, text);
+        // Комментарии частые и мелкие: commit общий с другими комментариями/лайками
+        Comment saved = groupCommitExecutor.execute(() -> {
+            commentDao.saveAll(List.of(comment));
+            return comment;
+        });
+
+        eventPublisher.publishEvent(new CommentEvent(CommentEvent.Type.CREATED, postId, saved.getId(), saved.getText()));
         return convertToDto(saved);
     }
 
     @Override
+    @Transactional
     public CommentDto updateComment(Long commentId, Long postId, String text) {
         Comment comment = commentDao.findByIdAndPostId(commentId, postId)
-                .orElseThrow(() -> new RuntimeException("Comment not found"));
+                .orElseThrow(() -> NotFoundException.comment(commentId));
 
         comment.setText(text);
         Comment updated = commentDao.save(comment);
+        eventPublisher.publishEvent(new CommentEvent(CommentEvent.Type.UPDATED, postId, commentId, text));
         return convertToDto(updated);
     }
 
     @Override
+    @Transactional
     public void deleteComment(Long commentId, Long postId) {
-        commentDao.deleteByIdAndPostId(commentId, postId);
+        // Повтор DELETE или чужой id ничего не удалил: событие -1 исказило бы счетчики read-модели
+        if (commentDao.deleteByIdAndPostId(commentId, postId)) {
+            eventPublisher.publishEvent(new CommentEvent(CommentEvent.Type.DELETED, postId, commentId, null));
+        }
     }
 
     private CommentDto convertToDto(Comment comment) {
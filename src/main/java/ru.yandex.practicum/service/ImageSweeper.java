@@ -0,0 +1,151 @@
+package ru.yandex.practicum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.dao.ImageDao;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Фоновая уборка изображений, на которые больше не ссылается ни один пост
+ *
+ * Удаление поста или замена изображения только уменьшают ref_count (в транзакции сервиса).
+ * Строка удаляется здесь, если ссылок нет дольше blog.images.sweep.grace-ms:
+ * изображение, которое тут же загрузили снова, не приходится записывать заново.
+ *
+ * При шардировании перед уборкой ref_count сверяется с фактическими ссылками постов всех
+ * шардов (commit шардов не атомарен, см. ImageDao):
+ * - ref_count меньше числа ссылок - поднимается сразу: лишняя ссылка ничего не теряет,
+ *   а изображение, на которое ссылается пост, не будет удалено
+ * - ref_count больше - снижается, только если то же расхождение было и на прошлом проходе
+ *   (транзакция, которая сейчас в середине commit, выглядит так же, но успевает завершиться)
+ * - пост ссылается на изображение, которого нет (сбой между commit шарда поста и шарда 0),
+ *   - ошибка в лог и метрика images.dangling: байты изображения не сохранились
+ */
+@Component
+public class ImageSweeper implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageSweeper.class);
+
+    @Autowired
+    private ImageDao imageDao;
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private ShardSet shardSet;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.images.sweep.interval-ms:60000}")
+    private long intervalMillis;
+
+    @Value("${blog.images.sweep.grace-ms:60000}")
+    private long graceMillis;
+
+    private ScheduledExecutorService scheduler;
+    // Расхождения прошлого прохода: hash → [ref_count, ссылок]
+    private Map<String, List<Integer>> previousMismatches = new HashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweepInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Удалить изображения без ссылок; возвращает число удаленных
+     */
+    public int sweep() {
+        if (shardSet.isSharded()) {
+            repairReferences();
+        }
+        int deleted = imageDao.deleteUnreferenced(Instant.now().minusMillis(graceMillis));
+        metricsRegistry.counter("images.swept").add(deleted);
+        return deleted;
+    }
+
+    /**
+     * Сверить ref_count с фактическими ссылками постов (см. описание класса)
+     */
+    synchronized void repairReferences() {
+        Map<String, Integer> refCounts = imageDao.findRefCounts();
+        Map<String, Integer> references = postDao.countImageReferences();
+        Set<String> hashes = new HashSet<>(refCounts.keySet());
+        hashes.addAll(references.keySet());
+
+        Map<String, List<Integer>> mismatches = new HashMap<>();
+        for (String hash : hashes) {
+            Integer refCount = refCounts.get(hash);
+            int actual = references.getOrDefault(hash, 0);
+            if (refCount == null) {
+                List<Integer> mismatch = Arrays.asList(null, actual);
+                if (mismatch.equals(previousMismatches.get(hash))) {
+                    metricsRegistry.increment("images.dangling");
+                    log.error("Image {} is referenced by {} posts but was never stored", hash, actual);
+                }
+                mismatches.put(hash, mismatch);
+            } else if (refCount < actual) {
+                if (imageDao.correctRefCount(hash, refCount, actual)) {
+                    metricsRegistry.increment("images.repaired");
+                    log.warn("Image {} ref_count raised from {} to {}", hash, refCount, actual);
+                }
+            } else if (refCount > actual) {
+                List<Integer> mismatch = List.of(refCount, actual);
+                if (mismatch.equals(previousMismatches.get(hash))
+                        && imageDao.correctRefCount(hash, refCount, actual)) {
+                    metricsRegistry.increment("images.repaired");
+                    log.warn("Image {} ref_count lowered from {} to {}", hash, refCount, actual);
+                } else {
+                    mismatches.put(hash, mismatch);
+                }
+            }
+        }
+        previousMismatches = mismatches;
+    }
+
+    private void sweepInBackground() {
+        try {
+            int deleted = sweep();
+            if (deleted > 0) {
+                log.info("Image sweep removed {} unreferenced images", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Image sweep failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
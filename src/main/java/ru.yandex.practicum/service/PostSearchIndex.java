@@ -0,0 +1,239 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.search.Bm25Index;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ✅ Поиск постов для GET /api/posts?search=
+ *
+ * - Bm25Index строится из БД при первом поиске, дальше обновляется событиями
+ *   создания/изменения/удаления поста (после commit)
+ * - InvalidateAllEvent перестраивает индекс фоном (BackgroundRebuilder): посты читаются
+ *   пачками по ключу id в новый Bm25Index, поиск до подмены идет по прежнему; посты,
+ *   изменившиеся за время чтения БД, перечитываются перед подменой
+ * - ранжированный список id (до blog.search.max-results) кешируется на запрос;
+ *   поиск с явной сортировкой упорядочивает в БД этот же список
+ *   на blog.search.cache-ttl-ms: следующие страницы того же поиска не пересчитывают оценки.
+ *   Любое изменение индекса делает закешированные списки устаревшими.
+ */
+@Component
+public class PostSearchIndex implements InitializingBean {
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.search.k1:1.2}")
+    private double k1;
+
+    @Value("${blog.search.b:0.75}")
+    private double b;
+
+    @Value("${blog.search.title-boost:2.0}")
+    private double titleBoost;
+
+    @Value("${blog.search.max-results:1000}")
+    private int maxResults;
+
+    @Value("${blog.search.cache-ttl-ms:30000}")
+    private long cacheTtlMillis;
+
+    @Value("${blog.search.cache-max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${blog.search.batch-size:500}")
+    private int batchSize;
+
+    // Подмена индекса и отметка изменений для идущей перестройки
+    private final Lock changesLock = new ReentrantLock();
+    private final BackgroundRebuilder rebuilder =
+            new BackgroundRebuilder("post-search-build", changesLock, this::rebuild);
+    // null - еще не построен
+    private volatile Bm25Index index;
+    private final Map<String, CachedRanking> rankings = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        metricsRegistry.gauge("search.documents", () -> {
+            Bm25Index current = index;
+            return current == null ? 0 : current.size();
+        });
+        metricsRegistry.gauge("search.terms", () -> {
+            Bm25Index current = index;
+            return current == null ? 0 : current.termCount();
+        });
+    }
+
+    /**
+     * Лучшие посты по релевантности (не больше blog.search.max-results)
+     */
+    public Bm25Index.Ranking ranked(String query) {
+        Bm25Index current = index;
+        if (current == null) {
+            current = buildIfMissing();
+        } else {
+            rebuilder.requestIfStale();
+        }
+        String key = String.join(" ", Bm25Index.tokenize(query));
+        long version = current.version();
+        long now = System.currentTimeMillis();
+
+        CachedRanking cached = rankings.get(key);
+        if (cached != null && cached.isValid(current, version, now)) {
+            metricsRegistry.increment("search.cache.hit");
+            return cached.ranking;
+        }
+        metricsRegistry.increment("search.cache.miss");
+
+        Bm25Index.Ranking ranking = current.top(query, maxResults);
+        if (rankings.size() >= cacheMaxEntries) {
+            evictExpired(current, version, now);
+        }
+        if (rankings.size() < cacheMaxEntries) {
+            rankings.put(key, new CachedRanking(ranking, current, version, now + cacheTtlMillis));
+        }
+        return ranking;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        Long postId = event.getPostId();
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                if (markChanged(postId)) {
+                    // БД читается без блокировок: поиск и перестройка ее не ждут
+                    apply(postId, postDao.findById(postId));
+                }
+                break;
+            case DELETED:
+                if (markChanged(postId)) {
+                    apply(postId, Optional.empty());
+                }
+                break;
+            default:
+                // Лайки и картинки на текст не влияют
+                break;
+        }
+    }
+
+    /**
+     * Индекс мог пропустить изменения: перестроится из БД фоном, до этого поиск идет по прежнему
+     */
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        rankings.clear();
+        rebuilder.invalidate();
+    }
+
+    /**
+     * Перечитать посты из БД в новый индекс и подменить им текущий: пачками по
+     * blog.search.batch-size по возрастанию id (по ключу, без OFFSET), с полным text:
+     * колонки ленты отдают вместо него только text_preview.
+     * Текущий индекс до подмены продолжает отвечать на поиск и получать события
+     */
+    public synchronized void rebuild() {
+        rebuilder.<Bm25Index>rebuild(this::load,
+                (fresh, postId) -> reload(fresh, postId, postDao.findById(postId)),
+                fresh -> index = fresh);
+        rankings.clear();
+        metricsRegistry.increment("search.rebuilds");
+    }
+
+    private Bm25Index load() {
+        Bm25Index fresh = new Bm25Index(k1, b, titleBoost);
+        long lastId = 0;
+        for (;;) {
+            List<Post> posts = postDao.findDetailsPageAfterId(lastId, batchSize);
+            for (Post post : posts) {
+                fresh.put(post.getId(), post.getTitle(), post.getText());
+                lastId = post.getId();
+            }
+            if (posts.size() < batchSize) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Первый поиск до построения: строит индекс сам, остальные ждут его
+     */
+    private synchronized Bm25Index buildIfMissing() {
+        if (index == null) {
+            rebuild();
+        }
+        return index;
+    }
+
+    /**
+     * Запомнить изменение для идущей перестройки; false - индекса еще нет и обновлять нечего
+     */
+    private boolean markChanged(Long postId) {
+        changesLock.lock();
+        try {
+            rebuilder.markChanged(postId);
+            return index != null;
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    private void apply(Long postId, Optional<Post> post) {
+        // Подмена могла случиться после markChanged: тогда перестройка уже перечитала пост
+        reload(index, postId, post);
+    }
+
+    private static void reload(Bm25Index target, Long postId, Optional<Post> post) {
+        post.ifPresentOrElse(
+                found -> target.put(found.getId(), found.getTitle(), found.getText()),
+                () -> target.remove(postId));
+    }
+
+    private void evictExpired(Bm25Index current, long version, long now) {
+        Iterator<CachedRanking> iterator = rankings.values().iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isValid(current, version, now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class CachedRanking {
+        private final Bm25Index.Ranking ranking;
+        // Версии нового индекса начинаются заново: сравнивается и сам индекс
+        private final Bm25Index index;
+        private final long version;
+        private final long expiresAt;
+
+        CachedRanking(Bm25Index.Ranking ranking, Bm25Index index, long version, long expiresAt) {
+            this.ranking = ranking;
+            this.index = index;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(Bm25Index current, long version, long now) {
+            return index == current && this.version == version && expiresAt > now;
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package ru.yandex.practicum.service;
 
+import ru.yandex.practicum.dao.PostSort;
 import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.dto.PostsByIdsResponse;
 import ru.yandex.practicum.dto.PostsResponse;
+import ru.yandex.practicum.model.Image;
 
+import java.io.InputStream;
 import java.util.Optional;
 
 public interface PostService {
-    PostsResponse getAllPosts(String search, int pageNumber, int pageSize);
+    PostsResponse getAllPosts(String search, int pageNumber, int pageSize, PostSort sort);
 
     Optional<PostDetailDto> getPostById(Long id);
 
+    /**
+     * Несколько постов целиком (как getPostById) за два запроса: посты и их теги
+     */
+    PostsByIdsResponse getPostsByIds(java.util.List<Long> ids);
+
     PostDetailDto createPost(String title, String text, java.util.List<String> tags);
 
     PostDetailDto updatePost(Long id, String title, String text, java.util.List<String> tags);
@@ -18,7 +27,10 @@ public interface PostService {
 
     Integer incrementLikes(Long id);
 
-    void saveImage(Long postId, byte[] imageData);
+    /**
+     * Изображение из потока загрузки: в память читается только буфер, не весь файл
+     */
+    void saveImage(Long postId, InputStream imageData);
 
-    Optional<byte[]> getImage(Long postId);
+    Optional<Image> getImage(Long postId);
 }
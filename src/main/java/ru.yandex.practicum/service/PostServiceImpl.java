@@ -1,52 +1,111 @@
 package ru.yandex.practicum.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.dao.CommentDao;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.dao.ImageDao;
 import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostSort;
 import ru.yandex.practicum.dao.PostTagDao;
 import ru.yandex.practicum.dto.PostDetailDto;
 import ru.yandex.practicum.dto.PostListItemDto;
+import ru.yandex.practicum.dto.PostsByIdsResponse;
 import ru.yandex.practicum.dto.PostsResponse;
-import ru.yandex.practicum.model.Comment;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.GroupCommitExecutor;
+import ru.yandex.practicum.model.Image;
 import ru.yandex.practicum.model.Post;
 import ru.yandex.practicum.model.PostTag;
 
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class PostServiceImpl implements PostService {
+    static final int PREVIEW_LENGTH = 128;
+
     @Autowired
     private PostDao postDao;
     @Autowired
     private PostTagDao postTagDao;
     @Autowired
-    private CommentDao commentDao;
+    private ImageDao imageDao;
+    @Autowired
+    private GroupCommitExecutor groupCommitExecutor;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private SingleFlight singleFlight;
+    @Autowired
+    private PostSearchIndex searchIndex;
+    @Autowired
+    private PostSummaryStore summaryStore;
+
+    @Value("${blog.images.max-upload-bytes:5242880}")
+    private long maxImageBytes;
 
+    // Транзакцию чтения списка и поста открывает SingleFlight (одну на все одинаковые запросы)
     @Override
-    public PostsResponse getAllPosts(String search, int pageNumber, int pageSize) {
-        if (pageNumber < 1) pageNumber = 1;
-        if (pageSize < 1 || pageSize > 100) pageSize = 10;
-
-        List<Post> allPosts = StreamSupport.stream(postDao.findAll().spliterator(), false)
-                .filter(p -> search == null || search.isEmpty() ||
-                        p.getTitle().toLowerCase().contains(search.toLowerCase()) ||
-                        p.getText().toLowerCase().contains(search.toLowerCase()))
-                .collect(Collectors.toList());
+    public PostsResponse getAllPosts(String search, int pageNumber, int pageSize, PostSort sort) {
+        int page = pageNumber < 1 ? 1 : pageNumber;
+        int size = pageSize < 1 || pageSize > 100 ? 10 : pageSize;
+        return singleFlight.execute("posts.list", Arrays.asList(search, page, size, sort),
+                () -> loadPosts(search, page, size, sort));
+    }
+
+    private PostsResponse loadPosts(String search, int pageNumber, int pageSize, PostSort sort) {
+        long totalCount;
+        List<Post> pagedPosts;
+        // long: pageNumber из запроса может быть любым int; за последней страницей - пустая без запроса страницы
+        long start = (long) (pageNumber - 1) * pageSize;
+
+        if (search == null || search.isEmpty()) {
+            // Лента без поиска - из read-модели в памяти, без запросов к БД
+            Optional<PostSummaryStore.Page> summaries = summaryStore.page(sort, start, pageSize);
+            if (summaries.isPresent()) {
+                return toPostsResponse(summaries.get().getPosts(), summaries.get().getTotalCount(), pageNumber, pageSize);
+            }
 
-        long totalCount = allPosts.size();
-        int start = (pageNumber - 1) * pageSize;
-        int end = Math.min(start + pageSize, allPosts.size());
+            // Без поиска страница читается по индексу сортировки: O(pageSize), а не вся таблица
+            totalCount = postDao.count();
+            pagedPosts = start >= totalCount ? new ArrayList<>() : postDao.findPage(sort, pageSize, start);
+        } else if (sort == PostSort.ID) {
+            // Поиск без явной сортировки - по релевантности; id страниц берутся из закешированного рейтинга
+            List<Long> rankedIds = searchIndex.ranked(search).getIds();
+            totalCount = rankedIds.size();
+            pagedPosts = start >= rankedIds.size() ? new ArrayList<>()
+                    : postDao.findAllByIds(rankedIds.subList((int) start, (int) Math.min(start + pageSize, rankedIds.size())));
+        } else {
+            // Явная сортировка: те же лучшие по релевантности id (не больше blog.search.max-results),
+            // порядок и страница - ORDER BY ... LIMIT/OFFSET в БД, без загрузки и сортировки всех совпадений
+            List<Long> rankedIds = searchIndex.ranked(search).getIds();
+            totalCount = rankedIds.size();
+            pagedPosts = start >= rankedIds.size() ? new ArrayList<>()
+                    : postDao.findPageByIds(rankedIds, sort, pageSize, start);
+        }
 
-        List<Post> pagedPosts = allPosts.isEmpty() ? new ArrayList<>() : allPosts.subList(start, end);
+        // Теги всей страницы - одним запросом, а не по запросу на пост
+        Map<Long, List<String>> tagsByPost = tagsByPost(pagedPosts.stream().map(Post::getId).collect(Collectors.toList()));
         List<PostListItemDto> postDtos = pagedPosts.stream()
-                .map(this::convertToListItemDto)
+                .map(post -> convertToListItemDto(post, tagsByPost.getOrDefault(post.getId(), new ArrayList<>())))
                 .collect(Collectors.toList());
+        return toPostsResponse(postDtos, totalCount, pageNumber, pageSize);
+    }
 
+    private PostsResponse toPostsResponse(List<PostListItemDto> postDtos, long totalCount, int pageNumber, int pageSize) {
         int lastPage = Math.max(1, (int) Math.ceil((double) totalCount / pageSize));
 
         return PostsResponse.builder()
@@ -60,17 +119,43 @@ public class PostServiceImpl implements PostService {
     @Override
     public Optional<PostDetailDto> getPostById(Long id) {
         if (id == null || id <= 0) return Optional.empty();
-        return postDao.findById(id).map(this::convertToDetailDto);
+        return singleFlight.execute("posts.detail", id,
+                () -> postDao.findById(id).map(this::convertToDetailDto));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public PostsByIdsResponse getPostsByIds(List<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Post> posts = postDao.findDetailsByIds(distinctIds);
+
+        Map<Long, List<String>> tagsByPost = tagsByPost(distinctIds);
+        Set<Long> found = new HashSet<>();
+        List<PostDetailDto> postDtos = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            found.add(post.getId());
+            postDtos.add(convertToDetailDto(post, tagsByPost.getOrDefault(post.getId(), new ArrayList<>())));
+        }
+        List<Long> missing = distinctIds.stream()
+                .filter(id -> !found.contains(id))
+                .collect(Collectors.toList());
+
+        return PostsByIdsResponse.builder()
+                .posts(postDtos)
+                .missing(missing)
+                .build();
+    }
+
+    @Override
+    @Transactional
     public PostDetailDto createPost(String title, String text, List<String> tags) {
         if (title == null || text == null || title.isEmpty() || text.isEmpty())
-            throw new IllegalArgumentException("Title and text are required");
+            throw new ValidationException("Title and text are required");
 
         Post post = Post.builder()
                 .title(title)
                 .text(text)
+                .textPreview(textPreview(text))
                 .likesCount(0)
                 .build();
 
@@ -86,18 +171,21 @@ public class PostServiceImpl implements PostService {
             }
         }
 
+        eventPublisher.publishEvent(new PostEvent(PostEvent.Type.CREATED, savedPost.getId()));
         return convertToDetailDto(savedPost);
     }
 
     @Override
+    @Transactional
     public PostDetailDto updatePost(Long id, String title, String text, List<String> tags) {
-        if (id == null || id <= 0) throw new IllegalArgumentException("Invalid post ID");
+        if (id == null || id <= 0) throw new ValidationException("Invalid post ID");
 
         Post existingPost = postDao.findById(id)
-                .orElseThrow(() -> new RuntimeException("Post not found"));
+                .orElseThrow(() -> NotFoundException.post(id));
 
         existingPost.setTitle(title);
         existingPost.setText(text);
+        existingPost.setTextPreview(textPreview(text));
         Post updatedPost = postDao.save(existingPost);
 
         postTagDao.deleteByPostId(id);
@@ -107,61 +195,102 @@ public class PostServiceImpl implements PostService {
             }
         }
 
+        eventPublisher.publishEvent(new PostEvent(PostEvent.Type.UPDATED, id));
         return convertToDetailDto(updatedPost);
     }
 
     @Override
+    @Transactional
     public void deletePost(Long id) {
-        if (id == null || id <= 0) throw new IllegalArgumentException("Invalid post ID");
+        if (id == null || id <= 0) throw new ValidationException("Invalid post ID");
 
-        List<Comment> comments = commentDao.findAllByPostId(id);
-        for (Comment comment : comments) {
-            commentDao.deleteById(comment.getId());
-        }
+        // Ссылка снимается до удаления строки: параллельная замена изображения ее не потеряет
+        String imageHash = postDao.findById(id)
+                .map(post -> swapImageHash(id, post.getImageHash(), null))
+                .orElse(null);
 
-        postTagDao.deleteByPostId(id);
+        // Комментарии и теги удаляются каскадом (ON DELETE CASCADE, на том же шарде, что и пост)
         postDao.deleteById(id);
+        if (imageHash != null) {
+            imageDao.releaseReference(imageHash);
+        }
+        eventPublisher.publishEvent(new PostEvent(PostEvent.Type.DELETED, id));
     }
 
     @Override
     public Integer incrementLikes(Long id) {
-        Post post = postDao.findById(id)
-                .orElseThrow(() -> new RuntimeException("Post not found"));
-
-        post.setLikesCount((post.getLikesCount() == null ? 0 : post.getLikesCount()) + 1);
-        Post updated = postDao.save(post);
-        return updated.getLikesCount();
+        // Лайки частые и мелкие: commit общий с другими лайками/комментариями
+        // UPDATE likes_count = likes_count + 1: параллельные лайки и правка поста друг друга не затирают
+        Integer likesCount = groupCommitExecutor.execute(() -> postDao.incrementLikes(id)
+                .orElseThrow(() -> NotFoundException.post(id)));
+        eventPublisher.publishEvent(new PostEvent(PostEvent.Type.LIKED, id));
+        return likesCount;
     }
 
     @Override
-    public void saveImage(Long postId, byte[] imageData) {
+    @Transactional
+    public void saveImage(Long postId, InputStream imageData) {
         Post post = postDao.findById(postId)
-                .orElseThrow(() -> new RuntimeException("Post not found"));
-        post.setImage(imageData);
-        postDao.save(post);
+                .orElseThrow(() -> NotFoundException.post(postId));
+        // Байты идут из запроса в images по мере чтения, хеш - по пути
+        String hash = imageDao.addReference(imageData, maxImageBytes);
+        String previous = swapImageHash(postId, post.getImageHash(), hash);
+        if (previous != null) {
+            // То же изображение еще раз: снимается лишняя ссылка, добавленная выше
+            imageDao.releaseReference(previous);
+        }
+        eventPublisher.publishEvent(new PostEvent(PostEvent.Type.IMAGE_CHANGED, postId));
     }
 
     @Override
-    public Optional<byte[]> getImage(Long postId) {
+    @Transactional(readOnly = true)
+    public Optional<Image> getImage(Long postId) {
         return postDao.findById(postId)
-                .map(Post::getImage)
-                .filter(img -> img != null && img.length > 0);
+                .map(Post::getImageHash)
+                .flatMap(hash -> imageDao.findData(hash).map(data -> new Image(hash, data)))
+                .filter(image -> image.getData().length > 0);
     }
 
-    private PostListItemDto convertToListItemDto(Post post) {
-        String truncatedText = post.getText();
-        if (truncatedText.length() > 128) {
-            truncatedText = truncatedText.substring(0, 128) + "…";
+    /**
+     * Сменить ссылку поста на изображение, если ее не поменяли параллельно; возвращает прежнюю
+     */
+    private String swapImageHash(Long postId, String expected, String imageHash) {
+        String previous = expected;
+        while (!postDao.replaceImageHash(postId, previous, imageHash)) {
+            previous = postDao.findById(postId)
+                    .orElseThrow(() -> NotFoundException.post(postId))
+                    .getImageHash();
         }
+        return previous;
+    }
 
-        List<String> tags = postTagDao.findAllByPostId(post.getId())
-                .stream()
-                .map(PostTag::getTag)
-                .collect(Collectors.toList());
+    /**
+     * Текст для ленты: первые PREVIEW_LENGTH символов и "…", если текст длиннее.
+     * Считается при записи поста и хранится в text_preview
+     */
+    static String textPreview(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > PREVIEW_LENGTH ? text.substring(0, PREVIEW_LENGTH) + "…" : text;
+    }
 
-        int commentsCount = (int) StreamSupport.stream(
-                commentDao.findAllByPostId(post.getId()).spliterator(), false
-        ).count();
+    /**
+     * Теги нескольких постов одним запросом
+     */
+    private Map<Long, List<String>> tagsByPost(List<Long> postIds) {
+        Map<Long, List<String>> tagsByPost = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return tagsByPost;
+        }
+        for (PostTag tag : postTagDao.findAllByPostIds(postIds)) {
+            tagsByPost.computeIfAbsent(tag.getPostId(), id -> new ArrayList<>()).add(tag.getTag());
+        }
+        return tagsByPost;
+    }
+
+    private static PostListItemDto convertToListItemDto(Post post, List<String> tags) {
+        String truncatedText = post.getTextPreview() != null ? post.getTextPreview() : textPreview(post.getText());
 
         return PostListItemDto.builder()
                 .id(post.getId())
@@ -169,7 +298,7 @@ public class PostServiceImpl implements PostService {
                 .text(truncatedText)
                 .tags(tags)
                 .likesCount(post.getLikesCount() == null ? 0 : post.getLikesCount())
-                .commentsCount(commentsCount)
+                .commentsCount(post.getCommentsCount() == null ? 0 : post.getCommentsCount())
                 .build();
     }
 
@@ -178,18 +307,17 @@ public class PostServiceImpl implements PostService {
                 .stream()
                 .map(PostTag::getTag)
                 .collect(Collectors.toList());
+        return convertToDetailDto(post, tags);
+    }
 
-        int commentsCount = (int) StreamSupport.stream(
-                commentDao.findAllByPostId(post.getId()).spliterator(), false
-        ).count();
-
+    private static PostDetailDto convertToDetailDto(Post post, List<String> tags) {
         return PostDetailDto.builder()
                 .id(post.getId())
                 .title(post.getTitle())
                 .text(post.getText())
                 .tags(tags)
                 .likesCount(post.getLikesCount() == null ? 0 : post.getLikesCount())
-                .commentsCount(commentsCount)
+                .commentsCount(post.getCommentsCount() == null ? 0 : post.getCommentsCount())
                 .build();
     }
 }
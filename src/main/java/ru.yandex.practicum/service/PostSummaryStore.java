@@ -0,0 +1,636 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dto.PostListItemDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ✅ Read-модель ленты: то, что нужно странице GET /api/posts без поиска, в памяти
+ *
+ * Хранение по колонкам (Columns): long[] id и дат, int[] лайков и комментариев, массивы
+ * заголовков, превью и списков тегов (строки тегов интернированы). Строка поста - номер слота,
+ * id → слот - open addressing по long[] без объектов на запись; удаление переносит
+ * последний слот на место удаленного.
+ *
+ * Порядки ленты - int[] слотов, отсортированные по колонкам, и обратные им int[] позиций.
+ * Полная сортировка - только при построении; событие сдвигает в порядках один слот:
+ * лайк - на число постов, которые он обогнал, новый или удаленный пост - arraycopy хвоста.
+ * Страница - проход по отрезку порядка под read-блокировкой: страницы читаются параллельно,
+ * ни Post, ни запросов к БД, на строку - только DTO ответа.
+ *
+ * Строится из БД фоном при старте (не вышло - при первой странице), дальше обновляется
+ * событиями сервисов после commit - раньше JsonResponseCache (@Order), чтобы сброшенный кеш
+ * не заполнился старой страницей; пост и теги событие читает из БД до write-блокировки.
+ * Записи в обход сервисов видны после rebuild().
+ * InvalidateAllEvent перестраивает колонки фоном (BackgroundRebuilder), страницы до конца
+ * отдаются из прежних; посты, изменившиеся за время чтения БД, перечитываются перед подменой.
+ */
+@Component
+public class PostSummaryStore implements InitializingBean {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final PostSort[] SORTS = PostSort.values();
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private PostTagDao postTagDao;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.read-model.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.read-model.batch-size:500}")
+    private int batchSize;
+
+    // Страницы - под read-, события и подмена колонок - под write-блокировкой
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BackgroundRebuilder rebuilder =
+            new BackgroundRebuilder("post-summary-build", lock.writeLock(), this::rebuild);
+    // null - еще не построены
+    private volatile Columns columns;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        metricsRegistry.gauge("read-model.posts", () -> {
+            Columns current = columns;
+            return current == null ? 0 : current.size;
+        });
+        rebuilder.request();
+    }
+
+    /**
+     * Страница ленты; пустой Optional - read-модель выключена (читать из БД)
+     */
+    public Optional<Page> page(PostSort sort, long offset, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Columns current = columns;
+        if (current == null) {
+            current = buildIfMissing();
+        } else {
+            rebuilder.requestIfStale();
+        }
+        lock.readLock().lock();
+        try {
+            metricsRegistry.increment("read-model.pages");
+            return Optional.of(current.page(sort, offset, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Long postId = event.getPostId();
+        boolean reread = event.getType() == PostEvent.Type.CREATED || event.getType() == PostEvent.Type.UPDATED;
+        // БД читается до write-блокировки: страницы не ждут запросов события
+        Post post = reread ? postDao.findById(postId).orElse(null) : null;
+        List<PostTag> postTags = post != null ? postTagDao.findAllByPostId(postId) : List.of();
+        lock.writeLock().lock();
+        try {
+            rebuilder.markChanged(postId);
+            Columns current = columns;
+            if (current == null) {
+                return;
+            }
+            switch (event.getType()) {
+                case CREATED:
+                case UPDATED:
+                    if (post != null) {
+                        current.edit(post, postTags);
+                    } else {
+                        current.remove(postId);
+                    }
+                    break;
+                case DELETED:
+                    current.remove(postId);
+                    break;
+                case LIKED:
+                    current.addLikes(postId, 1);
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        int delta = event.getType() == CommentEvent.Type.CREATED ? 1
+                : event.getType() == CommentEvent.Type.DELETED ? -1 : 0;
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            rebuilder.markChanged(event.getPostId());
+            Columns current = columns;
+            if (current != null) {
+                current.addComments(event.getPostId(), delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Могли быть пропущены изменения: перестроится из БД фоном, до этого - прежние колонки
+     */
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        rebuilder.invalidate();
+    }
+
+    /**
+     * Перечитать все из БД в новые колонки и подменить ими текущие: посты пачками
+     * по blog.read-model.batch-size по возрастанию id (по ключу, без OFFSET), теги одним запросом.
+     * Текущие колонки до подмены продолжают отдавать страницы и получать события
+     */
+    public synchronized void rebuild() {
+        rebuilder.<Columns>rebuild(this::load, (fresh, postId) -> {
+            Post post = postDao.findById(postId).orElse(null);
+            apply(fresh, postId, post, post != null ? postTagDao.findAllByPostId(postId) : List.of());
+        }, fresh -> columns = fresh);
+        metricsRegistry.increment("read-model.rebuilds");
+    }
+
+    private Columns load() {
+        Columns fresh = new Columns();
+        Map<Long, List<PostTag>> tagsByPost = new HashMap<>();
+        for (PostTag tag : postTagDao.findAll()) {
+            tagsByPost.computeIfAbsent(tag.getPostId(), id -> new ArrayList<>()).add(tag);
+        }
+        long lastId = 0;
+        for (;;) {
+            List<Post> posts = postDao.findPageAfterId(lastId, batchSize);
+            for (Post post : posts) {
+                fresh.append(post, tagsByPost.getOrDefault(post.getId(), List.of()));
+                lastId = post.getId();
+            }
+            if (posts.size() < batchSize) {
+                break;
+            }
+        }
+        fresh.sortAll();
+        metricsRegistry.counter("read-model.sorts").add(SORTS.length);
+        return fresh;
+    }
+
+    /**
+     * Первая страница до фонового построения: ждет его или строит сама
+     */
+    private synchronized Columns buildIfMissing() {
+        if (columns == null) {
+            rebuild();
+        }
+        return columns;
+    }
+
+    private static void apply(Columns target, Long postId, Post post, List<PostTag> postTags) {
+        if (post != null) {
+            target.put(post, postTags);
+        } else {
+            target.remove(postId);
+        }
+    }
+
+    /**
+     * Колонки и порядки одного построения. Изменяются только под write-блокировкой
+     */
+    private static final class Columns {
+        private int size;
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] createdNanos = new long[INITIAL_CAPACITY];
+        private int[] likes = new int[INITIAL_CAPACITY];
+        private int[] comments = new int[INITIAL_CAPACITY];
+        private String[] titles = new String[INITIAL_CAPACITY];
+        private String[] previews = new String[INITIAL_CAPACITY];
+        private Object[] tags = new Object[INITIAL_CAPACITY];
+        private final SlotIndex slots = new SlotIndex();
+        private final Map<String, String> internedTags = new HashMap<>();
+        // orders[sort] - слоты в порядке sort, positions[sort][slot] - место слота в нем
+        private final int[][] orders = new int[SORTS.length][INITIAL_CAPACITY];
+        private final int[][] positions = new int[SORTS.length][INITIAL_CAPACITY];
+
+        Page page(PostSort sort, long offset, int limit) {
+            int[] order = orders[sort.ordinal()];
+            int from = (int) Math.min(offset, size);
+            int to = Math.min(size, from + limit);
+            List<PostListItemDto> posts = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                posts.add(toDto(order[i]));
+            }
+            return new Page(posts, size);
+        }
+
+        /**
+         * Новая строка при построении; порядки - одной сортировкой в sortAll
+         */
+        void append(Post post, List<PostTag> postTags) {
+            ensureCapacity(size + 1);
+            int slot = size++;
+            slots.put(post.getId(), slot);
+            fill(slot, post, postTags);
+        }
+
+        void sortAll() {
+            for (PostSort sort : SORTS) {
+                int[] order = orders[sort.ordinal()];
+                for (int slot = 0; slot < size; slot++) {
+                    order[slot] = slot;
+                }
+                sortSlots(order, new int[size], 0, size, sort);
+                int[] position = positions[sort.ordinal()];
+                for (int i = 0; i < size; i++) {
+                    position[order[i]] = i;
+                }
+            }
+        }
+
+        /**
+         * Изменение поста событием. Лайки и комментарии существующей строки ведут их события (+1/-1):
+         * строка прочитана без блокировки и могла разойтись с ними, из нее берутся только
+         * заголовок, превью и теги. Дата создания не меняется - порядки остаются на месте
+         */
+        void edit(Post post, List<PostTag> postTags) {
+            int slot = slots.get(post.getId());
+            if (slot < 0) {
+                put(post, postTags);
+                return;
+            }
+            int keptLikes = likes[slot];
+            int keptComments = comments[slot];
+            fill(slot, post, postTags);
+            likes[slot] = keptLikes;
+            comments[slot] = keptComments;
+        }
+
+        /**
+         * Строка целиком из БД, со счетчиками (построение и перечитывание при перестройке)
+         */
+        void put(Post post, List<PostTag> postTags) {
+            int slot = slots.get(post.getId());
+            if (slot >= 0) {
+                fill(slot, post, postTags);
+                for (PostSort sort : SORTS) {
+                    reposition(slot, sort);
+                }
+                return;
+            }
+            ensureCapacity(size + 1);
+            slot = size++;
+            slots.put(post.getId(), slot);
+            fill(slot, post, postTags);
+            for (PostSort sort : SORTS) {
+                insert(slot, sort);
+            }
+        }
+
+        void remove(Long postId) {
+            int slot = slots.remove(postId);
+            if (slot < 0) {
+                return;
+            }
+            for (PostSort sort : SORTS) {
+                delete(slot, sort);
+            }
+            int last = --size;
+            if (slot != last) {
+                ids[slot] = ids[last];
+                createdNanos[slot] = createdNanos[last];
+                likes[slot] = likes[last];
+                comments[slot] = comments[last];
+                titles[slot] = titles[last];
+                previews[slot] = previews[last];
+                tags[slot] = tags[last];
+                slots.put(ids[slot], slot);
+                // Последний слот переехал: в порядках он теперь под номером slot
+                for (PostSort sort : SORTS) {
+                    int position = positions[sort.ordinal()][last];
+                    orders[sort.ordinal()][position] = slot;
+                    positions[sort.ordinal()][slot] = position;
+                }
+            }
+            titles[last] = null;
+            previews[last] = null;
+            tags[last] = null;
+        }
+
+        void addLikes(long postId, int delta) {
+            int slot = slots.get(postId);
+            if (slot >= 0) {
+                likes[slot] += delta;
+                reposition(slot, PostSort.LIKES);
+            }
+        }
+
+        void addComments(long postId, int delta) {
+            int slot = slots.get(postId);
+            if (slot >= 0) {
+                comments[slot] = Math.max(0, comments[slot] + delta);
+                reposition(slot, PostSort.COMMENTS);
+            }
+        }
+
+        private void fill(int slot, Post post, List<PostTag> postTags) {
+            ids[slot] = post.getId();
+            createdNanos[slot] = toNanos(post.getCreatedDate());
+            likes[slot] = post.getLikesCount() == null ? 0 : post.getLikesCount();
+            comments[slot] = post.getCommentsCount() == null ? 0 : post.getCommentsCount();
+            titles[slot] = post.getTitle();
+            previews[slot] = post.getTextPreview() != null ? post.getTextPreview() : PostServiceImpl.textPreview(post.getText());
+            List<String> postTagNames = new ArrayList<>(postTags.size());
+            for (PostTag postTag : postTags) {
+                postTagNames.add(internedTags.computeIfAbsent(postTag.getTag(), tag -> tag));
+            }
+            tags[slot] = List.copyOf(postTagNames);
+        }
+
+        /**
+         * Новый слот (уже учтен в size) - на свое место, хвост порядка сдвигается на одну позицию
+         */
+        private void insert(int slot, PostSort sort) {
+            int[] order = orders[sort.ordinal()];
+            int[] position = positions[sort.ordinal()];
+            int count = size - 1;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(order[middle], slot, sort) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(order, low, order, low + 1, count - low);
+            order[low] = slot;
+            for (int i = low; i <= count; i++) {
+                position[order[i]] = i;
+            }
+        }
+
+        private void delete(int slot, PostSort sort) {
+            int[] order = orders[sort.ordinal()];
+            int[] position = positions[sort.ordinal()];
+            int from = position[slot];
+            System.arraycopy(order, from + 1, order, from, size - 1 - from);
+            for (int i = from; i < size - 1; i++) {
+                position[order[i]] = i;
+            }
+        }
+
+        /**
+         * Слот с измененным значением сдвигается к своему месту; остальной порядок не тронут
+         */
+        private void reposition(int slot, PostSort sort) {
+            int[] order = orders[sort.ordinal()];
+            int[] position = positions[sort.ordinal()];
+            int i = position[slot];
+            while (i > 0 && compare(order[i - 1], slot, sort) > 0) {
+                order[i] = order[i - 1];
+                position[order[i]] = i;
+                i--;
+            }
+            while (i < size - 1 && compare(order[i + 1], slot, sort) < 0) {
+                order[i] = order[i + 1];
+                position[order[i]] = i;
+                i++;
+            }
+            order[i] = slot;
+            position[slot] = i;
+        }
+
+        @SuppressWarnings("unchecked")
+        private PostListItemDto toDto(int slot) {
+            return PostListItemDto.builder()
+                    .id(ids[slot])
+                    .title(titles[slot])
+                    .text(previews[slot])
+                    .tags((List<String>) tags[slot])
+                    .likesCount(likes[slot])
+                    .commentsCount(comments[slot])
+                    .build();
+        }
+
+        /**
+         * Сортировка слиянием int[] слотов без упаковки в Integer
+         */
+        private void sortSlots(int[] slotsToSort, int[] buffer, int from, int to, PostSort sort) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sortSlots(slotsToSort, buffer, from, middle, sort);
+            sortSlots(slotsToSort, buffer, middle, to, sort);
+            if (compare(slotsToSort[middle - 1], slotsToSort[middle], sort) <= 0) {
+                return;
+            }
+            System.arraycopy(slotsToSort, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || left < middle && compare(buffer[left], buffer[right], sort) <= 0) {
+                    slotsToSort[i] = buffer[left++];
+                } else {
+                    slotsToSort[i] = buffer[right++];
+                }
+            }
+        }
+
+        /**
+         * Тот же порядок, что PostSort.getComparator / ORDER BY
+         */
+        private int compare(int a, int b, PostSort sort) {
+            int result;
+            switch (sort) {
+                case NEWEST:
+                    result = Long.compare(createdNanos[b], createdNanos[a]);
+                    break;
+                case LIKES:
+                    result = Integer.compare(likes[b], likes[a]);
+                    break;
+                case COMMENTS:
+                    result = Integer.compare(comments[b], comments[a]);
+                    break;
+                default:
+                    return Long.compare(ids[a], ids[b]);
+            }
+            return result != 0 ? result : Long.compare(ids[b], ids[a]);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newCapacity);
+            createdNanos = Arrays.copyOf(createdNanos, newCapacity);
+            likes = Arrays.copyOf(likes, newCapacity);
+            comments = Arrays.copyOf(comments, newCapacity);
+            titles = Arrays.copyOf(titles, newCapacity);
+            previews = Arrays.copyOf(previews, newCapacity);
+            tags = Arrays.copyOf(tags, newCapacity);
+            for (int sort = 0; sort < SORTS.length; sort++) {
+                orders[sort] = Arrays.copyOf(orders[sort], newCapacity);
+                positions[sort] = Arrays.copyOf(positions[sort], newCapacity);
+            }
+        }
+    }
+
+    private static long toNanos(LocalDateTime date) {
+        if (date == null) {
+            return NO_DATE;
+        }
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + date.getNano();
+    }
+
+    /**
+     * Страница ленты и общее число постов
+     */
+    public static final class Page {
+        private final List<PostListItemDto> posts;
+        private final long totalCount;
+
+        public Page(List<PostListItemDto> posts, long totalCount) {
+            this.posts = posts;
+            this.totalCount = totalCount;
+        }
+
+        public List<PostListItemDto> getPosts() {
+            return posts;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+    }
+
+    /**
+     * id поста → слот: линейное пробирование по long[]/int[], 0 - пустая ячейка
+     * (id постов начинаются с 1), удаление со сдвигом назад без "надгробий"
+     */
+    static final class SlotIndex {
+        private long[] keys = new long[INITIAL_CAPACITY * 2];
+        private int[] values = new int[INITIAL_CAPACITY * 2];
+        private int count;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((count + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                count++;
+            }
+            values[i] = value;
+        }
+
+        /**
+         * Удалить ключ; возвращает его значение или -1
+         */
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return -1;
+                }
+                i = (i + 1) & mask;
+            }
+            int removed = values[i];
+            // Сдвигаем назад следующие записи цепочки, которым пустая ячейка мешала бы найтись
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = 0;
+            count--;
+            return removed;
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0);
+            count = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.yandex.practicum.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.jdbc.RoutingContext;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Single-flight для одинаковых одновременных чтений
+ *
+ * Первый запрос с ключом (лидер) выполняет загрузку, остальные с тем же ключом,
+ * пришедшие пока она идет, ждут и получают тот же результат (или то же исключение).
+ * Когда популярный пост выпадает из кэша, сотня одновременных GET дает один набор запросов к БД.
+ *
+ * Загрузка лидера идет в readOnly-транзакции, которую открывает сам SingleFlight:
+ * ждущие запросы не держат соединение из пула.
+ *
+ * Запрос присоединяется только к загрузке, начатой не раньше последней видимой ему записи:
+ * поколение записей сдвигается после commit раньше JsonResponseCache (@Order), поэтому запрос,
+ * уже увидевший новое поколение кеша, не получит DTO, прочитанный до этой записи, и не
+ * положит его в кеш как актуальный. Старая загрузка дорабатывает для своих ждущих, новая
+ * становится лидером для следующих.
+ *
+ * Без объединения (загрузка сразу):
+ * - вызов уже внутри транзакции (должен видеть свои незакоммиченные изменения)
+ * - клиент в sticky-окне после записи (read-your-writes, см. RoutingContext)
+ * - ожидание лидера дольше blog.singleflight.wait-timeout-ms
+ *
+ * Результат общий для всех ждущих: вызывающий код не должен его изменять.
+ */
+@Component
+public class SingleFlight implements InitializingBean {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.singleflight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.singleflight.wait-timeout-ms:5000}")
+    private long waitTimeoutMillis;
+
+    private final Map<FlightKey, Flight> inFlight = new ConcurrentHashMap<>();
+    // Сдвигается каждой закоммиченной записью постов и комментариев
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private TransactionTemplate readOnlyTransaction;
+
+    @Override
+    public void afterPropertiesSet() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        metricsRegistry.gauge("singleflight.in-flight", inFlight::size);
+    }
+
+    /**
+     * Выполнить чтение, объединив его с идущим чтением того же ключа
+     *
+     * @param name имя операции (префикс метрик singleflight.&lt;name&gt;.*)
+     * @param key  параметры чтения; equals/hashCode определяют, какие вызовы одинаковые
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> load) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()
+                || RoutingContext.requiresPrimary()) {
+            return load(load);
+        }
+
+        FlightKey flightKey = new FlightKey(name, key);
+        Flight own = new Flight(writeGeneration.get());
+        Flight leader = inFlight.putIfAbsent(flightKey, own);
+        while (leader != null && leader.generation < own.generation) {
+            // Лидер начал до записи, которую этот запрос уже видит: его результат может быть устаревшим
+            if (inFlight.replace(flightKey, leader, own)) {
+                metricsRegistry.increment("singleflight." + name + ".stale");
+                leader = null;
+            } else {
+                leader = inFlight.putIfAbsent(flightKey, own);
+            }
+        }
+        if (leader != null) {
+            metricsRegistry.increment("singleflight." + name + ".coalesced");
+            return (T) await(name, leader.result, load);
+        }
+
+        metricsRegistry.increment("singleflight." + name + ".loads");
+        try {
+            T value = load(load);
+            own.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        writeGeneration.incrementAndGet();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        writeGeneration.incrementAndGet();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        writeGeneration.incrementAndGet();
+    }
+
+    private Object await(String name, CompletableFuture<Object> leader, Supplier<?> load) {
+        try {
+            return leader.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            // Лидер завис: лучше свой запрос, чем очередь за ним
+            metricsRegistry.increment("singleflight." + name + ".timeout");
+            return load(load);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return load(load);
+        }
+    }
+
+    private <T> T load(Supplier<T> load) {
+        return readOnlyTransaction.execute(status -> load.get());
+    }
+
+    private static final class Flight {
+        // Поколение записей на момент старта загрузки
+        private final long generation;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Flight(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class FlightKey {
+        private final String name;
+        private final Object key;
+    }
+}
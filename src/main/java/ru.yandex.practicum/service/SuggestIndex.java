@@ -0,0 +1,322 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dto.SuggestResponse;
+import ru.yandex.practicum.dto.SuggestionDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+import ru.yandex.practicum.search.SuggestTrie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * ✅ Автодополнение тегов и заголовков (GET /api/suggest?prefix=)
+ *
+ * Два SuggestTrie в памяти:
+ * - теги: вес = число постов с тегом
+ * - заголовки: вес = популярность поста, 1 + лайки + комментарии
+ *
+ * Строятся из БД фоном при старте (если не вышло - при первом запросе), дальше
+ * обновляются событиями после commit: создание/изменение поста перечитывает пост и теги,
+ * лайки и комментарии меняют вес заголовка без обращения к БД.
+ * Вклад каждого поста запоминается, чтобы при изменении/удалении вычесть старые значения.
+ * InvalidateAllEvent перестраивает деревья фоном в новые (Trees, BackgroundRebuilder), подсказки
+ * до подмены отдаются из прежних; посты, изменившиеся за время чтения БД, перечитываются перед подменой.
+ */
+@Component
+public class SuggestIndex implements InitializingBean {
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private PostTagDao postTagDao;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.suggest.build-on-startup:true}")
+    private boolean buildOnStartup;
+
+    @Value("${blog.suggest.batch-size:500}")
+    private int batchSize;
+
+    // Изменения текущих деревьев, их подмена и отметка изменений для идущей перестройки
+    private final Lock changesLock = new ReentrantLock();
+    private final BackgroundRebuilder rebuilder =
+            new BackgroundRebuilder("suggest-index-build", changesLock, this::rebuild);
+    // null - еще не построены
+    private volatile Trees trees;
+
+    @Override
+    public void afterPropertiesSet() {
+        metricsRegistry.gauge("suggest.tags", () -> {
+            Trees current = trees;
+            return current == null ? 0 : current.tags.size();
+        });
+        metricsRegistry.gauge("suggest.titles", () -> {
+            Trees current = trees;
+            return current == null ? 0 : current.titles.size();
+        });
+        metricsRegistry.gauge("suggest.nodes", () -> {
+            Trees current = trees;
+            return current == null ? 0 : current.tags.nodeCount() + current.titles.nodeCount();
+        });
+        if (buildOnStartup) {
+            rebuilder.request();
+        }
+    }
+
+    /**
+     * До limit тегов и до limit заголовков, начинающихся с prefix
+     */
+    public SuggestResponse suggest(String prefix, int limit) {
+        Trees current = trees;
+        if (current == null) {
+            current = buildIfMissing();
+        } else {
+            rebuilder.requestIfStale();
+        }
+        metricsRegistry.increment("suggest.requests");
+        return SuggestResponse.builder()
+                .tags(toDto(current.tags.suggest(prefix, limit)))
+                .titles(toDto(current.titles.suggest(prefix, limit)))
+                .build();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        Long postId = event.getPostId();
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                if (!markChanged(postId)) {
+                    // Еще не построены: при построении все прочитается из БД
+                    return;
+                }
+                // БД читается без блокировки: подсказки и перестройка ее не ждут
+                Post post = postDao.findById(postId).orElse(null);
+                List<String> postTags = post != null ? tagsOf(postTagDao.findAllByPostId(postId)) : List.of();
+                changesLock.lock();
+                try {
+                    // Подмена могла случиться после markChanged: тогда перестройка уже перечитала пост
+                    trees.edit(postId, post, postTags);
+                } finally {
+                    changesLock.unlock();
+                }
+                break;
+            case DELETED:
+                changesLock.lock();
+                try {
+                    if (markChanged(postId)) {
+                        trees.remove(postId);
+                    }
+                } finally {
+                    changesLock.unlock();
+                }
+                break;
+            case LIKED:
+                changePopularity(postId, 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (event.getType() == CommentEvent.Type.CREATED) {
+            changePopularity(event.getPostId(), 1);
+        } else if (event.getType() == CommentEvent.Type.DELETED) {
+            changePopularity(event.getPostId(), -1);
+        }
+    }
+
+    /**
+     * Деревья могли пропустить изменения: перестроятся из БД фоном, до этого - прежние
+     */
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        rebuilder.invalidate();
+    }
+
+    /**
+     * Перестроить оба дерева из БД в новые и подменить ими текущие: посты пачками
+     * по blog.suggest.batch-size, теги одним запросом.
+     * Текущие деревья до подмены продолжают отдавать подсказки и получать события
+     */
+    public synchronized void rebuild() {
+        rebuilder.<Trees>rebuild(this::load, (fresh, postId) -> {
+            Post post = postDao.findById(postId).orElse(null);
+            fresh.reload(postId, post, post != null ? tagsOf(postTagDao.findAllByPostId(postId)) : List.of());
+        }, fresh -> trees = fresh);
+        metricsRegistry.increment("suggest.rebuilds");
+    }
+
+    private Trees load() {
+        Trees fresh = new Trees();
+        Map<Long, List<String>> tagsByPost = postTagDao.findAll().stream()
+                .collect(Collectors.groupingBy(PostTag::getPostId,
+                        Collectors.mapping(PostTag::getTag, Collectors.toList())));
+        // По ключу, а не OFFSET: пачка не перечитывает уже пройденные строки
+        long lastId = 0;
+        for (;;) {
+            List<Post> posts = postDao.findPageAfterId(lastId, batchSize);
+            for (Post post : posts) {
+                fresh.put(post, tagsByPost.getOrDefault(post.getId(), List.of()));
+                lastId = post.getId();
+            }
+            if (posts.size() < batchSize) {
+                return fresh;
+            }
+        }
+    }
+
+    /**
+     * Первый запрос до фонового построения: ждет его или строит сам
+     */
+    private synchronized Trees buildIfMissing() {
+        if (trees == null) {
+            rebuild();
+        }
+        return trees;
+    }
+
+    /**
+     * Запомнить изменение для идущей перестройки; false - деревьев еще нет и обновлять нечего
+     */
+    private boolean markChanged(Long postId) {
+        changesLock.lock();
+        try {
+            rebuilder.markChanged(postId);
+            return trees != null;
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    private void changePopularity(Long postId, long delta) {
+        changesLock.lock();
+        try {
+            if (markChanged(postId)) {
+                trees.changePopularity(postId, delta);
+            }
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    private static List<String> tagsOf(List<PostTag> postTags) {
+        List<String> result = new ArrayList<>(postTags.size());
+        for (PostTag postTag : postTags) {
+            result.add(postTag.getTag());
+        }
+        return result;
+    }
+
+    private static List<SuggestionDto> toDto(List<SuggestTrie.Suggestion> suggestions) {
+        List<SuggestionDto> result = new ArrayList<>(suggestions.size());
+        for (SuggestTrie.Suggestion suggestion : suggestions) {
+            result.add(new SuggestionDto(suggestion.getText(), suggestion.getWeight()));
+        }
+        return result;
+    }
+
+    private static long value(Integer count) {
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Деревья одного построения и вклад в них каждого поста
+     */
+    private static final class Trees {
+        private final SuggestTrie tags = new SuggestTrie();
+        private final SuggestTrie titles = new SuggestTrie();
+        private final Map<Long, Entry> entries = new HashMap<>();
+
+        void reload(Long postId, Post post, List<String> postTags) {
+            if (post != null) {
+                put(post, postTags);
+            } else {
+                remove(postId);
+            }
+        }
+
+        /**
+         * Изменение поста событием: популярность существующей записи ведут события лайков
+         * и комментариев, из строки, прочитанной без блокировки, берутся только заголовок и теги
+         */
+        void edit(Long postId, Post post, List<String> postTags) {
+            Entry entry = entries.get(postId);
+            if (post == null || entry == null) {
+                reload(postId, post, postTags);
+                return;
+            }
+            remove(postId);
+            put(post, postTags, entry.popularity);
+        }
+
+        void put(Post post, List<String> postTags) {
+            put(post, postTags, 1 + value(post.getLikesCount()) + value(post.getCommentsCount()));
+        }
+
+        private void put(Post post, List<String> postTags, long popularity) {
+            remove(post.getId());
+            Entry entry = new Entry(post.getTitle(), popularity, postTags);
+            titles.add(entry.title, entry.popularity);
+            for (String tag : entry.tags) {
+                tags.add(tag, 1);
+            }
+            entries.put(post.getId(), entry);
+        }
+
+        void remove(Long postId) {
+            Entry entry = entries.remove(postId);
+            if (entry == null) {
+                return;
+            }
+            titles.add(entry.title, -entry.popularity);
+            for (String tag : entry.tags) {
+                tags.add(tag, -1);
+            }
+        }
+
+        void changePopularity(Long postId, long delta) {
+            Entry entry = entries.get(postId);
+            if (entry == null || entry.popularity + delta < 1) {
+                return;
+            }
+            entry.popularity += delta;
+            titles.add(entry.title, delta);
+        }
+    }
+
+    private static final class Entry {
+        private final String title;
+        private long popularity;
+        private final List<String> tags;
+
+        Entry(String title, long popularity, List<String> tags) {
+            this.title = title;
+            this.popularity = popularity;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Разовое заполнение text_preview для постов, созданных до появления колонки
+ *
+ * Запускается в фоне при старте и идет пачками по blog.backfill.text-preview.batch-size,
+ * пока не останется пустых строк. Пока строка не обработана, лента берет короткое
+ * начало text прямо в SQL (см. PostDaoImpl), так что результат виден и до окончания.
+ *
+ * UPDATE только WHERE text_preview IS NULL: если пост успели изменить через сервис,
+ * его свежее значение не перетирается.
+ */
+@Component
+public class TextPreviewBackfill implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TextPreviewBackfill.class);
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.backfill.text-preview.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.backfill.text-preview.batch-size:500}")
+    private int batchSize;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runInBackground, "text-preview-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Заполнить все пустые text_preview; возвращает число обновленных строк
+     */
+    public int run() {
+        int total = 0;
+        // Фоновый поток останавливается вместе с приложением, явный вызов идет до конца
+        while (running || Thread.currentThread() != worker) {
+            List<Post> posts = postDao.findWithoutPreview(batchSize);
+            if (posts.isEmpty()) {
+                break;
+            }
+            for (Post post : posts) {
+                post.setTextPreview(PostServiceImpl.textPreview(post.getText()));
+            }
+            int updated = postDao.savePreviews(posts);
+            total += updated;
+            metricsRegistry.counter("backfill.text-preview.rows").add(updated);
+            if (posts.size() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private void runInBackground() {
+        try {
+            int updated = run();
+            if (updated > 0) {
+                log.info("Text preview backfill finished: {} posts updated", updated);
+            }
+        } catch (DataAccessException e) {
+            // Например, таблицы еще нет: новые посты получают text_preview при записи
+            log.warn("Text preview backfill skipped: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.service;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.dto.TrendingPostDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.sketch.SlidingWindowTopK;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ✅ Популярные посты за последний час (GET /api/posts/trending)
+ *
+ * Просмотры, лайки и новые комментарии считаются в SlidingWindowTopK-скетчах в памяти:
+ * обновление O(1) без блокировок, ответ собирается из скетчей без обращения к БД.
+ * Рейтинг: views × weight.views + likes × weight.likes + comments × weight.comments.
+ *
+ * Лайки и комментарии приходят событиями после commit, просмотры - из PostController.
+ * Удаленные посты скрываются до конца окна, в котором их еще могут содержать скетчи.
+ *
+ * Рейтинг всех кандидатов пересчитывается раз за корзину (window-minutes / buckets):
+ * запросы до следующей ротации берут готовый список, удаленные посты отсеиваются при выдаче.
+ */
+@Component
+public class TrendingTracker implements InitializingBean {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.trending.window-minutes:60}")
+    private long windowMinutes;
+
+    @Value("${blog.trending.buckets:12}")
+    private int bucketCount;
+
+    @Value("${blog.trending.sketch-width:1024}")
+    private int sketchWidth;
+
+    @Value("${blog.trending.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${blog.trending.candidates:256}")
+    private int candidates;
+
+    @Value("${blog.trending.weight.views:1}")
+    private long viewsWeight;
+
+    @Value("${blog.trending.weight.likes:5}")
+    private long likesWeight;
+
+    @Value("${blog.trending.weight.comments:10}")
+    private long commentsWeight;
+
+    private SlidingWindowTopK views;
+    private SlidingWindowTopK likes;
+    private SlidingWindowTopK comments;
+    private final Map<Long, Long> deletedAt = new ConcurrentHashMap<>();
+    private long windowMillis;
+    private long bucketMillis;
+    // null - еще не считался
+    private volatile Ranking ranking;
+
+    @Override
+    public void afterPropertiesSet() {
+        windowMillis = TimeUnit.MINUTES.toMillis(windowMinutes);
+        bucketMillis = Math.max(1, windowMillis / bucketCount);
+        views = new SlidingWindowTopK(windowMillis, bucketCount, sketchWidth, sketchDepth, candidates);
+        likes = new SlidingWindowTopK(windowMillis, bucketCount, sketchWidth, sketchDepth, candidates);
+        comments = new SlidingWindowTopK(windowMillis, bucketCount, sketchWidth, sketchDepth, candidates);
+        metricsRegistry.gauge("trending.deleted", deletedAt::size);
+    }
+
+    public void recordView(long postId) {
+        views.add(postId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        if (event.getType() == PostEvent.Type.LIKED) {
+            likes.add(event.getPostId());
+        } else if (event.getType() == PostEvent.Type.DELETED) {
+            deletedAt.put(event.getPostId(), System.currentTimeMillis());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (event.getType() == CommentEvent.Type.CREATED) {
+            comments.add(event.getPostId());
+        }
+    }
+
+    /**
+     * limit постов с наибольшим рейтингом за окно
+     */
+    public List<TrendingPostDto> top(int limit) {
+        long now = System.currentTimeMillis();
+        long windowStart = now - windowMillis;
+        deletedAt.values().removeIf(time -> time < windowStart);
+
+        List<TrendingPostDto> ranked = ranked(now / bucketMillis);
+        List<TrendingPostDto> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (TrendingPostDto post : ranked) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (!deletedAt.containsKey(post.getId())) {
+                result.add(post);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Все кандидаты по убыванию рейтинга; пересчет - при первом запросе в новой корзине
+     */
+    private List<TrendingPostDto> ranked(long epoch) {
+        Ranking current = ranking;
+        if (current != null && current.epoch == epoch) {
+            return current.posts;
+        }
+        return rank(epoch);
+    }
+
+    private synchronized List<TrendingPostDto> rank(long epoch) {
+        Ranking current = ranking;
+        if (current != null && current.epoch == epoch) {
+            return current.posts;
+        }
+        Set<Long> ids = new HashSet<>(views.candidates());
+        ids.addAll(likes.candidates());
+        ids.addAll(comments.candidates());
+
+        List<TrendingPostDto> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            long viewCount = views.estimate(id);
+            long likeCount = likes.estimate(id);
+            long commentCount = comments.estimate(id);
+            result.add(TrendingPostDto.builder()
+                    .id(id)
+                    .views(viewCount)
+                    .likes(likeCount)
+                    .comments(commentCount)
+                    .score(viewCount * viewsWeight + likeCount * likesWeight + commentCount * commentsWeight)
+                    .build());
+        }
+        result.sort(Comparator.comparingLong(TrendingPostDto::getScore).reversed()
+                .thenComparing(TrendingPostDto::getId));
+        ranking = new Ranking(epoch, List.copyOf(result));
+        metricsRegistry.increment("trending.rankings");
+        return ranking.posts;
+    }
+
+    private static final class Ranking {
+        private final long epoch;
+        private final List<TrendingPostDto> posts;
+
+        Ranking(long epoch, List<TrendingPostDto> posts) {
+            this.epoch = epoch;
+            this.posts = posts;
+        }
+    }
+}
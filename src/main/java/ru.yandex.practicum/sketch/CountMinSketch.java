@@ -0,0 +1,70 @@
+package ru.yandex.practicum.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ✅ Count-Min sketch для long-ключей
+ *
+ * depth строк по width счетчиков; ключ увеличивает по одному счетчику в каждой строке,
+ * оценка - минимум из них. Оценка не меньше истинного значения и превышает его
+ * не больше чем на ~e/width от суммы всех событий (с вероятностью 1 - e^-depth).
+ *
+ * Обновление - depth атомарных инкрементов, без блокировок.
+ */
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param width ширина строки, округляется вверх до степени двойки
+     * @param depth число строк (независимых хешей), не больше 8
+     */
+    public CountMinSketch(int width, int depth) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be in 1.." + SEEDS.length);
+        }
+        int size = width <= 2 ? 2 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(size * depth);
+    }
+
+    /**
+     * Учесть событие и вернуть новую оценку ключа
+     */
+    public long add(long key, long delta) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(row, key), delta));
+        }
+        return estimate;
+    }
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+    private int index(int row, long key) {
+        return row * (mask + 1) + (int) (mix(key ^ SEEDS[row]) & mask);
+    }
+
+    /**
+     * Финализатор splitmix64: соседние id постов расходятся по всей строке
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
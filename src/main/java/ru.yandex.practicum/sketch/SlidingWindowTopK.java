@@ -0,0 +1,150 @@
+package ru.yandex.practicum.sketch;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * ✅ Самые частые ключи за скользящее окно (например, просмотры постов за час)
+ *
+ * Окно делится на bucketCount корзин по времени. В каждой корзине:
+ * - Count-Min sketch: частота любого ключа
+ * - кандидаты в top-K (вариант Space-Saving): у ключа два слота по хешу,
+ *   новый ключ вытесняет из них кандидата с меньшей оценкой
+ *
+ * add() - O(depth) атомарных операций и одна попытка CAS, без блокировок и ожиданий:
+ * если CAS проиграл гонку, обновление кандидата пропускается (частота в sketch уже учтена).
+ * Устаревшая корзина заменяется новой при первом событии следующего интервала.
+ *
+ * Память фиксирована: bucketCount × (width × depth счетчиков + candidates слотов).
+ */
+public class SlidingWindowTopK {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int width;
+    private final int depth;
+    private final int slotMask;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public SlidingWindowTopK(long windowMillis, int bucketCount, int width, int depth, int candidates) {
+        this(windowMillis, bucketCount, width, depth, candidates, System::currentTimeMillis);
+    }
+
+    SlidingWindowTopK(long windowMillis, int bucketCount, int width, int depth, int candidates,
+                      LongSupplier clock) {
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.bucketCount = bucketCount;
+        this.width = width;
+        this.depth = depth;
+        this.slotMask = (candidates <= 2 ? 2 : Integer.highestOneBit(candidates - 1) << 1) - 1;
+        this.clock = clock;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    public void add(long key) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        Bucket bucket = current(epoch);
+        long estimate = bucket.sketch.add(key, 1);
+
+        long hash = CountMinSketch.mix(key);
+        int first = (int) hash & slotMask;
+        int second = (int) (hash >>> 32) & slotMask;
+        Candidate a = bucket.slots.get(first);
+        Candidate b = bucket.slots.get(second);
+
+        if (a != null && a.key == key) {
+            if (a.count < estimate) {
+                bucket.slots.compareAndSet(first, a, new Candidate(key, estimate));
+            }
+        } else if (b != null && b.key == key) {
+            if (b.count < estimate) {
+                bucket.slots.compareAndSet(second, b, new Candidate(key, estimate));
+            }
+        } else {
+            // Вытесняем более слабого из двух кандидатов, если новый ключ уже сильнее
+            boolean firstWeaker = a == null || (b != null && a.count <= b.count);
+            Candidate victim = firstWeaker ? a : b;
+            if (victim == null || victim.count < estimate) {
+                bucket.slots.compareAndSet(firstWeaker ? first : second, victim, new Candidate(key, estimate));
+            }
+        }
+    }
+
+    /**
+     * Оценка частоты ключа за окно
+     */
+    public long estimate(long key) {
+        long epoch = clock.getAsLong() / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (isLive(bucket, epoch)) {
+                total += bucket.sketch.estimate(key);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Ключи-кандидаты в top-K из всех корзин окна
+     */
+    public Set<Long> candidates() {
+        long epoch = clock.getAsLong() / bucketMillis;
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (!isLive(bucket, epoch)) {
+                continue;
+            }
+            for (int slot = 0; slot <= slotMask; slot++) {
+                Candidate candidate = bucket.slots.get(slot);
+                if (candidate != null) {
+                    keys.add(candidate.key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private boolean isLive(Bucket bucket, long epoch) {
+        return bucket != null && bucket.epoch <= epoch && bucket.epoch > epoch - bucketCount;
+    }
+
+    private Bucket current(long epoch) {
+        int index = (int) (epoch % bucketCount);
+        Bucket bucket = buckets.get(index);
+        while (bucket == null || bucket.epoch < epoch) {
+            Bucket fresh = new Bucket(epoch, width, depth, slotMask + 1);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final CountMinSketch sketch;
+        private final AtomicReferenceArray<Candidate> slots;
+
+        Bucket(long epoch, int width, int depth, int slots) {
+            this.epoch = epoch;
+            this.sketch = new CountMinSketch(width, depth);
+            this.slots = new AtomicReferenceArray<>(slots);
+        }
+    }
+
+    private static final class Candidate {
+        private final long key;
+        private final long count;
+
+        Candidate(long key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * ✅ Лимит одновременных запросов, подстраивающийся под задержку (градиент по средним RTT)
+ *
+ * Задержки собираются в окна (не короче WINDOW и не меньше MIN_WINDOW_SAMPLES ответов).
+ * В конце окна:
+ * - короткая задержка - средняя за окно
+ * - длинная - экспоненциальное среднее коротких за ~LONG_WINDOWS окон (то, как система
+ *   отвечает обычно, с учетом смеси быстрых и медленных запросов класса)
+ * - градиент = tolerance * длинная / короткая, в пределах [0.5; 1]
+ * - градиент < 1 (окно заметно медленнее обычного) → лимит *= градиент, одно снижение на окно
+ * - градиент = 1 и лимит был почти выбран → лимит += √лимит
+ *
+ * Сравнение средних, а не с минимумом: микросекундные попадания в кеш и миллисекундные
+ * чтения из БД одного класса не выглядят как перегрузка.
+ *
+ * Лишний запрос сверх лимита не ждет, а сразу отклоняется: очередь копится не здесь
+ * и не в пуле соединений, поэтому хвост задержек остается ограниченным.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MIN_WINDOW_SAMPLES = 20;
+    private static final int LONG_WINDOWS = 20;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRttNanos;
+    private long windowStartNanos;
+    private long windowRttSum;
+    private int windowSamples;
+    private boolean windowSaturated;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this(initialLimit, minLimit, maxLimit, tolerance, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, LongSupplier clock) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.clock = clock;
+        this.windowStartNanos = clock.getAsLong();
+    }
+
+    /**
+     * Занять слот; null - лимит исчерпан
+     */
+    public Permit tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > (int) limit) {
+            inFlight.decrementAndGet();
+            return null;
+        }
+        return new Permit(current, clock.getAsLong());
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onComplete(Permit permit, long now) {
+        windowRttSum += now - permit.startNanos;
+        windowSamples++;
+        windowSaturated |= permit.inFlightAtStart >= limit * 0.8;
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStartNanos < WINDOW_NANOS) {
+            return;
+        }
+
+        double shortRtt = Math.max(1, (double) windowRttSum / windowSamples);
+        boolean saturated = windowSaturated;
+        windowStartNanos = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowSaturated = false;
+
+        if (longRttNanos == 0) {
+            // Первое окно - только начальная оценка обычной задержки
+            longRttNanos = shortRtt;
+            return;
+        }
+        longRttNanos += (shortRtt - longRttNanos) / LONG_WINDOWS;
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        if (gradient < 1.0) {
+            limit = Math.max(minLimit, limit * gradient);
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + Math.sqrt(limit));
+        }
+    }
+
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Вернуть слот и учесть задержку запроса
+         */
+        public void release() {
+            if (release(true)) {
+                onComplete(this, clock.getAsLong());
+            }
+        }
+
+        /**
+         * Вернуть слот без замера: время до возврата - не задержка ответа
+         * (например, запрос ушел в async, SSE)
+         */
+        public void releaseWithoutSample() {
+            release(false);
+        }
+
+        private boolean release(boolean sample) {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            return sample;
+        }
+    }
+}
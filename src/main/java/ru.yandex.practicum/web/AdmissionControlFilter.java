@@ -0,0 +1,164 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.exception.ErrorResponse;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Admission control перед PostController
+ *
+ * 1. Адаптивный лимит одновременных запросов на класс эндпоинтов → 503 + Retry-After
+ *    (SEARCH отдельно от LIST/READ: дорогой поиск не вытесняет дешевые чтения)
+ * 2. Rate limit на клиента (token bucket, ClientRateLimits) для лайков и новых комментариев
+ *    → 429 + Retry-After; токен тратится только запросом, прошедшим п. 1
+ *
+ * Отказ занимает микросекунды и не доходит до JDBC, поэтому при всплеске нагрузки
+ * принятые запросы укладываются в обычную задержку, а лишние сразу получают ответ.
+ *
+ * /api/metrics не ограничивается: метрики нужны как раз во время перегрузки.
+ * Подключается в web.xml через DelegatingFilterProxy.
+ */
+@Component("admissionControlFilter")
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Pattern LIKES = Pattern.compile("^/api/posts/\\d+/likes/?$");
+    private static final Pattern COMMENTS = Pattern.compile("^/api/posts/\\d+/comments/?$");
+    private static final Pattern POSTS = Pattern.compile("^/api/posts/?$");
+
+    /**
+     * Классы эндпоинтов: стартовый и максимальный лимит по умолчанию
+     */
+    enum EndpointClass {
+        SEARCH(4, 16), LIST(16, 100), READ(32, 200), WRITE(16, 100);
+
+        private final int initialLimit;
+        private final int maxLimit;
+
+        EndpointClass(int initialLimit, int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.maxLimit = maxLimit;
+        }
+    }
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClientRateLimits rateLimits;
+
+    @Value("${blog.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${blog.admission.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    private final Map<EndpointClass, AdaptiveConcurrencyLimit> limits = new EnumMap<>(EndpointClass.class);
+
+    @Override
+    protected void initFilterBean() {
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String prefix = "blog.admission." + endpointClass.name().toLowerCase(Locale.ROOT);
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+                    environment.getProperty(prefix + ".initial-limit", Integer.class, endpointClass.initialLimit),
+                    minLimit,
+                    environment.getProperty(prefix + ".max-limit", Integer.class, endpointClass.maxLimit),
+                    latencyTolerance);
+            limits.put(endpointClass, limit);
+            metricsRegistry.gauge("admission." + endpointClass.name().toLowerCase(Locale.ROOT) + ".limit", limit::getLimit);
+            metricsRegistry.gauge("admission." + endpointClass.name().toLowerCase(Locale.ROOT) + ".in-flight", limit::getInFlight);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getRequestURI().startsWith(request.getContextPath() + "/api/metrics");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean post = "POST".equals(request.getMethod());
+
+        EndpointClass endpointClass = classify(request, path);
+        AdaptiveConcurrencyLimit.Permit permit = limits.get(endpointClass).tryAcquire();
+        if (permit == null) {
+            metricsRegistry.increment("admission." + endpointClass.name().toLowerCase(Locale.ROOT) + ".rejected");
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1000, "Server is overloaded, retry later");
+            return;
+        }
+
+        // Токен - только за принятый запрос: повторы после 503 не съедают лимит клиента
+        ClientRateLimits.Kind rateLimit = !post ? null
+                : LIKES.matcher(path).matches() ? ClientRateLimits.Kind.LIKES
+                : COMMENTS.matcher(path).matches() ? ClientRateLimits.Kind.COMMENTS
+                : null;
+        if (rateLimit != null) {
+            long waitMillis = rateLimits.tryAcquire(rateLimit, rateLimits.clientKey(request));
+            if (waitMillis > 0) {
+                permit.releaseWithoutSample();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, waitMillis, "Rate limit exceeded");
+                return;
+            }
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // SSE и прочий async: фильтр возвращается сразу, это не задержка ответа
+                permit.releaseWithoutSample();
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    static EndpointClass classify(HttpServletRequest request, String path) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return EndpointClass.WRITE;
+        }
+        if (POSTS.matcher(path).matches()) {
+            String search = request.getParameter("search");
+            return search != null && !search.isBlank() ? EndpointClass.SEARCH : EndpointClass.LIST;
+        }
+        return EndpointClass.READ;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, long retryAfterMillis, String message)
+            throws IOException {
+        metricsRegistry.increment("errors.status." + status.value());
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(status.value(), status.getReasonPhrase(), message));
+    }
+}
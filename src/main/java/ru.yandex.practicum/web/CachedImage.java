@@ -0,0 +1,59 @@
+package ru.yandex.practicum.web;
+
+import ru.yandex.practicum.model.Image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ✅ Изображение для ответа: страницы OffHeapImageCache или только что прочитанное из БД
+ *
+ * Пока объект не закрыт, страницы кеша не переиспользуются.
+ * Закрывает CachedImageHttpMessageConverter после записи тела.
+ */
+public final class CachedImage implements AutoCloseable {
+
+    private final OffHeapImageCache.Entry entry;
+    private final String hash;
+    private final byte[] bytes;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    CachedImage(OffHeapImageCache.Entry entry) {
+        this.entry = entry;
+        this.hash = entry.hash();
+        this.bytes = null;
+    }
+
+    CachedImage(Image image) {
+        this.entry = null;
+        this.hash = image.getHash();
+        this.bytes = image.getData();
+    }
+
+    /**
+     * SHA-256 содержимого
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public int length() {
+        return entry != null ? entry.length() : bytes.length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (entry != null) {
+            entry.writeTo(out);
+        } else {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (entry != null && closed.compareAndSet(false, true)) {
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.web;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * ✅ Пишет CachedImage в ответ прямо из памяти кеша (с Content-Length) и освобождает его
+ */
+public class CachedImageHttpMessageConverter extends AbstractHttpMessageConverter<CachedImage> {
+
+    public CachedImageHttpMessageConverter() {
+        super(new MediaType("image", "*"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CachedImage.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CachedImage readInternal(Class<? extends CachedImage> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("CachedImage is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(CachedImage image, MediaType contentType) {
+        return (long) image.length();
+    }
+
+    @Override
+    protected void writeInternal(CachedImage image, HttpOutputMessage outputMessage) throws IOException {
+        try (image) {
+            image.writeTo(outputMessage.getBody());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ✅ Лимиты лайков и новых комментариев на клиента (token bucket)
+ *
+ * Общие для AdmissionControlFilter (отдельные POST .../likes и .../comments) и BatchExecutor
+ * (операции likePost и createComment в POST /api/batch): пачка тратит токен на каждую такую
+ * операцию, иначе 50 лайков одним запросом обходили бы лимит.
+ */
+@Component
+public class ClientRateLimits implements InitializingBean {
+
+    public enum Kind {
+        LIKES(5, 20), COMMENTS(1, 5);
+
+        private final double ratePerSecond;
+        private final int burst;
+
+        Kind(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+    }
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.ratelimit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    private final Map<Kind, TokenBucketRateLimiter> limiters = new EnumMap<>(Kind.class);
+
+    @Override
+    public void afterPropertiesSet() {
+        for (Kind kind : Kind.values()) {
+            String prefix = "blog.ratelimit." + name(kind);
+            limiters.put(kind, new TokenBucketRateLimiter(
+                    environment.getProperty(prefix + ".per-second", Double.class, kind.ratePerSecond),
+                    environment.getProperty(prefix + ".burst", Integer.class, kind.burst),
+                    environment.getProperty("blog.ratelimit.max-clients", Integer.class, 100_000)));
+        }
+    }
+
+    /**
+     * Взять токен; 0 - можно выполнять, иначе через сколько миллисекунд появится токен.
+     * client == null (вызов не из HTTP-запроса) и выключенный admission control не ограничиваются
+     */
+    public long tryAcquire(Kind kind, String client) {
+        if (!enabled || client == null) {
+            return 0;
+        }
+        long waitMillis = limiters.get(kind).tryAcquire(client);
+        if (waitMillis > 0) {
+            metricsRegistry.increment("ratelimit." + name(kind) + ".rejected");
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Клиент запроса: IP, за доверенным прокси - первый адрес X-Forwarded-For
+     */
+    public String clientKey(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static String name(Kind kind) {
+        return kind.name().toLowerCase(Locale.ROOT);
+    }
+}
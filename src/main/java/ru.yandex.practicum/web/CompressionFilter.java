@@ -0,0 +1,287 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * ✅ Сжатие ответов API (gzip / deflate по Accept-Encoding)
+ *
+ * - сжимаются только текстовые типы (JSON, text/*, XML); картинки и прочие бинарные - как есть
+ * - ответы меньше blog.compression.min-size-bytes не сжимаются (заголовок gzip съест выигрыш)
+ * - решение принимается на первых байтах тела, без буферизации всего ответа
+ * - если Content-Encoding уже выставлен (готовый сжатый вариант из JsonResponseCache), ответ не трогаем
+ *
+ * Подключается в web.xml через DelegatingFilterProxy, раньше statementStatsFilter.
+ */
+@Component("compressionFilter")
+public class CompressionFilter extends OncePerRequestFilter {
+
+    private static final String NEGOTIATED_ATTRIBUTE = CompressionFilter.class.getName() + ".encoding";
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.compression.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.compression.min-size-bytes:1024}")
+    private int minSizeBytes;
+
+    /**
+     * Кодировка, которую можно применить к телу длиной length в текущем запросе (или null)
+     */
+    public static ContentEncoding acceptedEncoding(int length) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        Object negotiated = attributes.getRequest().getAttribute(NEGOTIATED_ATTRIBUTE);
+        if (negotiated instanceof Negotiated n && length >= n.minSizeBytes) {
+            return n.encoding;
+        }
+        return null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        ContentEncoding encoding = enabled ? ContentEncoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) : null;
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encoding == null || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        request.setAttribute(NEGOTIATED_ATTRIBUTE, new Negotiated(encoding, minSizeBytes));
+        CompressingResponse compressing = new CompressingResponse(response, encoding);
+        try {
+            chain.doFilter(request, compressing);
+        } finally {
+            // Асинхронные ответы (SSE) идут как есть: text/event-stream не сжимается
+            if (!request.isAsyncStarted()) {
+                compressing.finish();
+            }
+        }
+    }
+
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("application/json")
+                || type.startsWith("text/") && !type.startsWith("text/event-stream")
+                || type.contains("+json")
+                || type.startsWith("application/xml")
+                || type.startsWith("application/javascript");
+    }
+
+    private static final class Negotiated {
+        private final ContentEncoding encoding;
+        private final int minSizeBytes;
+
+        Negotiated(ContentEncoding encoding, int minSizeBytes) {
+            this.encoding = encoding;
+            this.minSizeBytes = minSizeBytes;
+        }
+    }
+
+    /**
+     * Первые min-size байт копятся в буфере; дальше либо сжатие, либо запись как есть
+     */
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final ContentEncoding encoding;
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private long contentLength = -1;
+        private OutputStream target;
+        private boolean compressing;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, ContentEncoding encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+            if (target != null && !compressing) {
+                super.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        CompressingResponse.this.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        CompressingResponse.this.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        throw new UnsupportedOperationException("Non-blocking IO is not supported with compression");
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(),
+                        Charset.forName(getCharacterEncoding())), false);
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flush();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (target != null) {
+                throw new IllegalStateException("Response body already started");
+            }
+            head.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            resetBuffer();
+            contentLength = -1;
+            super.reset();
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (!isCompressible(getContentType()) || getHeader(HttpHeaders.CONTENT_ENCODING) != null
+                        || contentLength >= 0 && contentLength < minSizeBytes) {
+                    startPlain();
+                } else {
+                    head.write(b, off, len);
+                    if (head.size() >= minSizeBytes) {
+                        startCompressed();
+                    }
+                    return;
+                }
+            }
+            target.write(b, off, len);
+        }
+
+        private void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        private void startPlain() throws IOException {
+            target = getResponse().getOutputStream();
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+            if (head.size() > 0) {
+                head.writeTo(target);
+                head.reset();
+            }
+        }
+
+        private void startCompressed() throws IOException {
+            compressing = true;
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+            target = encoding.wrap(response.getOutputStream());
+            head.writeTo(target);
+            head.reset();
+            metricsRegistry.increment("compression." + encoding.getToken());
+        }
+
+        /**
+         * Конец тела: маленький ответ уходит как есть, сжатый - дописывается трейлер
+         */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (target == null) {
+                if (head.size() > 0 || contentLength >= 0) {
+                    startPlain();
+                }
+                return;
+            }
+            if (compressing) {
+                target.close();
+            }
+        }
+    }
+}
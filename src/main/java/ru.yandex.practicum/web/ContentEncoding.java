@@ -0,0 +1,101 @@
+package ru.yandex.practicum.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ✅ Поддерживаемые Content-Encoding и выбор по Accept-Encoding
+ */
+public enum ContentEncoding {
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream wrap(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 8192, true);
+        }
+    },
+    DEFLATE("deflate") {
+        @Override
+        public OutputStream wrap(OutputStream out) {
+            return new DeflaterOutputStream(out, true);
+        }
+    };
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Сжимающий поток поверх out (flush() сбрасывает уже сжатые данные клиенту)
+     */
+    public abstract OutputStream wrap(OutputStream out) throws IOException;
+
+    public byte[] compress(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (OutputStream out = wrap(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Лучшая кодировка из Accept-Encoding: gzip предпочтительнее deflate, q=0 - запрет.
+     * "*" разрешает только кодировки, не запрещенные явно (RFC 9110: "gzip;q=0, *" - без gzip).
+     * null - клиент сжатие не принимает.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean gzipRejected = false;
+        boolean deflateRejected = false;
+        boolean any = false;
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] tokens = part.trim().split(";");
+            String name = tokens[0].trim();
+            boolean rejected = isRejected(tokens);
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip |= !rejected;
+                gzipRejected |= rejected;
+            } else if (name.equals("deflate")) {
+                deflate |= !rejected;
+                deflateRejected |= rejected;
+            } else if (name.equals("*")) {
+                any |= !rejected;
+            }
+        }
+        if (gzip || any && !gzipRejected) {
+            return GZIP;
+        }
+        return deflate || any && !deflateRejected ? DEFLATE : null;
+    }
+
+    private static boolean isRejected(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String param = tokens[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
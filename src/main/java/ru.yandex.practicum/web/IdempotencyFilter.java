@@ -0,0 +1,286 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.yandex.practicum.exception.ErrorResponse;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * ✅ Idempotency-Key для POST /api/posts и POST /api/posts/{id}/comments
+ *
+ * - первый запрос с ключом выполняется как обычно, ответ (статус + тело) сохраняется
+ *   в IdempotencyStore; ответы 5xx не сохраняются - такой запрос можно повторить
+ * - повтор с тем же ключом получает сохраненный ответ с заголовком Idempotent-Replayed,
+ *   контроллер и БД не вызываются
+ * - первый запрос занимает ключ заявкой в хранилище (IdempotencyStore.claim) до выполнения;
+ *   одновременные повторы, в том числе на других инстансах при store=jdbc, ждут его
+ *   (до blog.idempotency.wait-timeout-ms) и получают его ответ; не дождались - 409 + Retry-After
+ * - первый запрос завершился 5xx или 429 - заявка снимается, повтор выполнится заново
+ * - тот же ключ с другим телом запроса - 422
+ *
+ * Ключ действует в пределах метода и пути: один ключ на разных эндпоинтах - разные запросы.
+ * Подключается в web.xml через DelegatingFilterProxy, ДО admissionControlFilter: ожидающий
+ * повтор не держит слот лимита WRITE, слот занимает только выполняющийся запрос.
+ */
+@Component("idempotencyFilter")
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Pattern CREATE_ENDPOINTS = Pattern.compile("^/api/posts(/\\d+/comments)?/?$");
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long MIN_POLL_MILLIS = 20;
+    private static final long MAX_POLL_MILLIS = 500;
+
+    @Autowired
+    private IdempotencyStore store;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${blog.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMillis;
+
+    @Value("${blog.idempotency.max-body-bytes:1048576}")
+    private int maxBodyBytes;
+
+    /**
+     * Запросы с занятым ключом в этом процессе: ждущие повторы просыпаются сразу, а не по опросу
+     */
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !CREATE_ENDPOINTS.matcher(request.getRequestURI().substring(request.getContextPath().length())).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, HEADER + " must be 1.." + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body is too large");
+            return;
+        }
+        String requestHash = sha256(body);
+        String storeKey = request.getMethod() + " " + request.getRequestURI() + " " + key;
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        long pollMillis = MIN_POLL_MILLIS;
+        boolean waited = false;
+
+        while (true) {
+            IdempotencyStore.StoredResponse stored = store.find(storeKey);
+            if (stored != null) {
+                replay(stored, requestHash, response);
+                return;
+            }
+            if (store.claim(storeKey, requestHash)) {
+                execute(request, response, chain, body, requestHash, storeKey);
+                return;
+            }
+
+            // Ключ занят запросом, который еще выполняется (здесь или на другом инстансе)
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                reject(response, HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+                return;
+            }
+            if (!waited) {
+                waited = true;
+                metricsRegistry.increment("idempotency.waited");
+            }
+            try {
+                CompletableFuture<Void> local = inFlight.get(storeKey);
+                if (local != null) {
+                    // Владелец в этом же процессе: будит сразу по завершении
+                    local.get(Math.min(remaining, MAX_POLL_MILLIS), TimeUnit.MILLISECONDS);
+                } else {
+                    Thread.sleep(Math.min(remaining, pollMillis));
+                    pollMillis = Math.min(MAX_POLL_MILLIS, pollMillis * 2);
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                // Перепроверяем хранилище
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Interrupted while waiting for the original request", e);
+            }
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         byte[] body, String requestHash, String storeKey) throws ServletException, IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.put(storeKey, done);
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        boolean saved = false;
+        try {
+            chain.doFilter(new BufferedBodyRequest(request, body), buffered);
+            if (isReplayable(buffered.getStatus())) {
+                store.save(storeKey, new IdempotencyStore.StoredResponse(requestHash, buffered.getStatus(),
+                        buffered.getContentType(), buffered.getContentAsByteArray()));
+                saved = true;
+                metricsRegistry.increment("idempotency.stored");
+            }
+            buffered.copyBodyToResponse();
+        } finally {
+            try {
+                if (!saved) {
+                    // Ответа, который можно повторить, нет: следующий повтор выполнит запрос сам
+                    store.release(storeKey);
+                }
+            } finally {
+                inFlight.remove(storeKey, done);
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 5xx и 429 (отказ admission control) - временные: повтор должен выполниться заново
+     */
+    private static boolean isReplayable(int status) {
+        return status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private void replay(IdempotencyStore.StoredResponse stored, String requestHash,
+                        HttpServletResponse response) throws IOException {
+        if (!stored.getRequestHash().equals(requestHash)) {
+            metricsRegistry.increment("idempotency.mismatch");
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used with a different request body");
+            return;
+        }
+        metricsRegistry.increment("idempotency.replayed");
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        metricsRegistry.increment("errors.status." + status.value());
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(status.value(), status.getReasonPhrase(), message));
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Запрос с уже прочитанным телом: контроллер читает его из памяти
+     */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Body is already buffered");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null
+                    ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.web;
+
+/**
+ * ✅ Хранилище результатов запросов с Idempotency-Key (см. IdempotencyFilter)
+ *
+ * Реализации: InMemoryIdempotencyStore (по умолчанию) и JdbcIdempotencyStore
+ * (таблица idempotency_keys, переживает перезапуск). Выбор - blog.idempotency.store в AppConfig.
+ *
+ * Ключ занимается заявкой (claim) до выполнения запроса, атомарно в самом хранилище:
+ * из одновременных повторов - в том числе на разных инстансах с общей БД - выполняется один.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Сохраненный ответ или null, если ключа нет или срок хранения истек
+     */
+    StoredResponse find(String key);
+
+    /**
+     * Занять ключ перед выполнением запроса.
+     * true - ключ был свободен (или прошлая заявка старше claim-ttl: ее владелец упал)
+     * и теперь принадлежит вызывающему; false - ключ занят другим запросом или уже есть ответ
+     */
+    boolean claim(String key, String requestHash);
+
+    /**
+     * Сохранить ответ по занятому ключу
+     */
+    void save(String key, StoredResponse response);
+
+    /**
+     * Снять заявку без ответа (5xx, исключение): следующий повтор выполнит запрос заново
+     */
+    void release(String key);
+
+    /**
+     * Первый ответ на запрос с ключом: его же получают повторы
+     */
+    final class StoredResponse {
+        private final String requestHash;
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(String requestHash, int status, String contentType, byte[] body) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        /**
+         * SHA-256 тела запроса: повтор с тем же ключом, но другим телом - ошибка клиента
+         */
+        public String getRequestHash() {
+            return requestHash;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * ✅ IdempotencyStore в памяти процесса
+ *
+ * - не больше maxEntries ключей: при переполнении вытесняется самый старый
+ * - ключ живет ttlMillis, заявка без ответа - claimTtlMillis; записи упорядочены
+ *   по времени сохранения, поэтому просроченные снимаются с головы без обхода всей карты
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final long ttlMillis;
+    private final long claimTtlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(long ttlMillis, long claimTtlMillis, int maxEntries) {
+        this(ttlMillis, claimTtlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    InMemoryIdempotencyStore(long ttlMillis, long claimTtlMillis, int maxEntries, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.claimTtlMillis = claimTtlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized StoredResponse find(String key) {
+        Entry entry = live(key);
+        // У заявки ответа еще нет
+        return entry != null ? entry.response : null;
+    }
+
+    @Override
+    public synchronized boolean claim(String key, String requestHash) {
+        if (live(key) != null) {
+            return false;
+        }
+        put(key, new Entry(null, clock.getAsLong() + claimTtlMillis));
+        return true;
+    }
+
+    @Override
+    public synchronized void save(String key, StoredResponse response) {
+        put(key, new Entry(response, clock.getAsLong() + ttlMillis));
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.response == null) {
+            entries.remove(key);
+        }
+    }
+
+    private Entry live(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(String key, Entry entry) {
+        long now = clock.getAsLong();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry oldest = iterator.next();
+            if (oldest.expiresAt > now && entries.size() < maxEntries) {
+                break;
+            }
+            iterator.remove();
+        }
+        // remove + put: перезаписанный ключ переезжает в конец порядка
+        entries.remove(key);
+        entries.put(key, entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        // null - заявка: запрос с ключом еще выполняется
+        private final StoredResponse response;
+        private final long expiresAt;
+
+        Entry(StoredResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
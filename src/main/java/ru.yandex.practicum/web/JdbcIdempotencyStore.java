@@ -0,0 +1,93 @@
+package ru.yandex.practicum.web;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ✅ IdempotencyStore в таблице idempotency_keys
+ *
+ * Ключи переживают перезапуск и видны всем инстансам с общей БД.
+ * Заявка - строка со status = 0 без тела: INSERT по первичному ключу проходит ровно у одного
+ * из одновременных запросов, на каком бы инстансе они ни выполнялись. Заявку старше claimTtlMillis
+ * (владелец упал, не успев ни сохранить ответ, ни снять ее) перехватывает следующий повтор.
+ * Чтение и запись - только в основной БД: повтор не должен разминуться с отстающей репликой.
+ * Просроченные строки удаляются попутно, раз в CLEANUP_EVERY сохранений.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final int CLEANUP_EVERY = 256;
+    private static final int PENDING = 0;
+
+    private static final String SELECT_KEY =
+            "SELECT request_hash, status, content_type, body FROM idempotency_keys " +
+                    "WHERE idem_key = ? AND status <> " + PENDING + " AND created_at > ?";
+    private static final String INSERT_CLAIM =
+            "INSERT INTO idempotency_keys (idem_key, request_hash, status, created_at) VALUES (?, ?, " + PENDING + ", ?)";
+    private static final String TAKE_OVER_CLAIM =
+            "UPDATE idempotency_keys SET request_hash = ?, status = " + PENDING + ", content_type = NULL, body = NULL, created_at = ? " +
+                    "WHERE idem_key = ? AND (created_at <= ? OR status = " + PENDING + " AND created_at <= ?)";
+    private static final String DELETE_CLAIM =
+            "DELETE FROM idempotency_keys WHERE idem_key = ? AND status = " + PENDING;
+    private static final String MERGE_KEY =
+            "MERGE INTO idempotency_keys (idem_key, request_hash, status, content_type, body, created_at) " +
+                    "KEY (idem_key) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM idempotency_keys WHERE created_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final long claimTtlMillis;
+    private final AtomicLong saves = new AtomicLong();
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, long ttlMillis, long claimTtlMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlMillis;
+        this.claimTtlMillis = claimTtlMillis;
+    }
+
+    @Override
+    public StoredResponse find(String key) {
+        List<StoredResponse> found = jdbcTemplate.query(SELECT_KEY, (rs, rowNum) -> new StoredResponse(
+                        rs.getString("request_hash"),
+                        rs.getInt("status"),
+                        rs.getString("content_type"),
+                        rs.getBytes("body")),
+                key, expiredBefore());
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public boolean claim(String key, String requestHash) {
+        long now = System.currentTimeMillis();
+        try {
+            jdbcTemplate.update(INSERT_CLAIM, key, requestHash, new Timestamp(now));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Строка есть: перехватываем только просроченный ответ или брошенную заявку
+            return jdbcTemplate.update(TAKE_OVER_CLAIM, requestHash, new Timestamp(now), key,
+                    expiredBefore(), new Timestamp(now - claimTtlMillis)) == 1;
+        }
+    }
+
+    @Override
+    public void save(String key, StoredResponse response) {
+        jdbcTemplate.update(MERGE_KEY, key, response.getRequestHash(), response.getStatus(),
+                response.getContentType(), response.getBody(), new Timestamp(System.currentTimeMillis()));
+        if (saves.incrementAndGet() % CLEANUP_EVERY == 0) {
+            jdbcTemplate.update(DELETE_EXPIRED, expiredBefore());
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update(DELETE_CLAIM, key);
+    }
+
+    private Timestamp expiredBefore() {
+        return new Timestamp(System.currentTimeMillis() - ttlMillis);
+    }
+}
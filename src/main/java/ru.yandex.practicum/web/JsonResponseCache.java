@@ -0,0 +1,176 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Кеш готовых JSON-ответов для GET /api/posts и GET /api/posts/{id}
+ *
+ * Хранит DTO уже в виде UTF-8 байт: попадание в кеш не трогает ни БД, ни Jackson.
+ *
+ * ИНВАЛИДАЦИЯ - поколениями, без прохода по записям:
+ * - у детальной страницы поста свое поколение (счетчик в полосе по id поста),
+ *   у всех страниц списка - одно общее; запись помнит поколение на момент чтения
+ *   и при несовпадении считается промахом
+ * - PostEvent/CommentEvent после commit сдвигают поколение поста; создание, изменение,
+ *   удаление поста и число комментариев - еще и поколение списка. Лайк списки не сбрасывает:
+ *   likesCount в списке устаревает не дольше TTL
+ * - ответ, собранный во время инвалидации, в кеш не кладется (сверка поколения)
+ * - TTL (blog.cache.json.ttl-ms) ограничивает устаревание при чтении с отстающей реплики
+ */
+@Component
+public class JsonResponseCache {
+
+    private static final String POST_PREFIX = "post:";
+    private static final String LIST_PREFIX = "posts?";
+    // Полос поколений постов: совпадение полосы у двух постов дает лишний промах, но не устаревший ответ
+    private static final int POST_STRIPES = 4096;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.cache.json.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.cache.json.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${blog.cache.json.ttl-ms:30000}")
+    private long ttlMillis;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Общее поколение (clear) и поколения областей: все только растут, поэтому сумма меняется при любом сдвиге
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong listGeneration = new AtomicLong();
+    private final AtomicLongArray postGenerations = new AtomicLongArray(POST_STRIPES);
+
+    public static String postKey(Long id) {
+        return POST_PREFIX + id;
+    }
+
+    public static String listKey(String search, int pageNumber, int pageSize, PostSort sort) {
+        return LIST_PREFIX + sort.name() + '&' + pageNumber + '&' + pageSize + '&' + search;
+    }
+
+    public SerializedJson get(String key, Supplier<?> loader) {
+        return find(key, () -> Optional.of(loader.get())).orElseThrow();
+    }
+
+    /**
+     * Пустой Optional (например, 404) не кешируется
+     */
+    public Optional<SerializedJson> find(String key, Supplier<? extends Optional<?>> loader) {
+        long now = System.currentTimeMillis();
+        Entry cached = enabled ? entries.get(key) : null;
+        long loadedAt = generationOf(key);
+        if (cached != null) {
+            if (cached.expiresAt > now && cached.generation == loadedAt) {
+                metricsRegistry.increment("cache.json.hit");
+                return Optional.of(cached.json);
+            }
+            entries.remove(key, cached);
+        }
+        metricsRegistry.increment("cache.json.miss");
+
+        Optional<SerializedJson> json = loader.get().map(value -> SerializedJson.of(objectMapper, value));
+        if (enabled && json.isPresent() && generationOf(key) == loadedAt) {
+            if (entries.size() >= maxEntries) {
+                evictSome();
+            }
+            entries.put(key, new Entry(json.get(), now + ttlMillis, loadedAt));
+        }
+        return json;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        invalidatePost(event.getPostId());
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+            case DELETED:
+                listGeneration.incrementAndGet();
+                break;
+            default:
+                // Лайк и картинка меняют только детальную страницу
+                break;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        invalidatePost(event.getPostId());
+        if (event.getType() != CommentEvent.Type.UPDATED) {
+            // commentsCount есть и в деталях поста, и в списке
+            listGeneration.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        clear();
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private void invalidatePost(Long postId) {
+        postGenerations.incrementAndGet(stripe(postId));
+        entries.remove(postKey(postId));
+    }
+
+    private long generationOf(String key) {
+        long scope = key.startsWith(POST_PREFIX)
+                ? postGenerations.get(stripe(Long.parseLong(key.substring(POST_PREFIX.length()))))
+                : listGeneration.get();
+        return generation.get() + scope;
+    }
+
+    private static int stripe(long postId) {
+        return (int) ((postId ^ (postId >>> 32)) & (POST_STRIPES - 1));
+    }
+
+    private void evictSome() {
+        // Без LRU: выбрасываем четверть записей, для кеша страниц этого достаточно
+        int toRemove = Math.max(1, maxEntries / 4);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final SerializedJson json;
+        private final long expiresAt;
+        private final long generation;
+
+        Entry(SerializedJson json, long expiresAt, long generation) {
+            this.json = json;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+}
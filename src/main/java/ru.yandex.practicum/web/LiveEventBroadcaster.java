@@ -0,0 +1,389 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.exception.ServiceUnavailableException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ✅ Живые события поста для GET /api/posts/{id}/events (Server-Sent Events)
+ *
+ * - подписка - SseEmitter на async-запросе: пока событий нет, подписчик не держит
+ *   ни поток, ни соединение с БД, только объект в памяти
+ * - comment-created / comment-updated / comment-deleted: сразу после commit, текст
+ *   берется из CommentEvent без чтения БД
+ * - likes: лайки склеиваются - за blog.live.likes-flush-ms подписчики получают одно событие
+ *   с текущим likes_count, сколько бы лайков ни пришло; счетчики всех таких постов
+ *   читаются одним запросом
+ * - post-deleted: последнее событие, после него поток закрывается
+ *
+ * Событие сериализуется один раз в потоке live-events и кладется в очередь каждого
+ * подписчика (blog.live.queue-size); сама запись в сокет - на пуле blog.live.send-threads,
+ * не больше одной отправки на подписчика за раз, так что порядок событий сохраняется.
+ * Медленный клиент не задерживает остальных: переполнил очередь или висит на одной записи
+ * дольше blog.live.send-timeout-ms - отключается (переподключится сам и перечитает пост).
+ * Раз в blog.live.heartbeat-ms всем уходит комментарий-пинг: прокси не закрывают
+ * простаивающее соединение, а отвалившиеся клиенты обнаруживаются и удаляются.
+ */
+@Component
+public class LiveEventBroadcaster implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveEventBroadcaster.class);
+
+    /**
+     * Метка в очереди подписчика: все до нее отправлено, поток можно закрывать
+     */
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> CLOSE = Collections.unmodifiableSet(new HashSet<>());
+
+    @Autowired
+    private PostDao postDao;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.live.max-subscribers:20000}")
+    private int maxSubscribers;
+
+    @Value("${blog.live.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${blog.live.likes-flush-ms:1000}")
+    private long likesFlushMillis;
+
+    @Value("${blog.live.heartbeat-ms:25000}")
+    private long heartbeatMillis;
+
+    @Value("${blog.live.retry-ms:3000}")
+    private long retryMillis;
+
+    @Value("${blog.live.queue-size:64}")
+    private int queueSize;
+
+    @Value("${blog.live.send-threads:4}")
+    private int sendThreads;
+
+    @Value("${blog.live.send-timeout-ms:10000}")
+    private long sendTimeoutMillis;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Set<Long> likedPosts = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService sender;
+    private ExecutorService sendPool;
+
+    @Override
+    public void afterPropertiesSet() {
+        sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sendPool = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "live-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::flushLikes, likesFlushMillis, likesFlushMillis, TimeUnit.MILLISECONDS);
+        sender.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        metricsRegistry.gauge("live.subscribers", subscriberCount::get);
+    }
+
+    /**
+     * Новый подписчик на события поста; при превышении blog.live.max-subscribers - 503
+     */
+    public SseEmitter subscribe(long postId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            metricsRegistry.increment("live.rejected");
+            throw new ServiceUnavailableException("Too many live subscribers, retry later", 5);
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        try {
+            // Отправится, как только запрос перейдет в async; заодно задает интервал переподключения
+            emitter.send(SseEmitter.event().reconnectTime(retryMillis).comment("subscribed"));
+        } catch (IOException e) {
+            subscriberCount.decrementAndGet();
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        Subscriber subscriber = new Subscriber(postId, emitter, queueSize);
+        // compute/computeIfPresent атомарны по ключу: подписка не попадет в уже удаленное пустое множество
+        subscribers.compute(postId, (id, current) -> {
+            Set<Subscriber> result = current != null ? current : ConcurrentHashMap.newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+
+        // Пост могли удалить между проверкой в контроллере и регистрацией: событие DELETED
+        // такую подписку уже не застало. Проверка после регистрации (на primary) это видит.
+        boolean exists;
+        try {
+            exists = postDao.existsById(postId);
+        } catch (RuntimeException e) {
+            close(subscriber);
+            throw e;
+        }
+        if (!exists) {
+            Set<ResponseBodyEmitter.DataWithMediaType> deleted = event(postId, "post-deleted", Map.of("postId", postId));
+            if (deleted != null) {
+                enqueue(subscriber, deleted);
+            }
+            enqueue(subscriber, CLOSE);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        Long postId = event.getPostId();
+        if (!subscribers.containsKey(postId)) {
+            return;
+        }
+        if (event.getType() == PostEvent.Type.LIKED) {
+            likedPosts.add(postId);
+        } else if (event.getType() == PostEvent.Type.DELETED) {
+            sender.execute(() -> {
+                likedPosts.remove(postId);
+                broadcast(postId, "post-deleted", Map.of("postId", postId));
+                // Новые события поста сюда уже не попадут; подписчики закроются, дописав очередь
+                Set<Subscriber> removed = subscribers.remove(postId);
+                if (removed != null) {
+                    removed.forEach(subscriber -> enqueue(subscriber, CLOSE));
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentEvent(CommentEvent event) {
+        if (!subscribers.containsKey(event.getPostId())) {
+            return;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", event.getCommentId());
+        data.put("postId", event.getPostId());
+        if (event.getText() != null) {
+            data.put("text", event.getText());
+        }
+        String name = "comment-" + event.getType().name().toLowerCase(Locale.ROOT);
+        sender.execute(() -> broadcast(event.getPostId(), name, data));
+    }
+
+    /**
+     * Разослать накопленные лайки: одно событие на пост за интервал
+     */
+    void flushLikes() {
+        if (likedPosts.isEmpty()) {
+            return;
+        }
+        List<Long> postIds = new ArrayList<>(likedPosts);
+        likedPosts.removeAll(postIds);
+        try {
+            postDao.findLikesCounts(postIds).forEach((postId, likesCount) -> {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("postId", postId);
+                data.put("likesCount", likesCount);
+                broadcast(postId, "likes", data);
+            });
+        } catch (DataAccessException e) {
+            // Следующий лайк снова поставит пост в очередь
+            log.warn("Live likes flush failed: {}", e.getMessage());
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        long now = System.nanoTime();
+        long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        subscribers.values().forEach(current -> current.forEach(subscriber -> {
+            long started = subscriber.sendStartedNanos;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                disconnect(subscriber, "live.slow-disconnects", new IOException("Live event send timed out"));
+            } else {
+                enqueue(subscriber, ping);
+            }
+        }));
+    }
+
+    private void broadcast(Long postId, String name, Object data) {
+        Set<Subscriber> current = subscribers.get(postId);
+        if (current == null || current.isEmpty()) {
+            return;
+        }
+        // Готовые байты события одни на всех подписчиков
+        Set<ResponseBodyEmitter.DataWithMediaType> payload = event(postId, name, data);
+        if (payload == null) {
+            return;
+        }
+        int queued = 0;
+        for (Subscriber subscriber : current) {
+            if (enqueue(subscriber, payload)) {
+                queued++;
+            }
+        }
+        metricsRegistry.increment("live.events." + name);
+        metricsRegistry.counter("live.deliveries").add(queued);
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> event(Long postId, String name, Object data) {
+        try {
+            return SseEmitter.event().name(name).data(objectMapper.writeValueAsString(data), MediaType.TEXT_PLAIN).build();
+        } catch (JsonProcessingException e) {
+            log.warn("Live event {} for post {} not serialized: {}", name, postId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Положить событие в очередь подписчика и запустить отправку, если она не идет;
+     * очередь полна - клиент не успевает читать и отключается
+     */
+    private boolean enqueue(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> payload) {
+        if (subscriber.closed.get()) {
+            return false;
+        }
+        if (!subscriber.queue.offer(payload)) {
+            disconnect(subscriber, "live.slow-disconnects", new IOException("Live event queue overflow"));
+            return false;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sendPool.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                // Остановка: destroy закроет всех сам
+                subscriber.draining.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Отправить очередь подписчика; одновременно для подписчика работает не больше одного drain
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Set<ResponseBodyEmitter.DataWithMediaType> payload = subscriber.queue.poll();
+            if (payload == null) {
+                subscriber.draining.set(false);
+                // Событие могло прийти между poll и сбросом флага - тогда его отправит этот же поток
+                if (subscriber.queue.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            if (payload == CLOSE) {
+                if (close(subscriber)) {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            subscriber.sendStartedNanos = System.nanoTime();
+            try {
+                subscriber.emitter.send(payload);
+            } catch (IOException | IllegalStateException e) {
+                // Клиент ушел: убираем сразу, не дожидаясь onError
+                disconnect(subscriber, "live.disconnects", e);
+                return;
+            } finally {
+                subscriber.sendStartedNanos = 0;
+            }
+        }
+    }
+
+    private void disconnect(Subscriber subscriber, String metric, Exception reason) {
+        if (close(subscriber)) {
+            metricsRegistry.increment(metric);
+            subscriber.emitter.completeWithError(reason);
+        }
+    }
+
+    /**
+     * Убрать подписчика ровно один раз; false - уже убран
+     */
+    private boolean close(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscriber.queue.clear();
+        subscriberCount.decrementAndGet();
+        // После DELETED множества подписчика в карте уже нет - тогда remove ничего не делает
+        subscribers.computeIfPresent(subscriber.postId, (id, current) -> {
+            current.remove(subscriber);
+            return current.isEmpty() ? null : current;
+        });
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        sender.shutdownNow();
+        sendPool.shutdownNow();
+        subscribers.values().forEach(current -> current.forEach(subscriber -> {
+            if (close(subscriber)) {
+                subscriber.emitter.complete();
+            }
+        }));
+        subscribers.clear();
+    }
+
+    private static final class Subscriber {
+        private final long postId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Начало текущей записи в сокет, 0 - запись не идет
+        private volatile long sendStartedNanos;
+
+        private Subscriber(long postId, SseEmitter emitter, int queueSize) {
+            this.postId = postId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ru.yandex.practicum.web;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ✅ Кеш изображений постов вне кучи для GET /api/posts/{id}/image
+ *
+ * Память - один direct ByteBuffer размером blog.cache.images.max-bytes, выделенный при старте
+ * и нарезанный на страницы blog.cache.images.page-bytes. Изображение занимает столько страниц,
+ * сколько нужно; байты изображений не живут в куче, GC их не видит и не копирует.
+ *
+ * - вытеснение CLOCK (приближение LRU): попадание ставит бит обращения, стрелка снимает его
+ *   и вытесняет запись без бита
+ * - запись держит счетчик ссылок: вытесненное или инвалидированное изображение, которое сейчас
+ *   пишется в ответ, освобождает страницы только после окончания записи
+ * - промах: изображение читается из БД и отдается из этого же byte[], копия кладется в кеш
+ * - вместе с байтами хранится SHA-256 (ETag): попадание отвечает 304 без обращения к БД
+ * - инвалидация: PostEvent IMAGE_CHANGED/DELETED после commit (сверка поколения, как в JsonResponseCache)
+ *
+ * Метрики: cache.image.hit / miss / evicted, cache.image.hit-ratio (%), cache.image.bytes-resident.
+ */
+@Component
+public class OffHeapImageCache implements InitializingBean {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Value("${blog.cache.images.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blog.cache.images.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${blog.cache.images.page-bytes:16384}")
+    private int pageBytes;
+
+    @Value("${blog.cache.images.max-image-bytes:4194304}")
+    private int maxImageBytes;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    // Страницы, CLOCK и счетчики ниже - под монитором кеша
+    private ByteBuffer arena;
+    private int[] freePages;
+    private int freeCount;
+    private final List<Entry> ring = new ArrayList<>();
+    private int hand;
+    private long residentBytes;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        long pageCount = maxBytes / pageBytes;
+        if (pageCount < 1 || pageCount * pageBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("blog.cache.images.max-bytes must be between "
+                    + pageBytes + " and " + Integer.MAX_VALUE);
+        }
+        arena = ByteBuffer.allocateDirect((int) (pageCount * pageBytes));
+        freePages = new int[(int) pageCount];
+        for (int page = 0; page < pageCount; page++) {
+            freePages[page] = page;
+        }
+        freeCount = freePages.length;
+
+        metricsRegistry.gauge("cache.image.bytes-resident", this::getResidentBytes);
+        metricsRegistry.gauge("cache.image.entries", entries::size);
+        metricsRegistry.gauge("cache.image.hit-ratio", () -> {
+            long hits = metricsRegistry.counter("cache.image.hit").sum();
+            long total = hits + metricsRegistry.counter("cache.image.miss").sum();
+            return total == 0 ? 0.0 : 100.0 * hits / total;
+        });
+    }
+
+    /**
+     * Изображение поста; пустой Optional (нет поста или изображения) не кешируется.
+     * Возвращенный CachedImage нужно закрыть после записи в ответ
+     */
+    public Optional<CachedImage> find(Long postId, Supplier<Optional<Image>> loader) {
+        Entry cached = arena != null ? entries.get(postId) : null;
+        if (cached != null && cached.retain()) {
+            cached.referenced = true;
+            metricsRegistry.increment("cache.image.hit");
+            return Optional.of(new CachedImage(cached));
+        }
+        metricsRegistry.increment("cache.image.miss");
+
+        long loadedAt = generation.get();
+        Optional<Image> image = loader.get();
+        if (arena != null && image.isPresent()) {
+            put(postId, image.get(), loadedAt);
+        }
+        return image.map(CachedImage::new);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostEvent(PostEvent event) {
+        if (event.getType() == PostEvent.Type.IMAGE_CHANGED || event.getType() == PostEvent.Type.DELETED) {
+            invalidate(event.getPostId());
+        }
+    }
+
+    @EventListener
+    public void onInvalidateAll(InvalidateAllEvent event) {
+        clear();
+    }
+
+    public synchronized void invalidate(Long postId) {
+        generation.incrementAndGet();
+        Entry entry = entries.remove(postId);
+        if (entry != null) {
+            removeFromRing(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        List<Entry> removed = new ArrayList<>(ring);
+        ring.clear();
+        hand = 0;
+        for (Entry entry : removed) {
+            residentBytes -= entry.length;
+            entry.release();
+        }
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    private synchronized void put(Long postId, Image loaded, long loadedAt) {
+        byte[] image = loaded.getData();
+        if (image.length > maxImageBytes || generation.get() != loadedAt || entries.containsKey(postId)) {
+            return;
+        }
+        int needed = (image.length + pageBytes - 1) / pageBytes;
+        if (needed > freePages.length || !reclaim(needed)) {
+            return;
+        }
+
+        int[] pages = new int[needed];
+        for (int i = 0; i < needed; i++) {
+            pages[i] = freePages[--freeCount];
+            int offset = i * pageBytes;
+            arena.put(pages[i] * pageBytes, image, offset, Math.min(pageBytes, image.length - offset));
+        }
+        Entry entry = new Entry(postId, loaded.getHash(), pages, image.length);
+        entries.put(postId, entry);
+        ring.add(entry);
+        residentBytes += image.length;
+    }
+
+    /**
+     * CLOCK: не больше двух оборотов стрелки. Страницы вытесненной записи, которая еще пишется
+     * в ответ, вернутся позже - тогда новое изображение просто не кешируется
+     */
+    private boolean reclaim(int needed) {
+        int steps = ring.size() * 2;
+        while (freeCount < needed && !ring.isEmpty() && steps-- > 0) {
+            if (hand >= ring.size()) {
+                hand = 0;
+            }
+            Entry entry = ring.get(hand);
+            if (entry.referenced) {
+                entry.referenced = false;
+                hand++;
+            } else {
+                ring.remove(hand);
+                entries.remove(entry.postId, entry);
+                residentBytes -= entry.length;
+                metricsRegistry.increment("cache.image.evicted");
+                entry.release();
+            }
+        }
+        return freeCount >= needed;
+    }
+
+    private void removeFromRing(Entry entry) {
+        int index = ring.indexOf(entry);
+        ring.remove(index);
+        if (index < hand) {
+            hand--;
+        }
+        residentBytes -= entry.length;
+        entry.release();
+    }
+
+    private synchronized void free(int[] pages) {
+        for (int page : pages) {
+            freePages[freeCount++] = page;
+        }
+    }
+
+    /**
+     * Изображение в страницах арены. Ссылка кеша - одна из refs: пока запись в кеше
+     * или пишется в ответ, страницы заняты
+     */
+    final class Entry {
+        private final Long postId;
+        private final String hash;
+        private final int[] pages;
+        private final int length;
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private volatile boolean referenced;
+
+        Entry(Long postId, String hash, int[] pages, int length) {
+            this.postId = postId;
+            this.hash = hash;
+            this.pages = pages;
+            this.length = length;
+        }
+
+        int length() {
+            return length;
+        }
+
+        String hash() {
+            return hash;
+        }
+
+        boolean retain() {
+            int current;
+            do {
+                current = refs.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!refs.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                free(pages);
+            }
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (int i = 0; i < pages.length; i++) {
+                int size = Math.min(pageBytes, length - i * pageBytes);
+                ByteBuffer page = arena.slice(pages[i] * pageBytes, size);
+                while (page.hasRemaining()) {
+                    channel.write(page);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.yandex.practicum.jdbc.RoutingContext;
+
+/**
+ * ✅ Read-your-writes для клиента при чтении с реплик
+ *
+ * После записи клиент получает cookie с моментом, до которого его чтения
+ * идут в основную БД (пока реплики не догнали). Сессия на сервере не нужна.
+ */
+@Component
+public class ReplicaStickinessInterceptor implements HandlerInterceptor {
+
+    public static final String COOKIE_NAME = "blog-primary-until";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RoutingContext.beginRequest(readStickyUntil(request), stickyUntil -> {
+            long maxAgeSeconds = Math.max(1, (stickyUntil - System.currentTimeMillis() + 999) / 1000);
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(stickyUntil));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) maxAgeSeconds);
+            response.addCookie(cookie);
+        });
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        RoutingContext.endRequest();
+    }
+
+    private static long readStickyUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ✅ Уже сериализованный JSON-ответ (UTF-8)
+ *
+ * Пишется в ответ как есть через SerializedJsonHttpMessageConverter,
+ * без повторного прохода Jackson по DTO.
+ *
+ * Сжатые варианты (gzip/deflate) считаются один раз при первом запросе
+ * и живут вместе с объектом, то есть до инвалидации записи в JsonResponseCache.
+ */
+public final class SerializedJson {
+
+    private final byte[] bytes;
+    private final byte[][] encoded = new byte[ContentEncoding.values().length][];
+
+    private SerializedJson(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static SerializedJson of(ObjectMapper objectMapper, Object value) {
+        try {
+            return new SerializedJson(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Не копия: массив общий для всех ответов, изменять нельзя
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public byte[] getBytes(ContentEncoding encoding) {
+        byte[] compressed;
+        synchronized (encoded) {
+            compressed = encoded[encoding.ordinal()];
+        }
+        if (compressed == null) {
+            // Гонка двух потоков даст одинаковый результат, лишнее сжатие не страшно
+            compressed = encoding.compress(bytes);
+            synchronized (encoded) {
+                encoded[encoding.ordinal()] = compressed;
+            }
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * ✅ Пишет SerializedJson в ответ напрямую (application/json, с Content-Length)
+ *
+ * Если CompressionFilter согласовал сжатие, пишется готовый сжатый вариант
+ * с Content-Encoding - фильтр такой ответ повторно не сжимает.
+ */
+public class SerializedJsonHttpMessageConverter extends AbstractHttpMessageConverter<SerializedJson> {
+
+    public SerializedJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SerializedJson.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected SerializedJson readInternal(Class<? extends SerializedJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("SerializedJson is write-only", inputMessage);
+    }
+
+    @Override
+    protected void addDefaultHeaders(HttpHeaders headers, SerializedJson json, MediaType contentType) throws IOException {
+        super.addDefaultHeaders(headers, json, contentType);
+        ContentEncoding encoding = CompressionFilter.acceptedEncoding(json.getBytes().length);
+        if (encoding != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+            headers.setContentLength(json.getBytes(encoding).length);
+        }
+    }
+
+    @Override
+    protected Long getContentLength(SerializedJson json, MediaType contentType) {
+        return (long) json.getBytes().length;
+    }
+
+    @Override
+    protected void writeInternal(SerializedJson json, HttpOutputMessage outputMessage) throws IOException {
+        ContentEncoding encoding = CompressionFilter.acceptedEncoding(json.getBytes().length);
+        outputMessage.getBody().write(encoding != null ? json.getBytes(encoding) : json.getBytes());
+    }
+}
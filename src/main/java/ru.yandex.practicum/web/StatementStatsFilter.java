@@ -0,0 +1,126 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.yandex.practicum.jdbc.StatementStats;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * ✅ Учет SQL на каждый HTTP-запрос
+ *
+ * - открывает {@link StatementStats} на время запроса
+ * - пишет WARN, если одна и та же форма SQL выполнилась больше порога (N+1)
+ * - в debug-режиме добавляет заголовки X-SQL-Statements / X-SQL-Rows / X-SQL-Time-Micros
+ *   (тело буферизуется, чтобы заголовки успели попасть в ответ; кроме потоков
+ *   text/event-stream - их события должны уходить клиенту сразу)
+ *
+ * Поток узнается не только по Accept: запрос, ушедший в async (SSE без Accept,
+ * любой другой async-ответ), после обработчика переключается на запись мимо буфера -
+ * заголовки с учетом SQL до начала потока и уже накопленное тело уходят сразу.
+ *
+ * Подключается в web.xml через DelegatingFilterProxy.
+ */
+@Component("statementStatsFilter")
+public class StatementStatsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementStatsFilter.class);
+
+    public static final String HEADER_STATEMENTS = "X-SQL-Statements";
+    public static final String HEADER_ROWS = "X-SQL-Rows";
+    public static final String HEADER_TIME = "X-SQL-Time-Micros";
+
+    @Value("${blog.sql-stats.debug-headers:false}")
+    private boolean debugHeaders;
+
+    @Value("${blog.sql-stats.repeat-warn-threshold:10}")
+    private int repeatWarnThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        StatementStats stats = StatementStats.start();
+        StatsResponse buffered = debugHeaders && !isEventStream(request)
+                ? new StatsResponse(response) : null;
+        try {
+            chain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            stats.stop();
+
+            Map<String, Long> repeated = stats.repeatedShapes(repeatWarnThreshold);
+            if (!repeated.isEmpty()) {
+                log.warn("Possible N+1 in {} {}: {} statements, repeated shapes {}",
+                        request.getMethod(), request.getRequestURI(), stats.getStatements(), repeated);
+            }
+
+            if (buffered != null) {
+                buffered.setHeader(HEADER_STATEMENTS, String.valueOf(stats.getStatements()));
+                buffered.setHeader(HEADER_ROWS, String.valueOf(stats.getRows()));
+                buffered.setHeader(HEADER_TIME, String.valueOf(stats.getNanos() / 1_000));
+                if (request.isAsyncStarted()) {
+                    buffered.startStreaming();
+                } else {
+                    buffered.copyBodyToResponse();
+                }
+            }
+        }
+    }
+
+    private static boolean isEventStream(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+    }
+
+    /**
+     * Буфер тела, который для async-ответа превращается в прямую запись
+     */
+    private static final class StatsResponse extends ContentCachingResponseWrapper {
+
+        private boolean streaming;
+
+        StatsResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        /**
+         * Отдать накопленное (без Content-Length - ответ еще пишется) и дальше писать напрямую
+         */
+        void startStreaming() throws IOException {
+            copyBodyToResponse(false);
+            streaming = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return streaming ? getResponse().getOutputStream() : super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return streaming ? getResponse().getWriter() : super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (streaming) {
+                getResponse().flushBuffer();
+            } else {
+                super.flushBuffer();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.web;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * ✅ Token bucket на клиента: burst запросов сразу, дальше ratePerSecond
+ *
+ * - корзин не больше maxClients: новый клиент сверх предела до ближайшей чистки
+ *   получает общую корзину переполнения (те же burst и rate на всех таких клиентов)
+ * - корзины неактивных клиентов (снова полные) удаляет чистка: один проход по всем
+ *   клиентам за время полного пополнения корзины (не чаще раза в секунду), а не на каждого
+ *   нового клиента при заполненной таблице
+ */
+public class TokenBucketRateLimiter {
+
+    private static final long MIN_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratePerNano;
+    private final double burst;
+    private final int maxClients;
+    private final LongSupplier clock;
+    private final long sweepIntervalNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    // Занятые места в buckets: резервируются до вставки, поэтому предел не превышается и при гонке
+    private final AtomicInteger clients = new AtomicInteger();
+    private final AtomicLong nextSweepNanos;
+    private final Bucket overflow;
+
+    public TokenBucketRateLimiter(double ratePerSecond, int burst, int maxClients) {
+        this(ratePerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(double ratePerSecond, int burst, int maxClients, LongSupplier clock) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.clock = clock;
+        this.sweepIntervalNanos = Math.max(MIN_SWEEP_INTERVAL_NANOS, (long) Math.ceil(burst / ratePerNano));
+        long now = clock.getAsLong();
+        this.nextSweepNanos = new AtomicLong(now + sweepIntervalNanos);
+        this.overflow = new Bucket(burst, now);
+    }
+
+    /**
+     * Взять токен; 0 - можно выполнять, иначе через сколько миллисекунд появится токен
+     */
+    public long tryAcquire(String client) {
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+        for (;;) {
+            Bucket bucket = buckets.get(client);
+            if (bucket == null) {
+                bucket = register(client, now);
+            }
+            synchronized (bucket) {
+                if (bucket.evicted) {
+                    // Чистка убрала корзину между get и блокировкой: берем новую
+                    continue;
+                }
+                bucket.refill(now);
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+                double missingNanos = (1 - bucket.tokens) / ratePerNano;
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil(missingNanos)));
+            }
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private Bucket register(String client, long now) {
+        if (clients.incrementAndGet() > maxClients) {
+            clients.decrementAndGet();
+            return overflow;
+        }
+        Bucket created = new Bucket(burst, now);
+        Bucket existing = buckets.putIfAbsent(client, created);
+        if (existing != null) {
+            clients.decrementAndGet();
+            return existing;
+        }
+        return created;
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweepNanos.get();
+        if (now - due < 0 || !nextSweepNanos.compareAndSet(due, now + sweepIntervalNanos)) {
+            return;
+        }
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            synchronized (bucket) {
+                bucket.refill(now);
+                if (bucket.tokens >= burst) {
+                    bucket.evicted = true;
+                    iterator.remove();
+                    clients.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long updatedNanos;
+        private boolean evicted;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updatedNanos = now;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - updatedNanos) * ratePerNano);
+            updatedNanos = now;
+        }
+    }
+}
@@ -1,24 +1,60 @@
+-- Справочная схема: то же, что создает DatabaseInitializerListener.createTables
+
 -- Создание таблицы POSTS
 CREATE TABLE IF NOT EXISTS posts (
-    id INT PRIMARY KEY AUTO_INCREMENT,
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
     title VARCHAR(255) NOT NULL,
-    text TEXT NOT NULL,
-    author_id INT,
+    text LONGTEXT NOT NULL,
+    author_id BIGINT,
     likes_count INT DEFAULT 0,
-    image VARCHAR(255),
-    created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    -- Изображения версий до таблицы images; при старте переносятся в images (migrateImages)
+    image LONGBLOB,
+    created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    comments_count INT NOT NULL DEFAULT 0,
+    text_preview VARCHAR(256),
+    -- SHA-256 изображения в images
+    image_hash CHAR(64)
 );
 
 -- Создание таблицы COMMENTS
 CREATE TABLE IF NOT EXISTS comments (
-    id INT PRIMARY KEY AUTO_INCREMENT,
-    post_id INT NOT NULL,
-    text TEXT NOT NULL,
-    author_id INT,
-    created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (post_id) REFERENCES posts(id)
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    post_id BIGINT NOT NULL,
+    text LONGTEXT NOT NULL,
+    author_id BIGINT,
+    FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE
+);
+
+-- Создание таблицы POST_TAGS
+CREATE TABLE IF NOT EXISTS post_tags (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    post_id BIGINT NOT NULL,
+    tag VARCHAR(255) NOT NULL,
+    FOREIGN KEY (post_id) REFERENCES posts(id) ON DELETE CASCADE
+);
+
+-- Изображения по содержимому: одна строка на SHA-256, ref_count - число постов с ним
+CREATE TABLE IF NOT EXISTS images (
+    hash CHAR(64) PRIMARY KEY,
+    data LONGBLOB NOT NULL,
+    size_bytes INT NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    released_at TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_images_released ON images(ref_count, released_at);
+
+-- Ответы на запросы с Idempotency-Key (blog.idempotency.store=jdbc)
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key VARCHAR(512) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    status INT NOT NULL,
+    content_type VARCHAR(255),
+    body LONGBLOB,
+    created_at TIMESTAMP NOT NULL
 );
+CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys(created_at);
 
--- Создание индексов
-CREATE INDEX idx_posts_author ON posts(author_id);
-CREATE INDEX idx_comments_post ON comments(post_id);
+-- Сортировки ленты (sort=newest|likes|comments)
+CREATE INDEX IF NOT EXISTS idx_posts_created ON posts(created_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_posts_likes ON posts(likes_count DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_posts_comments ON posts(comments_count DESC, id DESC);
@@ -0,0 +1,54 @@
+package ru.yandex.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import ru.yandex.practicum.config.AppConfig;
+import ru.yandex.practicum.config.DatabaseInitializerListener;
+import ru.yandex.practicum.service.PostService;
+import ru.yandex.practicum.web.JsonResponseCache;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Общая основа тестов на полном контексте AppConfig
+ *
+ * Перед каждым тестом: схема и тестовые данные (DatabaseInitializerListener), пустой
+ * кеш ответов (тесты меряют промах) и MockMvc с фильтрами из filters().
+ * БД одна на все тесты: созданное тестом он удаляет сам.
+ */
+@SpringJUnitWebConfig(AppConfig.class)
+public abstract class AbstractWebAppTest {
+
+    @Autowired protected WebApplicationContext context;
+    @Autowired protected DataSource dataSource;
+    @Autowired protected JdbcTemplate jdbcTemplate;
+    @Autowired protected ObjectMapper objectMapper;
+    @Autowired protected JsonResponseCache responseCache;
+    @Autowired protected PostService postService;
+
+    protected MockMvc mockMvc;
+
+    @BeforeEach
+    void initializeApp() throws Exception {
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseInitializerListener.initialize(conn);
+        }
+        responseCache.clear();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(filters()).build();
+    }
+
+    /**
+     * Фильтры из web.xml, нужные тесту: MockMvc без них идет прямо в DispatcherServlet
+     */
+    protected Filter[] filters() {
+        return new Filter[0];
+    }
+}
@@ -0,0 +1,137 @@
+package ru.yandex.practicum.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationBusTest {
+
+    private final List<InvalidationBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (InvalidationBus bus : buses) {
+            bus.close();
+        }
+    }
+
+    @Test
+    void testMessagesReachOtherNodesInBatches() throws Exception {
+        List<InvalidationMessage> onA = new CopyOnWriteArrayList<>();
+        List<InvalidationMessage> onB = new CopyOnWriteArrayList<>();
+        AtomicInteger gaps = new AtomicInteger();
+        InvalidationBus a = bus(1, "batches", onA::add, gaps::incrementAndGet);
+        InvalidationBus b = bus(2, "batches", onB::add, gaps::incrementAndGet);
+
+        for (int i = 1; i <= 20; i++) {
+            a.publish(InvalidationMessage.Entity.COMMENT, 0, 100 + i, 7);
+        }
+        awaitSize(onB, 20);
+
+        assertTrue(onA.isEmpty(), "свои сообщения не применяются");
+        assertEquals(new InvalidationMessage(InvalidationMessage.Entity.COMMENT, 0, 101, 7, 1), onB.get(0));
+        assertEquals(20, onB.get(19).getVersion());
+        assertTrue(a.getSentBatches() < 20, "сообщения уходят пачками: " + a.getSentBatches());
+        assertEquals(20, b.getReceived());
+        assertEquals(0, gaps.get());
+    }
+
+    @Test
+    void testSkippedVersionTriggersFullInvalidation() throws Exception {
+        List<InvalidationMessage> received = new CopyOnWriteArrayList<>();
+        AtomicInteger gaps = new AtomicInteger();
+        bus(2, "gaps", received::add, gaps::incrementAndGet);
+        InJvmTransport sender = new InJvmTransport("gaps");
+
+        sender.send(InvalidationBus.encode(1, 2, List.of(message(1), message(2))));
+        // Пакет с версиями 3-4 потерялся
+        sender.send(InvalidationBus.encode(1, 5, List.of(message(5))));
+        // Другой узел ведет свою нумерацию
+        sender.send(InvalidationBus.encode(3, 9, List.of(message(9))));
+
+        assertEquals(4, received.size());
+        assertEquals(1, gaps.get());
+    }
+
+    @Test
+    void testHeartbeatRevealsLostTrailingPacket() throws Exception {
+        List<InvalidationMessage> received = new CopyOnWriteArrayList<>();
+        AtomicInteger gaps = new AtomicInteger();
+        bus(2, "heartbeat", received::add, gaps::incrementAndGet);
+        InJvmTransport sender = new InJvmTransport("heartbeat");
+
+        sender.send(InvalidationBus.encode(1, 1, List.of(message(1))));
+        // Пульс с тем же номером - ничего не потерялось
+        sender.send(InvalidationBus.encode(1, 1, List.of()));
+        assertEquals(0, gaps.get());
+
+        // Последний пакет (версия 2) потерялся, после него тишина: пропуск виден только по пульсу
+        sender.send(InvalidationBus.encode(1, 2, List.of()));
+        assertEquals(1, gaps.get());
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void testIdleNodeSendsHeartbeats() throws Exception {
+        AtomicInteger gaps = new AtomicInteger();
+        List<Long> heartbeats = new CopyOnWriteArrayList<>();
+        InJvmTransport listener = new InJvmTransport("idle");
+        listener.start(packet -> heartbeats.add((long) packet.length));
+        bus(1, "idle", message -> { }, gaps::incrementAndGet);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (heartbeats.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        listener.close();
+        assertTrue(heartbeats.size() >= 2, "пульс без сообщений: " + heartbeats);
+    }
+
+    @Test
+    void testWireFormatUsesExplicitCodes() throws Exception {
+        InvalidationMessage comment = new InvalidationMessage(InvalidationMessage.Entity.COMMENT, 3, 5, 7, 1);
+        byte[] packet = InvalidationBus.encode(1, 1, List.of(comment));
+
+        // Заголовок: magic, nodeId, последняя версия, число сообщений; дальше код сущности
+        assertEquals(InvalidationMessage.Entity.COMMENT.getCode(), packet[2 + 8 + 8 + 2]);
+        assertEquals(InvalidationMessage.Entity.COMMENT, InvalidationMessage.Entity.of(2));
+        assertNull(InvalidationMessage.Entity.of(99));
+
+        // Неизвестная сущность (узел новее) - полный сброс, а не чужое применение
+        List<InvalidationMessage> received = new CopyOnWriteArrayList<>();
+        AtomicInteger gaps = new AtomicInteger();
+        bus(2, "codes", received::add, gaps::incrementAndGet);
+        packet[2 + 8 + 8 + 2] = 99;
+        new InJvmTransport("codes").send(packet);
+        assertTrue(received.isEmpty());
+        assertEquals(1, gaps.get());
+    }
+
+    private InvalidationBus bus(long nodeId, String channel, Consumer<InvalidationMessage> applier,
+                                Runnable onGap) {
+        InvalidationBus bus = new InvalidationBus(nodeId, new InJvmTransport(channel), applier, onGap, 20, 50, 50);
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static InvalidationMessage message(long version) {
+        return new InvalidationMessage(InvalidationMessage.Entity.POST, 1, 42, 42, version);
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, list.size());
+    }
+}
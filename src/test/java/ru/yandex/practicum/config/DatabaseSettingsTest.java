@@ -0,0 +1,58 @@
+package ru.yandex.practicum.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseSettingsTest {
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("blog.db.mode");
+        System.clearProperty("blog.db.file.dir");
+        System.clearProperty("blog.db.name");
+    }
+
+    @Test
+    void testMemoryModeByDefault() {
+        DatabaseSettings settings = DatabaseSettings.load();
+
+        assertFalse(settings.isFileMode());
+        assertTrue(settings.getUrl().startsWith("jdbc:h2:mem:blog_db;MODE=MySQL"));
+        assertFalse(settings.getUrl().contains("CACHE_SIZE"));
+    }
+
+    @Test
+    void testFileModeSurvivesReopen() throws Exception {
+        Path dir = Files.createTempDirectory("blog-db");
+        System.setProperty("blog.db.mode", "file");
+        System.setProperty("blog.db.file.dir", dir.toString());
+        System.setProperty("blog.db.name", "durable_test");
+
+        DatabaseSettings settings = DatabaseSettings.load();
+        assertTrue(settings.getUrl().contains(";CACHE_SIZE=65536;COMPRESS=TRUE;WRITE_DELAY=500"));
+
+        try (Connection conn = DriverManager.getConnection(settings.getUrl(), "sa", "");
+             Statement stmt = conn.createStatement()) {
+            DatabaseInitializerListener.initialize(conn);
+            stmt.execute("SHUTDOWN");
+        }
+
+        // После закрытия БД данные читаются из файла
+        try (Connection conn = DriverManager.getConnection(settings.getUrl(), "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM posts")) {
+            assertTrue(rs.next());
+            assertEquals(3, rs.getLong(1));
+            stmt.execute("SHUTDOWN");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ru.yandex.practicum.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.BatchOperation;
+import ru.yandex.practicum.dto.BatchRequest;
+import ru.yandex.practicum.service.AsyncCommentWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BatchControllerTest extends AbstractWebAppTest {
+
+    private static final long MISSING = 999_999L;
+
+    @Autowired private AsyncCommentWriter asyncCommentWriter;
+
+    private final List<Long> createdPosts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        // БД общая для всех тестов: остальные рассчитывают на 3 тестовых поста
+        for (Long id : createdPosts) {
+            if (postService.getPostById(id).isPresent()) {
+                postService.deletePost(id);
+            }
+        }
+    }
+
+    @Test
+    void testMixedBatchReportsEveryOperation() throws Exception {
+        long id = createPost();
+
+        JsonNode results = batch(false,
+                op("getPost", id, null, null),
+                op("getComments", id, null, null),
+                op("getPost", MISSING, null, null),
+                op("likePost", id, null, null),
+                op("createComment", id, null, "first"),
+                // Чтение после записи в той же транзакции видит ее
+                op("getComments", id, null, null),
+                op("updateComment", id, MISSING, "nope"),
+                op("renamePost", id, null, null));
+
+        assertStatuses(results, 200, 200, 404, 200, 201, 200, 404, 400);
+        assertEquals("Batch post", results.get(0).get("body").get("title").asText());
+        assertEquals(0, results.get(1).get("body").size());
+        assertEquals("NotFoundException", results.get(2).get("error").get("error").asText());
+        assertEquals(1, results.get(3).get("body").asInt());
+        assertEquals("first", results.get(5).get("body").get(0).get("text").asText());
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Integer.class, id));
+        assertEquals(1, commentCount(id));
+        // События - после commit пачки: детальная страница уже с комментарием
+        assertEquals(1, postService.getPostById(id).orElseThrow().getCommentsCount());
+    }
+
+    @Test
+    void testAtomicBatchRollsBackOnFailure() throws Exception {
+        long id = createPost();
+
+        JsonNode results = batch(true,
+                op("createComment", id, null, "rolled back"),
+                op("likePost", id, null, null),
+                op("likePost", MISSING, null, null),
+                op("likePost", id, null, null));
+
+        assertStatuses(results, 424, 424, 404, 424);
+        assertEquals(0, commentCount(id));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Integer.class, id));
+
+        // Некорректная операция в atomic-пачке - отказ всей пачке до выполнения
+        mockMvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchRequest(true, List.of(
+                                op("likePost", id, null, null), op("createComment", id, null, ""))))))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Integer.class, id));
+    }
+
+    @Test
+    void testAtomicBatchRollsBackCommentsWithAsyncWriter() throws Exception {
+        long id = createPost();
+        ReflectionTestUtils.setField(asyncCommentWriter, "enabled", true);
+        asyncCommentWriter.afterPropertiesSet();
+        JsonNode results;
+        try {
+            results = batch(true,
+                    op("createComment", id, null, "rolled back"),
+                    op("likePost", MISSING, null, null));
+        } finally {
+            // Дописывает очередь: комментарий, ушедший мимо транзакции пачки, был бы уже в БД
+            asyncCommentWriter.destroy();
+            ReflectionTestUtils.setField(asyncCommentWriter, "enabled", false);
+        }
+
+        assertStatuses(results, 424, 404);
+        assertEquals(0, commentCount(id));
+    }
+
+    @Test
+    void testReadOnlyBatchRunsReadsInParallel() throws Exception {
+        List<BatchOperation> operations = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            operations.add(op("getPost", id, null, null));
+            operations.add(op("getComments", id, null, null));
+        }
+
+        JsonNode results = batch(false, operations.toArray(new BatchOperation[0]));
+
+        assertStatuses(results, 200, 200, 200, 200, 200, 200);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, results.get(i * 2).get("body").get("id").asLong());
+        }
+        assertEquals(2, results.get(1).get("body").size());
+    }
+
+    @Test
+    void testBatchOperationsSpendClientRateLimits() throws Exception {
+        long id = createPost();
+        List<BatchOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            operations.add(op("createComment", id, null, "spam " + i));
+        }
+        for (int i = 0; i < 30; i++) {
+            operations.add(op("likePost", id, null, null));
+        }
+
+        // Лимит клиента как у отдельных запросов: 5 комментариев и 20 лайков сразу, дальше 429
+        JsonNode results = batch(false, "10.0.1.1", operations.toArray(new BatchOperation[0]));
+
+        int comments = count(results, 0, 10, 201);
+        int likes = count(results, 10, 40, 200);
+        assertTrue(comments >= 5 && comments < 10, "comments passed: " + comments);
+        assertTrue(likes >= 20 && likes < 30, "likes passed: " + likes);
+        assertEquals(429, results.get(9).get("status").asInt());
+        assertEquals(429, results.get(39).get("status").asInt());
+        assertEquals(comments, commentCount(id));
+        assertEquals(likes, jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Integer.class, id));
+
+        // Другой клиент не страдает от чужого лимита
+        assertStatuses(batch(false, "10.0.1.2", op("likePost", id, null, null)), 200);
+    }
+
+    private JsonNode batch(boolean atomic, BatchOperation... operations) throws Exception {
+        return batch(atomic, "127.0.0.1", operations);
+    }
+
+    private JsonNode batch(boolean atomic, String client, BatchOperation... operations) throws Exception {
+        String json = mockMvc.perform(post("/api/batch")
+                        .with(request -> {
+                            request.setRemoteAddr(client);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchRequest(atomic, List.of(operations)))))
+                .andExpect(status().isMultiStatus())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(json).get("results");
+    }
+
+    private static void assertStatuses(JsonNode results, int... expected) {
+        assertEquals(expected.length, results.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], results.get(i).get("status").asInt(), "operation " + i);
+        }
+    }
+
+    private static int count(JsonNode results, int from, int to, int status) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            count += results.get(i).get("status").asInt() == status ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static BatchOperation op(String name, Long postId, Long commentId, String text) {
+        return BatchOperation.builder().op(name).postId(postId).commentId(commentId).text(text).build();
+    }
+
+    private long createPost() {
+        long id = postService.createPost("Batch post", "text", List.of()).getId();
+        createdPosts.add(id);
+        return id;
+    }
+
+    private int commentCount(long postId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments WHERE post_id = ?", Integer.class, postId);
+    }
+}
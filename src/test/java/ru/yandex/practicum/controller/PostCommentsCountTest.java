@@ -0,0 +1,72 @@
+package ru.yandex.practicum.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.CommentDto;
+import ru.yandex.practicum.dto.PostDetailDto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * commentsCount поста следует за созданием и удалением комментариев
+ */
+class PostCommentsCountTest extends AbstractWebAppTest {
+
+    @Test
+    void testCommentsCountFollowsCommentWrites() throws Exception {
+        int before = objectMapper.readValue(mockMvc.perform(get("/api/posts/2"))
+                .andReturn().getResponse().getContentAsString(), PostDetailDto.class).getCommentsCount();
+
+        String created = mockMvc.perform(post("/api/posts/2/comments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Counted\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long commentId = objectMapper.readValue(created, CommentDto.class).getId();
+        assertEquals(before + 1, objectMapper.readValue(mockMvc.perform(get("/api/posts/2"))
+                .andReturn().getResponse().getContentAsString(), PostDetailDto.class).getCommentsCount());
+
+        mockMvc.perform(delete("/api/posts/2/comments/" + commentId)).andExpect(status().isOk());
+        assertEquals(before, objectMapper.readValue(mockMvc.perform(get("/api/posts/2"))
+                .andReturn().getResponse().getContentAsString(), PostDetailDto.class).getCommentsCount());
+    }
+
+    @Test
+    void testRepeatedDeleteKeepsFeedCount() throws Exception {
+        int before = objectMapper.readValue(mockMvc.perform(get("/api/posts/1"))
+                .andReturn().getResponse().getContentAsString(), PostDetailDto.class).getCommentsCount();
+        // Лента построена: дальше ее счетчики меняют только события
+        assertEquals(before, feedCommentsCount(1L));
+        String created = mockMvc.perform(post("/api/posts/1/comments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Deleted twice\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long commentId = objectMapper.readValue(created, CommentDto.class).getId();
+
+        // Повтор клиента ничего не удаляет и не уменьшает счетчик ленты второй раз
+        mockMvc.perform(delete("/api/posts/1/comments/" + commentId)).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/posts/1/comments/" + commentId)).andExpect(status().isOk());
+
+        assertEquals(before, objectMapper.readValue(mockMvc.perform(get("/api/posts/1"))
+                .andReturn().getResponse().getContentAsString(), PostDetailDto.class).getCommentsCount());
+        assertEquals(before, feedCommentsCount(1L));
+    }
+
+    private int feedCommentsCount(Long postId) throws Exception {
+        JsonNode posts = objectMapper.readTree(mockMvc.perform(get("/api/posts?pageSize=100"))
+                .andReturn().getResponse().getContentAsString()).get("posts");
+        for (JsonNode post : posts) {
+            if (post.get("id").asLong() == postId) {
+                return post.get("commentsCount").asInt();
+            }
+        }
+        throw new AssertionError("Post " + postId + " is not in the feed");
+    }
+}
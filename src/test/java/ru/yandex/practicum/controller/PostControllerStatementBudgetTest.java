@@ -0,0 +1,118 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.service.PostSummaryStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.jdbc.StatementBudget.assertMaxStatements;
+
+/**
+ * Бюджет SQL-выражений на эндпоинты ленты, поста и комментариев (на тестовых данных: 3 поста).
+ * Бюджеты поиска, подсказок, трендов и multi-get - в тестах этих функций
+ */
+class PostControllerStatementBudgetTest extends AbstractWebAppTest {
+
+    @Autowired private PostSummaryStore summaryStore;
+
+    @Test
+    void testListPageBudget() throws Exception {
+        // Лента без поиска - из read-модели в памяти, БД не читается
+        summaryStore.rebuild();
+        assertMaxStatements(0, () -> mockMvc.perform(get("/api/posts")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void testSortedFeedBudget() throws Exception {
+        summaryStore.rebuild();
+        for (String sort : new String[]{"newest", "likes", "comments"}) {
+            assertMaxStatements(0, () -> mockMvc.perform(get("/api/posts?sort=" + sort)).andExpect(status().isOk()));
+        }
+    }
+
+    @Test
+    void testListPageBudgetWithoutReadModel() throws Exception {
+        ReflectionTestUtils.setField(summaryStore, "enabled", false);
+        try {
+            // COUNT + страница по индексу + теги всей страницы одним запросом (commentsCount - колонка posts)
+            assertMaxStatements(3, () -> mockMvc.perform(get("/api/posts")).andExpect(status().isOk()));
+            for (String sort : new String[]{"newest", "likes", "comments"}) {
+                assertMaxStatements(3, () -> mockMvc.perform(get("/api/posts?sort=" + sort)).andExpect(status().isOk()));
+            }
+        } finally {
+            ReflectionTestUtils.setField(summaryStore, "enabled", true);
+        }
+    }
+
+    @Test
+    void testSortOrdersUseIndexes() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (PostSort sort : new PostSort[]{PostSort.NEWEST, PostSort.LIKES, PostSort.COMMENTS}) {
+            String plan = jdbcTemplate.queryForObject(
+                    "EXPLAIN SELECT id FROM posts ORDER BY " + sort.getOrderBy() + " LIMIT 5 OFFSET 0", String.class);
+            assertTrue(plan.contains("index sorted"), sort + ": " + plan);
+        }
+    }
+
+    @Test
+    void testPostDetailBudget() throws Exception {
+        assertMaxStatements(2, () -> mockMvc.perform(get("/api/posts/1")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void testDeletePostBudget() throws Exception {
+        String created = mockMvc.perform(post("/api/posts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Doomed\",\"text\":\"text\",\"tags\":[\"a\",\"b\"]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, PostDetailDto.class).getId();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/posts/" + id + "/comments")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"text\":\"c" + i + "\"}"))
+                    .andExpect(status().isCreated());
+        }
+
+        // Пост + снятие ссылки на изображение + DELETE; комментарии и теги - каскадом, не по одному
+        assertMaxStatements(3, () -> mockMvc.perform(delete("/api/posts/" + id)).andExpect(status().isOk()));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments WHERE post_id = ?", Integer.class, id));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post_tags WHERE post_id = ?", Integer.class, id));
+    }
+
+    @Test
+    void testCommentsBudget() throws Exception {
+        assertMaxStatements(1, () -> mockMvc.perform(get("/api/posts/1/comments")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void testCachedPostDetailSkipsDatabase() throws Exception {
+        String first = mockMvc.perform(get("/api/posts/1")).andReturn().getResponse().getContentAsString();
+
+        assertMaxStatements(0, () -> assertEquals(first, mockMvc.perform(get("/api/posts/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()));
+    }
+
+    @Test
+    void testWriteInvalidatesCachedDetail() throws Exception {
+        mockMvc.perform(get("/api/posts/2")).andExpect(status().isOk());
+        String likes = mockMvc.perform(post("/api/posts/2/likes"))
+                .andReturn().getResponse().getContentAsString();
+
+        String detail = mockMvc.perform(get("/api/posts/2")).andReturn().getResponse().getContentAsString();
+        assertTrue(detail.contains("\"likesCount\":" + likes), detail);
+    }
+}
@@ -6,12 +6,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
 import ru.yandex.practicum.dto.PostDetailDto;
 import ru.yandex.practicum.dto.PostsResponse;
 import ru.yandex.practicum.dto.CommentDto;
+import ru.yandex.practicum.model.Image;
 import ru.yandex.practicum.service.PostService;
 import ru.yandex.practicum.service.CommentService;
 
+import java.io.InputStream;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -103,22 +108,36 @@ class PostControllerTest {
     }
 
     @Test
-    void testSaveImageCallsService() {
-        // Тестируем что сервис вызывается
-        postService.saveImage(1L, "imageData".getBytes());
+    void testUploadImageStreamsFileToService() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("image", "image.png", "image/png", "imageData".getBytes());
+        List<byte[]> received = new ArrayList<>();
+        doAnswer(invocation -> received.add(invocation.<InputStream>getArgument(1).readAllBytes()))
+                .when(postService).saveImage(eq(1L), any(InputStream.class));
 
-        verify(postService).saveImage(1L, "imageData".getBytes());
+        ResponseEntity<Void> response = controller.uploadImage(1L, file);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(postService).saveImage(eq(1L), any(InputStream.class));
+        assertArrayEquals("imageData".getBytes(), received.get(0));
+    }
+
+    @Test
+    void testUploadEmptyImageIsRejected() {
+        MockMultipartFile file = new MockMultipartFile("image", "image.png", "image/png", new byte[0]);
+
+        assertEquals(HttpStatus.BAD_REQUEST, controller.uploadImage(1L, file).getStatusCode());
+        verifyNoInteractions(postService);
     }
 
     @Test
     void testGetImageReturnsBytes() {
         byte[] imageData = "image".getBytes();
-        when(postService.getImage(1L)).thenReturn(Optional.of(imageData));
+        when(postService.getImage(1L)).thenReturn(Optional.of(new Image(Image.hashOf(imageData), imageData)));
 
-        Optional<byte[]> result = postService.getImage(1L);
+        Optional<Image> result = postService.getImage(1L);
 
         assertTrue(result.isPresent());
-        assertArrayEquals(imageData, result.get());
+        assertArrayEquals(imageData, result.get().getData());
     }
 
     @Test
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.model.Image;
+import ru.yandex.practicum.service.ImageSweeper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Изображения по SHA-256: одна строка на содержимое, ref_count, уборка и ETag
+ */
+class PostImageTest extends AbstractWebAppTest {
+
+    @Autowired private ImageSweeper imageSweeper;
+
+    private final List<Long> createdPosts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        // БД общая для всех тестов: остальные рассчитывают на 3 тестовых поста
+        for (Long id : createdPosts) {
+            if (postService.getPostById(id).isPresent()) {
+                postService.deletePost(id);
+            }
+        }
+    }
+
+    @Test
+    void testSameImageIsStoredOnceAndReleasedWithPosts() throws Exception {
+        byte[] banner = ("banner " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        String hash = Image.hashOf(banner);
+        long first = createPost();
+        long second = createPost();
+
+        upload(first, banner);
+        upload(second, banner);
+        // Повторная загрузка того же изображения в тот же пост не добавляет ссылок
+        upload(second, banner);
+        assertEquals(List.of(2), refCounts(hash));
+
+        upload(first, ("other " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of(1), refCounts(hash));
+        postService.deletePost(second);
+        assertEquals(List.of(0), refCounts(hash));
+
+        ReflectionTestUtils.setField(imageSweeper, "graceMillis", 0L);
+        try {
+            Thread.sleep(10);
+            assertTrue(imageSweeper.sweep() >= 1);
+        } finally {
+            ReflectionTestUtils.setField(imageSweeper, "graceMillis", 60_000L);
+        }
+        assertEquals(List.of(), refCounts(hash));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM images i JOIN posts p ON p.image_hash = i.hash WHERE p.id = ?",
+                Integer.class, first));
+    }
+
+    @Test
+    void testHashIsTheEtag() throws Exception {
+        byte[] image = ("etag " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        long id = createPost();
+        upload(id, image);
+        String etag = "\"" + Image.hashOf(image) + "\"";
+
+        MvcResult full = mockMvc.perform(get("/api/posts/" + id + "/image")).andExpect(status().isOk()).andReturn();
+        assertEquals(etag, full.getResponse().getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(image, full.getResponse().getContentAsByteArray());
+
+        // Второй раз из кеша изображений - тоже 304
+        for (int i = 0; i < 2; i++) {
+            MvcResult notModified = mockMvc.perform(get("/api/posts/" + id + "/image")
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                    .andExpect(status().isNotModified()).andReturn();
+            assertEquals(0, notModified.getResponse().getContentAsByteArray().length);
+        }
+
+        upload(id, "changed".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(get("/api/posts/" + id + "/image").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testUploadIsStreamedAndLimited() throws Exception {
+        long id = createPost();
+        byte[] image = new byte[200_000];
+        new Random(42).nextBytes(image);
+        upload(id, image);
+
+        assertEquals(List.of(1), refCounts(Image.hashOf(image)));
+        assertEquals(image.length, jdbcTemplate.queryForObject(
+                "SELECT size_bytes FROM images WHERE hash = ?", Integer.class, Image.hashOf(image)));
+        assertArrayEquals(image, postService.getImage(id).orElseThrow().getData());
+
+        Object service = AopTestUtils.getTargetObject(postService);
+        ReflectionTestUtils.setField(service, "maxImageBytes", 100_000L);
+        try {
+            mockMvc.perform(multipart("/api/posts/" + id + "/image")
+                            .file(new MockMultipartFile("image", "big.jpg", "image/jpeg", new byte[100_001]))
+                            .with(request -> {
+                                request.setMethod("PUT");
+                                return request;
+                            }))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            ReflectionTestUtils.setField(service, "maxImageBytes", 5_242_880L);
+        }
+        // Отклоненная загрузка не оставляет строк и не меняет изображение поста
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM images WHERE hash LIKE 'upload-%'", Integer.class));
+        assertEquals(Image.hashOf(image), postService.getImage(id).orElseThrow().getHash());
+    }
+
+    private long createPost() {
+        long id = postService.createPost("Image post", "text", List.of()).getId();
+        createdPosts.add(id);
+        return id;
+    }
+
+    private void upload(long postId, byte[] image) throws Exception {
+        mockMvc.perform(multipart("/api/posts/" + postId + "/image")
+                        .file(new MockMultipartFile("image", "a.jpg", "image/jpeg", image))
+                        .with(request -> {
+                            request.setMethod("PUT");
+                            return request;
+                        }))
+                .andExpect(status().isOk());
+    }
+
+    private List<Integer> refCounts(String hash) {
+        return jdbcTemplate.queryForList("SELECT ref_count FROM images WHERE hash = ?", Integer.class, hash);
+    }
+}
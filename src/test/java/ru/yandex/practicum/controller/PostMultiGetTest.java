@@ -0,0 +1,39 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.dto.PostsByIdsResponse;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.jdbc.StatementBudget.assertMaxStatements;
+
+/**
+ * Несколько постов одним запросом GET /api/posts?ids=
+ */
+class PostMultiGetTest extends AbstractWebAppTest {
+
+    @Test
+    void testMultiGetBudget() throws Exception {
+        String[] body = new String[1];
+        // Посты - одним IN-запросом, их теги - еще одним, сколько бы id ни запросили
+        assertMaxStatements(2, () -> body[0] = mockMvc.perform(get("/api/posts?ids=3,999999,1,3"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        PostsByIdsResponse response = objectMapper.readValue(body[0], PostsByIdsResponse.class);
+        assertEquals(List.of(3L, 1L), response.getPosts().stream().map(PostDetailDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(999999L), response.getMissing());
+        assertEquals(objectMapper.readValue(mockMvc.perform(get("/api/posts/1"))
+                        .andReturn().getResponse().getContentAsString(), PostDetailDto.class),
+                response.getPosts().get(1));
+
+        mockMvc.perform(get("/api/posts?ids=1,0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/posts?ids=1,x")).andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.service.PostSearchIndex;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.jdbc.StatementBudget.assertMaxStatements;
+
+/**
+ * Поиск GET /api/posts?search=: ранжирование и бюджет SQL страниц поиска
+ */
+class PostSearchTest extends AbstractWebAppTest {
+
+    @Autowired
+    private PostSearchIndex searchIndex;
+
+    @Test
+    void testRankedSearchPagesReuseScores() throws Exception {
+        // Первый поиск строит индекс и кеширует рейтинг запроса
+        mockMvc.perform(get("/api/posts?search=post&pageSize=1")).andExpect(status().isOk());
+
+        // Следующая страница: только посты страницы по id + их теги
+        assertMaxStatements(2, () -> mockMvc.perform(get("/api/posts?search=post&pageSize=1&pageNumber=2"))
+                .andExpect(status().isOk()));
+        // Теги всех постов страницы - одним запросом, не по запросу на пост
+        assertMaxStatements(2, () -> mockMvc.perform(get("/api/posts?search=post&pageSize=3"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void testCreatedPostIsSearchableByRelevance() throws Exception {
+        mockMvc.perform(get("/api/posts?search=warmup")).andExpect(status().isOk());
+        String created = mockMvc.perform(post("/api/posts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Zebra crossing\",\"text\":\"zebra zebra\",\"tags\":[]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, PostDetailDto.class).getId();
+
+        String found = mockMvc.perform(get("/api/posts?search=ZEBRA"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(found.startsWith("{\"posts\":[{\"id\":" + id + ","), found);
+
+        mockMvc.perform(delete("/api/posts/" + id)).andExpect(status().isOk());
+        String afterDelete = mockMvc.perform(get("/api/posts?search=zebra"))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(afterDelete.startsWith("{\"posts\":[]"), afterDelete);
+    }
+
+    @Test
+    void testBodyIsSearchableAfterRebuild() throws Exception {
+        // text_preview заполнен при создании: колонки ленты не отдают text
+        String created = mockMvc.perform(post("/api/posts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Plain title\",\"text\":\"body qwertyuniq\",\"tags\":[]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, PostDetailDto.class).getId();
+
+        searchIndex.rebuild();
+
+        String found = mockMvc.perform(get("/api/posts?search=qwertyuniq"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(found.startsWith("{\"posts\":[{\"id\":" + id + ","), found);
+    }
+}
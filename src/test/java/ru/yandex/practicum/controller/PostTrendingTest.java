@@ -0,0 +1,38 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.TrendingPostDto;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.jdbc.StatementBudget.assertMaxStatements;
+
+/**
+ * Тренды GET /api/posts/trending: из скетчей в памяти, без SQL
+ */
+class PostTrendingTest extends AbstractWebAppTest {
+
+    @Test
+    void testTrendingServedFromSketches() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/posts/3/likes")).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/posts/3")).andExpect(status().isOk());
+
+        String[] trending = new String[1];
+        assertMaxStatements(0, () -> trending[0] = mockMvc.perform(get("/api/posts/trending?limit=100"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        TrendingPostDto post = Arrays.stream(objectMapper.readValue(trending[0], TrendingPostDto[].class))
+                .filter(item -> item.getId() == 3L)
+                .findFirst()
+                .orElseThrow();
+        assertTrue(post.getLikes() >= 3 && post.getViews() >= 1, trending[0]);
+    }
+}
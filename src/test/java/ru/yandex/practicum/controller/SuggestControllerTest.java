@@ -0,0 +1,75 @@
+package ru.yandex.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.dto.SuggestResponse;
+import ru.yandex.practicum.dto.SuggestionDto;
+import ru.yandex.practicum.service.SuggestIndex;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.yandex.practicum.jdbc.StatementBudget.assertMaxStatements;
+
+/**
+ * Подсказки GET /api/suggest: из деревьев в памяти, без SQL, и обновляются записями
+ */
+class SuggestControllerTest extends AbstractWebAppTest {
+
+    @Autowired private SuggestIndex suggestIndex;
+
+    @Test
+    void testSuggestServedFromMemory() throws Exception {
+        suggestIndex.rebuild();
+        long before = suggestIndex.suggest("third", 1).getTitles().get(0).getWeight();
+        mockMvc.perform(post("/api/posts/3/likes")).andExpect(status().isOk());
+
+        String[] suggest = new String[1];
+        assertMaxStatements(0, () -> suggest[0] = mockMvc.perform(get("/api/suggest?prefix=s"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        SuggestResponse response = objectMapper.readValue(suggest[0], SuggestResponse.class);
+        assertEquals(List.of("Spring"), texts(response.getTags()));
+        assertEquals(List.of("Second Post"), texts(response.getTitles()));
+        // Лайк меняет вес заголовка в памяти, без перечитывания поста
+        assertEquals(before + 1, objectMapper.readValue(mockMvc.perform(get("/api/suggest?prefix=third"))
+                .andReturn().getResponse().getContentAsString(), SuggestResponse.class).getTitles().get(0).getWeight());
+    }
+
+    @Test
+    void testSuggestFollowsPostWrites() throws Exception {
+        suggestIndex.rebuild();
+        String created = mockMvc.perform(post("/api/posts")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Suggested title\",\"text\":\"text\",\"tags\":[\"Spring\",\"Suggest\"]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, PostDetailDto.class).getId();
+
+        SuggestResponse response = objectMapper.readValue(mockMvc.perform(get("/api/suggest?prefix=s"))
+                .andReturn().getResponse().getContentAsString(), SuggestResponse.class);
+        assertEquals(List.of("Spring", "Suggest"), texts(response.getTags()));
+        assertEquals(2, response.getTags().get(0).getWeight());
+        assertEquals(List.of("Second Post", "Suggested title"), texts(response.getTitles()));
+
+        mockMvc.perform(delete("/api/posts/" + id)).andExpect(status().isOk());
+        response = objectMapper.readValue(mockMvc.perform(get("/api/suggest?prefix=su"))
+                .andReturn().getResponse().getContentAsString(), SuggestResponse.class);
+        assertTrue(response.getTags().isEmpty() && response.getTitles().isEmpty(), response.toString());
+        mockMvc.perform(get("/api/suggest?prefix=")).andExpect(status().isBadRequest());
+    }
+
+    private static List<String> texts(List<SuggestionDto> suggestions) {
+        return suggestions.stream().map(SuggestionDto::getText).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,282 @@
+package ru.yandex.practicum.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.config.DatabaseInitializerListener;
+import ru.yandex.practicum.jdbc.ShardSet;
+import ru.yandex.practicum.jdbc.ShardedTransactionManager;
+import ru.yandex.practicum.jdbc.StatementStats;
+import ru.yandex.practicum.jdbc.StatementStatsDataSource;
+import ru.yandex.practicum.model.Comment;
+import ru.yandex.practicum.model.Image;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedPostDaoTest {
+
+    private static final int SHARDS = 3;
+
+    private List<DataSource> dataSources;
+    private ShardSet shards;
+    private ShardedPostDao postDao;
+    private ShardedCommentDao commentDao;
+    private ShardedPostTagDao postTagDao;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String name = "shard_test_" + UUID.randomUUID().toString().replace("-", "");
+        dataSources = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            dataSources.add(new StatementStatsDataSource(new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + name + "_" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "")));
+        }
+        // Как при включении шардов на существующей БД: все данные пока на шарде 0
+        try (Connection conn = dataSources.get(0).getConnection()) {
+            DatabaseInitializerListener.initialize(conn);
+        }
+
+        shards = new ShardSet(dataSources, 4);
+        shards.start();
+        postDao = new ShardedPostDao(shards);
+        commentDao = new ShardedCommentDao(shards);
+        postTagDao = new ShardedPostTagDao(shards);
+        transactionTemplate = new TransactionTemplate(
+                new ShardedTransactionManager(new DataSourceTransactionManager(dataSources.get(0)), shards));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards.getJdbcTemplate(i).execute("SHUTDOWN");
+        }
+        shards.close();
+    }
+
+    @Test
+    void testExistingRowsMoveToTheirShards() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            for (Long id : shards.getJdbcTemplate(shard).queryForList("SELECT id FROM posts", Long.class)) {
+                assertEquals(shard, shards.shardOf(id));
+            }
+        }
+        // Пост 1 с комментариями и тегами переехал на шард 1
+        assertEquals(2, commentDao.findAllByPostId(1L).size());
+        assertEquals(List.of("Java", "Spring"), tags(1L));
+        assertEquals(2, shards.getJdbcTemplate(1).queryForObject("SELECT COUNT(*) FROM comments", Integer.class));
+        assertEquals(3, postDao.count());
+    }
+
+    @Test
+    void testNewPostsSpreadWithContentOnTheSameShard() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Long id = transactionTemplate.execute(status -> createPost("Post " + ids.size(), "tag" + ids.size()));
+            ids.add(id);
+        }
+
+        assertEquals(SHARDS, ids.stream().map(shards::shardOf).distinct().count());
+        for (Long id : ids) {
+            int shard = shards.shardOf(id);
+            assertEquals(1, shards.getJdbcTemplate(shard)
+                    .queryForObject("SELECT COUNT(*) FROM post_tags WHERE post_id = ?", Integer.class, id));
+            Comment comment = commentDao.save(new Comment(null, id, "comment"));
+            assertEquals(1, shards.getJdbcTemplate(shard)
+                    .queryForObject("SELECT COUNT(*) FROM comments WHERE id = ?", Integer.class, comment.getId()));
+        }
+        assertEquals(ids, postDao.findAllByIds(ids).stream().map(Post::getId).collect(Collectors.toList()));
+
+        List<Long> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+        List<Post> details = postDao.findDetailsByIds(reversed);
+        assertEquals(reversed, details.stream().map(Post::getId).collect(Collectors.toList()));
+        assertEquals("Post 5 text", details.get(0).getText());
+        assertEquals(ids.size(), postTagDao.findAllByPostIds(ids).size());
+    }
+
+    @Test
+    void testLegacyImagesOnEveryShardMoveToShardZero() {
+        // Шарды, заполненные версией до таблицы images: изображения прямо в posts.image
+        byte[] shared = {1, 2, 3};
+        byte[] own = {4, 5};
+        shards.getJdbcTemplate(1).update("UPDATE posts SET image = ? WHERE id = 1", (Object) shared);
+        shards.getJdbcTemplate(2).update("UPDATE posts SET image = ? WHERE id = 2", (Object) shared);
+        shards.getJdbcTemplate(0).update("UPDATE posts SET image = ? WHERE id = 3", (Object) own);
+
+        try (ShardSet restarted = new ShardSet(dataSources, 4)) {
+            restarted.start();
+        }
+
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertEquals(0, shards.getJdbcTemplate(shard).queryForObject(
+                    "SELECT COUNT(*) FROM posts WHERE image IS NOT NULL", Integer.class));
+        }
+        assertEquals(Image.hashOf(shared), shards.getJdbcTemplate(1)
+                .queryForObject("SELECT image_hash FROM posts WHERE id = 1", String.class));
+        assertEquals(Image.hashOf(shared), shards.getJdbcTemplate(2)
+                .queryForObject("SELECT image_hash FROM posts WHERE id = 2", String.class));
+        assertEquals(2, shards.getJdbcTemplate(0).queryForObject(
+                "SELECT ref_count FROM images WHERE hash = ?", Integer.class, Image.hashOf(shared)));
+        assertEquals(1, shards.getJdbcTemplate(0).queryForObject(
+                "SELECT ref_count FROM images WHERE hash = ?", Integer.class, Image.hashOf(own)));
+        for (int shard = 1; shard < SHARDS; shard++) {
+            assertEquals(0, shards.getJdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM images", Integer.class));
+        }
+    }
+
+    @Test
+    void testMovedTagsDoNotReplaceTagsOnTargetShard() {
+        // Как после смены числа шардов: пост 100 (шард 1) лежит на шарде 2,
+        // id его тега совпадает с id тега поста 1 на шарде 1
+        List<Long> takenOnShard2 = shards.getJdbcTemplate(2).queryForList("SELECT id FROM post_tags", Long.class);
+        long tagId = shards.getJdbcTemplate(1).queryForList("SELECT id FROM post_tags WHERE post_id = 1", Long.class)
+                .stream().filter(id -> !takenOnShard2.contains(id)).findFirst().orElseThrow();
+        shards.getJdbcTemplate(2).update("INSERT INTO posts (id, title, text) VALUES (100, 'Moved', 'text')");
+        shards.getJdbcTemplate(2).update("INSERT INTO post_tags (id, post_id, tag) VALUES (?, 100, 'Moved')", tagId);
+
+        try (ShardSet restarted = new ShardSet(dataSources, 4)) {
+            restarted.start();
+        }
+
+        assertEquals(List.of("Java", "Spring"), tags(1L));
+        assertEquals(List.of("Moved"), tags(100L));
+        assertEquals(0, shards.getJdbcTemplate(2).queryForObject(
+                "SELECT COUNT(*) FROM post_tags WHERE post_id = 100", Integer.class));
+    }
+
+    @Test
+    void testCommentIdBlocksAreAboveEveryShard() {
+        // Комментарий с большим id лежит не на шарде 0, где живет последовательность
+        Long postId;
+        do {
+            postId = transactionTemplate.execute(status -> createPost("Far post", "far"));
+        } while (shards.shardOf(postId) == 0);
+        commentDao.saveAll(List.of(new Comment(50_000L, postId, "old")));
+
+        long first = commentDao.reserveIdBlock(100);
+        long second = commentDao.reserveIdBlock(100);
+
+        assertTrue(first > 50_000, "block starts at " + first);
+        assertEquals(first + 100, second);
+    }
+
+    @Test
+    void testScatterCountsShardQueriesForCaller() {
+        StatementStats stats = StatementStats.start();
+        List<Long> counts;
+        try {
+            counts = shards.scatter(List.of(0, 1, 2),
+                    shard -> shards.getJdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM posts", Long.class));
+        } finally {
+            stats.stop();
+        }
+
+        assertEquals(3L, counts.stream().mapToLong(Long::longValue).sum());
+        // Запросы шли в потоках shard-query, но учтены в области вызывающего
+        assertEquals(SHARDS, stats.getStatements());
+        assertNull(StatementStats.current());
+    }
+
+    @Test
+    void testPagesMergeAcrossShards() {
+        for (int i = 0; i < 10; i++) {
+            long id = createPost("Paged " + i, "paged");
+            for (int like = 0; like < i % 4; like++) {
+                postDao.incrementLikes(id);
+            }
+        }
+
+        for (PostSort sort : PostSort.values()) {
+            List<Long> expected = postDao.findAll().stream()
+                    .sorted(sort.getComparator()).map(Post::getId).collect(Collectors.toList());
+            List<Long> paged = new ArrayList<>();
+            for (int offset = 0; offset < expected.size(); offset += 4) {
+                postDao.findPage(sort, 4, offset).forEach(post -> paged.add(post.getId()));
+            }
+            assertEquals(expected, paged, sort.name());
+
+            // Страница среди выбранных id (поиск с сортировкой) - тот же порядок
+            List<Long> subset = expected.stream().filter(id -> id % 3 != 0).collect(Collectors.toList());
+            List<Long> subsetPage = postDao.findPageByIds(subset, sort, 3, 2).stream()
+                    .map(Post::getId).collect(Collectors.toList());
+            assertEquals(subset.subList(2, 5), subsetPage, sort.name());
+        }
+        assertEquals(13, postDao.count());
+    }
+
+    @Test
+    void testRollbackCoversEveryShard() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            createPost("Rolled back", "a");
+            createPost("Rolled back", "b");
+            throw new IllegalStateException("fail after writes on two shards");
+        }));
+        assertTrue(postDao.findAll().stream().noneMatch(post -> post.getTitle().equals("Rolled back")));
+
+        // Savepoint (как в GroupCommitExecutor): откатывается только вторая операция
+        List<Long> ids = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            ids.add(createPost("Kept", "kept"));
+            Object savepoint = status.createSavepoint();
+            ids.add(createPost("Undone", "undone"));
+            ids.add(createPost("Undone", "undone"));
+            status.rollbackToSavepoint(savepoint);
+        });
+        assertTrue(postDao.findById(ids.get(0)).isPresent());
+        assertFalse(postDao.findById(ids.get(1)).isPresent());
+        assertFalse(postDao.findById(ids.get(2)).isPresent());
+        assertEquals(List.of("kept"), tags(ids.get(0)));
+    }
+
+    @Test
+    void testReadsAfterCommitDoNotLeakIntoNextTransaction() {
+        // Как @TransactionalEventListener: чтение шарда 1, когда синхронизация уже снята
+        AtomicReference<Optional<Post>> seenByListener = new AtomicReference<>();
+        Long first = transactionTemplate.execute(status -> {
+            long id = createPost("Listener", "first");
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    seenByListener.set(postDao.findById(1L));
+                }
+            });
+            return id;
+        });
+        assertTrue(seenByListener.get().isPresent());
+        Long second = transactionTemplate.execute(status -> createPost("Listener", "second"));
+
+        // findAll читает шарды из других потоков: видно только закоммиченное
+        List<Long> committed = postDao.findAll().stream()
+                .filter(post -> post.getTitle().equals("Listener")).map(Post::getId).collect(Collectors.toList());
+        assertEquals(Stream.of(first, second).sorted().collect(Collectors.toList()), committed);
+    }
+
+    private long createPost(String title, String tag) {
+        Post post = postDao.save(Post.builder().title(title).text(title + " text").likesCount(0).build());
+        postTagDao.save(new PostTag(null, post.getId(), tag));
+        return post.getId();
+    }
+
+    private List<String> tags(Long postId) {
+        return postTagDao.findAllByPostId(postId).stream().map(PostTag::getTag).collect(Collectors.toList());
+    }
+}
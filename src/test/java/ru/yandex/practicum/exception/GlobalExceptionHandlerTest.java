@@ -0,0 +1,119 @@
+package ru.yandex.practicum.exception;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class GlobalExceptionHandlerTest {
+    @Spy private MetricsRegistry metrics = new MetricsRegistry();
+    @Spy private StackTraceSampler stackTraceSampler = new StackTraceSampler();
+    @InjectMocks private GlobalExceptionHandler handler;
+
+    @Test
+    void testNotFoundIsStacklessAndCounted() {
+        NotFoundException e = NotFoundException.post(42L);
+
+        ResponseEntity<ErrorResponse> response = handler.handleNotFound(e);
+
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("Post not found: 42", response.getBody().getMessage());
+        assertEquals(1L, metrics.snapshot().get("errors.type.NotFoundException"));
+        assertEquals(1L, metrics.snapshot().get("errors.status.404"));
+    }
+
+    @Test
+    void testValidationIsBadRequest() {
+        ValidationException e = new ValidationException("Text is required");
+
+        ResponseEntity<ErrorResponse> response = handler.handleBadRequest(e);
+
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testIntegrityViolationsMappedBySqlState() {
+        assertEquals(HttpStatus.NOT_FOUND, integrityStatus(new SQLException("fk", "23506")));
+        assertEquals("Related entity not found", handler.handleIntegrityViolation(
+                new DataIntegrityViolationException("fk", new SQLException("fk", "23506"))).getBody().getMessage());
+        assertEquals(HttpStatus.CONFLICT, integrityStatus(new SQLException("unique", "23505")));
+        assertEquals(HttpStatus.CONFLICT, integrityStatus(new SQLException("child exists", "23503")));
+        assertEquals(HttpStatus.BAD_REQUEST, integrityStatus(new SQLException("not null", "23502")));
+        assertEquals(HttpStatus.CONFLICT, handler.handleIntegrityViolation(
+                new DuplicateKeyException("duplicate")).getStatusCode());
+    }
+
+    @Test
+    void testUnexpectedErrorIsInternal() {
+        ResponseEntity<ErrorResponse> response = handler.handleException(
+                new IllegalStateException("boom: SELECT * FROM posts"), new MockHttpServletResponse());
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals("IllegalStateException", response.getBody().getError());
+        // Текст исключения клиенту не отдается
+        assertEquals("Internal server error", response.getBody().getMessage());
+    }
+
+    @Test
+    void testFrameworkErrorsKeepTheirStatus() {
+        ResponseEntity<ErrorResponse> notAllowed = handler.handleException(
+                new HttpRequestMethodNotSupportedException("PATCH", List.of("GET", "POST")), new MockHttpServletResponse());
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED, notAllowed.getStatusCode());
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.POST), notAllowed.getHeaders().getAllow());
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, handler.handleException(
+                new MaxUploadSizeExceededException(1024), new MockHttpServletResponse()).getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, handler.handleException(
+                new AsyncRequestTimeoutException(), new MockHttpServletResponse()).getStatusCode());
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, handler.handleException(
+                new HttpMediaTypeNotSupportedException("text/csv"), new MockHttpServletResponse()).getStatusCode());
+        assertNull(metrics.snapshot().get("errors.status.500"));
+        assertEquals(1L, metrics.snapshot().get("errors.status.405"));
+
+        // Таймаут уже идущего потока: ответ не трогается
+        MockHttpServletResponse streaming = new MockHttpServletResponse();
+        streaming.setCommitted(true);
+        assertNull(handler.handleException(new AsyncRequestTimeoutException(), streaming));
+    }
+
+    private HttpStatusCode integrityStatus(SQLException cause) {
+        return handler.handleIntegrityViolation(new DataIntegrityViolationException("violation", cause)).getStatusCode();
+    }
+
+    @Test
+    void testStackTraceSamplerLimitsPerWindow() {
+        StackTraceSampler sampler = new StackTraceSampler();
+        int logged = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.shouldLogStackTrace(new IllegalStateException())) {
+                logged++;
+            }
+        }
+
+        // Другой тип исключения считается отдельно
+        assertTrue(sampler.shouldLogStackTrace(new UnsupportedOperationException()));
+        assertEquals(3, logged);
+    }
+}
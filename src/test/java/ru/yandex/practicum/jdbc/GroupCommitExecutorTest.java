@@ -0,0 +1,229 @@
+package ru.yandex.practicum.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitExecutorTest {
+
+    private static final int WAITING = 10;
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ExecutorService clients = Executors.newFixedThreadPool(WAITING + 1);
+    private GroupCommitExecutor groupCommit;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        StatementStatsDataSource dataSource = new StatementStatsDataSource(new DriverManagerDataSource(
+                "jdbc:h2:mem:group_commit_test;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS likes");
+        jdbcTemplate.execute("CREATE TABLE likes (id INT PRIMARY KEY)");
+
+        groupCommit = new GroupCommitExecutor();
+        ReflectionTestUtils.setField(groupCommit, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(groupCommit, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(groupCommit, "enabled", true);
+        ReflectionTestUtils.setField(groupCommit, "maxBatch", 64);
+        ReflectionTestUtils.setField(groupCommit, "queueCapacity", 128);
+        groupCommit.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        clients.shutdownNow();
+        groupCommit.destroy();
+    }
+
+    @Test
+    void testQueuedOperationsShareOneCommit() throws Exception {
+        List<Future<Integer>> results = submitBehindBlockedWriter(101, 102, 103, 104, 105, 106, 107, 108, 109, 110);
+
+        for (Future<Integer> result : results) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(WAITING + 1, count());
+        // Первая операция - отдельный commit, остальные 10 - один общий
+        assertEquals(2L, metrics.snapshot().get("tx.group-commit.commits"));
+        assertEquals((long) WAITING + 1, metrics.snapshot().get("tx.group-commit.operations"));
+    }
+
+    @Test
+    void testFailedOperationDoesNotRollBackNeighbours() throws Exception {
+        // id 1 уже вставила блокирующая операция: дубликат ключа
+        List<Future<Integer>> results = submitBehindBlockedWriter(101, 102, 1, 104, 105, 106, 107, 108, 109, 110);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> results.get(2).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DuplicateKeyException.class, error.getCause());
+        for (int i = 0; i < WAITING; i++) {
+            if (i != 2) {
+                assertEquals(1, results.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(WAITING, count());
+        assertEquals(2L, metrics.snapshot().get("tx.group-commit.commits"));
+    }
+
+    @Test
+    void testOperationStatementsCountForCaller() throws Exception {
+        Future<Long> statements = clients.submit(() -> {
+            StatementStats stats = StatementStats.start();
+            try {
+                groupCommit.execute(() -> insert(7) + insert(8));
+            } finally {
+                stats.stop();
+            }
+            return stats.getStatements();
+        });
+
+        // Вставки выполнил writer-поток, но учтены в области вызывающего
+        assertEquals(2L, statements.get(5, TimeUnit.SECONDS));
+        assertEquals(2, count());
+        assertEquals(1L, metrics.snapshot().get("tx.group-commit.commits"));
+    }
+
+    @Test
+    void testExecuteAfterDestroyRunsInline() throws Exception {
+        groupCommit.destroy();
+
+        Future<Integer> result = clients.submit(() -> groupCommit.execute(() -> insert(5)));
+
+        assertEquals(1, result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, count());
+        assertNull(metrics.snapshot().get("tx.group-commit.commits"));
+    }
+
+    @Test
+    void testErrorInOperationDoesNotLeaveCallersWaiting() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> failing = clients.submit(() -> groupCommit.execute(() -> {
+            started.countDown();
+            await(release);
+            throw new AssertionError("writer killed");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Future<Integer>> queued = new ArrayList<>();
+        for (int id = 101; id <= 103; id++) {
+            int value = id;
+            queued.add(clients.submit(() -> groupCommit.execute(() -> insert(value))));
+        }
+        waitForQueue(3);
+        release.countDown();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, error.getCause());
+        // Операции, которые writer не успел начать, выполнили сами вызывающие
+        for (Future<Integer> result : queued) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, groupCommit.execute(() -> insert(104)));
+        assertEquals(4, count());
+    }
+
+    @Test
+    void testFailedBeginCompletesCallers() throws Exception {
+        PlatformTransactionManager delegate = (PlatformTransactionManager)
+                ReflectionTestUtils.getField(groupCommit, "transactionManager");
+        AtomicBoolean failBegin = new AtomicBoolean(true);
+        ReflectionTestUtils.setField(groupCommit, "transactionManager", new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                if (failBegin.getAndSet(false)) {
+                    throw new CannotCreateTransactionException("no connection");
+                }
+                return delegate.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                delegate.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                delegate.rollback(status);
+            }
+        });
+
+        Future<Integer> failed = clients.submit(() -> groupCommit.execute(() -> insert(1)));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CannotCreateTransactionException.class, error.getCause());
+
+        // writer пережил ошибку и продолжает коммитить пачки
+        Future<Integer> next = clients.submit(() -> groupCommit.execute(() -> insert(2)));
+        assertEquals(1, next.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, metrics.snapshot().get("tx.group-commit.commits"));
+    }
+
+    /**
+     * Первая операция держит writer, пока в очереди не накопятся остальные
+     */
+    private List<Future<Integer>> submitBehindBlockedWriter(int... ids) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> blocker = clients.submit(() -> groupCommit.execute(() -> {
+            started.countDown();
+            await(release);
+            return insert(1);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int id : ids) {
+            results.add(clients.submit(() -> groupCommit.execute(() -> insert(id))));
+        }
+        waitForQueue(ids.length);
+        release.countDown();
+        assertEquals(1, blocker.get(5, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private int insert(int id) {
+        return jdbcTemplate.update("INSERT INTO likes (id) VALUES (?)", id);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+    }
+
+    private void waitForQueue(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (groupCommit.getQueueDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, groupCommit.getQueueDepth());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.config.DatabaseSettings;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private static final String COUNT_POSTS = "SELECT COUNT(*) FROM posts";
+
+    private LocalReplicaSet replicas;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("blog.db.name", "routing_test");
+        System.setProperty("blog.db.replicas.count", "1");
+        DatabaseSettings settings = DatabaseSettings.load();
+
+        DriverManagerDataSource primary = new DriverManagerDataSource(
+                settings.getUrl(), settings.getUsername(), settings.getPassword());
+        JdbcTemplate primaryTemplate = new JdbcTemplate(primary);
+        primaryTemplate.execute("DROP TABLE IF EXISTS posts");
+        primaryTemplate.execute("CREATE TABLE posts (id BIGINT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(255))");
+        primaryTemplate.update("INSERT INTO posts (title) VALUES ('first')");
+
+        // Без start(): синхронизируем вручную, чтобы управлять отставанием
+        replicas = new LocalReplicaSet(primary, settings);
+        replicas.syncNow();
+        jdbcTemplate = new JdbcTemplate(new ReadWriteRoutingDataSource(primary, replicas.getDataSources(), 60_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RoutingContext.endRequest();
+        replicas.close();
+        System.clearProperty("blog.db.name");
+        System.clearProperty("blog.db.replicas.count");
+    }
+
+    @Test
+    void testReplicaLagsUntilSync() {
+        insertFromAnotherClient();
+
+        assertEquals(1, countOnReplica());
+
+        replicas.syncNow();
+        assertEquals(2, countOnReplica());
+    }
+
+    @Test
+    void testReadYourWritesAfterWrite() {
+        AtomicLong stickyUntil = new AtomicLong();
+        RoutingContext.beginRequest(0, stickyUntil::set);
+
+        jdbcTemplate.update("INSERT INTO posts (title) VALUES ('second')");
+
+        assertTrue(stickyUntil.get() > System.currentTimeMillis());
+        assertEquals(2, countOnReplica());
+    }
+
+    @Test
+    void testStickyCookieFromPreviousRequest() {
+        insertFromAnotherClient();
+
+        RoutingContext.beginRequest(System.currentTimeMillis() + 60_000, until -> fail("no write expected"));
+        assertEquals(2, countOnReplica());
+    }
+
+    @Test
+    void testOnPrimaryBypassesLaggingReplica() {
+        insertFromAnotherClient();
+
+        int[] count = new int[1];
+        RoutingContext.onPrimary(() -> count[0] = countOnReplica());
+        assertEquals(2, count[0]);
+        // Вне действия - снова реплика
+        assertEquals(1, countOnReplica());
+    }
+
+    private void insertFromAnotherClient() {
+        RoutingContext.beginRequest(0, null);
+        jdbcTemplate.update("INSERT INTO posts (title) VALUES ('second')");
+        RoutingContext.endRequest();
+    }
+
+    private int countOnReplica() {
+        return RoutingContext.onReplica(() -> jdbcTemplate.queryForObject(COUNT_POSTS, Integer.class));
+    }
+}
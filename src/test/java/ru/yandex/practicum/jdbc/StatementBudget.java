@@ -0,0 +1,31 @@
+package ru.yandex.practicum.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Хелпер для тестов: проверяет, что действие выполнило не больше N SQL-выражений.
+ * Регрессии по количеству запросов (N+1) ломают сборку.
+ */
+public final class StatementBudget {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private StatementBudget() {
+    }
+
+    public static StatementStats assertMaxStatements(int max, Action action) throws Exception {
+        StatementStats stats = StatementStats.start();
+        try {
+            action.run();
+        } finally {
+            stats.stop();
+        }
+        assertTrue(stats.getStatements() <= max,
+                "Expected at most " + max + " statements, but was " + stats.getStatements()
+                        + ": " + stats.shapes());
+        return stats;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = new Bm25Index(1.2, 0.75, 2.0);
+
+    @Test
+    void testTitleMatchOutranksTextMatch() {
+        index.put(1, "Cooking at home", "A few words about spring and gardens");
+        index.put(2, "Spring framework", "Dependency injection explained");
+        index.put(3, "Unrelated", "Nothing to see here");
+
+        Bm25Index.Ranking ranking = index.top("spring", 10);
+
+        assertEquals(List.of(2L, 1L), ranking.getIds());
+        assertEquals(2, ranking.getTotalMatches());
+    }
+
+    @Test
+    void testMatchesWholeWordsOnly() {
+        // Раньше поиск шел по подстроке: "jav" находил "Java", "post" - "posting"
+        index.put(1, "Java streams", "Posting about collections");
+        index.put(2, "Kotlin", "JAVA, interop; and more");
+
+        assertEquals(2, index.top("java", 10).getTotalMatches());
+        assertTrue(index.top("jav", 10).getIds().isEmpty());
+        assertTrue(index.top("post", 10).getIds().isEmpty());
+        assertEquals(List.of(2L), index.top("interop", 10).getIds());
+    }
+
+    @Test
+    void testRareTermsWeighMore() {
+        index.put(1, "Java", "java streams");
+        index.put(2, "Java", "java records");
+        index.put(3, "Java", "java loom");
+
+        // "loom" есть только в одном посте: он выше остальных, хотя "java" есть везде
+        assertEquals(3L, index.top("java loom", 1).getIds().get(0));
+    }
+
+    @Test
+    void testUpdateAndRemoveChangeResults() {
+        index.put(1, "Old title", "text");
+        long version = index.version();
+
+        index.put(1, "New title", "text");
+        assertTrue(index.version() > version);
+        assertTrue(index.top("old", 10).getIds().isEmpty());
+        assertEquals(List.of(1L), index.top("new", 10).getIds());
+
+        index.remove(1);
+        assertTrue(index.top("new", 10).getIds().isEmpty());
+        assertEquals(0, index.size());
+        assertEquals(0, index.termCount());
+    }
+
+    @Test
+    void testTopKIsPrefixOfFullRanking() {
+        Random random = new Random(7);
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+        for (long id = 1; id <= 500; id++) {
+            index.put(id, randomText(random, words, 3), randomText(random, words, 30));
+        }
+
+        List<Long> top = index.top("alpha delta", 25).getIds();
+
+        List<Long> all = index.top("alpha delta", 10_000).getIds();
+        assertEquals(all.subList(0, 25), top);
+        assertEquals(index.matching("alpha delta").size(), all.size());
+    }
+
+    @Test
+    void testTokenizeIgnoresCaseAndPunctuation() {
+        assertEquals(List.of("hello", "мир", "2024"), Bm25Index.tokenize("Hello, МИР! 2024"));
+        assertTrue(Bm25Index.tokenize("  ").isEmpty());
+    }
+
+    private static String randomText(Random random, String[] words, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
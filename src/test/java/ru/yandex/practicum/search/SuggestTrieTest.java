@@ -0,0 +1,75 @@
+package ru.yandex.practicum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestTrieTest {
+
+    private final SuggestTrie trie = new SuggestTrie();
+
+    @Test
+    void testReturnsHeaviestMatchesFirst() {
+        trie.add("Spring", 3);
+        trie.add("Spark", 7);
+        trie.add("SQL", 10);
+        trie.add("Java", 20);
+
+        assertEquals(List.of("Spark", "Spring"), texts(trie.suggest("sp", 10)));
+        assertEquals(List.of("SQL", "Spark"), texts(trie.suggest("S", 2)));
+        assertEquals(7, trie.suggest("SPA", 1).get(0).getWeight());
+        assertTrue(trie.suggest("spx", 10).isEmpty());
+    }
+
+    @Test
+    void testWholeTermIsItsOwnPrefix() {
+        trie.add("Java", 1);
+        trie.add("JavaScript", 5);
+
+        assertEquals(List.of("JavaScript", "Java"), texts(trie.suggest("java", 10)));
+    }
+
+    @Test
+    void testRemovingWeightPrunesNodes() {
+        trie.add("Database", 2);
+        int nodes = trie.nodeCount();
+        trie.add("Data", 1);
+        trie.add("Docker", 1);
+
+        trie.add("docker", -1);
+        trie.add("DATA", -1);
+        assertEquals(List.of("Database"), texts(trie.suggest("d", 10)));
+        assertEquals(nodes, trie.nodeCount());
+
+        trie.add("database", -2);
+        assertEquals(0, trie.size());
+        assertEquals(1, trie.nodeCount());
+        assertTrue(trie.suggest("d", 10).isEmpty());
+    }
+
+    @Test
+    void testTopKMatchesFullSort() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2_000; i++) {
+            trie.add("term" + random.nextInt(5_000), 1 + random.nextInt(1_000));
+        }
+
+        List<SuggestTrie.Suggestion> top = trie.suggest("term1", 20);
+        List<SuggestTrie.Suggestion> all = trie.suggest("term1", 10_000);
+
+        assertEquals(20, top.size());
+        assertEquals(all.stream().map(SuggestTrie.Suggestion::getWeight).limit(20).collect(Collectors.toList()),
+                top.stream().map(SuggestTrie.Suggestion::getWeight).collect(Collectors.toList()));
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getWeight() >= all.get(i).getWeight());
+        }
+    }
+
+    private static List<String> texts(List<SuggestTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestTrie.Suggestion::getText).collect(Collectors.toList());
+    }
+}
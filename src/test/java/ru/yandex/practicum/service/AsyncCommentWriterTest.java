@@ -0,0 +1,210 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.config.DatabaseInitializerListener;
+import ru.yandex.practicum.dao.CommentDao;
+import ru.yandex.practicum.dao.CommentDaoImpl;
+import ru.yandex.practicum.dao.PostDaoImpl;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ServiceUnavailableException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Comment;
+
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+class AsyncCommentWriterTest {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private AsyncCommentWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:async_comments;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseInitializerListener.initialize(conn);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        writer.destroy();
+    }
+
+    @Test
+    void testCommentsAreBatchedAndDrainedOnShutdown() throws Exception {
+        writer = newWriter(commentDao(), 10_000);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(writer.submit(1L, "comment " + i).getId());
+        }
+        writer.destroy();
+
+        assertEquals(200, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > 2), "ids must not reuse seeded rows");
+        assertEquals(202, count());
+        assertEquals(200L, metrics.snapshot().get("comments.async.inserted"));
+        assertTrue(metrics.snapshot().get("comments.async.batches").longValue() < 200);
+
+        // Обычная вставка после явных id не конфликтует с ними
+        Comment sync = commentDao().save(new Comment(null, 1L, "sync"));
+        assertFalse(ids.contains(sync.getId()));
+    }
+
+    @Test
+    void testSynchronousIdsNeverFallIntoReservedBlock() throws Exception {
+        writer = newWriter(commentDao(), 10_000);
+        CommentIdAllocator syncAllocator = allocator(commentDao());
+
+        // Асинхронный блок выдан, но записан только первый id из него
+        long async = writer.submit(1L, "async").getId();
+        writer.destroy();
+        long sync = syncAllocator.nextId();
+
+        assertTrue(sync >= async + 64, "sync id " + sync + " inside reserved block starting at " + async);
+        commentDao().saveAll(List.of(new Comment(sync, 1L, "sync")));
+        assertEquals(4, count());
+    }
+
+    @Test
+    void testFailedBatchIsRetriedNotDropped() throws Exception {
+        CommentDao flakyDao = spy(commentDao());
+        AtomicInteger failures = new AtomicInteger(2);
+        doAnswer(invocation -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new CannotGetJdbcConnectionException("database is down");
+            }
+            return invocation.callRealMethod();
+        }).when(flakyDao).saveAll(anyList());
+        writer = newWriter(flakyDao, 100);
+
+        writer.submit(1L, "survives outage");
+        writer.submit(2L, "survives outage");
+        writer.destroy();
+
+        assertEquals(4, count());
+        assertTrue(metrics.snapshot().get("comments.async.retries").longValue() >= 2);
+        assertNull(metrics.snapshot().get("comments.async.dropped"));
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CommentDao blockingDao = spy(commentDao());
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(blockingDao).saveAll(anyList());
+        writer = newWriter(blockingDao, 1);
+
+        writer.submit(1L, "taken by writer");
+        waitUntilQueueIsEmpty();
+        writer.submit(1L, "waits in queue");
+
+        assertThrows(ServiceUnavailableException.class, () -> writer.submit(1L, "rejected"));
+        assertEquals(1L, metrics.snapshot().get("comments.async.rejected"));
+
+        release.countDown();
+        writer.destroy();
+        assertEquals(4, count());
+    }
+
+    @Test
+    void testCommentAcceptedDuringShutdownIsNotLost() throws Exception {
+        writer = newWriter(commentDao(), 10);
+        PostDaoImpl postDao = new PostDaoImpl() {
+            @Override
+            public boolean existsById(Long id) {
+                // Остановка между проверкой running и постановкой в очередь: writer уже вышел
+                try {
+                    writer.destroy();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        ReflectionTestUtils.setField(writer, "postDao", postDao);
+
+        assertThrows(ServiceUnavailableException.class, () -> writer.submit(1L, "too late"));
+        assertEquals(2, count());
+        assertEquals(0, metrics.snapshot().get("comments.async.queue").intValue());
+    }
+
+    @Test
+    void testUnknownPostIsRejectedBeforeQueueing() {
+        writer = newWriter(commentDao(), 10);
+
+        assertThrows(NotFoundException.class, () -> writer.submit(999L, "orphan"));
+    }
+
+    private AsyncCommentWriter newWriter(CommentDao commentDao, int queueCapacity) {
+        PostDaoImpl postDao = new PostDaoImpl();
+        ReflectionTestUtils.setField(postDao, "jdbcTemplate", jdbcTemplate);
+
+        AsyncCommentWriter asyncWriter = new AsyncCommentWriter();
+        ReflectionTestUtils.setField(asyncWriter, "commentDao", commentDao);
+        ReflectionTestUtils.setField(asyncWriter, "commentIdAllocator", allocator(commentDao));
+        ReflectionTestUtils.setField(asyncWriter, "postDao", postDao);
+        ReflectionTestUtils.setField(asyncWriter, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(asyncWriter, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(asyncWriter, "eventPublisher", (ApplicationEventPublisher) event -> { });
+        ReflectionTestUtils.setField(asyncWriter, "enabled", true);
+        ReflectionTestUtils.setField(asyncWriter, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(asyncWriter, "maxBatch", 50);
+        ReflectionTestUtils.setField(asyncWriter, "offerTimeoutMillis", 10L);
+        ReflectionTestUtils.setField(asyncWriter, "drainTimeoutMillis", 10_000L);
+        asyncWriter.afterPropertiesSet();
+        return asyncWriter;
+    }
+
+    private CommentIdAllocator allocator(CommentDao commentDao) {
+        CommentIdAllocator allocator = new CommentIdAllocator();
+        ReflectionTestUtils.setField(allocator, "commentDao", commentDao);
+        ReflectionTestUtils.setField(allocator, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(allocator, "blockSize", 64);
+        allocator.afterPropertiesSet();
+        return allocator;
+    }
+
+    private CommentDao commentDao() {
+        CommentDaoImpl commentDao = new CommentDaoImpl();
+        ReflectionTestUtils.setField(commentDao, "jdbcTemplate", jdbcTemplate);
+        return commentDao;
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comments", Integer.class);
+    }
+
+    private void waitUntilQueueIsEmpty() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (metrics.snapshot().get("comments.async.queue").intValue() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.jdbc.RoutingContext;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackgroundRebuilderTest {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicReference<List<Long>> published = new AtomicReference<>();
+
+    @Test
+    void testPostsChangedDuringLoadAreReloadedBeforePublish() {
+        BackgroundRebuilder rebuilder = new BackgroundRebuilder("test-build", lock, () -> { });
+        List<Long> reloaded = new ArrayList<>();
+
+        rebuilder.<List<Long>>rebuild(() -> {
+            // События во время чтения БД
+            rebuilder.markChanged(7L);
+            rebuilder.markChanged(8L);
+            return new ArrayList<>();
+        }, (fresh, postId) -> {
+            fresh.add(postId);
+            reloaded.add(postId);
+        }, published::set);
+
+        assertEquals(List.of(7L, 8L), reloaded.stream().sorted().toList());
+        assertEquals(2, published.get().size());
+        // Вне перестройки изменения не копятся
+        rebuilder.markChanged(9L);
+        rebuilder.<List<Long>>rebuild(ArrayList::new, (fresh, postId) -> fail("nothing changed"), published::set);
+        assertTrue(published.get().isEmpty());
+    }
+
+    @Test
+    void testFailedRebuildIsRetriedWhenStale() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch succeeded = new CountDownLatch(1);
+        AtomicReference<BackgroundRebuilder> holder = new AtomicReference<>();
+        holder.set(new BackgroundRebuilder("test-build", lock, () -> holder.get().<List<Long>>rebuild(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new DataAccessResourceFailureException("database is down");
+            }
+            return new ArrayList<>();
+        }, (fresh, postId) -> { }, fresh -> {
+            published.set(fresh);
+            succeeded.countDown();
+        })));
+        BackgroundRebuilder rebuilder = holder.get();
+
+        rebuilder.invalidate();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (attempts.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertNull(published.get());
+
+        // Неудачная перестройка оставляет структуру устаревшей: следующее обращение повторяет ее
+        while (succeeded.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            rebuilder.requestIfStale();
+            Thread.sleep(5);
+        }
+        assertTrue(succeeded.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testRebuildReadsPrimaryInBackgroundThread() throws Exception {
+        AtomicReference<Boolean> onPrimary = new AtomicReference<>();
+        CountDownLatch succeeded = new CountDownLatch(1);
+        AtomicReference<BackgroundRebuilder> holder = new AtomicReference<>();
+        holder.set(new BackgroundRebuilder("test-build", lock, () -> holder.get().<List<Long>>rebuild(() -> {
+            onPrimary.set(RoutingContext.requiresPrimary());
+            return new ArrayList<>();
+        }, (fresh, postId) -> { }, fresh -> succeeded.countDown())));
+
+        holder.get().request();
+
+        assertTrue(succeeded.await(5, TimeUnit.SECONDS));
+        // Реплика могла еще не получить записи, сделанные до начала перестройки
+        assertTrue(onPrimary.get());
+    }
+}
@@ -6,10 +6,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import ru.yandex.practicum.dao.CommentDao;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.GroupCommitExecutor;
 import ru.yandex.practicum.model.Comment;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -17,12 +22,19 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class CommentServiceTest {
     @Mock private CommentDao commentDao;
+    @Mock private GroupCommitExecutor groupCommitExecutor;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private AsyncCommentWriter asyncCommentWriter;
+    @Mock private CommentIdAllocator commentIdAllocator;
     @InjectMocks private CommentServiceImpl commentService;
 
     private Comment testComment;
 
     @BeforeEach
     void setUp() {
+        // Group commit в тестах сервиса выполняет операцию сразу
+        lenient().when(groupCommitExecutor.execute(any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
         testComment = new Comment(1L, 1L, "Test comment");
     }
 
@@ -47,17 +59,31 @@ class CommentServiceTest {
 
     @Test
     void testCreateComment() {
-        when(commentDao.save(any())).thenReturn(testComment);
+        when(commentIdAllocator.nextId()).thenReturn(7L);
 
         var result = commentService.createComment(1L, "Comment text");
 
-        assertNotNull(result);
-        assertEquals("Test comment", result.getText());
+        assertEquals(7L, result.getId());
+        assertEquals("Comment text", result.getText());
+        // id из общих блоков, а не AUTO_INCREMENT
+        verify(commentDao).saveAll(List.of(new Comment(7L, 1L, "Comment text")));
+        verify(commentDao, never()).save(any());
+    }
+
+    @Test
+    void testCreateCommentAsync() {
+        when(asyncCommentWriter.isEnabled()).thenReturn(true);
+        when(asyncCommentWriter.submit(1L, "Comment text")).thenReturn(new Comment(42L, 1L, "Comment text"));
+
+        var result = commentService.createComment(1L, "Comment text");
+
+        assertEquals(42L, result.getId());
+        verify(commentDao, never()).save(any());
     }
 
     @Test
     void testCreateCommentWithNullText() {
-        assertThrows(IllegalArgumentException.class,
+        assertThrows(ValidationException.class,
                 () -> commentService.createComment(1L, null));
     }
 
@@ -74,8 +100,19 @@ class CommentServiceTest {
 
     @Test
     void testDeleteComment() {
+        when(commentDao.deleteByIdAndPostId(1L, 1L)).thenReturn(true);
+
         commentService.deleteComment(1L, 1L);
+
         verify(commentDao).deleteByIdAndPostId(1L, 1L);
+        verify(eventPublisher).publishEvent(any(CommentEvent.class));
+    }
+
+    @Test
+    void testDeleteMissingCommentPublishesNothing() {
+        commentService.deleteComment(1L, 1L);
+
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
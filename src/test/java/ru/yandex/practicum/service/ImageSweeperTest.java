@@ -0,0 +1,56 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.yandex.practicum.AbstractWebAppTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageSweeperTest extends AbstractWebAppTest {
+
+    private static final String HASH = "repair-test-hash";
+
+    @Autowired private ImageSweeper imageSweeper;
+
+    private long postId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO images (hash, data, size_bytes, ref_count) VALUES (?, X'01', 1, 0)", HASH);
+        jdbcTemplate.update("INSERT INTO posts (title, text, likes_count, image_hash) VALUES ('Repair', 'text', 0, ?)", HASH);
+        postId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM posts WHERE id = ?", postId);
+        jdbcTemplate.update("DELETE FROM images WHERE hash = ?", HASH);
+    }
+
+    @Test
+    void testMissingReferenceIsRestoredAtOnce() {
+        // Шард поста закоммитился, +1 на шарде 0 - нет: изображение выглядит ненужным
+        imageSweeper.repairReferences();
+
+        assertEquals(1, refCount());
+        assertNull(jdbcTemplate.queryForObject("SELECT released_at FROM images WHERE hash = ?", Object.class, HASH));
+    }
+
+    @Test
+    void testExtraReferenceIsRemovedOnlyWhenSeenTwice() {
+        // Удаление поста закоммитилось на его шарде, -1 на шарде 0 - нет
+        jdbcTemplate.update("UPDATE images SET ref_count = 3 WHERE hash = ?", HASH);
+
+        imageSweeper.repairReferences();
+        assertEquals(3, refCount());
+
+        imageSweeper.repairReferences();
+        assertEquals(1, refCount());
+    }
+
+    private int refCount() {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM images WHERE hash = ?", Integer.class, HASH);
+    }
+}
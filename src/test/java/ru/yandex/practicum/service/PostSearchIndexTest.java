@@ -0,0 +1,126 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostSearchIndexTest {
+
+    @Mock private PostDao postDao;
+
+    private final List<Post> posts = new ArrayList<>();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private PostSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PostSearchIndex();
+        ReflectionTestUtils.setField(index, "postDao", postDao);
+        ReflectionTestUtils.setField(index, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(index, "k1", 1.2);
+        ReflectionTestUtils.setField(index, "b", 0.75);
+        ReflectionTestUtils.setField(index, "titleBoost", 2.0);
+        ReflectionTestUtils.setField(index, "maxResults", 100);
+        ReflectionTestUtils.setField(index, "cacheTtlMillis", 30_000L);
+        ReflectionTestUtils.setField(index, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(index, "batchSize", 2);
+        index.afterPropertiesSet();
+
+        posts.add(post(1L, "Java streams"));
+        posts.add(post(2L, "Spring beans"));
+        posts.add(post(3L, "Java records"));
+
+        lenient().when(postDao.findDetailsPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> page(invocation.getArgument(0), invocation.getArgument(1)));
+    }
+
+    @Test
+    void testBuildReadsPostsInKeysetBatches() {
+        assertEquals(List.of(1L, 3L), ids("java"));
+
+        verify(postDao).findDetailsPageAfterId(0L, 2);
+        verify(postDao).findDetailsPageAfterId(2L, 2);
+        verify(postDao, never()).findAll();
+        verify(postDao, never()).findPageAfterId(anyLong(), anyInt());
+        assertEquals(3, metrics.snapshot().get("search.documents").intValue());
+    }
+
+    @Test
+    void testInvalidateAllRebuildsInBackgroundServingOldIndex() throws Exception {
+        assertEquals(List.of(1L, 3L), ids("java"));
+
+        // Пока идет перестройка, БД уже другая: пост 3 удален, пост 2 переименован событием
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        posts.remove(2);
+        when(postDao.findDetailsPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return page(invocation.getArgument(0), invocation.getArgument(1));
+        });
+
+        index.onInvalidateAll(new InvalidateAllEvent());
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        // Поиск не ждет перестройку, события применяются к прежнему индексу
+        assertEquals(List.of(1L, 3L), ids("java"));
+        posts.set(1, post(2L, "Java beans"));
+        when(postDao.findById(2L)).thenReturn(Optional.of(posts.get(1)));
+        index.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 2L));
+        assertEquals(List.of(1L, 2L, 3L), ids("java"));
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ids("java").contains(3L) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(1L, 2L), ids("java"));
+        assertEquals(2, metrics.snapshot().get("search.documents").intValue());
+        verify(postDao, never()).findAll();
+    }
+
+    @Test
+    void testRebuildIndexesFullText() {
+        posts.set(1, Post.builder().id(2L).title("Spring beans").text("qwertyuniq body").build());
+
+        index.rebuild();
+
+        assertEquals(List.of(2L), ids("qwertyuniq"));
+    }
+
+    private List<Post> page(long afterId, int limit) {
+        return posts.stream().filter(post -> post.getId() > afterId).limit(limit).collect(Collectors.toList());
+    }
+
+    private List<Long> ids(String query) {
+        return index.ranked(query).getIds().stream().sorted().collect(Collectors.toList());
+    }
+
+    private static Post post(Long id, String title) {
+        return Post.builder()
+                .id(id)
+                .title(title)
+                .text("text " + id)
+                .likesCount(0)
+                .commentsCount(0)
+                .build();
+    }
+}
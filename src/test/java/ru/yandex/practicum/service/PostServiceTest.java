@@ -6,13 +6,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import ru.yandex.practicum.dao.CommentDao;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.yandex.practicum.dao.ImageDao;
 import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostSort;
 import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.dto.PostsByIdsResponse;
 import ru.yandex.practicum.dto.PostsResponse;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.exception.ValidationException;
+import ru.yandex.practicum.jdbc.GroupCommitExecutor;
+import ru.yandex.practicum.model.Image;
 import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+import ru.yandex.practicum.search.Bm25Index;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,13 +34,24 @@ import static org.mockito.Mockito.*;
 class PostServiceTest {
     @Mock private PostDao postDao;
     @Mock private PostTagDao postTagDao;
-    @Mock private CommentDao commentDao;
+    @Mock private ImageDao imageDao;
+    @Mock private GroupCommitExecutor groupCommitExecutor;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private SingleFlight singleFlight;
+    @Mock private PostSearchIndex searchIndex;
+    // page() мока - пустой Optional: страницы читаются из postDao
+    @Mock private PostSummaryStore summaryStore;
     @InjectMocks private PostServiceImpl postService;
 
     private Post testPost;
 
     @BeforeEach
     void setUp() {
+        // Group commit в тестах сервиса выполняет операцию сразу
+        lenient().when(groupCommitExecutor.execute(any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        lenient().when(singleFlight.execute(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
         testPost = Post.builder()
                 .id(1L)
                 .title("Test Post")
@@ -38,21 +62,23 @@ class PostServiceTest {
 
     @Test
     void testGetAllPosts() {
-        when(postDao.findAll()).thenReturn(Arrays.asList(testPost));
-        when(postTagDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
+        when(postDao.count()).thenReturn(1L);
+        when(postDao.findPage(PostSort.ID, 10, 0)).thenReturn(Arrays.asList(testPost));
+        when(postTagDao.findAllByPostIds(List.of(1L))).thenReturn(List.of(new PostTag(1L, 1L, "java")));
 
-        PostsResponse response = postService.getAllPosts("", 1, 10);
+        PostsResponse response = postService.getAllPosts("", 1, 10, PostSort.ID);
 
         assertNotNull(response);
         assertEquals(1, response.getPosts().size());
+        assertEquals(List.of("java"), response.getPosts().get(0).getTags());
+        // Теги страницы - одним запросом
+        verify(postTagDao, never()).findAllByPostId(any());
     }
 
     @Test
     void testGetPostById() {
         when(postDao.findById(1L)).thenReturn(Optional.of(testPost));
         when(postTagDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
 
         var result = postService.getPostById(1L);
 
@@ -60,11 +86,29 @@ class PostServiceTest {
         assertEquals("Test Post", result.get().getTitle());
     }
 
+    @Test
+    void testGetPostsByIdsKeepsRequestedOrder() {
+        Post second = Post.builder().id(2L).title("Second").text("Full text").likesCount(1).commentsCount(4).build();
+        when(postDao.findDetailsByIds(List.of(2L, 7L, 1L))).thenReturn(List.of(second, testPost));
+        when(postTagDao.findAllByPostIds(List.of(2L, 7L, 1L))).thenReturn(List.of(
+                new PostTag(1L, 1L, "java"), new PostTag(2L, 2L, "spring"), new PostTag(3L, 1L, "jdbc")));
+
+        PostsByIdsResponse response = postService.getPostsByIds(List.of(2L, 7L, 1L, 2L));
+
+        assertEquals(List.of(2L, 1L), response.getPosts().stream().map(PostDetailDto::getId).toList());
+        assertEquals(List.of(7L), response.getMissing());
+        assertEquals("Full text", response.getPosts().get(0).getText());
+        assertEquals(4, response.getPosts().get(0).getCommentsCount());
+        assertEquals(List.of("java", "jdbc"), response.getPosts().get(1).getTags());
+        // Без запросов на каждый пост
+        verify(postDao, never()).findById(any());
+        verify(postTagDao, never()).findAllByPostId(any());
+    }
+
     @Test
     void testCreatePost() {
         when(postDao.save(any())).thenReturn(testPost);
         when(postTagDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
 
         var result = postService.createPost("Test", "Content", Collections.emptyList());
 
@@ -74,7 +118,7 @@ class PostServiceTest {
 
     @Test
     void testCreatePostWithNullTitle() {
-        assertThrows(IllegalArgumentException.class,
+        assertThrows(ValidationException.class,
                 () -> postService.createPost(null, "Content", Collections.emptyList()));
     }
 
@@ -83,7 +127,6 @@ class PostServiceTest {
         when(postDao.findById(1L)).thenReturn(Optional.of(testPost));
         when(postDao.save(any())).thenReturn(testPost);
         when(postTagDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
 
         var result = postService.updatePost(1L, "Updated", "New content", Collections.emptyList());
 
@@ -93,8 +136,6 @@ class PostServiceTest {
 
     @Test
     void testDeletePost() {
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-
         postService.deletePost(1L);
 
         verify(postDao).deleteById(1L);
@@ -102,54 +143,137 @@ class PostServiceTest {
 
     @Test
     void testIncrementLikes() {
-        Post postWithLike = Post.builder().id(1L).likesCount(6).build();
-        when(postDao.findById(1L)).thenReturn(Optional.of(testPost));
-        when(postDao.save(any())).thenReturn(postWithLike);
+        when(postDao.incrementLikes(1L)).thenReturn(Optional.of(6));
 
         Integer result = postService.incrementLikes(1L);
 
         assertEquals(6, result);
+        // Атомарный UPDATE, без перезаписи всей строки поста
+        verify(postDao, never()).save(any());
+    }
+
+    @Test
+    void testIncrementLikesOfMissingPost() {
+        when(postDao.incrementLikes(99L)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> postService.incrementLikes(99L));
     }
 
     @Test
     void testSaveImage() {
-        byte[] imageData = "image".getBytes();
+        InputStream imageData = new ByteArrayInputStream("image".getBytes());
+        String hash = Image.hashOf("image".getBytes());
         when(postDao.findById(1L)).thenReturn(Optional.of(testPost));
+        when(imageDao.addReference(same(imageData), anyLong())).thenReturn(hash);
+        when(postDao.replaceImageHash(1L, null, hash)).thenReturn(true);
 
         postService.saveImage(1L, imageData);
 
-        verify(postDao).save(any());
+        verify(imageDao).addReference(same(imageData), anyLong());
+        verify(imageDao, never()).releaseReference(any());
+        verify(postDao, never()).save(any());
+    }
+
+    @Test
+    void testSaveImageReleasesReplacedImage() {
+        InputStream imageData = new ByteArrayInputStream("new image".getBytes());
+        String hash = Image.hashOf("new image".getBytes());
+        testPost.setImageHash("old");
+        when(postDao.findById(1L)).thenReturn(Optional.of(testPost));
+        when(imageDao.addReference(same(imageData), anyLong())).thenReturn(hash);
+        when(postDao.replaceImageHash(1L, "old", hash)).thenReturn(true);
+
+        postService.saveImage(1L, imageData);
+
+        verify(imageDao).releaseReference("old");
     }
 
     @Test
     void testGetImage() {
-        Post postWithImage = Post.builder().id(1L).image("image".getBytes()).build();
+        Post postWithImage = Post.builder().id(1L).imageHash("abc").build();
         when(postDao.findById(1L)).thenReturn(Optional.of(postWithImage));
+        when(imageDao.findData("abc")).thenReturn(Optional.of("image".getBytes()));
 
-        Optional<byte[]> result = postService.getImage(1L);
+        Optional<Image> result = postService.getImage(1L);
 
         assertTrue(result.isPresent());
+        assertEquals("abc", result.get().getHash());
     }
 
     @Test
     void testTextTruncation() {
         String longText = "a".repeat(200);
         Post longPost = Post.builder().id(1L).text(longText).build();
-        when(postDao.findAll()).thenReturn(Arrays.asList(longPost));
-        when(postTagDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
-        when(commentDao.findAllByPostId(1L)).thenReturn(Collections.emptyList());
+        when(postDao.count()).thenReturn(1L);
+        when(postDao.findPage(PostSort.ID, 10, 0)).thenReturn(Arrays.asList(longPost));
 
-        PostsResponse response = postService.getAllPosts("", 1, 10);
+        PostsResponse response = postService.getAllPosts("", 1, 10, PostSort.ID);
 
         assertTrue(response.getPosts().get(0).getText().endsWith("…"));
     }
 
     @Test
     void testGetAllPostsEmpty() {
-        when(postDao.findAll()).thenReturn(Collections.emptyList());
+        when(postDao.count()).thenReturn(0L);
 
-        PostsResponse response = postService.getAllPosts("", 1, 10);
+        PostsResponse response = postService.getAllPosts("", 1, 10, PostSort.ID);
 
         assertEquals(0, response.getPosts().size());
+        verify(postDao, never()).findPage(any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void testHugePageNumberDoesNotOverflowOffset() {
+        when(postDao.count()).thenReturn(12L);
+
+        PostsResponse response = postService.getAllPosts("", Integer.MAX_VALUE, 100, PostSort.ID);
+
+        assertTrue(response.getPosts().isEmpty());
+        assertTrue(response.isHasPrev());
+        assertFalse(response.isHasNext());
+        // За последней страницей БД не читается (и OFFSET не уходит в минус)
+        verify(postDao, never()).findPage(any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void testGetAllPostsSortedPage() {
+        Post popular = Post.builder().id(2L).title("Popular").text("Text").likesCount(50).commentsCount(7).build();
+        when(postDao.count()).thenReturn(12L);
+        when(postDao.findPage(PostSort.LIKES, 5, 5)).thenReturn(Arrays.asList(popular));
+
+        PostsResponse response = postService.getAllPosts("", 2, 5, PostSort.LIKES);
+
+        assertEquals(7, response.getPosts().get(0).getCommentsCount());
+        assertEquals(3, response.getLastPage());
+        assertTrue(response.isHasPrev());
+        assertTrue(response.isHasNext());
+        verify(postDao, never()).findAll();
+    }
+
+    @Test
+    void testSearchRankedByRelevance() {
+        Post best = Post.builder().id(3L).title("Java").text("Java").build();
+        Post second = Post.builder().id(1L).title("Other").text("java").build();
+        when(searchIndex.ranked("java")).thenReturn(new Bm25Index.Ranking(List.of(3L, 1L), 2));
+        when(postDao.findAllByIds(List.of(3L, 1L))).thenReturn(Arrays.asList(best, second));
+
+        PostsResponse response = postService.getAllPosts("java", 1, 10, PostSort.ID);
+
+        assertEquals(List.of(3L, 1L), response.getPosts().stream().map(p -> p.getId()).toList());
+        verify(postDao, never()).findAll();
+    }
+
+    @Test
+    void testSearchResultsFollowSort() {
+        Post older = Post.builder().id(1L).title("Java basics").text("a").likesCount(1).build();
+        Post liked = Post.builder().id(2L).title("Java streams").text("b").likesCount(9).build();
+        when(searchIndex.ranked("java")).thenReturn(new Bm25Index.Ranking(List.of(1L, 2L), 2));
+        when(postDao.findPageByIds(List.of(1L, 2L), PostSort.LIKES, 10, 0)).thenReturn(Arrays.asList(liked, older));
+
+        PostsResponse response = postService.getAllPosts("java", 1, 10, PostSort.LIKES);
+
+        assertEquals(List.of(2L, 1L), response.getPosts().stream().map(p -> p.getId()).toList());
+        // Порядок и страница - в БД, совпадения целиком не загружаются
+        verify(postDao, never()).findAllByIds(anyList());
     }
 }
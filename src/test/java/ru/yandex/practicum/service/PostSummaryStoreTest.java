@@ -0,0 +1,262 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dto.PostListItemDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostSummaryStoreTest {
+
+    @Mock private PostDao postDao;
+    @Mock private PostTagDao postTagDao;
+
+    private final List<Post> posts = new ArrayList<>();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private PostSummaryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PostSummaryStore();
+        ReflectionTestUtils.setField(store, "postDao", postDao);
+        ReflectionTestUtils.setField(store, "postTagDao", postTagDao);
+        ReflectionTestUtils.setField(store, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "batchSize", 3);
+
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        // Равные лайки/даты и пост без даты - проверка порядка при равенстве
+        posts.add(post(1L, 5, 2, now.minusDays(3)));
+        posts.add(post(2L, 10, 0, now));
+        posts.add(post(3L, 5, 7, now));
+        posts.add(post(4L, 0, 2, null));
+        posts.add(post(5L, 10, 1, now.minusDays(1)));
+        posts.add(post(6L, 1, 0, now.minusDays(1)));
+        posts.add(post(7L, 3, 3, now.minusHours(1)));
+
+        lenient().when(postDao.findPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return posts.stream().filter(post -> post.getId() > afterId).limit(limit).collect(Collectors.toList());
+        });
+        lenient().when(postTagDao.findAll()).thenReturn(List.of(
+                new PostTag(1L, 1L, "java"), new PostTag(2L, 3L, "java"), new PostTag(3L, 3L, "spring")));
+    }
+
+    @Test
+    void testPagesFollowSortOrder() {
+        for (PostSort sort : PostSort.values()) {
+            List<Long> expected = posts.stream().sorted(sort.getComparator()).map(Post::getId).collect(Collectors.toList());
+            assertEquals(expected, ids(sort, 0, 100), sort.name());
+            assertEquals(expected.subList(2, 5), ids(sort, 2, 3), sort.name());
+        }
+        // Посты читаются пачками по batch-size после последнего прочитанного id, теги - одним запросом
+        verify(postDao).findPageAfterId(0L, 3);
+        verify(postDao).findPageAfterId(3L, 3);
+        verify(postDao).findPageAfterId(6L, 3);
+        verify(postDao, never()).findPage(any(), anyInt(), anyLong());
+        verify(postTagDao).findAll();
+
+        PostSummaryStore.Page page = store.page(PostSort.ID, 0, 3).orElseThrow();
+        assertEquals(7, page.getTotalCount());
+        PostListItemDto third = page.getPosts().get(2);
+        assertEquals(List.of("java", "spring"), third.getTags());
+        assertEquals(7, third.getCommentsCount());
+        // Строки тегов общие для всех постов
+        assertSame(page.getPosts().get(0).getTags().get(0), third.getTags().get(0));
+        assertTrue(store.page(PostSort.ID, 10, 3).orElseThrow().getPosts().isEmpty());
+    }
+
+    @Test
+    void testEventsUpdateColumnsWithoutRebuild() {
+        store.page(PostSort.ID, 0, 100);
+
+        for (int i = 0; i < 10; i++) {
+            store.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 6L));
+        }
+        assertEquals(6L, ids(PostSort.LIKES, 0, 1).get(0));
+        assertEquals(11, store.page(PostSort.LIKES, 0, 1).orElseThrow().getPosts().get(0).getLikesCount());
+
+        store.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 4L, 100L, "a"));
+        store.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 4L, 101L, "b"));
+        store.onCommentEvent(new CommentEvent(CommentEvent.Type.DELETED, 3L, 102L, null));
+        assertEquals(List.of(3L, 4L), ids(PostSort.COMMENTS, 0, 2));
+
+        Post created = post(8L, 0, 0, LocalDateTime.of(2030, 1, 1, 0, 0));
+        when(postDao.findById(8L)).thenReturn(Optional.of(created));
+        when(postTagDao.findAllByPostId(8L)).thenReturn(List.of(new PostTag(4L, 8L, "java")));
+        store.onPostEvent(new PostEvent(PostEvent.Type.CREATED, 8L));
+        assertEquals(8L, ids(PostSort.NEWEST, 0, 1).get(0));
+
+        store.onPostEvent(new PostEvent(PostEvent.Type.DELETED, 2L));
+        assertEquals(List.of(1L, 3L, 4L, 5L, 6L, 7L, 8L), ids(PostSort.ID, 0, 100));
+        assertEquals(7, store.page(PostSort.ID, 0, 1).orElseThrow().getTotalCount());
+        // Все изменения - без повторного чтения ленты и без пересортировки порядков
+        verify(postDao, times(3)).findPageAfterId(anyLong(), anyInt());
+        assertEquals(PostSort.values().length, metrics.snapshot().get("read-model.sorts").intValue());
+    }
+
+    @Test
+    void testInvalidateAllRebuildsInBackgroundServingOldColumns() throws Exception {
+        store.page(PostSort.ID, 0, 100);
+
+        // Пока идет перестройка, БД уже другая: пост 2 удален, пост 7 получил лайки
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        posts.remove(1);
+        posts.set(5, post(7L, 20, 3, LocalDateTime.of(2024, 1, 1, 11, 0)));
+        when(postDao.findPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            long afterId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return posts.stream().filter(post -> post.getId() > afterId).limit(limit).collect(Collectors.toList());
+        });
+        when(postDao.findById(6L)).thenReturn(Optional.of(post(6L, 30, 0, null)));
+        when(postTagDao.findAllByPostId(6L)).thenReturn(List.of());
+
+        store.onInvalidateAll(new InvalidateAllEvent());
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        // Страницы не ждут перестройку, события применяются к прежним колонкам
+        assertEquals(7, store.page(PostSort.ID, 0, 100).orElseThrow().getTotalCount());
+        store.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 6L));
+        assertEquals(2, store.page(PostSort.LIKES, 0, 100).orElseThrow().getPosts().stream()
+                .filter(post -> post.getId() == 6L).findFirst().orElseThrow().getLikesCount());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (store.page(PostSort.ID, 0, 100).orElseThrow().getTotalCount() != 6 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(1L, 3L, 4L, 5L, 6L, 7L), ids(PostSort.ID, 0, 100));
+        // Пост, измененный во время чтения БД, перечитан перед подменой колонок
+        assertEquals(List.of(6L, 7L), ids(PostSort.LIKES, 0, 2));
+        assertEquals(30, store.page(PostSort.LIKES, 0, 1).orElseThrow().getPosts().get(0).getLikesCount());
+    }
+
+    @Test
+    void testEventReadsDatabaseOutsideWriteLock() throws Exception {
+        store.page(PostSort.ID, 0, 100);
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(postDao.findById(3L)).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return Optional.of(Post.builder().id(3L).title("Edited").text("edited").likesCount(5).commentsCount(7).build());
+        });
+        Thread writer = new Thread(() -> store.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 3L)));
+        writer.start();
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        // Пока событие читает пост, страницы отдаются без ожидания
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertEquals(List.of(5L, 2L), ids(PostSort.LIKES, 0, 2)));
+        release.countDown();
+        writer.join(10_000);
+        assertEquals("Edited", store.page(PostSort.ID, 2, 1).orElseThrow().getPosts().get(0).getTitle());
+    }
+
+    @Test
+    void testEditKeepsCountersOfDeltaEvents() {
+        store.page(PostSort.ID, 0, 100);
+
+        // Правка прочитала пост до лайков и комментария, их события применились раньше нее
+        when(postDao.findById(6L)).thenReturn(Optional.of(post(6L, 1, 0, null)));
+        for (int i = 0; i < 10; i++) {
+            store.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 6L));
+        }
+        store.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 6L, 100L, "a"));
+        store.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 6L));
+
+        PostListItemDto edited = store.page(PostSort.LIKES, 0, 1).orElseThrow().getPosts().get(0);
+        assertEquals(6L, edited.getId());
+        assertEquals(11, edited.getLikesCount());
+        assertEquals(1, edited.getCommentsCount());
+    }
+
+    @Test
+    void testManyInsertsAndDeletesKeepSlots() {
+        store.page(PostSort.ID, 0, 1);
+        for (long id = 100; id < 1100; id++) {
+            long postId = id;
+            when(postDao.findById(postId)).thenReturn(Optional.of(post(postId, (int) (postId % 17), 0, null)));
+            store.onPostEvent(new PostEvent(PostEvent.Type.CREATED, postId));
+        }
+        for (long id = 100; id < 1100; id += 2) {
+            store.onPostEvent(new PostEvent(PostEvent.Type.DELETED, id));
+        }
+        // Удаление несуществующего поста ничего не меняет
+        store.onPostEvent(new PostEvent(PostEvent.Type.DELETED, 5000L));
+
+        List<Long> expected = new ArrayList<>(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L));
+        LongStream.range(100, 1100).filter(id -> id % 2 == 1).forEach(expected::add);
+        assertEquals(expected, ids(PostSort.ID, 0, 1000));
+
+        store.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 1099L));
+        PostListItemDto liked = store.page(PostSort.ID, expected.size() - 1, 1).orElseThrow().getPosts().get(0);
+        assertEquals(1099L, liked.getId());
+        assertEquals(1099 % 17 + 1, liked.getLikesCount());
+
+        // Порядки после вставок, удалений и лайка поддержаны без пересортировки
+        List<Post> remaining = new ArrayList<>(posts);
+        LongStream.range(100, 1100).filter(id -> id % 2 == 1)
+                .forEach(id -> remaining.add(post(id, (int) (id % 17) + (id == 1099 ? 1 : 0), 0, null)));
+        for (PostSort sort : PostSort.values()) {
+            List<Long> sorted = remaining.stream().sorted(sort.getComparator()).map(Post::getId).collect(Collectors.toList());
+            assertEquals(sorted, ids(sort, 0, 1000), sort.name());
+        }
+        assertEquals(PostSort.values().length, metrics.snapshot().get("read-model.sorts").intValue());
+    }
+
+    @Test
+    void testDisabledStoreFallsBackToDatabase() {
+        ReflectionTestUtils.setField(store, "enabled", false);
+
+        assertTrue(store.page(PostSort.ID, 0, 10).isEmpty());
+        verifyNoInteractions(postDao, postTagDao);
+    }
+
+    private List<Long> ids(PostSort sort, long offset, int limit) {
+        return store.page(sort, offset, limit).orElseThrow().getPosts().stream()
+                .map(PostListItemDto::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static Post post(Long id, int likes, int comments, LocalDateTime created) {
+        return Post.builder()
+                .id(id)
+                .title("Post " + id)
+                .text("text " + id)
+                .likesCount(likes)
+                .commentsCount(comments)
+                .createdDate(created)
+                .build();
+    }
+}
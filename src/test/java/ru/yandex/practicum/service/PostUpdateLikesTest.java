@@ -0,0 +1,53 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dao.PostDao;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+class PostUpdateLikesTest extends AbstractWebAppTest {
+
+    @Autowired private PostDao postDao;
+
+    private PostServiceImpl target;
+    private long postId;
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(postService);
+        postId = postService.createPost("Liked", "text", List.of()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(target, "postDao", postDao);
+        postService.deletePost(postId);
+    }
+
+    @Test
+    void testLikeBetweenReadAndSaveSurvivesEdit() {
+        // Лайк проходит сразу после того, как updatePost прочитал пост
+        PostDao racing = mock(PostDao.class, delegatesTo(postDao));
+        doAnswer(invocation -> {
+            Object post = postDao.findById(postId);
+            postService.incrementLikes(postId);
+            return post;
+        }).when(racing).findById(postId);
+        ReflectionTestUtils.setField(target, "postDao", racing);
+
+        postService.updatePost(postId, "Edited", "new text", List.of());
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Integer.class, postId));
+        assertEquals("Edited", jdbcTemplate.queryForObject("SELECT title FROM posts WHERE id = ?", String.class, postId));
+    }
+}
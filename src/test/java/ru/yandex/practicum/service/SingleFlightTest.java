@@ -0,0 +1,153 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.exception.NotFoundException;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int FOLLOWERS = 20;
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ExecutorService clients = Executors.newFixedThreadPool(FOLLOWERS + 1);
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:single_flight_test;DB_CLOSE_DELAY=-1", "sa", "");
+        singleFlight = new SingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(singleFlight, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(singleFlight, "enabled", true);
+        ReflectionTestUtils.setField(singleFlight, "waitTimeoutMillis", 5000L);
+        singleFlight.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentIdenticalReadsShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<String>> results = runBehindBlockedLeader(1L, () -> {
+            loads.incrementAndGet();
+            return "post-1";
+        });
+
+        for (Future<String> result : results) {
+            assertEquals("post-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(FOLLOWERS, metrics.counter("singleflight.test.coalesced").sum());
+        assertEquals(0, metrics.snapshot().get("singleflight.in-flight").intValue());
+    }
+
+    @Test
+    void testLeaderFailureIsSharedAndNotCached() throws Exception {
+        List<Future<String>> results = runBehindBlockedLeader(2L, () -> {
+            throw NotFoundException.post(2L);
+        });
+
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(NotFoundException.class, e.getCause());
+        }
+        // Следующий вызов после завершения - новая загрузка
+        assertEquals("ok", singleFlight.execute("test", 2L, () -> "ok"));
+    }
+
+    @Test
+    void testReadAfterWriteDoesNotJoinEarlierLoad() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = clients.submit(() -> singleFlight.execute("test", 4L, () -> {
+            leaderStarted.countDown();
+            awaitQuietly(release);
+            return "before";
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        // Запись закоммичена, пока лидер читает: следующий запрос загружает сам
+        singleFlight.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 4L));
+        assertEquals("after", singleFlight.execute("test", 4L, () -> "after"));
+        release.countDown();
+
+        assertEquals("before", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(2, metrics.counter("singleflight.test.loads").sum());
+        assertEquals(1, metrics.counter("singleflight.test.stale").sum());
+        assertEquals(0, metrics.counter("singleflight.test.coalesced").sum());
+        assertEquals(0, metrics.snapshot().get("singleflight.in-flight").intValue());
+    }
+
+    @Test
+    void testDifferentKeysAreNotCoalesced() {
+        assertEquals("a", singleFlight.execute("test", 1L, () -> "a"));
+        assertEquals("b", singleFlight.execute("test", 2L, () -> "b"));
+
+        assertEquals(2, metrics.counter("singleflight.test.loads").sum());
+        assertEquals(0, metrics.counter("singleflight.test.coalesced").sum());
+    }
+
+    @Test
+    void testLoadRunsInReadOnlyTransaction() {
+        assertTrue(singleFlight.execute("test", 3L, TransactionSynchronizationManager::isCurrentTransactionReadOnly));
+    }
+
+    /**
+     * Лидер ждет, пока все FOLLOWERS встанут за ним, и только потом загружает
+     */
+    private List<Future<String>> runBehindBlockedLeader(Long key, Supplier<String> load) throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        results.add(clients.submit(() -> singleFlight.execute("test", key, () -> {
+            leaderStarted.countDown();
+            awaitQuietly(release);
+            return load.get();
+        })));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < FOLLOWERS; i++) {
+            results.add(clients.submit(() -> singleFlight.execute("test", key, load)));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metrics.counter("singleflight.test.coalesced").sum() < FOLLOWERS
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return results;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.dao.PostDao;
+import ru.yandex.practicum.dao.PostTagDao;
+import ru.yandex.practicum.dto.SuggestionDto;
+import ru.yandex.practicum.event.InvalidateAllEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Post;
+import ru.yandex.practicum.model.PostTag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SuggestIndexTest {
+
+    @Mock private PostDao postDao;
+    @Mock private PostTagDao postTagDao;
+
+    private final List<Post> posts = new ArrayList<>();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private SuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SuggestIndex();
+        ReflectionTestUtils.setField(index, "postDao", postDao);
+        ReflectionTestUtils.setField(index, "postTagDao", postTagDao);
+        ReflectionTestUtils.setField(index, "metricsRegistry", metrics);
+        ReflectionTestUtils.setField(index, "buildOnStartup", false);
+        ReflectionTestUtils.setField(index, "batchSize", 2);
+        index.afterPropertiesSet();
+
+        posts.add(post(1L, "Spring basics", 0));
+        posts.add(post(2L, "Spring data", 4));
+        posts.add(post(3L, "Java records", 0));
+
+        lenient().when(postDao.findPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> page(invocation.getArgument(0), invocation.getArgument(1)));
+        lenient().when(postTagDao.findAll()).thenReturn(List.of(new PostTag(1L, 1L, "spring")));
+    }
+
+    @Test
+    void testInvalidateAllRebuildsInBackgroundServingOldTrees() throws Exception {
+        assertEquals(List.of("Spring data", "Spring basics"), titles("spr"));
+
+        // Пока идет перестройка, БД уже другая: пост 2 удален, пост 1 переименован событием
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        posts.remove(1);
+        when(postDao.findPageAfterId(anyLong(), anyInt())).thenAnswer(invocation -> {
+            reading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return page(invocation.getArgument(0), invocation.getArgument(1));
+        });
+
+        index.onInvalidateAll(new InvalidateAllEvent());
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        // Подсказки не ждут перестройку, события применяются к прежним деревьям
+        assertEquals(List.of("Spring data", "Spring basics"), titles("spr"));
+        posts.set(0, post(1L, "Spring boot", 0));
+        when(postDao.findById(1L)).thenReturn(Optional.of(posts.get(0)));
+        when(postTagDao.findAllByPostId(1L)).thenReturn(List.of(new PostTag(1L, 1L, "spring")));
+        index.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 1L));
+        assertEquals(List.of("Spring data", "Spring boot"), titles("spr"));
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (titles("spr").contains("Spring data") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Пост, измененный во время чтения БД, перечитан перед подменой деревьев
+        assertEquals(List.of("Spring boot"), titles("spr"));
+        assertEquals(2, metrics.snapshot().get("suggest.titles").intValue());
+    }
+
+    @Test
+    void testEditKeepsPopularityOfDeltaEvents() {
+        assertEquals(List.of("Spring data", "Spring basics"), titles("spr"));
+
+        // Правка прочитала пост до лайков, их события применились раньше нее
+        when(postDao.findById(1L)).thenReturn(Optional.of(post(1L, "Spring boot", 0)));
+        when(postTagDao.findAllByPostId(1L)).thenReturn(List.of(new PostTag(1L, 1L, "spring")));
+        for (int i = 0; i < 10; i++) {
+            index.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 1L));
+        }
+        index.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 1L));
+
+        List<SuggestionDto> suggested = index.suggest("spr", 10).getTitles();
+        assertEquals("Spring boot", suggested.get(0).getText());
+        assertEquals(11, suggested.get(0).getWeight());
+    }
+
+    private List<Post> page(long afterId, int limit) {
+        return posts.stream().filter(post -> post.getId() > afterId).limit(limit).collect(Collectors.toList());
+    }
+
+    private List<String> titles(String prefix) {
+        return index.suggest(prefix, 10).getTitles().stream().map(SuggestionDto::getText).collect(Collectors.toList());
+    }
+
+    private static Post post(Long id, String title, int likes) {
+        return Post.builder()
+                .id(id)
+                .title(title)
+                .text("text " + id)
+                .likesCount(likes)
+                .commentsCount(0)
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.dto.PostListItemDto;
+import ru.yandex.practicum.dto.PostsResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextPreviewBackfillTest extends AbstractWebAppTest {
+
+    private static final String LONG_TEXT = "x".repeat(PostServiceImpl.PREVIEW_LENGTH) + " tail that never reaches the feed";
+
+    @Autowired private TextPreviewBackfill backfill;
+    @Autowired private PostSummaryStore summaryStore;
+
+    private long legacyId;
+
+    @BeforeEach
+    void setUp() {
+        // Строка "из старой версии": text_preview не заполнен
+        jdbcTemplate.update("INSERT INTO posts (title, text, likes_count) VALUES ('Legacy', ?, 0)", LONG_TEXT);
+        legacyId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM posts", Long.class);
+        // Такие строки уже есть в БД при старте, когда строится read-модель ленты
+        summaryStore.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM posts WHERE id = ?", legacyId);
+        summaryStore.rebuild();
+    }
+
+    @Test
+    void testFeedShowsPreviewBeforeBackfill() {
+        assertEquals(PostServiceImpl.textPreview(LONG_TEXT), legacyItem().getText());
+    }
+
+    @Test
+    void testBackfillStoresPreview() {
+        assertTrue(backfill.run() >= 1);
+
+        assertEquals(PostServiceImpl.textPreview(LONG_TEXT), jdbcTemplate.queryForObject(
+                "SELECT text_preview FROM posts WHERE id = ?", String.class, legacyId));
+        assertEquals(0, backfill.run());
+        assertEquals(PostServiceImpl.textPreview(LONG_TEXT), legacyItem().getText());
+    }
+
+    @Test
+    void testWritesStorePreview() {
+        Long id = postService.createPost("Fresh", LONG_TEXT, null).getId();
+        try {
+            assertEquals(PostServiceImpl.textPreview(LONG_TEXT), jdbcTemplate.queryForObject(
+                    "SELECT text_preview FROM posts WHERE id = ?", String.class, id));
+
+            postService.updatePost(id, "Fresh", "short", null);
+            assertEquals("short", jdbcTemplate.queryForObject(
+                    "SELECT text_preview FROM posts WHERE id = ?", String.class, id));
+        } finally {
+            postService.deletePost(id);
+        }
+    }
+
+    private PostListItemDto legacyItem() {
+        PostsResponse response = postService.getAllPosts("", 1, 100, PostSort.ID);
+        return response.getPosts().stream()
+                .filter(item -> item.getId() == legacyId)
+                .findFirst()
+                .orElseThrow();
+    }
+}
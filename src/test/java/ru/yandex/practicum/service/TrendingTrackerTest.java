@@ -0,0 +1,55 @@
+package ru.yandex.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.dto.TrendingPostDto;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingTrackerTest {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private TrendingTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new TrendingTracker();
+        ReflectionTestUtils.setField(tracker, "metricsRegistry", metrics);
+        // Одна корзина на сутки: тест не попадает на ротацию
+        ReflectionTestUtils.setField(tracker, "windowMinutes", 24 * 60L);
+        ReflectionTestUtils.setField(tracker, "bucketCount", 1);
+        ReflectionTestUtils.setField(tracker, "sketchWidth", 256);
+        ReflectionTestUtils.setField(tracker, "sketchDepth", 4);
+        ReflectionTestUtils.setField(tracker, "candidates", 16);
+        ReflectionTestUtils.setField(tracker, "viewsWeight", 1L);
+        ReflectionTestUtils.setField(tracker, "likesWeight", 5L);
+        ReflectionTestUtils.setField(tracker, "commentsWeight", 10L);
+        tracker.afterPropertiesSet();
+    }
+
+    @Test
+    void testRankingIsReusedUntilBucketRotation() {
+        tracker.recordView(1L);
+        tracker.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 2L));
+        tracker.recordView(3L);
+        tracker.recordView(3L);
+
+        assertEquals(List.of(2L, 3L, 1L), ids(tracker.top(10)));
+        assertEquals(List.of(2L), ids(tracker.top(1)));
+        // Новые события - в следующий пересчет, удаление скрывает пост сразу
+        tracker.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 1L));
+        tracker.onPostEvent(new PostEvent(PostEvent.Type.DELETED, 2L));
+        assertEquals(List.of(3L, 1L), ids(tracker.top(10)));
+        assertEquals(1, metrics.snapshot().get("trending.rankings").intValue());
+    }
+
+    private static List<Long> ids(List<TrendingPostDto> posts) {
+        return posts.stream().map(TrendingPostDto::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowTopKTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicLong now = new AtomicLong(HOUR * 100);
+
+    @Test
+    void testFindsHeavyHittersAmongNoise() {
+        SlidingWindowTopK topK = new SlidingWindowTopK(HOUR, 12, 1024, 4, 64, now::get);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            topK.add(1_000 + random.nextInt(10_000));
+            if (i % 10 == 0) topK.add(1);
+            if (i % 20 == 0) topK.add(2);
+            if (i % 40 == 0) topK.add(3);
+        }
+
+        assertEquals(List.of(1L, 2L, 3L), top(topK, 3));
+        assertTrue(topK.estimate(1) >= 2_000);
+    }
+
+    @Test
+    void testEventsLeaveWithTheWindow() {
+        SlidingWindowTopK topK = new SlidingWindowTopK(HOUR, 12, 256, 4, 16, now::get);
+        for (int i = 0; i < 100; i++) {
+            topK.add(7);
+        }
+        now.addAndGet(HOUR / 2);
+        topK.add(8);
+
+        assertEquals(100, topK.estimate(7));
+        assertEquals(List.of(7L, 8L), top(topK, 10));
+
+        now.addAndGet(HOUR);
+        assertEquals(0, topK.estimate(7));
+        assertTrue(top(topK, 10).isEmpty());
+    }
+
+    @Test
+    void testConcurrentAddsAreNotLost() throws Exception {
+        SlidingWindowTopK topK = new SlidingWindowTopK(HOUR, 12, 1024, 4, 64, now::get);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int t = 0; t < results.length; t++) {
+                results[t] = writers.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        topK.add(42);
+                    }
+                });
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        assertEquals(80_000, topK.estimate(42));
+        assertEquals(List.of(42L), top(topK, 5));
+    }
+
+    @Test
+    void testCountMinNeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (long key = 0; key < 1_000; key++) {
+            sketch.add(key, key % 7 + 1);
+        }
+        for (long key = 0; key < 1_000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7 + 1);
+        }
+    }
+
+    /**
+     * k кандидатов с наибольшей оценкой, как их ранжирует TrendingTracker
+     */
+    private static List<Long> top(SlidingWindowTopK topK, int k) {
+        return topK.candidates().stream()
+                .sorted(Comparator.comparingLong(topK::estimate).reversed())
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+
+    @Test
+    void testRejectsAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, now::get);
+
+        AdaptiveConcurrencyLimit.Permit first = limit.tryAcquire();
+        AdaptiveConcurrencyLimit.Permit second = limit.tryAcquire();
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limit.tryAcquire());
+
+        first.release();
+        assertNotNull(limit.tryAcquire());
+    }
+
+    @Test
+    void testShrinksWhenLatencyGrows() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 50, 2.0, now::get);
+        for (int i = 0; i < 500; i++) {
+            complete(limit, 1, millis(10));
+        }
+        assertEquals(20, limit.getLimit());
+
+        // Одно медленное окно (20 ответов) - одно снижение, а не по снижению на ответ
+        for (int i = 0; i < 20; i++) {
+            complete(limit, 1, millis(100));
+        }
+        assertTrue(limit.getLimit() < 20, "limit was " + limit.getLimit());
+        assertTrue(limit.getLimit() >= 10, "limit was " + limit.getLimit());
+
+        for (int i = 0; i < 200; i++) {
+            complete(limit, 1, millis(100));
+        }
+        assertTrue(limit.getLimit() < 10, "limit was " + limit.getLimit());
+        assertTrue(limit.getLimit() >= 2);
+    }
+
+    @Test
+    void testReleaseWithoutSampleFreesSlotOnly() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, now::get);
+        for (int i = 0; i < 100; i++) {
+            complete(limit, 1, millis(1));
+        }
+
+        // SSE: соединение живет минутами, но слот возвращается сразу и без замера
+        for (int i = 0; i < 100; i++) {
+            AdaptiveConcurrencyLimit.Permit stream = limit.tryAcquire();
+            now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+            stream.releaseWithoutSample();
+        }
+
+        assertEquals(2, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void testMixedFastAndSlowRequestsKeepLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(32, 2, 200, 2.0, now::get);
+
+        // Попадания в кеш за десятки микросекунд вперемешку с чтениями из БД
+        for (int i = 0; i < 5_000; i++) {
+            complete(limit, 1 + i % 3, i % 4 == 0 ? millis(20) : TimeUnit.MICROSECONDS.toNanos(50));
+        }
+
+        assertEquals(32, limit.getLimit());
+    }
+
+    @Test
+    void testGrowsWhenSaturatedAndFast() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 2, 50, 2.0, now::get);
+
+        for (int i = 0; i < 400; i++) {
+            complete(limit, 4, millis(10));
+        }
+
+        assertTrue(limit.getLimit() > 4, "limit was " + limit.getLimit());
+    }
+
+    @Test
+    void testDoesNotGrowWhenIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 50, 2.0, now::get);
+
+        for (int i = 0; i < 100; i++) {
+            complete(limit, 1, millis(10));
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    /**
+     * concurrency одновременных запросов, каждый длится rtt
+     */
+    private void complete(AdaptiveConcurrencyLimit limit, int concurrency, long rtt) {
+        List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            AdaptiveConcurrencyLimit.Permit permit = limit.tryAcquire();
+            if (permit != null) {
+                permits.add(permit);
+            }
+        }
+        now.addAndGet(rtt);
+        permits.forEach(AdaptiveConcurrencyLimit.Permit::release);
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+}
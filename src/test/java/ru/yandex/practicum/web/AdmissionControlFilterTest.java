@@ -0,0 +1,159 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.AbstractWebAppTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+class AdmissionControlFilterTest extends AbstractWebAppTest {
+
+    @Autowired private AdmissionControlFilter admissionControlFilter;
+
+    @Override
+    protected Filter[] filters() {
+        return new Filter[] {admissionControlFilter};
+    }
+
+    @Test
+    void testLikesAreRateLimitedPerClient() throws Exception {
+        int accepted = 0;
+        MockHttpServletResponse rejected = null;
+        for (int i = 0; i < 50 && rejected == null; i++) {
+            MockHttpServletResponse response = like("10.0.0.1");
+            if (response.getStatus() == 429) {
+                rejected = response;
+            } else {
+                assertEquals(200, response.getStatus());
+                accepted++;
+            }
+        }
+
+        assertNotNull(rejected, "burst must be limited");
+        assertTrue(accepted >= 20, "burst of 20 must pass, passed " + accepted);
+        assertNotNull(rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejected.getContentAsString().contains("\"status\":429"));
+
+        // Другой клиент не страдает от чужого лимита
+        assertEquals(200, like("10.0.0.2").getStatus());
+    }
+
+    @Test
+    void testShedRequestsDoNotSpendRateLimit() throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<AdmissionControlFilter.EndpointClass, AdaptiveConcurrencyLimit> limits =
+                (Map<AdmissionControlFilter.EndpointClass, AdaptiveConcurrencyLimit>)
+                        ReflectionTestUtils.getField(admissionControlFilter, "limits");
+        List<AdaptiveConcurrencyLimit.Permit> held = new ArrayList<>();
+        AdaptiveConcurrencyLimit.Permit permit;
+        while ((permit = limits.get(AdmissionControlFilter.EndpointClass.WRITE).tryAcquire()) != null) {
+            held.add(permit);
+        }
+        try {
+            for (int i = 0; i < 30; i++) {
+                assertEquals(503, like("10.0.0.4").getStatus());
+            }
+        } finally {
+            held.forEach(AdaptiveConcurrencyLimit.Permit::releaseWithoutSample);
+        }
+
+        // Отказы 503 не потратили токены: весь burst клиента доступен
+        for (int i = 0; i < 20; i++) {
+            assertEquals(200, like("10.0.0.4").getStatus());
+        }
+    }
+
+    @Test
+    void testReadsAreNotRateLimited() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            assertEquals(200, mockMvc.perform(get("/api/posts/1/comments")
+                    .with(request -> {
+                        request.setRemoteAddr("10.0.0.3");
+                        return request;
+                    })).andReturn().getResponse().getStatus());
+        }
+    }
+
+    @Test
+    void testClassification() {
+        assertEquals(AdmissionControlFilter.EndpointClass.SEARCH, classify("GET", "/api/posts", "java"));
+        assertEquals(AdmissionControlFilter.EndpointClass.LIST, classify("GET", "/api/posts", ""));
+        assertEquals(AdmissionControlFilter.EndpointClass.READ, classify("GET", "/api/posts/1", null));
+        assertEquals(AdmissionControlFilter.EndpointClass.WRITE, classify("POST", "/api/posts/1/likes", null));
+    }
+
+    @Test
+    void testTokenBucketRefills() {
+        AtomicLong now = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 2, 10, now::get);
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        long wait = limiter.tryAcquire("a");
+        assertTrue(wait > 0 && wait <= 500, "wait was " + wait);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void testIdleBucketsAreEvicted() {
+        AtomicLong now = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 2, now::get);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        limiter.tryAcquire("c");
+
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void testClientsOverLimitShareOverflowBucket() {
+        AtomicLong now = new AtomicLong();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1, 2, now::get);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("b"));
+
+        // Таблица полна и чистить еще рано: новые клиенты делят одну корзину
+        assertEquals(0, limiter.tryAcquire("c"));
+        assertTrue(limiter.tryAcquire("d") > 0);
+        assertTrue(limiter.tryAcquire("c") > 0);
+        assertEquals(2, limiter.size());
+
+        // Через интервал чистки место освобождается и клиент получает свою корзину
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, limiter.tryAcquire("d"));
+        assertEquals(0, limiter.tryAcquire("e"));
+        assertEquals(2, limiter.size());
+    }
+
+    private MockHttpServletResponse like(String client) throws Exception {
+        return mockMvc.perform(post("/api/posts/1/likes").with(request -> {
+            request.setRemoteAddr(client);
+            return request;
+        })).andReturn().getResponse();
+    }
+
+    private static AdmissionControlFilter.EndpointClass classify(String method, String path, String search) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        if (search != null) {
+            request.setParameter("search", search);
+        }
+        return AdmissionControlFilter.classify(request, path);
+    }
+}
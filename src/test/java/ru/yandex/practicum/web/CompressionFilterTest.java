@@ -0,0 +1,128 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+
+class CompressionFilterTest extends AbstractWebAppTest {
+
+    @Autowired private CompressionFilter compressionFilter;
+    @Autowired private MetricsRegistry metricsRegistry;
+
+    @BeforeEach
+    void setUp() {
+        // Тестовые ответы маленькие: снижаем порог, чтобы они сжимались
+        ReflectionTestUtils.setField(compressionFilter, "minSizeBytes", 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(compressionFilter, "minSizeBytes", 1024);
+    }
+
+    @Override
+    protected Filter[] filters() {
+        return new Filter[] {compressionFilter};
+    }
+
+    @Test
+    void testGzipMatchesPlainResponse() throws Exception {
+        String plain = perform("/api/posts/1/comments", null).getContentAsString();
+        MockHttpServletResponse gzip = perform("/api/posts/1/comments", "gzip, deflate");
+
+        assertEquals("gzip", gzip.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(plain, inflate(new GZIPInputStream(new ByteArrayInputStream(gzip.getContentAsByteArray()))));
+        assertTrue(gzip.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    void testDeflateWhenGzipIsRefused() throws Exception {
+        String plain = perform("/api/posts/1/comments", null).getContentAsString();
+        MockHttpServletResponse deflate = perform("/api/posts/1/comments", "gzip;q=0, deflate");
+
+        assertEquals("deflate", deflate.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(plain, inflate(new InflaterInputStream(new ByteArrayInputStream(deflate.getContentAsByteArray()))));
+    }
+
+    @Test
+    void testCachedResponseIsCompressedOnce() throws Exception {
+        String plain = perform("/api/posts", null).getContentAsString();
+        long compressedByFilter = counter("compression.gzip");
+
+        MockHttpServletResponse first = perform("/api/posts", "gzip");
+        MockHttpServletResponse second = perform("/api/posts", "gzip");
+
+        assertEquals("gzip", second.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(first.getContentAsByteArray(), second.getContentAsByteArray());
+        assertEquals(second.getContentAsByteArray().length, second.getContentLength());
+        assertEquals(plain, inflate(new GZIPInputStream(new ByteArrayInputStream(second.getContentAsByteArray()))));
+        // Готовый вариант из кеша: фильтр сам ничего не сжимал
+        assertEquals(compressedByFilter, counter("compression.gzip"));
+    }
+
+    @Test
+    void testImagesAreNotCompressed() throws Exception {
+        byte[] image = new byte[4096];
+        mockMvc.perform(multipart("/api/posts/3/image")
+                .file(new MockMultipartFile("image", "a.jpg", "image/jpeg", image))
+                .with(request -> {
+                    request.setMethod("PUT");
+                    return request;
+                }));
+
+        MockHttpServletResponse response = perform("/api/posts/3/image", "gzip");
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(image, response.getContentAsByteArray());
+    }
+
+    @Test
+    void testNegotiation() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, deflate;q=0.5"));
+        assertNull(ContentEncoding.negotiate("br"));
+        // Явный q=0 сильнее "*"
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertNull(ContentEncoding.negotiate("*, gzip;q=0, deflate;q=0"));
+        assertNull(ContentEncoding.negotiate("*;q=0"));
+        assertNull(ContentEncoding.negotiate(null));
+    }
+
+    private MockHttpServletResponse perform(String url, String acceptEncoding) throws Exception {
+        var request = get(url);
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private long counter(String name) {
+        Number value = metricsRegistry.snapshot().get(name);
+        return value == null ? 0 : value.longValue();
+    }
+
+    private static String inflate(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ru.yandex.practicum.web;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.service.PostSummaryStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+class IdempotencyFilterTest extends AbstractWebAppTest {
+
+    private static final String BODY = "{\"title\":\"Idempotent\",\"text\":\"Created once\",\"tags\":[]}";
+
+    @Autowired private IdempotencyFilter idempotencyFilter;
+    @Autowired private PostSummaryStore summaryStore;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM posts WHERE title = 'Idempotent'");
+        // Удаление в обход сервиса read-модель не видит
+        summaryStore.rebuild();
+    }
+
+    @Override
+    protected Filter[] filters() {
+        return new Filter[] {idempotencyFilter};
+    }
+
+    @Test
+    void testRetryReplaysFirstResponse() throws Exception {
+        String key = UUID.randomUUID().toString();
+
+        MockHttpServletResponse first = createPost(key, BODY);
+        MockHttpServletResponse retry = createPost(key, BODY);
+
+        assertEquals(201, first.getStatus());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, countIdempotentPosts());
+
+        // Другой ключ - другой запрос
+        assertEquals(201, createPost(UUID.randomUUID().toString(), BODY).getStatus());
+        assertEquals(2, countIdempotentPosts());
+    }
+
+    @Test
+    void testKeyReusedWithDifferentBodyIsRejected() throws Exception {
+        String key = UUID.randomUUID().toString();
+        createPost(key, BODY);
+
+        MockHttpServletResponse response = createPost(key, BODY.replace("Created once", "Something else"));
+
+        assertEquals(422, response.getStatus());
+        assertEquals(1, countIdempotentPosts());
+    }
+
+    @Test
+    void testConcurrentDuplicatesExecuteOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Callable<MockHttpServletResponse> retry = () -> createPost(key, BODY);
+                responses.add(clients.submit(retry));
+            }
+            String expected = null;
+            for (Future<MockHttpServletResponse> future : responses) {
+                MockHttpServletResponse response = future.get(10, TimeUnit.SECONDS);
+                assertEquals(201, response.getStatus());
+                expected = expected == null ? response.getContentAsString() : expected;
+                assertEquals(expected, response.getContentAsString());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(1, countIdempotentPosts());
+    }
+
+    @Test
+    void testMemoryStoreExpiresAndStaysBounded() {
+        AtomicLong now = new AtomicLong(1_000);
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100, 10, 2, now::get);
+        IdempotencyStore.StoredResponse response = new IdempotencyStore.StoredResponse(
+                "hash", 201, MediaType.APPLICATION_JSON_VALUE, "{}".getBytes(StandardCharsets.UTF_8));
+
+        store.save("a", response);
+        store.save("b", response);
+        store.save("c", response);
+        assertEquals(2, store.size());
+        assertNull(store.find("a"));
+        assertNotNull(store.find("c"));
+
+        now.addAndGet(100);
+        assertNull(store.find("b"));
+        assertNull(store.find("c"));
+    }
+
+    @Test
+    void testJdbcStoreKeepsResponses() {
+        JdbcIdempotencyStore store = new JdbcIdempotencyStore(jdbcTemplate, 60_000, 60_000);
+        String key = "POST /api/posts " + UUID.randomUUID();
+        byte[] body = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(store.find(key));
+        store.save(key, new IdempotencyStore.StoredResponse("hash", 201, MediaType.APPLICATION_JSON_VALUE, body));
+        store.save(key, new IdempotencyStore.StoredResponse("hash", 201, MediaType.APPLICATION_JSON_VALUE, body));
+
+        IdempotencyStore.StoredResponse found = store.find(key);
+        assertEquals(201, found.getStatus());
+        assertArrayEquals(body, found.getBody());
+        assertNull(new JdbcIdempotencyStore(jdbcTemplate, 0, 0).find(key));
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idem_key = ?", key);
+    }
+
+    @Test
+    void testMemoryStoreClaimsKeyOnce() {
+        AtomicLong now = new AtomicLong(1_000);
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100, 10, 10, now::get);
+
+        assertTrue(store.claim("a", "hash"));
+        assertFalse(store.claim("a", "hash"));
+        assertNull(store.find("a"));
+
+        // 5xx: заявка снята, повтор занимает ключ заново
+        store.release("a");
+        assertTrue(store.claim("a", "hash"));
+
+        // Брошенная заявка перехватывается после claim-ttl
+        now.addAndGet(10);
+        assertTrue(store.claim("a", "hash"));
+        store.save("a", new IdempotencyStore.StoredResponse("hash", 201, null, new byte[0]));
+        store.release("a");
+        assertFalse(store.claim("a", "hash"));
+        assertEquals(201, store.find("a").getStatus());
+    }
+
+    @Test
+    void testJdbcClaimIsSharedBetweenInstances() {
+        // Два хранилища над одной таблицей - как два инстанса с общей БД
+        JdbcIdempotencyStore first = new JdbcIdempotencyStore(jdbcTemplate, 60_000, 60_000);
+        JdbcIdempotencyStore second = new JdbcIdempotencyStore(jdbcTemplate, 60_000, 60_000);
+        String key = "POST /api/posts " + UUID.randomUUID();
+        try {
+            assertTrue(first.claim(key, "hash"));
+            assertFalse(second.claim(key, "hash"));
+            assertNull(second.find(key));
+
+            first.release(key);
+            assertTrue(second.claim(key, "hash"));
+            second.save(key, new IdempotencyStore.StoredResponse("hash", 201, null, new byte[0]));
+            assertFalse(first.claim(key, "hash"));
+            assertEquals(201, first.find(key).getStatus());
+
+            // Брошенная заявка (claim-ttl истек) перехватывается, сохраненный ответ - нет
+            String abandoned = key + "-abandoned";
+            assertTrue(first.claim(abandoned, "hash"));
+            assertTrue(new JdbcIdempotencyStore(jdbcTemplate, 60_000, 0).claim(abandoned, "hash"));
+            assertFalse(new JdbcIdempotencyStore(jdbcTemplate, 60_000, 0).claim(key, "hash"));
+        } finally {
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idem_key LIKE ?", key + "%");
+        }
+    }
+
+    private MockHttpServletResponse createPost(String key, String body) throws Exception {
+        return mockMvc.perform(post("/api/posts")
+                        .header(IdempotencyFilter.HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse();
+    }
+
+    private int countIdempotentPosts() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts WHERE title = 'Idempotent'", Integer.class);
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.dao.PostSort;
+import ru.yandex.practicum.dto.PostDetailDto;
+import ru.yandex.practicum.event.CommentEvent;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonResponseCacheTest {
+
+    private JsonResponseCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new JsonResponseCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper().registerModule(new BlackbirdModule()));
+        ReflectionTestUtils.setField(cache, "metricsRegistry", new MetricsRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L);
+    }
+
+    @Test
+    void testHitReturnsSameBytesWithoutLoading() {
+        SerializedJson first = cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        SerializedJson second = cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        String json = new String(first.getBytes(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"title\":\"Post 1\""));
+        assertTrue(json.contains("\"tags\":[\"java\"]"));
+    }
+
+    @Test
+    void testEventsInvalidatePostAndLists() {
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        cache.get(JsonResponseCache.listKey("", 1, 5, PostSort.ID), this::loadPost);
+        cache.get(JsonResponseCache.postKey(2L), this::loadPost);
+
+        cache.onCommentEvent(new CommentEvent(CommentEvent.Type.CREATED, 1L, 10L, "text"));
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        cache.get(JsonResponseCache.listKey("", 1, 5, PostSort.ID), this::loadPost);
+        cache.get(JsonResponseCache.postKey(2L), this::loadPost);
+
+        assertEquals(5, loads.get());
+
+        cache.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 2L));
+        cache.get(JsonResponseCache.postKey(2L), this::loadPost);
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    void testLikeKeepsListsAndOtherPosts() {
+        String list = JsonResponseCache.listKey("", 1, 5, PostSort.LIKES);
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        cache.get(JsonResponseCache.postKey(2L), this::loadPost);
+        cache.get(list, this::loadPost);
+
+        cache.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 1L));
+        cache.onCommentEvent(new CommentEvent(CommentEvent.Type.UPDATED, 2L, 10L, "edited"));
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        cache.get(JsonResponseCache.postKey(2L), this::loadPost);
+        cache.get(list, this::loadPost);
+        assertEquals(5, loads.get());
+
+        // Новый пост меняет списки, но не детальные страницы других постов
+        cache.onPostEvent(new PostEvent(PostEvent.Type.CREATED, 3L));
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        cache.get(list, this::loadPost);
+        assertEquals(6, loads.get());
+
+        cache.clear();
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+        assertEquals(7, loads.get());
+    }
+
+    @Test
+    void testResponseBuiltDuringInvalidationIsNotCached() {
+        cache.get(JsonResponseCache.postKey(1L), () -> {
+            // Запись прошла, пока мы читали старое состояние
+            cache.onPostEvent(new PostEvent(PostEvent.Type.UPDATED, 1L));
+            return loadPost();
+        });
+        cache.get(JsonResponseCache.postKey(1L), this::loadPost);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testMissingIsNotCached() {
+        assertTrue(cache.find(JsonResponseCache.postKey(9L), Optional::empty).isEmpty());
+        assertTrue(cache.find(JsonResponseCache.postKey(9L), () -> Optional.of(loadPost())).isPresent());
+    }
+
+    private PostDetailDto loadPost() {
+        int n = loads.incrementAndGet();
+        return PostDetailDto.builder().id(1L).title("Post 1").text("text " + n)
+                .tags(List.of("java")).likesCount(0).commentsCount(0).build();
+    }
+}
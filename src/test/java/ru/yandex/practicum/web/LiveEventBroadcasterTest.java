@@ -0,0 +1,127 @@
+package ru.yandex.practicum.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.AbstractWebAppTest;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class LiveEventBroadcasterTest extends AbstractWebAppTest {
+
+    private static final Pattern LIKES_EVENT = Pattern.compile("event:likes\\ndata:\\{\"postId\":2,\"likesCount\":(\\d+)}");
+
+    @Autowired private LiveEventBroadcaster broadcaster;
+
+    @Test
+    void testCommentEventsReachSubscribers() throws Exception {
+        MockHttpServletResponse stream = subscribe(1);
+
+        String created = mockMvc.perform(post("/api/posts/1/comments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Live comment\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String commentId = created.replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        awaitContent(stream, body -> body.contains("event:comment-created\ndata:{\"id\":" + commentId
+                + ",\"postId\":1,\"text\":\"Live comment\"}"));
+
+        mockMvc.perform(delete("/api/posts/1/comments/" + commentId)).andExpect(status().isOk());
+        awaitContent(stream, body -> body.contains("event:comment-deleted\ndata:{\"id\":" + commentId + ",\"postId\":1}"));
+    }
+
+    @Test
+    void testLikesAreCoalesced() throws Exception {
+        MockHttpServletResponse stream = subscribe(2);
+
+        int likesCount = 0;
+        for (int i = 0; i < 5; i++) {
+            likesCount = Integer.parseInt(mockMvc.perform(post("/api/posts/2/likes"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        }
+        broadcaster.flushLikes();
+
+        String expectedLast = "\"likesCount\":" + likesCount + "}";
+        String body = awaitContent(stream, content -> content.contains(expectedLast));
+        Matcher matcher = LIKES_EVENT.matcher(body);
+        int events = 0;
+        while (matcher.find()) {
+            events++;
+        }
+        // 5 лайков - одно событие, если интервал рассылки не пришелся на середину серии
+        assertTrue(events >= 1 && events <= 2, body);
+    }
+
+    @Test
+    void testDeletedPostClosesStream() throws Exception {
+        long postId = postService.createPost("Live post", "text", List.of()).getId();
+        int before = broadcaster.getSubscriberCount();
+        MockHttpServletResponse stream = subscribe(postId);
+        assertEquals(before + 1, broadcaster.getSubscriberCount());
+
+        postService.deletePost(postId);
+
+        awaitContent(stream, body -> body.contains("event:post-deleted\ndata:{\"postId\":" + postId + "}"));
+        awaitSubscribers(before);
+    }
+
+    @Test
+    void testSubscribeRacingDeleteIsClosed() throws Exception {
+        long postId = postService.createPost("Live post", "text", List.of()).getId();
+        int before = broadcaster.getSubscriberCount();
+        postService.deletePost(postId);
+
+        // Контроллер проверил пост до удаления, подписка зарегистрировалась уже после события
+        broadcaster.subscribe(postId);
+
+        awaitSubscribers(before);
+    }
+
+    @Test
+    void testUnknownPostIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/posts/999/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+    }
+
+    private MockHttpServletResponse subscribe(long postId) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/posts/" + postId + "/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        return result.getResponse();
+    }
+
+    private void awaitSubscribers(int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (broadcaster.getSubscriberCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, broadcaster.getSubscriberCount());
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, Predicate<String> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String body = response.getContentAsString();
+        while (!condition.test(body) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = response.getContentAsString();
+        }
+        assertTrue(condition.test(body), body);
+        return body;
+    }
+}
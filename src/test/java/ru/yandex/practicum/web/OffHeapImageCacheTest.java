@@ -0,0 +1,130 @@
+package ru.yandex.practicum.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.event.PostEvent;
+import ru.yandex.practicum.metrics.MetricsRegistry;
+import ru.yandex.practicum.model.Image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapImageCacheTest {
+
+    private static final int PAGE = 64;
+
+    private OffHeapImageCache cache;
+    private MetricsRegistry metricsRegistry;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new OffHeapImageCache();
+        metricsRegistry = new MetricsRegistry();
+        ReflectionTestUtils.setField(cache, "metricsRegistry", metricsRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        // 8 страниц: четыре изображения по две страницы
+        ReflectionTestUtils.setField(cache, "maxBytes", 8L * PAGE);
+        ReflectionTestUtils.setField(cache, "pageBytes", PAGE);
+        ReflectionTestUtils.setField(cache, "maxImageBytes", 4 * PAGE);
+        cache.afterPropertiesSet();
+    }
+
+    @Test
+    void testHitIsServedFromCacheWithSameBytes() throws IOException {
+        assertArrayEquals(image(1), read(1L));
+        assertArrayEquals(image(1), read(1L));
+
+        assertEquals(1, loads.get());
+        assertEquals(image(1).length, cache.getResidentBytes());
+        assertEquals(50.0, metricsRegistry.snapshot().get("cache.image.hit-ratio").doubleValue());
+    }
+
+    @Test
+    void testClockKeepsRecentlyReadImagesWithinBudget() throws IOException {
+        for (long id = 1; id <= 4; id++) {
+            read(id);
+        }
+        // Повторное чтение 1 ставит ему бит обращения: вытеснится 2
+        read(1L);
+        read(5L);
+
+        assertTrue(cache.getResidentBytes() <= 8L * PAGE);
+        int before = loads.get();
+        assertArrayEquals(image(1), read(1L));
+        assertArrayEquals(image(5), read(5L));
+        assertEquals(before, loads.get());
+        assertArrayEquals(image(2), read(2L));
+        assertEquals(before + 1, loads.get());
+    }
+
+    @Test
+    void testImageBeingWrittenKeepsItsPages() throws IOException {
+        read(1L);
+        try (CachedImage inFlight = cache.find(1L, () -> load(1L)).orElseThrow()) {
+            cache.invalidate(1L);
+            for (long id = 2; id <= 5; id++) {
+                read(id);
+            }
+            // Страницы изображения 1 еще заняты: новые записи их не перезаписали
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            inFlight.writeTo(out);
+            assertArrayEquals(image(1), out.toByteArray());
+            assertTrue(cache.getResidentBytes() <= 6L * PAGE);
+        }
+        read(6L);
+        read(6L);
+        // После закрытия страницы вернулись: 6 кешируется без вытеснения
+        assertEquals(6, loads.get());
+        assertEquals(1, metricsRegistry.counter("cache.image.evicted").sum());
+    }
+
+    @Test
+    void testImageChangeInvalidatesOnlyThatPost() throws IOException {
+        read(1L);
+        read(2L);
+        cache.onPostEvent(new PostEvent(PostEvent.Type.IMAGE_CHANGED, 1L));
+        cache.onPostEvent(new PostEvent(PostEvent.Type.LIKED, 2L));
+        read(1L);
+        read(2L);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testLargeAndMissingImagesAreNotCached() throws IOException {
+        byte[] large = new byte[4 * PAGE + 1];
+        cache.find(1L, () -> Optional.of(new Image("large", large))).orElseThrow().close();
+        assertEquals(0, cache.getResidentBytes());
+        assertTrue(cache.find(2L, Optional::empty).isEmpty());
+    }
+
+    private byte[] read(Long postId) throws IOException {
+        try (CachedImage image = cache.find(postId, () -> load(postId)).orElseThrow()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            image.writeTo(out);
+            assertEquals(out.size(), image.length());
+            assertEquals(Image.hashOf(out.toByteArray()), image.getHash());
+            return out.toByteArray();
+        }
+    }
+
+    private Optional<Image> load(Long postId) {
+        loads.incrementAndGet();
+        return Optional.of(new Image(Image.hashOf(image(postId)), image(postId)));
+    }
+
+    /** Полторы-две страницы с содержимым, зависящим от id */
+    private static byte[] image(long postId) {
+        byte[] bytes = new byte[PAGE + PAGE / 2 + (int) postId];
+        Arrays.fill(bytes, (byte) postId);
+        bytes[0] = (byte) (postId * 31);
+        return bytes;
+    }
+}
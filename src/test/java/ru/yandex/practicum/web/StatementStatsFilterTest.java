@@ -0,0 +1,66 @@
+package ru.yandex.practicum.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.yandex.practicum.AbstractWebAppTest;
+import ru.yandex.practicum.dto.CommentDto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Заголовки X-SQL-* в debug-режиме: обычный ответ буферизуется, SSE-поток идет мимо буфера
+ */
+class StatementStatsFilterTest extends AbstractWebAppTest {
+
+    @Autowired private StatementStatsFilter statementStatsFilter;
+
+    @Test
+    void testDebugHeaders() throws Exception {
+        ReflectionTestUtils.setField(statementStatsFilter, "debugHeaders", true);
+        try {
+            MockMvc filtered = MockMvcBuilders.webAppContextSetup(context)
+                    .addFilters(statementStatsFilter)
+                    .build();
+
+            String statements = filtered.perform(get("/api/posts/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists(StatementStatsFilter.HEADER_ROWS))
+                    .andExpect(header().exists(StatementStatsFilter.HEADER_TIME))
+                    .andReturn().getResponse().getHeader(StatementStatsFilter.HEADER_STATEMENTS);
+
+            assertEquals("2", statements);
+
+            // SSE без Accept: text/event-stream - события идут мимо буфера
+            MockHttpServletResponse stream = filtered.perform(get("/api/posts/1/events"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn().getResponse();
+            String created = mockMvc.perform(post("/api/posts/1/comments")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"text\":\"Streamed\"}"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!stream.getContentAsString().contains("Streamed") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(stream.getContentAsString().contains("event:comment-created"), stream.getContentAsString());
+            // БД общая для всех тестов: у поста 1 остаются только тестовые комментарии
+            Long commentId = objectMapper.readValue(created, CommentDto.class).getId();
+            mockMvc.perform(delete("/api/posts/1/comments/" + commentId)).andExpect(status().isOk());
+        } finally {
+            ReflectionTestUtils.setField(statementStatsFilter, "debugHeaders", false);
+        }
+    }
+}